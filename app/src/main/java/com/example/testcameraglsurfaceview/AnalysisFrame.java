@@ -0,0 +1,113 @@
+package com.example.testcameraglsurfaceview;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Pooled copy of one camera image. All planes are packed into a single direct buffer;
+ * read them with absolute gets at getPlaneOffset(i) .. getPlaneOffset(i) + getPlaneLength(i).
+ * Analyzers must not keep a reference after analyze() returns, the frame goes back to the pool.
+ */
+public class AnalysisFrame implements ResizableDirectBuffer {
+
+    public static final int MAX_PLANES = 3;
+
+    private ByteBuffer mBuffer;
+    private final int[] mOffsets = new int[MAX_PLANES];
+    private final int[] mLengths = new int[MAX_PLANES];
+    private final int[] mRowStrides = new int[MAX_PLANES];
+    private final int[] mPixelStrides = new int[MAX_PLANES];
+    private int mPlaneCount;
+    private int mWidth;
+    private int mHeight;
+    private long mTimestamp;
+    private int mAllocationCount;
+
+    /** A pool of size empty frames. */
+    public static FrameBufferPool<AnalysisFrame> newPool(int size) {
+        AnalysisFrame[] frames = new AnalysisFrame[size];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = new AnalysisFrame();
+        }
+        return new FrameBufferPool<>(frames);
+    }
+
+    @Override
+    public void ensureCapacity(int bytes) {
+        if (mBuffer == null || mBuffer.capacity() < bytes) {
+            mBuffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+            mAllocationCount++;
+        }
+    }
+
+    @Override
+    public int getAllocationCount() {
+        return mAllocationCount;
+    }
+
+    public void begin(long timestamp, int width, int height) {
+        mTimestamp = timestamp;
+        mWidth = width;
+        mHeight = height;
+        mPlaneCount = 0;
+        mBuffer.clear();
+    }
+
+    /** Copies src from its position to its limit; src's position is advanced. */
+    public void putPlane(ByteBuffer src, int rowStride, int pixelStride) {
+        if (mPlaneCount == MAX_PLANES) {
+            throw new IllegalStateException("Too many planes");
+        }
+        int offset = mBuffer.position();
+        int length = src.remaining();
+        if (length > mBuffer.remaining()) {
+            throw new IllegalStateException("Plane does not fit: " + length + " > " + mBuffer.remaining());
+        }
+        mBuffer.put(src);
+        mOffsets[mPlaneCount] = offset;
+        mLengths[mPlaneCount] = length;
+        mRowStrides[mPlaneCount] = rowStride;
+        mPixelStrides[mPlaneCount] = pixelStride;
+        mPlaneCount++;
+    }
+
+    public ByteBuffer getBuffer() {
+        return mBuffer;
+    }
+
+    public int getCapacity() {
+        return mBuffer == null ? 0 : mBuffer.capacity();
+    }
+
+    public int getPlaneCount() {
+        return mPlaneCount;
+    }
+
+    public int getPlaneOffset(int plane) {
+        return mOffsets[plane];
+    }
+
+    public int getPlaneLength(int plane) {
+        return mLengths[plane];
+    }
+
+    public int getRowStride(int plane) {
+        return mRowStrides[plane];
+    }
+
+    public int getPixelStride(int plane) {
+        return mPixelStrides[plane];
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+}
@@ -3,72 +3,338 @@ package com.example.testcameraglsurfaceview;
 import android.content.Context;
 import android.content.res.Configuration;
 import android.graphics.Point;
+import android.graphics.Rect;
 import android.graphics.SurfaceTexture;
 import android.hardware.camera2.CameraAccessException;
 import android.hardware.camera2.CameraCaptureSession;
 import android.hardware.camera2.CameraCharacteristics;
 import android.hardware.camera2.CameraDevice;
 import android.hardware.camera2.CaptureRequest;
-import android.hardware.camera2.params.StreamConfigurationMap;
+import android.hardware.camera2.CaptureResult;
+import android.hardware.camera2.TotalCaptureResult;
+import android.os.Build;
 import android.os.Handler;
-import android.os.HandlerThread;
+import android.os.Looper;
 import android.util.Log;
-import android.util.Size;
+import android.util.Range;
 import android.view.Surface;
-import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 
-import java.util.Collections;
-
-public class Camera {
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Back camera preview into a SurfaceTexture that is attached to whichever GL context is current.
+ * The device and capture session are owned by CameraLifecycle on the CameraExecutor control looper,
+ * so they survive GL context loss and short pauses; every camera2 callback runs on that looper too.
+ */
+public class Camera implements CameraLifecycle.Driver, FrameSource {
+
+    private static final String TAG = "Camera";
+    private static final int TARGET_FPS = 30;
+    private static final long MAX_PREVIEW_PIXELS = 1920 * 1440;
+    private static final int ANALYSIS_WIDTH = 640;
+    private static final int ANALYSIS_HEIGHT = 480;
+    private static final long MAX_ANALYSIS_PIXELS = 1280 * 720;
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 5000;
+    private static final int CALLBACK_QUEUE_CAPACITY = 16;
+    private static final int CAPTURE_METADATA_CAPACITY = 32;
+
+    /** Called on the camera callback thread once CameraLifecycle has given up recovering. */
+    public interface ErrorListener {
+        void onCameraError(int error);
+    }
 
-    enum CameraRotation {ROTATION_0, ROTATION_90, ROTATION_180, ROTATION_270}
+    // カメラIDの列挙と特性の問い合わせは向きごとにプロセス内で一度だけ行う
+    private static final String CAPABILITY_INDEX_FILE = "camera_capabilities";
+    private static CameraCapabilityCache sCapabilityCache;
 
     private AppCompatActivity mActivity;
     private CameraDevice mCamera;
-    private int mTextureID;
-    private Size mImageSize;
-    private Size mCameraSize;
-    private CameraRotation mCameraRotation;
+    private volatile Resolution mCameraSize;
+    private long mMaxPreviewPixels = MAX_PREVIEW_PIXELS;
+    private int mTargetFps = TARGET_FPS;
+    // 設定に失敗して下げた上限。画質調整でもこれより上には戻さない
+    private long mPlanCeilingPixels = Long.MAX_VALUE;
+    private int mPlanCeilingFps = Integer.MAX_VALUE;
+    private CapturePlan mCapturePlan;
     private CaptureRequest.Builder mPreviewBuilder;
     private CameraCaptureSession mPreviewSession;
-    private SurfaceTexture mSurfaceTexture;
-    private boolean mIsPortraitDevice;
-    private boolean mInitialized = false;
+    private final SurfaceTexture mSurfaceTexture;
+    private final Surface mSurface;
+    private final CameraExecutor mExecutor;
+    private final Handler mHandler;
+    private final CameraLifecycle mLifecycle;
+    private final CaptureMetadataRing mCaptureMetadata = new CaptureMetadataRing(CAPTURE_METADATA_CAPACITY);
+    private SurfaceTexture.OnFrameAvailableListener mOnFrameAvailableListener;
+    private volatile ErrorListener mErrorListener;
+    private FrameAnalysisPipeline mFrameAnalysisPipeline;
+    private DigitalZoom mDigitalZoom;
+    private final int[] mCropRegion = new int[4];
+    private final AtomicBoolean mZoomPending = new AtomicBoolean(false);
+    private ImageAnalysisStream mImageAnalysisStream;
+    private final int mLensFacing;
+    private volatile int mSensorOrientation;
+    private volatile CameraCapabilityIndex.Entry mCameraEntry;
+    private boolean mAttached = false;
+    private volatile boolean mInitialized = false;
+    // フレーム到着コールバック(カメラスレッド)でだけ増やす
+    private volatile long mFrameSequence = 0;
+
+    public Camera(AppCompatActivity activity) {
+        this(activity, CameraCharacteristics.LENS_FACING_BACK, DEFAULT_IDLE_TIMEOUT_MS);
+    }
 
-    public Camera(AppCompatActivity activity, int textureID) {
+    /**
+     * @param lensFacing CameraCharacteristics.LENS_FACING_*; the first camera facing that way is used.
+     *                   Each Camera has its own control looper, so several can stream at once.
+     */
+    public Camera(AppCompatActivity activity, int lensFacing, long idleTimeoutMs) {
         mActivity = activity;
-        mTextureID = textureID;
+        mLensFacing = lensFacing;
 
         boolean isPortraitApp =
                 mActivity.getResources().getConfiguration().orientation == Configuration.ORIENTATION_PORTRAIT;
         int orientation = mActivity.getWindowManager().getDefaultDisplay().getRotation();
+        boolean isPortraitDevice;
         if (isPortraitApp) {
-            mIsPortraitDevice = (orientation == Surface.ROTATION_0 || orientation ==  Surface.ROTATION_180);
+            isPortraitDevice = (orientation == Surface.ROTATION_0 || orientation ==  Surface.ROTATION_180);
         } else {
-            mIsPortraitDevice = (orientation == Surface.ROTATION_90 || orientation ==  Surface.ROTATION_270);
+            isPortraitDevice = (orientation == Surface.ROTATION_90 || orientation ==  Surface.ROTATION_270);
+        }
+        // 特性を読むまではセンサーの向きを端末の向きから推定する
+        mSensorOrientation = isPortraitDevice ? 90 : 0;
+
+        HandlerCameraLooper looper = new HandlerCameraLooper(
+                lensFacing == CameraCharacteristics.LENS_FACING_BACK ? "CameraControl" : "CameraControl-" + lensFacing);
+        mHandler = looper.getHandler();
+        mExecutor = new CameraExecutor(looper, CALLBACK_QUEUE_CAPACITY);
+        mLifecycle = new CameraLifecycle(this, Clock.SYSTEM, idleTimeoutMs * 1000000L, new RecoveryPolicy());
+
+        // GLコンテキストから切り離された状態で作られるので、attachToGlContext()で描画側のテクスチャに繋ぐ
+        mSurfaceTexture = new SurfaceTexture(false);
+        mSurfaceTexture.setOnFrameAvailableListener(mFrameAvailableListener, mHandler);
+        mSurface = new Surface(mSurfaceTexture);
+    }
+
+    public void setOnFrameAvailableListener(SurfaceTexture.OnFrameAvailableListener listener) {
+        mOnFrameAvailableListener = listener;
+    }
+
+    /** Analyzers must be registered before the first start(); the YUV stream is only added when there are any. */
+    public void setFrameAnalysisPipeline(FrameAnalysisPipeline pipeline) {
+        mFrameAnalysisPipeline = pipeline;
+    }
+
+    /**
+     * Zoom to apply as SCALER_CROP_REGION when the camera supports it; otherwise the renderer crops.
+     * Must be set before the first start().
+     */
+    public void setDigitalZoom(DigitalZoom zoom) {
+        mDigitalZoom = zoom;
+        zoom.setListener(new DigitalZoom.Listener() {
+            @Override
+            public void onZoomChanged(DigitalZoom zoom) {
+                // ピンチ中は要求がたまらないよう、反映前の変更はまとめる
+                if (mZoomPending.compareAndSet(false, true)) {
+                    mExecutor.post(mApplyZoom);
+                }
+            }
+        });
+    }
+
+    public void setErrorListener(ErrorListener listener) {
+        mErrorListener = listener;
+    }
+
+    public CameraLifecycle getLifecycle() {
+        return mLifecycle;
+    }
+
+    public CameraExecutor getExecutor() {
+        return mExecutor;
+    }
+
+    /** Capture results of the preview stream, for lookup by SurfaceTexture timestamp on the GL thread. */
+    public CaptureMetadataRing getCaptureMetadata() {
+        return mCaptureMetadata;
+    }
+
+    /** Starts the preview, reopening the device only if the idle timeout has closed it. */
+    public void start() {
+        mExecutor.post(new Runnable() {
+            @Override
+            public void run() {
+                mLifecycle.start();
+            }
+        });
+    }
+
+    /** Stops the preview but keeps the device open for the idle timeout. */
+    public void stop() {
+        mExecutor.post(new Runnable() {
+            @Override
+            public void run() {
+                mLifecycle.stop();
+            }
+        });
+    }
+
+    /**
+     * Re-negotiates the preview stream for at most maxPixels at fps. The session is only re-created
+     * if the stream sizes change; a new fps range alone is applied to the repeating request.
+     */
+    public void setQuality(final long maxPixels, final int fps) {
+        mExecutor.post(new Runnable() {
+            @Override
+            public void run() {
+                applyQuality(maxPixels, fps);
+            }
+        });
+    }
+
+    private void applyQuality(long maxPixels, int fps) {
+        if (maxPixels == mMaxPreviewPixels && fps == mTargetFps) {
+            return;
+        }
+        mMaxPreviewPixels = maxPixels;
+        mTargetFps = fps;
+        if (mCapturePlan == null) {
+            // まだ開いていないので、openDevice()のネゴシエーションで反映される
+            return;
+        }
+        CapturePlan plan = negotiateStreams(getCapabilities());
+        if (plan == null || plan.equals(mCapturePlan)) {
+            return;
+        }
+        boolean sizesChanged = plan.getStreamCount() != mCapturePlan.getStreamCount();
+        for (int i = 0; !sizesChanged && i < plan.getStreamCount(); i++) {
+            sizesChanged = !plan.getSize(i).equals(mCapturePlan.getSize(i));
         }
+        mCapturePlan = plan;
+        if (sizesChanged) {
+            mLifecycle.reconfigure();
+        } else if (mPreviewBuilder != null) {
+            setFpsRange(mPreviewBuilder, plan.getFpsRange());
+            if (mLifecycle.getState() == CameraLifecycle.State.STREAMING) {
+                startRepeating();
+            }
+        }
+    }
+
+    public void release() {
+        mExecutor.post(new Runnable() {
+            @Override
+            public void run() {
+                mLifecycle.release();
+                mSurface.release();
+                mSurfaceTexture.release();
+                mExecutor.shutdown();
+            }
+        });
     }
 
+    @Override
+    public int getTextureTarget() {
+        return GlApi.GL_TEXTURE_EXTERNAL_OES;
+    }
+
+    /** GL thread: makes the camera image available as texName (GL_TEXTURE_EXTERNAL_OES) in the current context. */
+    @Override
+    public void attachToGlContext(int texName) {
+        if (mAttached) {
+            Log.w(TAG, "SurfaceTexture was not detached from the previous context");
+            return;
+        }
+        mSurfaceTexture.attachToGLContext(texName);
+        mAttached = true;
+    }
+
+    /** GL thread: must be called while the context is still current, before it is destroyed. Deletes the texture. */
+    @Override
+    public void detachFromGlContext() {
+        if (!mAttached) {
+            return;
+        }
+        mSurfaceTexture.detachFromGLContext();
+        mAttached = false;
+    }
+
+    private final SurfaceTexture.OnFrameAvailableListener mFrameAvailableListener =
+            new SurfaceTexture.OnFrameAvailableListener() {
+        @Override
+        public void onFrameAvailable(SurfaceTexture surfaceTexture) {
+            mFrameSequence++;
+            mLifecycle.onFrameAvailable();
+            if (mOnFrameAvailableListener != null) {
+                mOnFrameAvailableListener.onFrameAvailable(surfaceTexture);
+            }
+        }
+    };
+
+    private final Runnable mIdleTimeout = new Runnable() {
+        @Override
+        public void run() {
+            mLifecycle.onIdleTimeout();
+        }
+    };
+
+    private final Runnable mApplyZoom = new Runnable() {
+        @Override
+        public void run() {
+            mZoomPending.set(false);
+            if (mPreviewBuilder != null && setCropRegion(mPreviewBuilder)
+                    && mLifecycle.getState() == CameraLifecycle.State.STREAMING) {
+                // セッションはそのままで繰り返しリクエストだけを差し替える
+                startRepeating();
+            }
+        }
+    };
+
+    private final Runnable mRetry = new Runnable() {
+        @Override
+        public void run() {
+            mLifecycle.onRetry();
+        }
+    };
+
+    private final CameraCaptureSession.CaptureCallback mCaptureCallback = new CameraCaptureSession.CaptureCallback() {
+        @Override
+        public void onCaptureCompleted(@NonNull CameraCaptureSession session, @NonNull CaptureRequest request,
+                                       @NonNull TotalCaptureResult result) {
+            Long timestamp = result.get(CaptureResult.SENSOR_TIMESTAMP);
+            if (timestamp == null) {
+                return;
+            }
+            Long exposureTime = result.get(CaptureResult.SENSOR_EXPOSURE_TIME);
+            Long frameDuration = result.get(CaptureResult.SENSOR_FRAME_DURATION);
+            mCaptureMetadata.publish(timestamp, exposureTime == null ? 0 : exposureTime,
+                    frameDuration == null ? 0 : frameDuration, result.getFrameNumber());
+        }
+    };
+
     private CameraDevice.StateCallback mCameraDeviceCallback = new CameraDevice.StateCallback() {
         @Override
         public void onOpened(@NonNull CameraDevice camera) {
             mCamera = camera;
-            createCaptureSession();
+            mLifecycle.onDeviceOpened();
         }
 
         @Override
         public void onDisconnected(@NonNull CameraDevice camera) {
             camera.close();
-            mCamera = null;
+            reportError(CameraLifecycle.ERROR_DISCONNECTED);
         }
 
         @Override
         public void onError(@NonNull CameraDevice camera, int error) {
             camera.close();
-            mCamera = null;
+            reportError(error);
         }
     };
 
@@ -76,154 +342,305 @@ public class Camera {
         @Override
         public void onConfigured(@NonNull CameraCaptureSession session) {
             mPreviewSession = session;
-            updatePreview();
+            mLifecycle.onSessionConfigured();
         }
 
         @Override
         public void onConfigureFailed(@NonNull CameraCaptureSession session) {
-            Toast.makeText(mActivity, "onConfigureFailed", Toast.LENGTH_LONG).show();
+            reportError(CameraLifecycle.ERROR_CONFIGURE_FAILED);
         }
     };
 
-    public void open() {
+    private void reportError(final int error) {
+        mLifecycle.onDeviceError(error);
+        if (mLifecycle.getState() == CameraLifecycle.State.RETRY_WAIT) {
+            Log.w(TAG, "camera error " + error + ", retry " + (mLifecycle.getRetryCount() + 1));
+            return;
+        }
+        final ErrorListener listener = mErrorListener;
+        if (listener != null) {
+            mExecutor.dispatchCallback(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onCameraError(error);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void openDevice() {
         try {
             android.hardware.camera2.CameraManager manager =
                     (android.hardware.camera2.CameraManager) mActivity.getSystemService(Context.CAMERA_SERVICE);
-            for (String cameraId : manager.getCameraIdList()) {
-                CameraCharacteristics characteristics = manager.getCameraCharacteristics(cameraId);
-                if (characteristics.get(CameraCharacteristics.LENS_FACING) == CameraCharacteristics.LENS_FACING_BACK) {
-                    StreamConfigurationMap map = characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
-
-                    mCameraSize = getClosestSize(map.getOutputSizes(SurfaceTexture.class), new Size(1600,1200));
-
-                    HandlerThread thread = new HandlerThread("OpenCamera");
-
-                    thread.start();
-                    Handler backgroundHandler = new Handler(thread.getLooper());
-
-                    manager.openCamera(cameraId, mCameraDeviceCallback, backgroundHandler);
+            CameraCapabilityIndex index = getCapabilityCache(mActivity).get();
+            CameraCapabilityIndex.Entry entry = index == null ? null : index.findByFacing(mLensFacing);
+            if (entry == null) {
+                Log.e(TAG, "no camera facing " + mLensFacing);
+                reportError(CameraLifecycle.ERROR_OPEN_FAILED);
+                return;
+            }
+            mCameraEntry = entry;
+            mSensorOrientation = entry.sensorOrientation;
+            mCapturePlan = negotiateStreams(entry.capabilities);
+            if (mCapturePlan == null) {
+                Log.e(TAG, "no usable stream configuration");
+                reportError(CameraLifecycle.ERROR_OPEN_FAILED);
+                return;
+            }
+            manager.openCamera(entry.cameraId, mCameraDeviceCallback, mHandler);
+        } catch (CameraAccessException | SecurityException e) {
+            Log.e(TAG, "openCamera failed", e);
+            reportError(CameraLifecycle.ERROR_OPEN_FAILED);
+        } catch (IllegalArgumentException e) {
+            // 索引にあるIDのカメラがもうない。作り直している間にリトライが来る
+            Log.e(TAG, "camera " + mCameraEntry.cameraId + " is gone", e);
+            getCapabilityCache(mActivity).invalidate();
+            reportError(CameraLifecycle.ERROR_OPEN_FAILED);
+        }
+    }
 
-                    return;
+    /** The capability index shared by every Camera, loaded on first use. */
+    private static synchronized CameraCapabilityCache getCapabilityCache(Context context) {
+        if (sCapabilityCache == null) {
+            Context appContext = context.getApplicationContext();
+            android.hardware.camera2.CameraManager manager =
+                    (android.hardware.camera2.CameraManager) appContext.getSystemService(Context.CAMERA_SERVICE);
+            final CameraCapabilityCache cache = new CameraCapabilityCache(
+                    new File(appContext.getCacheDir(), CAPABILITY_INDEX_FILE), Build.FINGERPRINT,
+                    new Camera2CapabilityQuery(manager), Executors.newSingleThreadExecutor());
+            // 外付けカメラが繋がったときなど、知らないIDが現れたら作り直す
+            manager.registerAvailabilityCallback(new android.hardware.camera2.CameraManager.AvailabilityCallback() {
+                @Override
+                public void onCameraAvailable(@NonNull String cameraId) {
+                    cache.onCameraAvailable(cameraId);
                 }
-            }
-        } catch (CameraAccessException e) {
-            e.printStackTrace();
+            }, new Handler(Looper.getMainLooper()));
+            sCapabilityCache = cache;
         }
+        return sCapabilityCache;
+    }
+
+    /** @return null before the camera was first opened */
+    private CameraCapabilities getCapabilities() {
+        CameraCapabilityIndex.Entry entry = mCameraEntry;
+        return entry == null ? null : entry.capabilities;
     }
 
-    private void createCaptureSession() {
-        mSurfaceTexture = new SurfaceTexture(mTextureID);
+    @Override
+    public void createSession() {
+        if (mPreviewSession != null) {
+            mPreviewSession.close();
+            mPreviewSession = null;
+        }
+        if (mImageAnalysisStream != null) {
+            mImageAnalysisStream.close();
+            mImageAnalysisStream = null;
+        }
+        mCameraSize = mCapturePlan.getSize(0);
         mSurfaceTexture.setDefaultBufferSize(mCameraSize.getWidth(), mCameraSize.getHeight());
-        Surface surface = new Surface(mSurfaceTexture);
+        List<Surface> outputs = new ArrayList<>();
+        outputs.add(mSurface);
 
         try {
             mPreviewBuilder = mCamera.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+            mPreviewBuilder.addTarget(mSurface);
+            if (mCapturePlan.getStreamCount() > 1) {
+                Resolution analysisSize = mCapturePlan.getSize(1);
+                mImageAnalysisStream = new ImageAnalysisStream(
+                        analysisSize.getWidth(), analysisSize.getHeight(), mFrameAnalysisPipeline, mHandler);
+                outputs.add(mImageAnalysisStream.getSurface());
+                mPreviewBuilder.addTarget(mImageAnalysisStream.getSurface());
+            }
+            mPreviewBuilder.set(CaptureRequest.CONTROL_AF_MODE, CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
+            setFpsRange(mPreviewBuilder, mCapturePlan.getFpsRange());
+            setCropRegion(mPreviewBuilder);
+
+            mCamera.createCaptureSession(outputs, mCameraCaptureSessionCallback, mHandler);
         } catch (CameraAccessException e) {
-            e.printStackTrace();
+            Log.e(TAG, "createCaptureSession failed", e);
+            reportError(CameraLifecycle.ERROR_CONFIGURE_FAILED);
+            return;
         }
 
-        mPreviewBuilder.addTarget(surface);
-        try {
-            mCamera.createCaptureSession(Collections.singletonList(surface), mCameraCaptureSessionCallback, null);
+        mInitialized = true;
+    }
 
-        } catch (CameraAccessException e) {
-            e.printStackTrace();
+    private static void setFpsRange(CaptureRequest.Builder builder, CameraCapabilities.FpsRange fpsRange) {
+        if (fpsRange != null) {
+            builder.set(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE, new Range<>(fpsRange.min, fpsRange.max));
         }
+    }
 
-        setCameraRotation();
-
-        mInitialized = true;
+    /** @return false if the camera does not crop and the builder was left unchanged */
+    private boolean setCropRegion(CaptureRequest.Builder builder) {
+        DigitalZoom zoom = mDigitalZoom;
+        CameraCapabilities capabilities = getCapabilities();
+        if (zoom == null || capabilities == null) {
+            return false;
+        }
+        zoom.setCroppedBySensor(capabilities.supportsCropRegion());
+        if (!capabilities.supportsCropRegion()) {
+            return false;
+        }
+        zoom.setMaxZoom(capabilities.getMaxDigitalZoom());
+        float[] crop = new float[4];
+        zoom.getCrop(crop);
+        Resolution activeArray = capabilities.getActiveArraySize();
+        DigitalZoom.toCropRegion(crop, getRotation(), activeArray.getWidth(), activeArray.getHeight(),
+                mCameraSize.getWidth(), mCameraSize.getHeight(), mCropRegion);
+        builder.set(CaptureRequest.SCALER_CROP_REGION,
+                new Rect(mCropRegion[0], mCropRegion[1], mCropRegion[2], mCropRegion[3]));
+        return true;
     }
 
-    private void updatePreview() {
-        mPreviewBuilder.set(CaptureRequest.CONTROL_AF_MODE, CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_PICTURE);
-        HandlerThread thread = new HandlerThread("CameraPreview");
-        thread.start();
-        Handler backgroundHandler = new Handler(thread.getLooper());
+    @Override
+    public void startRepeating() {
+        try {
+            mPreviewSession.setRepeatingRequest(mPreviewBuilder.build(), mCaptureCallback, mHandler);
+        } catch (CameraAccessException | IllegalStateException e) {
+            Log.e(TAG, "setRepeatingRequest failed", e);
+        }
+    }
 
+    @Override
+    public void stopRepeating() {
         try {
-            mPreviewSession.setRepeatingRequest(mPreviewBuilder.build(), null, backgroundHandler);
-        } catch (CameraAccessException e) {
-            e.printStackTrace();
+            mPreviewSession.stopRepeating();
+        } catch (CameraAccessException | IllegalStateException e) {
+            Log.e(TAG, "stopRepeating failed", e);
         }
     }
 
-    public void updateTexture() {
-        if (mInitialized) {
-            mSurfaceTexture.updateTexImage();
+    @Override
+    public void closeDevice() {
+        mInitialized = false;
+        if (mPreviewSession != null) {
+            mPreviewSession.close();
+            mPreviewSession = null;
+        }
+        if (mCamera != null) {
+            mCamera.close();
+            mCamera = null;
+        }
+        if (mImageAnalysisStream != null) {
+            mImageAnalysisStream.close();
+            mImageAnalysisStream = null;
         }
     }
 
-    public void setCameraRotation() {
-        if (!mInitialized) {
-            return;
+    @Override
+    public void scheduleIdleTimeout(long delayNano) {
+        mExecutor.removeCallbacks(mIdleTimeout);
+        mExecutor.postDelayed(mIdleTimeout, (delayNano + 999999) / 1000000);
+    }
+
+    @Override
+    public void scheduleRetry(long delayNano) {
+        mExecutor.removeCallbacks(mRetry);
+        mExecutor.postDelayed(mRetry, (delayNano + 999999) / 1000000);
+    }
+
+    @Override
+    public boolean downgradePlan() {
+        QualityGovernor.Level level = RecoveryPolicy.levelBelow(QualityGovernor.defaultLevels(),
+                Math.min(mMaxPreviewPixels, mPlanCeilingPixels), Math.min(mTargetFps, mPlanCeilingFps));
+        if (level == null) {
+            return false;
         }
+        Log.w(TAG, "stream plan lowered to " + level);
+        mPlanCeilingPixels = level.maxPixels;
+        mPlanCeilingFps = level.fps;
+        return true;
+    }
 
-        Point displaySize = new Point();
-        mActivity.getWindowManager().getDefaultDisplay().getSize(displaySize);
+    @Override
+    public long getFrameSequence() {
+        return mFrameSequence;
+    }
+
+    /** GL thread. */
+    @Override
+    public void updateTexture(GlApi gl) {
+        if (mInitialized && mAttached) {
+            mSurfaceTexture.updateTexImage();
+        }
+    }
 
-        if (displaySize.x > displaySize.y) {
-            double scale = (double) displaySize.y / (double) mCameraSize.getHeight();
-            mImageSize = new Size((int)(scale * mCameraSize.getWidth()), (int)(scale * mCameraSize.getHeight()));
+    /** Timestamp of the image latched by the last updateTexture(), in nanoseconds. */
+    @Override
+    public long getTimestamp() {
+        return mInitialized && mAttached ? mSurfaceTexture.getTimestamp() : 0;
+    }
+
+    /** GL thread. */
+    @Override
+    public void getTransformMatrix(float[] out) {
+        if (mInitialized && mAttached) {
+            mSurfaceTexture.getTransformMatrix(out);
         } else {
-            double scale = (double) displaySize.x / (double) mCameraSize.getHeight();
-            mImageSize = new Size((int)(scale * mCameraSize.getHeight()), (int)(scale * mCameraSize.getWidth()));
+            System.arraycopy(TextureTransform.DEFAULT_MATRIX, 0, out, 0, TextureTransform.MATRIX_SIZE);
         }
+    }
 
-        int orientation = mActivity.getWindowManager().getDefaultDisplay().getRotation();
-        switch(orientation) {
-            case Surface.ROTATION_0:
-                mCameraRotation = mIsPortraitDevice ? CameraRotation.ROTATION_270 : CameraRotation.ROTATION_0;
-                break;
+    /** Rotation of the camera image for the current display orientation. */
+    @Override
+    public CameraRotation getRotation() {
+        int displayDegrees;
+        switch (mActivity.getWindowManager().getDefaultDisplay().getRotation()) {
             case Surface.ROTATION_90:
-                mCameraRotation = mIsPortraitDevice ? CameraRotation.ROTATION_0 : CameraRotation.ROTATION_90;
+                displayDegrees = 90;
                 break;
             case Surface.ROTATION_180:
-                mCameraRotation = mIsPortraitDevice ? CameraRotation.ROTATION_90 : CameraRotation.ROTATION_180;
+                displayDegrees = 180;
                 break;
             case Surface.ROTATION_270:
-                mCameraRotation = mIsPortraitDevice ? CameraRotation.ROTATION_180 : CameraRotation.ROTATION_270;
+                displayDegrees = 270;
+                break;
+            default:
+                displayDegrees = 0;
                 break;
         }
+        // インカメラは画面と向かい合うので、画面の回転がセンサーの向きに加わる
+        int degrees = mLensFacing == CameraCharacteristics.LENS_FACING_FRONT
+                ? (mSensorOrientation + displayDegrees) % 360
+                : (displayDegrees - mSensorOrientation + 360) % 360;
+        return CameraRotation.values()[degrees / 90];
     }
 
-    public CameraRotation getCameraRotation() {
-        return mCameraRotation;
+    public int getLensFacing() {
+        return mLensFacing;
     }
 
-    public Size getCameraSize() {
-        return mImageSize;
+    public CapturePlan getCapturePlan() {
+        return mCapturePlan;
     }
 
-    public boolean getInitialized() {
-        return mInitialized;
+    /** Size of the camera output buffer, in sensor orientation. */
+    @Override
+    public Resolution getBufferSize() {
+        return mCameraSize;
     }
 
-    private Size getClosestSize(Size[] inputSizes, Size idealSize){
+    @Override
+    public boolean isReady() {
+        return mInitialized;
+    }
 
-        Size ret = null;
-        long idealArea = getArea(idealSize);
-        long smallestDiff = 0;
+    private CapturePlan negotiateStreams(CameraCapabilities capabilities) {
+        Point displaySize = new Point();
+        mActivity.getWindowManager().getDefaultDisplay().getSize(displaySize);
 
-        for(Size size : inputSizes){
-            if(ret == null){
-                ret = size;
-                smallestDiff = Math.abs(idealArea - getArea(size));
-            } else {
-                long nowDiff = Math.abs(idealArea - getArea(size));
-                if(nowDiff == 0){
-                    return size;
-                } else if(nowDiff < smallestDiff){
-                    ret = size;
-                    smallestDiff = nowDiff;
-                }
-            }
+        List<StreamRequest> requests = new ArrayList<>();
+        requests.add(new StreamRequest(CameraCapabilities.FORMAT_PRIVATE, displaySize.x, displaySize.y)
+                .setMaxPixels(Math.min(mMaxPreviewPixels, mPlanCeilingPixels)));
+        if (mFrameAnalysisPipeline != null && mFrameAnalysisPipeline.hasAnalyzers()) {
+            requests.add(new StreamRequest(CameraCapabilities.FORMAT_YUV_420_888, ANALYSIS_WIDTH, ANALYSIS_HEIGHT)
+                    .setMaxPixels(MAX_ANALYSIS_PIXELS)
+                    .setMatchFirstStreamAspect(true));
         }
-
-        return ret;
-    }
-
-    private long getArea(Size size){
-        return size.getWidth() * size.getHeight();
+        return StreamNegotiator.negotiate(capabilities, (double) displaySize.x / displaySize.y,
+                Math.min(mTargetFps, mPlanCeilingFps),
+                requests.toArray(new StreamRequest[requests.size()]));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,78 @@
+package com.example.testcameraglsurfaceview;
+
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.graphics.SurfaceTexture;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.util.Log;
+import android.util.Range;
+import android.util.Size;
+
+/**
+ * Builds a CameraCapabilityIndex from CameraManager: one getCameraCharacteristics() binder call per
+ * camera, which is why CameraCapabilityCache keeps the result.
+ */
+public class Camera2CapabilityQuery implements CameraCapabilityCache.Query {
+
+    private static final String TAG = "Camera2CapabilityQuery";
+
+    private final CameraManager mManager;
+
+    public Camera2CapabilityQuery(CameraManager manager) {
+        mManager = manager;
+    }
+
+    @Override
+    public CameraCapabilityIndex queryAll() {
+        CameraCapabilityIndex index = new CameraCapabilityIndex();
+        try {
+            for (String cameraId : mManager.getCameraIdList()) {
+                CameraCharacteristics characteristics = mManager.getCameraCharacteristics(cameraId);
+                Integer facing = characteristics.get(CameraCharacteristics.LENS_FACING);
+                Integer sensorOrientation = characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+                Integer hardwareLevel = characteristics.get(CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL);
+                if (facing == null) {
+                    continue;
+                }
+                index.add(new CameraCapabilityIndex.Entry(cameraId, facing,
+                        sensorOrientation == null ? 0 : sensorOrientation,
+                        hardwareLevel == null ? CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_LEGACY : hardwareLevel,
+                        readCapabilities(characteristics)));
+            }
+        } catch (CameraAccessException | RuntimeException e) {
+            Log.e(TAG, "failed to query camera characteristics", e);
+            return null;
+        }
+        return index;
+    }
+
+    private static CameraCapabilities readCapabilities(CameraCharacteristics characteristics) {
+        CameraCapabilities capabilities = new CameraCapabilities();
+        StreamConfigurationMap map = characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+        for (Size size : map.getOutputSizes(SurfaceTexture.class)) {
+            capabilities.addOutput(CameraCapabilities.FORMAT_PRIVATE, size.getWidth(), size.getHeight(),
+                    map.getOutputMinFrameDuration(SurfaceTexture.class, size));
+        }
+        Size[] yuvSizes = map.getOutputSizes(ImageFormat.YUV_420_888);
+        if (yuvSizes != null) {
+            for (Size size : yuvSizes) {
+                capabilities.addOutput(CameraCapabilities.FORMAT_YUV_420_888, size.getWidth(), size.getHeight(),
+                        map.getOutputMinFrameDuration(ImageFormat.YUV_420_888, size));
+            }
+        }
+        Range<Integer>[] fpsRanges = characteristics.get(CameraCharacteristics.CONTROL_AE_AVAILABLE_TARGET_FPS_RANGES);
+        if (fpsRanges != null) {
+            for (Range<Integer> range : fpsRanges) {
+                capabilities.addFpsRange(range.getLower(), range.getUpper());
+            }
+        }
+        Float maxDigitalZoom = characteristics.get(CameraCharacteristics.SCALER_AVAILABLE_MAX_DIGITAL_ZOOM);
+        Rect activeArray = characteristics.get(CameraCharacteristics.SENSOR_INFO_ACTIVE_ARRAY_SIZE);
+        capabilities.setZoom(maxDigitalZoom == null ? 1.0f : maxDigitalZoom,
+                activeArray == null ? null : new Resolution(activeArray.width(), activeArray.height()));
+        return capabilities;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.testcameraglsurfaceview;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Output sizes, minimum frame durations, AE target fps ranges and zoom limits of one camera, copied out of
+ * CameraCharacteristics so stream negotiation can run (and be tested) without the camera framework.
+ */
+public class CameraCapabilities {
+
+    /** Same values as android.graphics.ImageFormat. SurfaceTexture and MediaCodec outputs are PRIVATE. */
+    public static final int FORMAT_PRIVATE = 0x22;
+    public static final int FORMAT_YUV_420_888 = 0x23;
+
+    public static class StreamConfig {
+        public final int format;
+        public final Resolution size;
+        /** 0 if unknown */
+        public final long minFrameDurationNano;
+
+        public StreamConfig(int format, Resolution size, long minFrameDurationNano) {
+            this.format = format;
+            this.size = size;
+            this.minFrameDurationNano = minFrameDurationNano;
+        }
+
+        /** Highest frame rate this size can run at on its own. */
+        public double getMaxFps() {
+            return minFrameDurationNano <= 0 ? Double.MAX_VALUE : 1000000000.0 / minFrameDurationNano;
+        }
+    }
+
+    public static class FpsRange {
+        public final int min;
+        public final int max;
+
+        public FpsRange(int min, int max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof FpsRange && ((FpsRange) o).min == min && ((FpsRange) o).max == max;
+        }
+
+        @Override
+        public int hashCode() {
+            return min * 31 + max;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + min + ", " + max + "]";
+        }
+    }
+
+    private final List<StreamConfig> mOutputs = new ArrayList<>();
+    private final List<FpsRange> mFpsRanges = new ArrayList<>();
+    private float mMaxDigitalZoom = 1.0f;
+    private Resolution mActiveArraySize;
+
+    public CameraCapabilities addOutput(int format, int width, int height, long minFrameDurationNano) {
+        mOutputs.add(new StreamConfig(format, new Resolution(width, height), minFrameDurationNano));
+        return this;
+    }
+
+    public CameraCapabilities addFpsRange(int min, int max) {
+        mFpsRanges.add(new FpsRange(min, max));
+        return this;
+    }
+
+    /**
+     * @param maxDigitalZoom  SCALER_AVAILABLE_MAX_DIGITAL_ZOOM
+     * @param activeArraySize SENSOR_INFO_ACTIVE_ARRAY_SIZE, the coordinate space of SCALER_CROP_REGION
+     */
+    public CameraCapabilities setZoom(float maxDigitalZoom, Resolution activeArraySize) {
+        mMaxDigitalZoom = maxDigitalZoom;
+        mActiveArraySize = activeArraySize;
+        return this;
+    }
+
+    /** 1 if the camera cannot crop. */
+    public float getMaxDigitalZoom() {
+        return mMaxDigitalZoom;
+    }
+
+    /** Whether SCALER_CROP_REGION zooms: a zoom limit above 1 and a known active array. */
+    public boolean supportsCropRegion() {
+        return mMaxDigitalZoom > 1.0f && mActiveArraySize != null;
+    }
+
+    /** @return null if unknown */
+    public Resolution getActiveArraySize() {
+        return mActiveArraySize;
+    }
+
+    public List<StreamConfig> getOutputs(int format) {
+        List<StreamConfig> outputs = new ArrayList<>();
+        for (StreamConfig config : mOutputs) {
+            if (config.format == format) {
+                outputs.add(config);
+            }
+        }
+        return outputs;
+    }
+
+    public List<StreamConfig> getAllOutputs() {
+        return Collections.unmodifiableList(mOutputs);
+    }
+
+    public List<FpsRange> getFpsRanges() {
+        return Collections.unmodifiableList(mFpsRanges);
+    }
+}
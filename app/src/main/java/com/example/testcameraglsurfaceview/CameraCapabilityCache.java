@@ -0,0 +1,159 @@
+package com.example.testcameraglsurfaceview;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+/**
+ * The CameraCapabilityIndex, built on first use and kept in a file keyed by the device fingerprint,
+ * so a warm start reads one small file instead of querying the camera service for every camera.
+ * A file written for another fingerprint or format version is queried anew. invalidate() keeps
+ * serving the index it has while a fresh one is queried on the refresh executor.
+ */
+public class CameraCapabilityCache {
+
+    public interface Query {
+        /** Reads every camera's characteristics. @return null if the camera service failed */
+        CameraCapabilityIndex queryAll();
+    }
+
+    private final File mFile;
+    private final String mFingerprint;
+    private final Query mQuery;
+    private final Executor mRefreshExecutor;
+
+    // this で保護
+    private CameraCapabilityIndex mIndex;
+    private boolean mStale = false;
+    private boolean mRefreshPending = false;
+
+    private volatile int mQueryCount = 0;
+    private volatile int mFileLoadCount = 0;
+
+    /**
+     * @param file        where the index is kept; its directory is created when needed
+     * @param fingerprint Build.FINGERPRINT; an OS update may change what the cameras report
+     */
+    public CameraCapabilityCache(File file, String fingerprint, Query query, Executor refreshExecutor) {
+        mFile = file;
+        mFingerprint = fingerprint;
+        mQuery = query;
+        mRefreshExecutor = refreshExecutor;
+    }
+
+    /**
+     * Loads the index from the file, or queries and saves it if the file is missing or out of date.
+     * Only the first call does any work. Blocking; not for the UI thread.
+     * @return null if nothing was cached and the query failed
+     */
+    public synchronized CameraCapabilityIndex get() {
+        if (mIndex != null) {
+            return mIndex;
+        }
+        mIndex = readFile();
+        if (mIndex != null) {
+            mFileLoadCount++;
+            return mIndex;
+        }
+        mIndex = mQuery.queryAll();
+        mQueryCount++;
+        if (mIndex != null) {
+            writeFile(mIndex);
+        }
+        return mIndex;
+    }
+
+    /**
+     * Deletes the file and queries the cameras again on the refresh executor. Until that finishes
+     * get() returns the index it had, so a caller that needs the new one retries later.
+     */
+    public void invalidate() {
+        synchronized (this) {
+            mStale = true;
+            mFile.delete();
+            if (mRefreshPending) {
+                return;
+            }
+            mRefreshPending = true;
+        }
+        mRefreshExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                refresh();
+            }
+        });
+    }
+
+    /** A camera was connected or became available: refreshes if the index does not know it. */
+    public void onCameraAvailable(String cameraId) {
+        synchronized (this) {
+            if (mIndex == null || mIndex.findById(cameraId) != null) {
+                return;
+            }
+        }
+        invalidate();
+    }
+
+    /** Whether invalidate() was called and the refresh has not succeeded yet. */
+    public synchronized boolean isStale() {
+        return mStale;
+    }
+
+    /** Times the camera service was queried. */
+    public int getQueryCount() {
+        return mQueryCount;
+    }
+
+    /** Times the index was read from the file instead. */
+    public int getFileLoadCount() {
+        return mFileLoadCount;
+    }
+
+    private void refresh() {
+        // 問い合わせは遅いのでロックの外で行い、その間もget()は古い索引を返す
+        CameraCapabilityIndex index = mQuery.queryAll();
+        synchronized (this) {
+            mQueryCount++;
+            mRefreshPending = false;
+            if (index == null) {
+                // 古い索引のまま。次のinvalidate()で改めて問い合わせる
+                return;
+            }
+            mIndex = index;
+            mStale = false;
+            writeFile(index);
+        }
+    }
+
+    private CameraCapabilityIndex readFile() {
+        if (!mFile.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)))) {
+            return CameraCapabilityIndex.readFrom(in, mFingerprint);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeFile(CameraCapabilityIndex index) {
+        File dir = mFile.getParentFile();
+        if (dir != null) {
+            dir.mkdirs();
+        }
+        File tmpFile = new File(mFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            index.writeTo(out, mFingerprint);
+        } catch (IOException e) {
+            tmpFile.delete();
+            return;
+        }
+        tmpFile.renameTo(mFile);
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.testcameraglsurfaceview;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What Camera needs to know about every camera on the device, read once from CameraCharacteristics:
+ * id, lens facing, sensor orientation, hardware level and CameraCapabilities. Small enough to be kept
+ * in a file, so later launches need neither getCameraIdList() nor getCameraCharacteristics().
+ * Layout (DataOutputStream): MAGIC, FORMAT_VERSION, device fingerprint (UTF), camera count, then per
+ * camera id (UTF), lens facing, sensor orientation, hardware level, output count, per output format,
+ * width, height, min frame duration (long), fps range count, per range min, max, max digital zoom
+ * (float), active array width and height (0 if unknown).
+ */
+public class CameraCapabilityIndex {
+
+    static final int MAGIC = 0x43415049; // "CAPI"
+    static final int FORMAT_VERSION = 1;
+
+    public static class Entry {
+        public final String cameraId;
+        /** CameraCharacteristics.LENS_FACING_* */
+        public final int lensFacing;
+        public final int sensorOrientation;
+        /** CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL_* */
+        public final int hardwareLevel;
+        public final CameraCapabilities capabilities;
+
+        public Entry(String cameraId, int lensFacing, int sensorOrientation, int hardwareLevel,
+                     CameraCapabilities capabilities) {
+            this.cameraId = cameraId;
+            this.lensFacing = lensFacing;
+            this.sensorOrientation = sensorOrientation;
+            this.hardwareLevel = hardwareLevel;
+            this.capabilities = capabilities;
+        }
+    }
+
+    private final List<Entry> mEntries = new ArrayList<>();
+
+    /** Cameras are kept in getCameraIdList() order, which decides findByFacing(). */
+    public CameraCapabilityIndex add(Entry entry) {
+        mEntries.add(entry);
+        return this;
+    }
+
+    /** @return the first camera facing lensFacing, or null */
+    public Entry findByFacing(int lensFacing) {
+        for (Entry entry : mEntries) {
+            if (entry.lensFacing == lensFacing) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /** @return null if the index does not know cameraId */
+    public Entry findById(String cameraId) {
+        for (Entry entry : mEntries) {
+            if (entry.cameraId.equals(cameraId)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(mEntries);
+    }
+
+    public void writeTo(DataOutputStream out, String fingerprint) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(fingerprint);
+        out.writeInt(mEntries.size());
+        for (Entry entry : mEntries) {
+            out.writeUTF(entry.cameraId);
+            out.writeInt(entry.lensFacing);
+            out.writeInt(entry.sensorOrientation);
+            out.writeInt(entry.hardwareLevel);
+            CameraCapabilities capabilities = entry.capabilities;
+            List<CameraCapabilities.StreamConfig> outputs = capabilities.getAllOutputs();
+            out.writeInt(outputs.size());
+            for (CameraCapabilities.StreamConfig config : outputs) {
+                out.writeInt(config.format);
+                out.writeInt(config.size.getWidth());
+                out.writeInt(config.size.getHeight());
+                out.writeLong(config.minFrameDurationNano);
+            }
+            List<CameraCapabilities.FpsRange> fpsRanges = capabilities.getFpsRanges();
+            out.writeInt(fpsRanges.size());
+            for (CameraCapabilities.FpsRange range : fpsRanges) {
+                out.writeInt(range.min);
+                out.writeInt(range.max);
+            }
+            out.writeFloat(capabilities.getMaxDigitalZoom());
+            Resolution activeArray = capabilities.getActiveArraySize();
+            out.writeInt(activeArray == null ? 0 : activeArray.getWidth());
+            out.writeInt(activeArray == null ? 0 : activeArray.getHeight());
+        }
+    }
+
+    /**
+     * @return null if in was written by another format version or for another device fingerprint
+     * @throws IOException if in is truncated or not an index at all
+     */
+    public static CameraCapabilityIndex readFrom(DataInputStream in, String fingerprint) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            return null;
+        }
+        if (!fingerprint.equals(in.readUTF())) {
+            return null;
+        }
+        CameraCapabilityIndex index = new CameraCapabilityIndex();
+        int cameraCount = in.readInt();
+        for (int i = 0; i < cameraCount; i++) {
+            String cameraId = in.readUTF();
+            int lensFacing = in.readInt();
+            int sensorOrientation = in.readInt();
+            int hardwareLevel = in.readInt();
+            CameraCapabilities capabilities = new CameraCapabilities();
+            int outputCount = in.readInt();
+            for (int j = 0; j < outputCount; j++) {
+                capabilities.addOutput(in.readInt(), in.readInt(), in.readInt(), in.readLong());
+            }
+            int fpsRangeCount = in.readInt();
+            for (int j = 0; j < fpsRangeCount; j++) {
+                capabilities.addFpsRange(in.readInt(), in.readInt());
+            }
+            float maxDigitalZoom = in.readFloat();
+            int activeWidth = in.readInt();
+            int activeHeight = in.readInt();
+            capabilities.setZoom(maxDigitalZoom,
+                    activeWidth > 0 && activeHeight > 0 ? new Resolution(activeWidth, activeHeight) : null);
+            index.add(new Entry(cameraId, lensFacing, sensorOrientation, hardwareLevel, capabilities));
+        }
+        return index;
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.testcameraglsurfaceview;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Draws several FrameSources into one surface in a single pass, each into the viewport CompositeLayout
+ * gives it. Every source has its own texture, geometry and FramePacer: a source is only latched when
+ * its own pacer asked for a render, so a slow or throttled camera neither holds back nor speeds up the
+ * others, and the last latched image of every source is drawn each frame.
+ * Sources are added before onSurfaceCreated(). onFrameAvailable() may be called from any thread,
+ * everything else runs on the GL thread.
+ */
+public class CameraCompositor {
+
+    private static class Layer {
+        final FrameSource source;
+        final FramePacer pacer;
+        final QuadGeometry geometry = new QuadGeometry();
+        final AtomicBoolean latchRequested = new AtomicBoolean(false);
+        int textureId;
+        int program;
+        int positionHandle;
+        int texCoordHandle;
+        int textureHandle;
+        Viewport viewport;
+        Resolution bufferSize;
+        CameraRotation rotation = CameraRotation.ROTATION_0;
+        boolean configured = false;
+        // このコンテキストで一度でもテクスチャを更新したか
+        boolean latched = false;
+        long latchCount = 0;
+
+        Layer(FrameSource source, FramePacer pacer) {
+            this.source = source;
+            this.pacer = pacer;
+        }
+    }
+
+    private final GlStateTracker mGl;
+    private final ShaderCache mShaderCache;
+    private final FrameMetricsRecorder mFrameMetrics;
+    private final Clock mClock;
+    private final List<Layer> mLayers = new ArrayList<>();
+    private CompositeLayout mLayout;
+    private int mSurfaceWidth;
+    private int mSurfaceHeight;
+    private long mCompositeCount = 0;
+
+    public CameraCompositor(GlApi gl, ShaderCache shaderCache, FrameMetricsRecorder frameMetrics,
+                            CompositeLayout layout, Clock clock) {
+        mGl = new GlStateTracker(gl);
+        mShaderCache = shaderCache;
+        mFrameMetrics = frameMetrics;
+        mLayout = layout;
+        mClock = clock;
+    }
+
+    /** @return index of the source for onFrameAvailable(); later sources are drawn on top */
+    public int addSource(FrameSource source, FramePacer pacer) {
+        mLayers.add(new Layer(source, pacer));
+        return mLayers.size() - 1;
+    }
+
+    public void setLayout(CompositeLayout layout) {
+        mLayout = layout;
+        for (Layer layer : mLayers) {
+            layer.configured = false;
+        }
+    }
+
+    public CompositeLayout getLayout() {
+        return mLayout;
+    }
+
+    /**
+     * A new image of the source arrived; any thread.
+     * @return true if the caller should request a render
+     */
+    public boolean onFrameAvailable(int source) {
+        Layer layer = mLayers.get(source);
+        if (!layer.pacer.onFrameAvailable()) {
+            return false;
+        }
+        layer.latchRequested.set(true);
+        return true;
+    }
+
+    public void onSurfaceCreated() {
+        mGl.invalidate();
+        mShaderCache.onSurfaceCreated(mGl);
+        int[] textures = new int[1];
+        for (Layer layer : mLayers) {
+            mGl.glGenTextures(1, textures, 0);
+            layer.textureId = textures[0];
+
+            int target = layer.source.getTextureTarget();
+            mGl.glBindTexture(target, layer.textureId);
+            mGl.glTexParameteri(target, GlApi.GL_TEXTURE_MIN_FILTER, GlApi.GL_LINEAR);
+            mGl.glTexParameteri(target, GlApi.GL_TEXTURE_MAG_FILTER, GlApi.GL_LINEAR);
+            mGl.glTexParameteri(target, GlApi.GL_TEXTURE_WRAP_S, GlApi.GL_CLAMP_TO_EDGE);
+            mGl.glTexParameteri(target, GlApi.GL_TEXTURE_WRAP_T, GlApi.GL_CLAMP_TO_EDGE);
+            mGl.glBindTexture(target, 0);
+            layer.source.attachToGlContext(layer.textureId);
+
+            layer.geometry.onSurfaceCreated(mGl);
+            // 同じテクスチャターゲットのソースはShaderCacheで同じプログラムになる
+            layer.program = mShaderCache.getProgram(mGl, CameraRenderer.VERTEX_SHADER,
+                    CameraRenderer.fragmentShaderFor(target));
+            layer.positionHandle = mGl.glGetAttribLocation(layer.program, "position");
+            mGl.glEnableVertexAttribArray(layer.positionHandle);
+            layer.texCoordHandle = mGl.glGetAttribLocation(layer.program, "texcoord");
+            mGl.glEnableVertexAttribArray(layer.texCoordHandle);
+            layer.textureHandle = mGl.glGetUniformLocation(layer.program, "texture");
+            ShaderUtil.checkGlError(mGl, "glGetUniformLocation");
+
+            layer.configured = false;
+            layer.latched = false;
+        }
+    }
+
+    public void onSurfaceChanged(int width, int height) {
+        mSurfaceWidth = width;
+        mSurfaceHeight = height;
+        for (Layer layer : mLayers) {
+            layer.configured = false;
+        }
+        mFrameMetrics.markDiscontinuity();
+    }
+
+    /** Hands every source texture back; the context must still be current. */
+    public void releaseContextResources() {
+        for (Layer layer : mLayers) {
+            layer.source.detachFromGlContext();
+            layer.configured = false;
+            layer.latched = false;
+        }
+    }
+
+    /** @return false if no source is ready yet and nothing but the clear was drawn */
+    public boolean drawFrame() {
+        long startTime = mClock.nanoTime();
+
+        mGl.glBindFramebuffer(GlApi.GL_FRAMEBUFFER, 0);
+        mGl.glViewport(0, 0, mSurfaceWidth, mSurfaceHeight);
+        mGl.glClearColor(0.5f, 0.5f, 1.0f, 1.0f);
+        mGl.glClear(GlApi.GL_DEPTH_BUFFER_BIT | GlApi.GL_COLOR_BUFFER_BIT);
+
+        long cameraTimestamp = 0;
+        boolean drawn = false;
+        for (int i = 0; i < mLayers.size(); i++) {
+            Layer layer = mLayers.get(i);
+            if (!layer.source.isReady()) {
+                continue;
+            }
+            if (!layer.configured || !layer.source.getBufferSize().equals(layer.bufferSize)) {
+                configure(layer, i);
+            }
+            // 自分のペーサーが要求したソースだけ取り込み、他は前回の画像をそのまま描く
+            if (layer.latchRequested.getAndSet(false) || !layer.latched) {
+                layer.pacer.onDrawStarted();
+                layer.source.updateTexture(mGl);
+                mGl.invalidateTextureBinding(layer.source.getTextureTarget());
+                layer.latched = true;
+                layer.latchCount++;
+            }
+            if (!drawn) {
+                cameraTimestamp = layer.source.getTimestamp();
+            }
+            drawLayer(layer);
+            drawn = true;
+        }
+        if (!drawn) {
+            return false;
+        }
+
+        mCompositeCount++;
+        mFrameMetrics.recordFrame(startTime, mClock.nanoTime(), cameraTimestamp);
+        return true;
+    }
+
+    private void configure(Layer layer, int index) {
+        Resolution bufferSize = layer.source.getBufferSize();
+        layer.bufferSize = bufferSize;
+        layer.rotation = layer.source.getRotation();
+        layer.viewport = mLayout.getViewport(index, mLayers.size(), mSurfaceWidth, mSurfaceHeight);
+        layer.geometry.setScaleMode(mLayout.getScaleMode(index));
+        layer.geometry.setSizes(bufferSize.getWidth(), bufferSize.getHeight(),
+                layer.viewport.width, layer.viewport.height);
+        layer.configured = true;
+    }
+
+    private void drawLayer(Layer layer) {
+        int target = layer.source.getTextureTarget();
+        Viewport viewport = layer.viewport;
+        mGl.glViewport(viewport.x, viewport.y, viewport.width, viewport.height);
+        mGl.glUseProgram(layer.program);
+
+        layer.geometry.bind(mGl, layer.rotation, layer.positionHandle, layer.texCoordHandle);
+        mGl.glUniform1i(layer.textureHandle, 0);
+        mGl.glActiveTexture(GlApi.GL_TEXTURE0);
+        mGl.glBindTexture(target, layer.textureId);
+
+        mGl.glDrawArrays(GlApi.GL_TRIANGLE_STRIP, 0, QuadGeometry.VERTEX_COUNT);
+    }
+
+    public int getSourceCount() {
+        return mLayers.size();
+    }
+
+    /** Times the source's texture was updated. */
+    public long getLatchCount(int source) {
+        return mLayers.get(source).latchCount;
+    }
+
+    /** Viewport of the source, valid once it has been drawn. */
+    public Viewport getViewport(int source) {
+        return mLayers.get(source).viewport;
+    }
+
+    public long getCompositeCount() {
+        return mCompositeCount;
+    }
+
+    public FrameMetricsRecorder getFrameMetrics() {
+        return mFrameMetrics;
+    }
+
+    /** Every GL call of the compositor goes through it; setValidation() in debug builds. */
+    public GlStateTracker getGlState() {
+        return mGl;
+    }
+}
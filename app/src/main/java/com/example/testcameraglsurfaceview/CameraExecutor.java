@@ -0,0 +1,166 @@
+package com.example.testcameraglsurfaceview;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Threads of the camera subsystem: one long-lived control looper that owns the device, session and
+ * every camera2 callback, and one bounded callback thread that delivers events to the app so slow
+ * listeners cannot stall camera control. When the callback queue is full the oldest pending callback
+ * is dropped. Both live until shutdown(), however often the device is reopened.
+ */
+public class CameraExecutor {
+
+    private final CameraLooper mControl;
+    private final ThreadPoolExecutor mCallbacks;
+    private final AtomicInteger mThreadsCreated = new AtomicInteger(1);
+    private final AtomicInteger mControlQueueDepth = new AtomicInteger();
+    private final AtomicInteger mMaxControlQueueDepth = new AtomicInteger();
+    private final AtomicLong mDroppedCallbackCount = new AtomicLong();
+    private final AtomicLong mFailedCallbackCount = new AtomicLong();
+    private volatile boolean mShutdown = false;
+
+    public CameraExecutor(CameraLooper control, int callbackQueueCapacity) {
+        mControl = control;
+        mCallbacks = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(callbackQueueCapacity), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        mThreadsCreated.incrementAndGet();
+                        Thread thread = new Thread(runnable, "CameraCallback");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }, new ThreadPoolExecutor.DiscardOldestPolicy() {
+                    @Override
+                    public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+                        if (!executor.isShutdown()) {
+                            mDroppedCallbackCount.incrementAndGet();
+                        }
+                        super.rejectedExecution(runnable, executor);
+                    }
+                });
+        mCallbacks.prestartCoreThread();
+    }
+
+    /** Runs the task on the control looper. Returns false after shutdown(). */
+    public boolean post(final Runnable task) {
+        if (mShutdown) {
+            return false;
+        }
+        int depth = mControlQueueDepth.incrementAndGet();
+        updateMax(depth);
+        mControl.post(new Runnable() {
+            @Override
+            public void run() {
+                mControlQueueDepth.decrementAndGet();
+                task.run();
+            }
+        });
+        return true;
+    }
+
+    public boolean postDelayed(Runnable task, long delayMs) {
+        if (mShutdown) {
+            return false;
+        }
+        mControl.postDelayed(task, delayMs);
+        return true;
+    }
+
+    /** Only for tasks given to postDelayed(). */
+    public void removeCallbacks(Runnable task) {
+        mControl.removeCallbacks(task);
+    }
+
+    public boolean isControlThread() {
+        return mControl.isCurrentThread();
+    }
+
+    /** Runs the listener callback on the callback thread. Returns false after shutdown(). */
+    public boolean dispatchCallback(final Runnable callback) {
+        if (mShutdown) {
+            return false;
+        }
+        try {
+            mCallbacks.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        callback.run();
+                    } catch (RuntimeException e) {
+                        // 例外でワーカーが作り直されないようにここで止める
+                        mFailedCallbackCount.incrementAndGet();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+        return true;
+    }
+
+    /** Lets the control looper finish what is already posted, then stops both threads. */
+    public void shutdown() {
+        if (mShutdown) {
+            return;
+        }
+        mShutdown = true;
+        mControl.post(new Runnable() {
+            @Override
+            public void run() {
+                mCallbacks.shutdown();
+            }
+        });
+        mControl.quitSafely();
+    }
+
+    public boolean awaitTermination(long timeoutMs) throws InterruptedException {
+        return mCallbacks.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isShutdown() {
+        return mShutdown;
+    }
+
+    /** Threads started over the whole lifetime: the control looper plus callback threads. */
+    public int getThreadsCreated() {
+        return mThreadsCreated.get();
+    }
+
+    public int getControlQueueDepth() {
+        return mControlQueueDepth.get();
+    }
+
+    public int getMaxControlQueueDepth() {
+        return mMaxControlQueueDepth.get();
+    }
+
+    public int getCallbackQueueDepth() {
+        return mCallbacks.getQueue().size();
+    }
+
+    public long getCompletedCallbackCount() {
+        return mCallbacks.getCompletedTaskCount();
+    }
+
+    public long getDroppedCallbackCount() {
+        return mDroppedCallbackCount.get();
+    }
+
+    public long getFailedCallbackCount() {
+        return mFailedCallbackCount.get();
+    }
+
+    private void updateMax(int depth) {
+        int max;
+        do {
+            max = mMaxControlQueueDepth.get();
+        } while (depth > max && !mMaxControlQueueDepth.compareAndSet(max, depth));
+    }
+}
@@ -0,0 +1,347 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Open/session/streaming state of the camera device, independent of the GL surface.
+ * stop() only stops the repeating request and keeps the device and session warm; the device is
+ * closed when start() does not follow within the idle timeout, on release() or on an error.
+ * With a RecoveryPolicy an error while started closes the device and reopens it after the policy's
+ * backoff, lowering the stream plan on repeated configure failures, until frames flow or it gives up.
+ * Not thread-safe: every method, including the Driver callbacks, must run on the camera thread.
+ */
+public class CameraLifecycle {
+
+    public enum State {
+        CLOSED,
+        OPENING,
+        CONFIGURING,
+        STREAMING,
+        PAUSED,
+        /** Closed after an error while started; onRetry() reopens. */
+        RETRY_WAIT
+    }
+
+    public static final int ERROR_NONE = 0;
+    /** CameraDevice.StateCallback.onDisconnected(). */
+    public static final int ERROR_DISCONNECTED = -1;
+    public static final int ERROR_CONFIGURE_FAILED = -2;
+    public static final int ERROR_OPEN_FAILED = -3;
+
+    /** Side effects of the state machine. Results are reported back through the on* methods. */
+    public interface Driver {
+        /** Answered by onDeviceOpened() or onDeviceError(). */
+        void openDevice();
+
+        /** Answered by onSessionConfigured() or onDeviceError(ERROR_CONFIGURE_FAILED). */
+        void createSession();
+
+        void startRepeating();
+
+        void stopRepeating();
+
+        /** Closes the session and the device. Must tolerate a device that is already closed. */
+        void closeDevice();
+
+        /** onIdleTimeout() should be called after the delay. */
+        void scheduleIdleTimeout(long delayNano);
+
+        /** onRetry() should be called after the delay. */
+        void scheduleRetry(long delayNano);
+
+        /**
+         * Lowers the resolution or frame rate the next openDevice() negotiates.
+         * @return false if the plan is already at its lowest
+         */
+        boolean downgradePlan();
+    }
+
+    private final Driver mDriver;
+    private final Clock mClock;
+    private final long mIdleTimeoutNano;
+    private final RecoveryPolicy mRecoveryPolicy;
+
+    private State mState = State.CLOSED;
+    private boolean mWanted = false;
+    // openCamera()は取り消せないので、closeした後もonOpenedを待って閉じる必要がある
+    private boolean mOpenInFlight = false;
+    private long mIdleDeadlineNano;
+    private int mLastError = ERROR_NONE;
+
+    private long mStartTimeNano;
+    private boolean mAwaitingFirstFrame = false;
+    private boolean mWarmStart = false;
+    private volatile long mTimeToFirstFrameNano = -1;
+    private volatile boolean mLastStartWarm = false;
+    private int mOpenCount = 0;
+    private int mWarmStartCount = 0;
+    private boolean mReconfigurePending = false;
+    private int mReconfigureCount = 0;
+    private boolean mRecovering = false;
+    private int mRetryCount = 0;
+    private int mDowngradeCount = 0;
+    private int mRecoveryCount = 0;
+
+    /** Without recovery: an error leaves the device closed until start() is called again. */
+    public CameraLifecycle(Driver driver, Clock clock, long idleTimeoutNano) {
+        this(driver, clock, idleTimeoutNano, null);
+    }
+
+    public CameraLifecycle(Driver driver, Clock clock, long idleTimeoutNano, RecoveryPolicy recoveryPolicy) {
+        mDriver = driver;
+        mClock = clock;
+        mIdleTimeoutNano = idleTimeoutNano;
+        mRecoveryPolicy = recoveryPolicy;
+    }
+
+    /** Preview wanted, e.g. from onResume(). */
+    public void start() {
+        if (mWanted) {
+            return;
+        }
+        mWanted = true;
+        mStartTimeNano = mClock.nanoTime();
+        mAwaitingFirstFrame = true;
+
+        switch (mState) {
+            case CLOSED:
+                mWarmStart = false;
+                mState = State.OPENING;
+                mLastError = ERROR_NONE;
+                mRecovering = false;
+                if (mRecoveryPolicy != null) {
+                    mRecoveryPolicy.reset();
+                }
+                if (!mOpenInFlight) {
+                    mOpenInFlight = true;
+                    mOpenCount++;
+                    mDriver.openDevice();
+                }
+                break;
+            case PAUSED:
+                mWarmStart = true;
+                mWarmStartCount++;
+                mState = State.STREAMING;
+                mDriver.startRepeating();
+                break;
+            default:
+                // OPENING/CONFIGURING: onSessionConfigured() starts streaming
+                break;
+        }
+    }
+
+    /** Preview no longer wanted, e.g. from onPause(). Keeps the device open for the idle timeout. */
+    public void stop() {
+        if (!mWanted) {
+            return;
+        }
+        mWanted = false;
+        mAwaitingFirstFrame = false;
+        mIdleDeadlineNano = mClock.nanoTime() + mIdleTimeoutNano;
+
+        if (mState == State.STREAMING) {
+            mDriver.stopRepeating();
+            enterPaused();
+        } else if (mState == State.RETRY_WAIT) {
+            // 閉じているので再試行を取りやめるだけ
+            mState = State.CLOSED;
+            mRecovering = false;
+        }
+    }
+
+    /** Closes everything right away, e.g. from onDestroy(). */
+    public void release() {
+        mWanted = false;
+        mAwaitingFirstFrame = false;
+        mReconfigurePending = false;
+        if (mState != State.CLOSED && mState != State.OPENING && mState != State.RETRY_WAIT) {
+            mDriver.closeDevice();
+        }
+        mState = State.CLOSED;
+    }
+
+    /**
+     * Re-creates the session on the open device, e.g. after the stream sizes changed.
+     * Streaming resumes by itself once the new session is configured; a closed device picks the
+     * change up on its next open.
+     */
+    public void reconfigure() {
+        switch (mState) {
+            case STREAMING:
+            case PAUSED:
+                mReconfigureCount++;
+                mState = State.CONFIGURING;
+                mDriver.createSession();
+                break;
+            case CONFIGURING:
+                // 作成中のセッションは古い設定なので、完了したら作り直す
+                mReconfigurePending = true;
+                break;
+            default:
+                break;
+        }
+    }
+
+    public void onDeviceOpened() {
+        mOpenInFlight = false;
+        if (mState != State.OPENING) {
+            // 開いている間にreleaseされた
+            mDriver.closeDevice();
+            return;
+        }
+        mState = State.CONFIGURING;
+        mDriver.createSession();
+    }
+
+    public void onSessionConfigured() {
+        if (mState != State.CONFIGURING) {
+            return;
+        }
+        if (mReconfigurePending) {
+            mReconfigurePending = false;
+            mReconfigureCount++;
+            mDriver.createSession();
+            return;
+        }
+        if (mWanted) {
+            mState = State.STREAMING;
+            mDriver.startRepeating();
+        } else {
+            enterPaused();
+        }
+    }
+
+    /**
+     * Disconnection, device error or failed session configuration; the device is closed. While started
+     * with a RecoveryPolicy this moves to RETRY_WAIT unless the policy gives up.
+     */
+    public void onDeviceError(int error) {
+        if (mState == State.RETRY_WAIT) {
+            // 閉じたデバイスから遅れて届いたエラー
+            return;
+        }
+        mOpenInFlight = false;
+        mReconfigurePending = false;
+        mLastError = error;
+        mAwaitingFirstFrame = false;
+        if (mState != State.CLOSED) {
+            mDriver.closeDevice();
+            mState = State.CLOSED;
+        }
+        if (mWanted && mRecoveryPolicy != null) {
+            int decision = mRecoveryPolicy.onFailure(error);
+            if (decision != RecoveryPolicy.GIVE_UP) {
+                if (decision == RecoveryPolicy.RETRY_DOWNGRADED && mDriver.downgradePlan()) {
+                    mDowngradeCount++;
+                }
+                mState = State.RETRY_WAIT;
+                mDriver.scheduleRetry(mRecoveryPolicy.getRetryDelayNano());
+                return;
+            }
+        }
+        // 再オープンは呼び出し側がstart()をやり直す
+        mWanted = false;
+        mRecovering = false;
+    }
+
+    /** The backoff delay of RETRY_WAIT has passed. */
+    public void onRetry() {
+        if (mState != State.RETRY_WAIT) {
+            // stop()またはrelease()で取りやめた
+            return;
+        }
+        mState = State.OPENING;
+        mRecovering = true;
+        mAwaitingFirstFrame = true;
+        mRetryCount++;
+        mOpenInFlight = true;
+        mOpenCount++;
+        mDriver.openDevice();
+    }
+
+    public void onFrameAvailable() {
+        if (!mAwaitingFirstFrame || mState != State.STREAMING) {
+            return;
+        }
+        mAwaitingFirstFrame = false;
+        mLastStartWarm = mWarmStart;
+        mTimeToFirstFrameNano = mClock.nanoTime() - mStartTimeNano;
+        if (mRecovering) {
+            mRecovering = false;
+            mRecoveryCount++;
+            mRecoveryPolicy.reset();
+        }
+    }
+
+    public void onIdleTimeout() {
+        if (mState != State.PAUSED) {
+            return;
+        }
+        long remaining = mIdleDeadlineNano - mClock.nanoTime();
+        if (remaining > 0) {
+            // stop()→start()→stop()で前回の予約が先に届いた
+            mDriver.scheduleIdleTimeout(remaining);
+            return;
+        }
+        mDriver.closeDevice();
+        mState = State.CLOSED;
+    }
+
+    private void enterPaused() {
+        mState = State.PAUSED;
+        long remaining = mIdleDeadlineNano - mClock.nanoTime();
+        if (remaining <= 0) {
+            mDriver.closeDevice();
+            mState = State.CLOSED;
+        } else {
+            mDriver.scheduleIdleTimeout(remaining);
+        }
+    }
+
+    public State getState() {
+        return mState;
+    }
+
+    public boolean isStarted() {
+        return mWanted;
+    }
+
+    public int getLastError() {
+        return mLastError;
+    }
+
+    /** From start() to the first frame of the last start that produced one, or -1. */
+    public long getTimeToFirstFrameNano() {
+        return mTimeToFirstFrameNano;
+    }
+
+    /** Whether getTimeToFirstFrameNano() was measured on a warm (already open) device. */
+    public boolean isLastStartWarm() {
+        return mLastStartWarm;
+    }
+
+    public int getOpenCount() {
+        return mOpenCount;
+    }
+
+    public int getWarmStartCount() {
+        return mWarmStartCount;
+    }
+
+    public int getReconfigureCount() {
+        return mReconfigureCount;
+    }
+
+    /** Reopens after an error. */
+    public int getRetryCount() {
+        return mRetryCount;
+    }
+
+    /** Times the stream plan was lowered after repeated configure failures. */
+    public int getDowngradeCount() {
+        return mDowngradeCount;
+    }
+
+    /** Outages that ended with a frame. */
+    public int getRecoveryCount() {
+        return mRecoveryCount;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Serial task queue bound to one thread. On the device this is a HandlerThread whose Handler is also
+ * given to camera2; on the JVM tests substitute a manually driven fake.
+ */
+public interface CameraLooper {
+
+    void post(Runnable task);
+
+    void postDelayed(Runnable task, long delayMs);
+
+    void removeCallbacks(Runnable task);
+
+    boolean isCurrentThread();
+
+    /** Runs the tasks already posted, drops delayed ones and ends the thread. */
+    void quitSafely();
+}
@@ -0,0 +1,398 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Draws the preview without depending on GLSurfaceView or camera2: latches the FrameSource image,
+ * draws it through the filter chain into the viewport, feeds readback and metrics, and draws it a
+ * second time into the FrameOutput if one is set. Every method runs on the GL thread.
+ * MainActivity drives it from RenderLoop; the unit tests drive it headlessly with a software GlApi.
+ */
+public class CameraRenderer {
+
+    static final String VERTEX_SHADER =
+            "attribute vec4 position;\n" +
+                    "attribute vec2 texcoord;\n" +
+                    "varying vec2 texcoordVarying;\n" +
+                    "void main() {\n" +
+                    "    gl_Position = position;\n" +
+                    "    texcoordVarying = texcoord;\n" +
+                    "}\n";
+    private static final String FRAGMENT_SHADER_EXTERNAL =
+            "#extension GL_OES_EGL_image_external : require\n" +
+                    "precision mediump float;\n" +
+                    "varying vec2 texcoordVarying;\n" +
+                    "uniform samplerExternalOES texture;\n" +
+                    "void main() {\n" +
+                    "  gl_FragColor = texture2D(texture, texcoordVarying);\n" +
+                    "}\n";
+    private static final String FRAGMENT_SHADER_2D =
+            "precision mediump float;\n" +
+                    "varying vec2 texcoordVarying;\n" +
+                    "uniform sampler2D texture;\n" +
+                    "void main() {\n" +
+                    "  gl_FragColor = texture2D(texture, texcoordVarying);\n" +
+                    "}\n";
+
+    private final GlStateTracker mGl;
+    private final FrameSource mSource;
+    private final ShaderCache mShaderCache;
+    private final FilterChain mFilterChain;
+    private final QuadGeometry mQuadGeometry = new QuadGeometry();
+    private final FrameMetricsRecorder mFrameMetrics;
+    private final GpuReadback mReadback;
+    private final RenderStageTimer mStageTimer;
+    private final FrameChangeTracker mChangeTracker = new FrameChangeTracker();
+    private final Clock mClock;
+    private CaptureMetadataMatcher mCaptureMetadataMatcher;
+    private final CaptureMetadata mCaptureMetadata = new CaptureMetadata();
+    private FrameOutput mOutput;
+    private GpuFrameStatistics mStatistics;
+    private DigitalZoom mDigitalZoom;
+    private long mZoomSequence = -1;
+    private final float[] mCrop = new float[4];
+    private final float[] mTextureMatrix = new float[TextureTransform.MATRIX_SIZE];
+
+    private int mProgram;
+    private int mPositionHandle;
+    private int mTexCoordHandle;
+    private int mTextureHandle;
+    private int mTextureID;
+    private int mSurfaceWidth;
+    private int mSurfaceHeight;
+    private int mDisplayWidth;
+    private int mDisplayHeight;
+    private boolean mConfigured = false;
+    private Resolution mBufferSize;
+    private long mLastDrawTimeNano = 0;
+    private int mLastDecision = FrameChangeTracker.SKIP;
+    private long mFrameTimestamp = 0;
+    private CameraRotation mRotation = CameraRotation.ROTATION_0;
+    private Viewport mViewport = new Viewport(0, 0, 0, 0);
+
+    /** Fragment shader that samples a FrameSource texture of the given target. */
+    static String fragmentShaderFor(int textureTarget) {
+        return textureTarget == GlApi.GL_TEXTURE_EXTERNAL_OES ? FRAGMENT_SHADER_EXTERNAL : FRAGMENT_SHADER_2D;
+    }
+
+    public CameraRenderer(GlApi gl, FrameSource source, ShaderCache shaderCache,
+                          FrameMetricsRecorder frameMetrics, GpuReadback readback, Clock clock) {
+        mGl = new GlStateTracker(gl);
+        mSource = source;
+        mShaderCache = shaderCache;
+        mFilterChain = new FilterChain(shaderCache);
+        mFrameMetrics = frameMetrics;
+        mReadback = readback;
+        mClock = clock;
+        mStageTimer = new RenderStageTimer(clock);
+    }
+
+    /** Capture results to match drawn frames against, or null. */
+    public void setCaptureMetadata(CaptureMetadataRing captureMetadata) {
+        mCaptureMetadataMatcher = captureMetadata == null ? null : new CaptureMetadataMatcher(captureMetadata, 0);
+    }
+
+    /** Draws every frame a second time into output, or stops if null. */
+    public void setOutput(FrameOutput output) {
+        mOutput = output;
+    }
+
+    /** Reduces every latched frame to FrameStatistics, or nothing if null. Set before onSurfaceCreated(). */
+    public void setStatistics(GpuFrameStatistics statistics) {
+        mStatistics = statistics;
+    }
+
+    /** Display size for STRETCH, which centers the image at its fitted size. Defaults to the surface size. */
+    public void setDisplaySize(int width, int height) {
+        mDisplayWidth = width;
+        mDisplayHeight = height;
+        mConfigured = false;
+    }
+
+    /** Zoom to sample a crop of, unless the camera crops itself; null shows the whole image. */
+    public void setDigitalZoom(DigitalZoom zoom) {
+        mDigitalZoom = zoom;
+        mZoomSequence = -1;
+        if (zoom == null) {
+            mQuadGeometry.setCrop(QuadGeometry.FULL_CROP);
+        }
+        mChangeTracker.invalidate();
+    }
+
+    public void setScaleMode(QuadGeometry.ScaleMode mode) {
+        mQuadGeometry.setScaleMode(mode);
+        mConfigured = false;
+    }
+
+    public QuadGeometry.ScaleMode getScaleMode() {
+        return mQuadGeometry.getScaleMode();
+    }
+
+    public void onSurfaceCreated() {
+        // 新しいコンテキストでは何がバインドされているか分からない
+        mGl.invalidate();
+        int[] textures = new int[1];
+        mGl.glGenTextures(1, textures, 0);
+        mTextureID = textures[0];
+
+        int target = mSource.getTextureTarget();
+        mGl.glBindTexture(target, mTextureID);
+        mGl.glTexParameteri(target, GlApi.GL_TEXTURE_MIN_FILTER, GlApi.GL_LINEAR);
+        mGl.glTexParameteri(target, GlApi.GL_TEXTURE_MAG_FILTER, GlApi.GL_LINEAR);
+        mGl.glTexParameteri(target, GlApi.GL_TEXTURE_WRAP_S, GlApi.GL_CLAMP_TO_EDGE);
+        mGl.glTexParameteri(target, GlApi.GL_TEXTURE_WRAP_T, GlApi.GL_CLAMP_TO_EDGE);
+
+        // デバイスとセッションはそのままで、SurfaceTextureの接続先だけを新しいコンテキストに切り替える
+        mSource.attachToGlContext(mTextureID);
+
+        mQuadGeometry.onSurfaceCreated(mGl);
+
+        mShaderCache.onSurfaceCreated(mGl);
+        mProgram = mShaderCache.getProgram(mGl, VERTEX_SHADER, fragmentShaderFor(target));
+        mFilterChain.onSurfaceCreated(mGl);
+        mReadback.onSurfaceCreated(mGl);
+        if (mStatistics != null) {
+            mStatistics.onSurfaceCreated(mGl);
+        }
+
+        mPositionHandle = mGl.glGetAttribLocation(mProgram, "position");
+        mGl.glEnableVertexAttribArray(mPositionHandle);
+        mTexCoordHandle = mGl.glGetAttribLocation(mProgram, "texcoord");
+        mGl.glEnableVertexAttribArray(mTexCoordHandle);
+        checkGlError("glGetAttribLocation");
+
+        mTextureHandle = mGl.glGetUniformLocation(mProgram, "texture");
+        checkGlError("glGetUniformLocation");
+        mConfigured = false;
+        mChangeTracker.reset();
+    }
+
+    public void onSurfaceChanged(int width, int height) {
+        mSurfaceWidth = width;
+        mSurfaceHeight = height;
+        mConfigured = false;
+        mFrameMetrics.markDiscontinuity();
+    }
+
+    /** Hands the source texture back and frees readback buffers; the context must still be current. */
+    public void releaseContextResources() {
+        mSource.detachFromGlContext();
+        mReadback.release(mGl);
+        if (mStatistics != null) {
+            mStatistics.release(mGl);
+        }
+        mConfigured = false;
+    }
+
+    /**
+     * Draws a new source frame if there is one. Without one it draws the last frame again only when
+     * FrameChangeTracker asks for it, and otherwise issues no GL calls at all.
+     * @return true if a new source frame was latched and drawn
+     */
+    public boolean drawFrame() {
+        long startTime = mClock.nanoTime();
+
+        if (!mConfigured) {
+            if (!mSource.isReady()) {
+                clear();
+                mLastDecision = FrameChangeTracker.REDRAW;
+                return false;
+            }
+            configure();
+        } else if (!mSource.getBufferSize().equals(mBufferSize)) {
+            // 画質の切り替えでカメラのバッファサイズが変わった
+            configure();
+            mFrameMetrics.markDiscontinuity();
+        }
+
+        updateCrop();
+
+        // 更新前に読むので、間に届いたフレームは次の描画でもう一度取り込まれる
+        int decision = mChangeTracker.onDrawFrame(mSource.getFrameSequence());
+        mLastDecision = decision;
+        if (decision == FrameChangeTracker.SKIP) {
+            return false;
+        }
+        clear();
+        if (decision == FrameChangeTracker.REDRAW) {
+            drawCameraFrame(mViewport.x, mViewport.y, mViewport.width, mViewport.height);
+            return false;
+        }
+
+        mSource.updateTexture(mGl);
+        // SurfaceTexture.updateTexImage()はGlApiを通さずにテクスチャをバインドする
+        mGl.invalidateTextureBinding(mSource.getTextureTarget());
+        long cameraTimestamp = mSource.getTimestamp();
+        mSource.getTransformMatrix(mTextureMatrix);
+        mQuadGeometry.setTextureMatrix(mTextureMatrix);
+        mFrameTimestamp = cameraTimestamp;
+        long stageStart = mStageTimer.record(RenderStageTimer.STAGE_LATCH, startTime);
+
+        drawCameraFrame(mViewport.x, mViewport.y, mViewport.width, mViewport.height);
+        stageStart = mStageTimer.record(RenderStageTimer.STAGE_DRAW, stageStart);
+
+        mReadback.onFrameRendered(mGl, cameraTimestamp);
+        stageStart = mStageTimer.record(RenderStageTimer.STAGE_READBACK, stageStart);
+
+        GpuFrameStatistics statistics = mStatistics;
+        if (statistics != null && statistics.isEnabled()) {
+            statistics.process(mGl, mSource.getTextureTarget(), mTextureID, cameraTimestamp);
+            stageStart = mStageTimer.record(RenderStageTimer.STAGE_STATISTICS, stageStart);
+        }
+
+        FrameOutput output = mOutput;
+        if (output != null && output.beginFrame(cameraTimestamp)) {
+            drawCopy(output.getWidth(), output.getHeight());
+            output.endFrame();
+            mStageTimer.record(RenderStageTimer.STAGE_OUTPUT, stageStart);
+        }
+
+        long endTime = mClock.nanoTime();
+        mLastDrawTimeNano = endTime - startTime;
+        mFrameMetrics.recordFrame(startTime, endTime, cameraTimestamp);
+        if (mCaptureMetadataMatcher != null) {
+            if (mCaptureMetadataMatcher.matchPending(mCaptureMetadata)) {
+                mFrameMetrics.recordCaptureMetadata(mCaptureMetadata);
+            }
+            if (mCaptureMetadataMatcher.match(cameraTimestamp, mCaptureMetadata)) {
+                mFrameMetrics.recordCaptureMetadata(mCaptureMetadata);
+            }
+        }
+        return true;
+    }
+
+    /** Draws the last drawn frame once more at (0, 0, width, height) into whatever surface is current. */
+    public void drawCopy(int width, int height) {
+        if (!mConfigured) {
+            clear();
+            return;
+        }
+        mGl.glClear(GlApi.GL_COLOR_BUFFER_BIT);
+        drawCameraFrame(0, 0, width, height);
+    }
+
+    private void clear() {
+        mGl.glClearColor(0.5f, 0.5f, 1.0f, 1.0f);
+        mGl.glClear(GlApi.GL_DEPTH_BUFFER_BIT | GlApi.GL_COLOR_BUFFER_BIT);
+    }
+
+    /** ズームが変わったら、新しいカメラフレームを待たずに描き直す */
+    private void updateCrop() {
+        DigitalZoom zoom = mDigitalZoom;
+        if (zoom == null || zoom.getSequence() == mZoomSequence) {
+            return;
+        }
+        mZoomSequence = zoom.getSequence();
+        zoom.getRendererCrop(mCrop);
+        mQuadGeometry.setCrop(mCrop);
+        mChangeTracker.invalidate();
+    }
+
+    private void configure() {
+        Resolution bufferSize = mSource.getBufferSize();
+        mBufferSize = bufferSize;
+        mRotation = mSource.getRotation();
+        int displayWidth = mDisplayWidth > 0 ? mDisplayWidth : mSurfaceWidth;
+        int displayHeight = mDisplayHeight > 0 ? mDisplayHeight : mSurfaceHeight;
+        Resolution imageSize = PreviewGeometry.fitToDisplay(
+                displayWidth, displayHeight, bufferSize.getWidth(), bufferSize.getHeight());
+
+        Viewport viewport;
+        if (mQuadGeometry.getScaleMode() == QuadGeometry.ScaleMode.STRETCH) {
+            viewport = PreviewGeometry.centerOnDisplay(
+                    displayWidth, displayHeight, imageSize.getWidth(), imageSize.getHeight());
+        } else {
+            // 縦横比の調整はジオメトリ側で行うのでサーフェス全体に描く
+            viewport = new Viewport(0, 0, mSurfaceWidth, mSurfaceHeight);
+        }
+        mQuadGeometry.setSizes(bufferSize.getWidth(), bufferSize.getHeight(), viewport.width, viewport.height);
+        mViewport = viewport;
+        mFilterChain.setInputSize(imageSize.getWidth(), imageSize.getHeight());
+        mReadback.setRegion(viewport.x, viewport.y, viewport.width, viewport.height);
+        if (mStatistics != null) {
+            mStatistics.setInputSize(bufferSize.getWidth(), bufferSize.getHeight());
+        }
+        mChangeTracker.invalidate();
+        mConfigured = true;
+    }
+
+    private void drawCameraFrame(int x, int y, int width, int height) {
+        mFilterChain.setOutputViewport(x, y, width, height);
+        boolean filtered = mFilterChain.beginFrame(mGl);
+        if (filtered) {
+            // LETTERBOXの余白がフィルタ用バッファの前回の内容のまま残らないようにする
+            mGl.glClear(GlApi.GL_COLOR_BUFFER_BIT);
+        }
+        int target = mSource.getTextureTarget();
+
+        mGl.glUseProgram(mProgram);
+
+        // 描画後も解除しない。前回と同じ状態はGlStateTrackerが送らずに捨てる
+        mQuadGeometry.bind(mGl, mRotation, mPositionHandle, mTexCoordHandle);
+        mGl.glUniform1i(mTextureHandle, 0);
+        mGl.glActiveTexture(GlApi.GL_TEXTURE0);
+        mGl.glBindTexture(target, mTextureID);
+
+        mGl.glDrawArrays(GlApi.GL_TRIANGLE_STRIP, 0, QuadGeometry.VERTEX_COUNT);
+
+        if (filtered) {
+            mFilterChain.drawFilters(mGl);
+        }
+    }
+
+    private void checkGlError(String op) {
+        ShaderUtil.checkGlError(mGl, op);
+    }
+
+    public boolean isConfigured() {
+        return mConfigured;
+    }
+
+    /** Time the last drawFrame() that drew the source took, in nanoseconds. */
+    public long getLastDrawTimeNano() {
+        return mLastDrawTimeNano;
+    }
+
+    /** FrameChangeTracker.SKIP, REDRAW or LATCH: what the last drawFrame() did; SKIP drew nothing. */
+    public int getLastDecision() {
+        return mLastDecision;
+    }
+
+    /** Camera timestamp of the last latched frame. */
+    public long getFrameTimestamp() {
+        return mFrameTimestamp;
+    }
+
+    /** Viewport of the preview on the surface, valid once configured. */
+    public Viewport getViewport() {
+        return mViewport;
+    }
+
+    public FilterChain getFilterChain() {
+        return mFilterChain;
+    }
+
+    public ShaderCache getShaderCache() {
+        return mShaderCache;
+    }
+
+    public FrameMetricsRecorder getFrameMetrics() {
+        return mFrameMetrics;
+    }
+
+    public GpuReadback getReadback() {
+        return mReadback;
+    }
+
+    public RenderStageTimer getStageTimer() {
+        return mStageTimer;
+    }
+
+    /** Drawn, redrawn and skipped frame counts; setSwapPreserved() once the EGL surface is known. */
+    public FrameChangeTracker getChangeTracker() {
+        return mChangeTracker;
+    }
+
+    /** Every GL call of the renderer goes through it; setValidation() in debug builds. */
+    public GlStateTracker getGlState() {
+        return mGl;
+    }
+}
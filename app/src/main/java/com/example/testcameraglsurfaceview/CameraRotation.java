@@ -0,0 +1,3 @@
+package com.example.testcameraglsurfaceview;
+
+enum CameraRotation {ROTATION_0, ROTATION_90, ROTATION_180, ROTATION_270}
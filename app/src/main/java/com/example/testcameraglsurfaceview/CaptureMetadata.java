@@ -0,0 +1,22 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Per-frame values from a camera2 TotalCaptureResult. Mutable so lookups can reuse one instance.
+ */
+public class CaptureMetadata {
+
+    /** SENSOR_TIMESTAMP; equals SurfaceTexture.getTimestamp() of the same frame. */
+    public long sensorTimestampNano;
+    /** SENSOR_EXPOSURE_TIME, or 0 if the device does not report it. */
+    public long exposureTimeNano;
+    /** SENSOR_FRAME_DURATION, or 0 if the device does not report it. */
+    public long frameDurationNano;
+    public long frameNumber;
+
+    public void set(long sensorTimestampNano, long exposureTimeNano, long frameDurationNano, long frameNumber) {
+        this.sensorTimestampNano = sensorTimestampNano;
+        this.exposureTimeNano = exposureTimeNano;
+        this.frameDurationNano = frameDurationNano;
+        this.frameNumber = frameNumber;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * GL thread side of CaptureMetadataRing. A capture result often arrives after its buffer, so a frame
+ * that has no metadata yet when drawn is looked up once more on the next frame before it counts as missed.
+ */
+public class CaptureMetadataMatcher {
+
+    private final CaptureMetadataRing mRing;
+    private final long mToleranceNano;
+    private long mPendingTimestampNano = 0;
+
+    private long mMatchedCount = 0;
+    private long mLateMatchedCount = 0;
+    private long mMissedCount = 0;
+
+    public CaptureMetadataMatcher(CaptureMetadataRing ring, long toleranceNano) {
+        mRing = ring;
+        mToleranceNano = toleranceNano;
+    }
+
+    /**
+     * Retries the frame left pending by the previous match(); call before match() on each frame.
+     * @return true if out was filled with the metadata of that earlier frame
+     */
+    public boolean matchPending(CaptureMetadata out) {
+        if (mPendingTimestampNano == 0) {
+            return false;
+        }
+        long timestamp = mPendingTimestampNano;
+        mPendingTimestampNano = 0;
+        if (mRing.find(timestamp, mToleranceNano, out)) {
+            mLateMatchedCount++;
+            return true;
+        }
+        mMissedCount++;
+        return false;
+    }
+
+    /**
+     * @param sensorTimestampNano SurfaceTexture.getTimestamp() of the frame being drawn; 0 is ignored
+     * @return true if out was filled; otherwise the frame is retried by the next matchPending()
+     */
+    public boolean match(long sensorTimestampNano, CaptureMetadata out) {
+        if (sensorTimestampNano == 0) {
+            return false;
+        }
+        if (mRing.find(sensorTimestampNano, mToleranceNano, out)) {
+            mMatchedCount++;
+            return true;
+        }
+        mPendingTimestampNano = sensorTimestampNano;
+        return false;
+    }
+
+    public long getMatchedCount() {
+        return mMatchedCount;
+    }
+
+    public long getLateMatchedCount() {
+        return mLateMatchedCount;
+    }
+
+    public long getMissedCount() {
+        return mMissedCount;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.testcameraglsurfaceview;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Most recent capture results, preallocated and lock-free for one producer (the camera thread's
+ * CaptureCallback) and one consumer (the GL thread). The producer never waits: old entries are
+ * overwritten, and a consumer read that races with the overwrite of its slot is reported as not found.
+ */
+public class CaptureMetadataRing {
+
+    private static final int FIELD_TIMESTAMP = 0;
+    private static final int FIELD_EXPOSURE_TIME = 1;
+    private static final int FIELD_FRAME_DURATION = 2;
+    private static final int FIELD_FRAME_NUMBER = 3;
+    private static final int FIELD_COUNT = 4;
+
+    private final AtomicLongArray mData;
+    private final int mCapacity;
+    private final int mMask;
+    // 書き込み開始前にclaimed、書き終わってからpublishedを進める
+    private final AtomicLong mClaimed = new AtomicLong();
+    private final AtomicLong mPublished = new AtomicLong();
+    private long mNextSequence = 0;
+
+    /** @param capacity rounded up to a power of two */
+    public CaptureMetadataRing(int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        mCapacity = size;
+        mMask = size - 1;
+        mData = new AtomicLongArray(size * FIELD_COUNT);
+    }
+
+    /** Producer side. */
+    public void publish(long sensorTimestampNano, long exposureTimeNano, long frameDurationNano, long frameNumber) {
+        long sequence = mNextSequence++;
+        int base = (int) (sequence & mMask) * FIELD_COUNT;
+        mClaimed.set(sequence + 1);
+        mData.set(base + FIELD_TIMESTAMP, sensorTimestampNano);
+        mData.set(base + FIELD_EXPOSURE_TIME, exposureTimeNano);
+        mData.set(base + FIELD_FRAME_DURATION, frameDurationNano);
+        mData.set(base + FIELD_FRAME_NUMBER, frameNumber);
+        mPublished.set(sequence + 1);
+    }
+
+    /**
+     * Consumer side: looks for the entry whose sensor timestamp is within toleranceNano of the given
+     * one, newest first. Timestamps are expected to increase with each published entry.
+     * @return false if it was never published, has already been overwritten, or is being overwritten
+     */
+    public boolean find(long sensorTimestampNano, long toleranceNano, CaptureMetadata out) {
+        long published = mPublished.get();
+        long oldest = Math.max(0, published - mCapacity);
+        for (long sequence = published - 1; sequence >= oldest; sequence--) {
+            int base = (int) (sequence & mMask) * FIELD_COUNT;
+            long timestamp = mData.get(base + FIELD_TIMESTAMP);
+            if (Math.abs(timestamp - sensorTimestampNano) <= toleranceNano) {
+                long exposureTime = mData.get(base + FIELD_EXPOSURE_TIME);
+                long frameDuration = mData.get(base + FIELD_FRAME_DURATION);
+                long frameNumber = mData.get(base + FIELD_FRAME_NUMBER);
+                if (mClaimed.get() - sequence > mCapacity) {
+                    return false;
+                }
+                out.set(timestamp, exposureTime, frameDuration, frameNumber);
+                return true;
+            }
+            if (timestamp < sensorTimestampNano - toleranceNano) {
+                // これより古いエントリはさらに前の時刻
+                return false;
+            }
+        }
+        return false;
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    public long getPublishedCount() {
+        return mPublished.get();
+    }
+}
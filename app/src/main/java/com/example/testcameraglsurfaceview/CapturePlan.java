@@ -0,0 +1,58 @@
+package com.example.testcameraglsurfaceview;
+
+import java.util.Arrays;
+
+/**
+ * Result of StreamNegotiator: one size per requested stream plus the AE target fps range.
+ * Immutable, so it can be kept and reused for later sessions with the same camera and display.
+ */
+public final class CapturePlan {
+
+    private final Resolution[] mSizes;
+    private final CameraCapabilities.FpsRange mFpsRange;
+    private final double mMaxFps;
+
+    CapturePlan(Resolution[] sizes, CameraCapabilities.FpsRange fpsRange, double maxFps) {
+        mSizes = sizes.clone();
+        mFpsRange = fpsRange;
+        mMaxFps = maxFps;
+    }
+
+    public int getStreamCount() {
+        return mSizes.length;
+    }
+
+    public Resolution getSize(int stream) {
+        return mSizes[stream];
+    }
+
+    /** @return AE target fps range to request, or null to leave the template's default */
+    public CameraCapabilities.FpsRange getFpsRange() {
+        return mFpsRange;
+    }
+
+    /** Highest frame rate all streams can deliver together, from their minimum frame durations. */
+    public double getMaxFps() {
+        return mMaxFps;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof CapturePlan)) {
+            return false;
+        }
+        CapturePlan other = (CapturePlan) o;
+        return Arrays.equals(mSizes, other.mSizes)
+                && (mFpsRange == null ? other.mFpsRange == null : mFpsRange.equals(other.mFpsRange));
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(mSizes) * 31 + (mFpsRange == null ? 0 : mFpsRange.hashCode());
+    }
+
+    @Override
+    public String toString() {
+        return "CapturePlan" + Arrays.toString(mSizes) + " fps " + mFpsRange;
+    }
+}
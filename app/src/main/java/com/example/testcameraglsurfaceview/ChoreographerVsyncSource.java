@@ -0,0 +1,42 @@
+package com.example.testcameraglsurfaceview;
+
+import android.view.Choreographer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * VsyncSource on the Choreographer of the calling looper thread, which must be the render looper.
+ */
+public class ChoreographerVsyncSource implements VsyncSource {
+
+    private final Map<Callback, Choreographer.FrameCallback> mFrameCallbacks = new HashMap<>();
+    private Choreographer mChoreographer;
+
+    @Override
+    public void requestVsync(final Callback callback) {
+        if (mChoreographer == null) {
+            // スレッドごとのインスタンスなので、描画スレッド上で初めて呼ばれたときに取得する
+            mChoreographer = Choreographer.getInstance();
+        }
+        Choreographer.FrameCallback frameCallback = mFrameCallbacks.get(callback);
+        if (frameCallback == null) {
+            frameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    callback.onVsync(frameTimeNanos);
+                }
+            };
+            mFrameCallbacks.put(callback, frameCallback);
+        }
+        mChoreographer.postFrameCallback(frameCallback);
+    }
+
+    @Override
+    public void cancelVsync(Callback callback) {
+        Choreographer.FrameCallback frameCallback = mFrameCallbacks.get(callback);
+        if (mChoreographer != null && frameCallback != null) {
+            mChoreographer.removeFrameCallback(frameCallback);
+        }
+    }
+}
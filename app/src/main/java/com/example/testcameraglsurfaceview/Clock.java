@@ -0,0 +1,13 @@
+package com.example.testcameraglsurfaceview;
+
+public interface Clock {
+
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    long nanoTime();
+}
@@ -0,0 +1,60 @@
+package com.example.testcameraglsurfaceview;
+
+public class ColorCorrectionFilter extends ShaderFilter {
+
+    private static final String FRAGMENT_SHADER =
+            "precision mediump float;\n" +
+                    "varying vec2 texcoordVarying;\n" +
+                    "uniform sampler2D texture;\n" +
+                    "uniform float brightness;\n" +
+                    "uniform float contrast;\n" +
+                    "uniform float saturation;\n" +
+                    "const vec3 LUMA = vec3(0.299, 0.587, 0.114);\n" +
+                    "void main() {\n" +
+                    "  vec4 color = texture2D(texture, texcoordVarying);\n" +
+                    "  vec3 rgb = (color.rgb - 0.5) * contrast + 0.5 + brightness;\n" +
+                    "  float luma = dot(rgb, LUMA);\n" +
+                    "  rgb = mix(vec3(luma), rgb, saturation);\n" +
+                    "  gl_FragColor = vec4(clamp(rgb, 0.0, 1.0), color.a);\n" +
+                    "}\n";
+
+    private volatile float mBrightness = 0.0f;
+    private volatile float mContrast = 1.0f;
+    private volatile float mSaturation = 1.0f;
+    private int mBrightnessHandle;
+    private int mContrastHandle;
+    private int mSaturationHandle;
+
+    public ColorCorrectionFilter() {
+        super(FRAGMENT_SHADER);
+    }
+
+    /** @param brightness offset added to each channel, 0 = unchanged */
+    public void setBrightness(float brightness) {
+        mBrightness = brightness;
+    }
+
+    /** @param contrast 1 = unchanged */
+    public void setContrast(float contrast) {
+        mContrast = contrast;
+    }
+
+    /** @param saturation 0 = grayscale, 1 = unchanged */
+    public void setSaturation(float saturation) {
+        mSaturation = saturation;
+    }
+
+    @Override
+    protected void onProgramCreated(GlApi gl, int program) {
+        mBrightnessHandle = gl.glGetUniformLocation(program, "brightness");
+        mContrastHandle = gl.glGetUniformLocation(program, "contrast");
+        mSaturationHandle = gl.glGetUniformLocation(program, "saturation");
+    }
+
+    @Override
+    protected void onDraw(GlApi gl) {
+        gl.glUniform1f(mBrightnessHandle, mBrightness);
+        gl.glUniform1f(mContrastHandle, mContrast);
+        gl.glUniform1f(mSaturationHandle, mSaturation);
+    }
+}
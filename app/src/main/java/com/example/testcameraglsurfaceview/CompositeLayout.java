@@ -0,0 +1,64 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Where each source of a CameraCompositor goes on the surface. Sources later in the list are drawn
+ * on top of earlier ones. Viewports are in GL window coordinates, origin at the bottom-left.
+ */
+public class CompositeLayout {
+
+    public enum Arrangement {
+        /** The first source fills the surface, the others are insets along the bottom edge from the right. */
+        PICTURE_IN_PICTURE,
+        /** Equal slices along the longer side of the surface, the first source on the left or at the top. */
+        SIDE_BY_SIDE
+    }
+
+    /** Inset size relative to the surface. */
+    public static final float INSET_SCALE = 0.3f;
+    /** Gap around insets relative to the shorter side of the surface. */
+    public static final float INSET_MARGIN = 0.03f;
+
+    private final Arrangement mArrangement;
+
+    public CompositeLayout(Arrangement arrangement) {
+        mArrangement = arrangement;
+    }
+
+    public Arrangement getArrangement() {
+        return mArrangement;
+    }
+
+    public Viewport getViewport(int index, int count, int surfaceWidth, int surfaceHeight) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("source " + index + " of " + count);
+        }
+        if (mArrangement == Arrangement.SIDE_BY_SIDE) {
+            if (surfaceWidth >= surfaceHeight) {
+                int left = index * surfaceWidth / count;
+                int right = (index + 1) * surfaceWidth / count;
+                return new Viewport(left, 0, right - left, surfaceHeight);
+            }
+            // 上から順に並べる
+            int top = surfaceHeight - index * surfaceHeight / count;
+            int bottom = surfaceHeight - (index + 1) * surfaceHeight / count;
+            return new Viewport(0, bottom, surfaceWidth, top - bottom);
+        }
+
+        if (index == 0) {
+            return new Viewport(0, 0, surfaceWidth, surfaceHeight);
+        }
+        int margin = Math.round(Math.min(surfaceWidth, surfaceHeight) * INSET_MARGIN);
+        int insetWidth = Math.round(surfaceWidth * INSET_SCALE);
+        int insetHeight = Math.round(surfaceHeight * INSET_SCALE);
+        int perRow = Math.max(1, (surfaceWidth - margin) / (insetWidth + margin));
+        int column = (index - 1) % perRow;
+        int row = (index - 1) / perRow;
+        return new Viewport(surfaceWidth - (column + 1) * (insetWidth + margin),
+                margin + row * (insetHeight + margin), insetWidth, insetHeight);
+    }
+
+    /** Main image and insets are cropped to fill; side by side shows every image whole. */
+    public QuadGeometry.ScaleMode getScaleMode(int index) {
+        return mArrangement == Arrangement.SIDE_BY_SIDE ? QuadGeometry.ScaleMode.LETTERBOX : QuadGeometry.ScaleMode.CROP;
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Zoom ratio and region of interest of the preview, as a crop in display space (u, v from the top left
+ * corner, 0..1) that keeps the image aspect ratio. Camera applies it as SCALER_CROP_REGION when the
+ * device can zoom; otherwise CameraRenderer samples only the crop. Either way a change needs no session
+ * reconfigure. Changed from the UI thread, read from the camera and GL threads.
+ */
+public class DigitalZoom {
+
+    public static final float DEFAULT_MAX_ZOOM = 4.0f;
+
+    public interface Listener {
+        /** Called on the thread that changed the zoom. */
+        void onZoomChanged(DigitalZoom zoom);
+    }
+
+    private float mMaxZoom = DEFAULT_MAX_ZOOM;
+    private float mZoom = 1.0f;
+    private float mCenterU = 0.5f;
+    private float mCenterV = 0.5f;
+    private boolean mCroppedBySensor = false;
+    private long mSequence = 0;
+    private volatile Listener mListener;
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /** Highest ratio setZoom() accepts; lowers the current zoom if needed. */
+    public void setMaxZoom(float maxZoom) {
+        synchronized (this) {
+            float max = Math.max(1.0f, maxZoom);
+            if (max == mMaxZoom) {
+                return;
+            }
+            mMaxZoom = max;
+            if (!update(mZoom, mCenterU, mCenterV)) {
+                return;
+            }
+        }
+        notifyListener();
+    }
+
+    public synchronized float getMaxZoom() {
+        return mMaxZoom;
+    }
+
+    /** Whether the camera crops, so the renderer must draw the whole buffer. Set by Camera. */
+    public void setCroppedBySensor(boolean croppedBySensor) {
+        synchronized (this) {
+            if (croppedBySensor == mCroppedBySensor) {
+                return;
+            }
+            mCroppedBySensor = croppedBySensor;
+            mSequence++;
+        }
+        notifyListener();
+    }
+
+    public synchronized boolean isCroppedBySensor() {
+        return mCroppedBySensor;
+    }
+
+    /** Zooms around the current center, clamped to 1..getMaxZoom(). */
+    public void setZoom(float zoom) {
+        boolean changed;
+        synchronized (this) {
+            changed = update(zoom, mCenterU, mCenterV);
+        }
+        if (changed) {
+            notifyListener();
+        }
+    }
+
+    /** Centers the crop on (u, v) as far as the image edges allow. */
+    public void setCenter(float u, float v) {
+        boolean changed;
+        synchronized (this) {
+            changed = update(mZoom, u, v);
+        }
+        if (changed) {
+            notifyListener();
+        }
+    }
+
+    /**
+     * Pinch step: multiplies the zoom by scale, keeping the image point under the display point
+     * (focusU, focusV) where it is.
+     */
+    public void zoomBy(float scale, float focusU, float focusV) {
+        boolean changed;
+        synchronized (this) {
+            float halfSize = 0.5f / mZoom;
+            // 焦点の下にある画像上の点
+            float imageU = mCenterU - halfSize + focusU * 2 * halfSize;
+            float imageV = mCenterV - halfSize + focusV * 2 * halfSize;
+            float zoom = clampZoom(mZoom * scale);
+            float newHalfSize = 0.5f / zoom;
+            changed = update(zoom, imageU + newHalfSize - focusU * 2 * newHalfSize,
+                    imageV + newHalfSize - focusV * 2 * newHalfSize);
+        }
+        if (changed) {
+            notifyListener();
+        }
+    }
+
+    public void reset() {
+        boolean changed;
+        synchronized (this) {
+            changed = update(1.0f, 0.5f, 0.5f);
+        }
+        if (changed) {
+            notifyListener();
+        }
+    }
+
+    public synchronized float getZoom() {
+        return mZoom;
+    }
+
+    /** @param out left, top, right, bottom of the shown part, in display space */
+    public synchronized void getCrop(float[] out) {
+        float halfSize = 0.5f / mZoom;
+        out[0] = mCenterU - halfSize;
+        out[1] = mCenterV - halfSize;
+        out[2] = mCenterU + halfSize;
+        out[3] = mCenterV + halfSize;
+    }
+
+    /** Crop the renderer must sample: QuadGeometry.FULL_CROP while the camera crops. */
+    public synchronized void getRendererCrop(float[] out) {
+        if (mCroppedBySensor) {
+            System.arraycopy(QuadGeometry.FULL_CROP, 0, out, 0, 4);
+        } else {
+            getCrop(out);
+        }
+    }
+
+    /** Changes with every zoom, center or cropping change, so readers can skip unchanged frames. */
+    public synchronized long getSequence() {
+        return mSequence;
+    }
+
+    /**
+     * SCALER_CROP_REGION for a display-space crop. The camera fits the region to the stream's aspect
+     * ratio, so the crop is placed inside the part of the active array that the unzoomed stream shows.
+     * @param activeWidth  SENSOR_INFO_ACTIVE_ARRAY_SIZE
+     * @param streamWidth  output buffer size in sensor orientation
+     * @param out          left, top, right, bottom in active array pixels
+     */
+    public static void toCropRegion(float[] crop, CameraRotation rotation, int activeWidth, int activeHeight,
+                                    int streamWidth, int streamHeight, int[] out) {
+        // ストリームの縦横比でアクティブ領域の中央を切り出した範囲が、ズームなしの画角
+        int fieldWidth = activeWidth;
+        int fieldHeight = activeHeight;
+        if ((long) activeWidth * streamHeight > (long) activeHeight * streamWidth) {
+            fieldWidth = (int) ((long) activeHeight * streamWidth / streamHeight);
+        } else {
+            fieldHeight = (int) ((long) activeWidth * streamHeight / streamWidth);
+        }
+        int fieldLeft = (activeWidth - fieldWidth) / 2;
+        int fieldTop = (activeHeight - fieldHeight) / 2;
+
+        float[] buffer = new float[4];
+        TextureTransform.cropToBuffer(rotation, crop, buffer);
+        out[0] = fieldLeft + Math.round(buffer[0] * fieldWidth);
+        out[1] = fieldTop + Math.round(buffer[1] * fieldHeight);
+        out[2] = fieldLeft + Math.round(buffer[2] * fieldWidth);
+        out[3] = fieldTop + Math.round(buffer[3] * fieldHeight);
+    }
+
+    private float clampZoom(float zoom) {
+        return Math.max(1.0f, Math.min(mMaxZoom, zoom));
+    }
+
+    /** @return whether anything changed */
+    private boolean update(float zoom, float centerU, float centerV) {
+        zoom = clampZoom(zoom);
+        float halfSize = 0.5f / zoom;
+        centerU = Math.max(halfSize, Math.min(1 - halfSize, centerU));
+        centerV = Math.max(halfSize, Math.min(1 - halfSize, centerV));
+        if (zoom != mZoom || centerU != mCenterU || centerV != mCenterV) {
+            mZoom = zoom;
+            mCenterU = centerU;
+            mCenterV = centerV;
+            mSequence++;
+            return true;
+        }
+        return false;
+    }
+
+    private void notifyListener() {
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onZoomChanged(this);
+        }
+    }
+}
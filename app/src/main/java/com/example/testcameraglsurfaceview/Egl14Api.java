@@ -0,0 +1,150 @@
+package com.example.testcameraglsurfaceview;
+
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
+import android.opengl.EGLSurface;
+import android.util.SparseArray;
+
+/**
+ * EglApi on EGL14. The config is the RGB888 / depth 16 one GLSurfaceView picks by default, but
+ * recordable so the context can also draw into a MediaCodec input surface (EncoderInputSurface), and
+ * without that wish if no config has it. An ES3 context is preferred over an ES2 one, but not at the
+ * cost of recording.
+ */
+public class Egl14Api implements EglApi {
+
+    private final SparseArray<EGLSurface> mSurfaces = new SparseArray<>();
+    private int mNextSurface = NO_SURFACE + 1;
+    private EGLDisplay mDisplay = EGL14.EGL_NO_DISPLAY;
+    private EGLConfig mConfig;
+    private EGLContext mContext = EGL14.EGL_NO_CONTEXT;
+    private EGLSurface mPbuffer = EGL14.EGL_NO_SURFACE;
+    private int mClientVersion = 0;
+
+    @Override
+    public void createContext() {
+        if (mContext != EGL14.EGL_NO_CONTEXT) {
+            throw new IllegalStateException("context already created");
+        }
+        mDisplay = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+        int[] version = new int[2];
+        if (mDisplay == EGL14.EGL_NO_DISPLAY || !EGL14.eglInitialize(mDisplay, version, 0, version, 1)) {
+            throw new IllegalStateException("eglInitialize failed: 0x" + Integer.toHexString(EGL14.eglGetError()));
+        }
+        boolean configFound = false;
+        for (boolean recordable : new boolean[]{true, false}) {
+            for (int clientVersion = 3; clientVersion >= 2 && mContext == EGL14.EGL_NO_CONTEXT; clientVersion--) {
+                EGLConfig config = chooseConfig(recordable, clientVersion);
+                if (config == null) {
+                    continue;
+                }
+                configFound = true;
+                int[] contextAttribs = {EGL14.EGL_CONTEXT_CLIENT_VERSION, clientVersion, EGL14.EGL_NONE};
+                EGLContext context = EGL14.eglCreateContext(mDisplay, config, EGL14.EGL_NO_CONTEXT, contextAttribs, 0);
+                if (context != null && context != EGL14.EGL_NO_CONTEXT) {
+                    mConfig = config;
+                    mContext = context;
+                    mClientVersion = clientVersion;
+                }
+            }
+        }
+        if (!configFound) {
+            throw new IllegalArgumentException("No EGL config found");
+        }
+        if (mContext == EGL14.EGL_NO_CONTEXT) {
+            throw new IllegalStateException("eglCreateContext failed: 0x" + Integer.toHexString(EGL14.eglGetError()));
+        }
+        int[] pbufferAttribs = {EGL14.EGL_WIDTH, 1, EGL14.EGL_HEIGHT, 1, EGL14.EGL_NONE};
+        mPbuffer = EGL14.eglCreatePbufferSurface(mDisplay, mConfig, pbufferAttribs, 0);
+        makeCurrent(NO_SURFACE);
+    }
+
+    @Override
+    public void releaseContext() {
+        if (mContext == EGL14.EGL_NO_CONTEXT) {
+            return;
+        }
+        EGL14.eglMakeCurrent(mDisplay, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+        for (int i = 0; i < mSurfaces.size(); i++) {
+            EGL14.eglDestroySurface(mDisplay, mSurfaces.valueAt(i));
+        }
+        mSurfaces.clear();
+        EGL14.eglDestroySurface(mDisplay, mPbuffer);
+        EGL14.eglDestroyContext(mDisplay, mContext);
+        EGL14.eglReleaseThread();
+        EGL14.eglTerminate(mDisplay);
+        mPbuffer = EGL14.EGL_NO_SURFACE;
+        mContext = EGL14.EGL_NO_CONTEXT;
+        mDisplay = EGL14.EGL_NO_DISPLAY;
+        mClientVersion = 0;
+    }
+
+    @Override
+    public int getClientVersion() {
+        return mClientVersion;
+    }
+
+    @Override
+    public int createWindowSurface(Object window) {
+        EGLSurface surface = EGL14.eglCreateWindowSurface(mDisplay, mConfig, window, new int[]{EGL14.EGL_NONE}, 0);
+        if (surface == null || surface == EGL14.EGL_NO_SURFACE) {
+            return NO_SURFACE;
+        }
+        int handle = mNextSurface++;
+        mSurfaces.put(handle, surface);
+        return handle;
+    }
+
+    @Override
+    public void destroySurface(int surface) {
+        EGLSurface eglSurface = mSurfaces.get(surface);
+        if (eglSurface == null) {
+            return;
+        }
+        if (EGL14.eglGetCurrentSurface(EGL14.EGL_DRAW) == eglSurface) {
+            makeCurrent(NO_SURFACE);
+        }
+        EGL14.eglDestroySurface(mDisplay, eglSurface);
+        mSurfaces.remove(surface);
+    }
+
+    @Override
+    public boolean makeCurrent(int surface) {
+        EGLSurface eglSurface = surface == NO_SURFACE ? mPbuffer : mSurfaces.get(surface);
+        return eglSurface != null && EGL14.eglMakeCurrent(mDisplay, eglSurface, eglSurface, mContext);
+    }
+
+    @Override
+    public boolean setPresentationTime(int surface, long presentationTimeNano) {
+        EGLSurface eglSurface = mSurfaces.get(surface);
+        return eglSurface != null && EGLExt.eglPresentationTimeANDROID(mDisplay, eglSurface, presentationTimeNano);
+    }
+
+    @Override
+    public boolean swapBuffers(int surface) {
+        EGLSurface eglSurface = mSurfaces.get(surface);
+        return eglSurface != null && EGL14.eglSwapBuffers(mDisplay, eglSurface);
+    }
+
+    private EGLConfig chooseConfig(boolean recordable, int clientVersion) {
+        int[] attribs = {
+                EGL14.EGL_RED_SIZE, 8,
+                EGL14.EGL_GREEN_SIZE, 8,
+                EGL14.EGL_BLUE_SIZE, 8,
+                EGL14.EGL_DEPTH_SIZE, 16,
+                EGL14.EGL_RENDERABLE_TYPE, clientVersion == 3 ? EGLExt.EGL_OPENGL_ES3_BIT_KHR : EGL14.EGL_OPENGL_ES2_BIT,
+                EGL14.EGL_SURFACE_TYPE, EGL14.EGL_WINDOW_BIT | EGL14.EGL_PBUFFER_BIT,
+                recordable ? EGLExt.EGL_RECORDABLE_ANDROID : EGL14.EGL_NONE, 1,
+                EGL14.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] numConfigs = new int[1];
+        if (!EGL14.eglChooseConfig(mDisplay, attribs, 0, configs, 0, 1, numConfigs, 0) || numConfigs[0] == 0) {
+            return null;
+        }
+        return configs[0];
+    }
+}
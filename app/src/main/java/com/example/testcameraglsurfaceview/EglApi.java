@@ -0,0 +1,38 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * The EGL work RenderLoop needs, with surfaces as int handles, so the render loop can run against a
+ * fake on the JVM. One context at a time; every call on the thread that created it.
+ */
+public interface EglApi {
+
+    /** Handle of no window surface: makeCurrent() then binds the context to a 1x1 pbuffer. */
+    int NO_SURFACE = 0;
+
+    /**
+     * Creates the display and a recordable ES3 context, or ES2 where there is none, and makes it
+     * current without a window surface.
+     */
+    void createContext();
+
+    /** Client version of the context createContext() made, 3 or 2; 0 without one. ES3 calls need 3. */
+    int getClientVersion();
+
+    /** Destroys the context and every surface still alive. */
+    void releaseContext();
+
+    /**
+     * @param window Surface, SurfaceTexture or SurfaceHolder
+     * @return handle of the new window surface, or NO_SURFACE if EGL refused it
+     */
+    int createWindowSurface(Object window);
+
+    void destroySurface(int surface);
+
+    boolean makeCurrent(int surface);
+
+    /** eglPresentationTimeANDROID() for the next swap of the surface, on the System.nanoTime() clock. */
+    boolean setPresentationTime(int surface, long presentationTimeNano);
+
+    boolean swapBuffers(int surface);
+}
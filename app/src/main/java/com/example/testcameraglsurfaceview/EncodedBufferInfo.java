@@ -0,0 +1,19 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Same fields as MediaCodec.BufferInfo, so the encoder drain and muxer queue stay plain Java.
+ */
+public class EncodedBufferInfo {
+
+    public int offset;
+    public int size;
+    public long presentationTimeUs;
+    public int flags;
+
+    public void set(int offset, int size, long presentationTimeUs, int flags) {
+        this.offset = offset;
+        this.size = size;
+        this.presentationTimeUs = presentationTimeUs;
+        this.flags = flags;
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.testcameraglsurfaceview;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Circular store of encoded samples in one byte buffer allocated up front, so memory stays at the
+ * capacity given however long it runs. Every sample is kept contiguous; one that does not fit before
+ * the end of the buffer starts over at the beginning. Old samples are only evicted a whole GOP at a
+ * time, so the oldest sample kept is always a key frame and the contents decode from the start.
+ * Samples are numbered in arrival order so a reader can tell when one it wanted was evicted.
+ * Not thread-safe.
+ */
+public class EncodedRingBuffer {
+
+    private final ByteBuffer mData;
+    private final int mCapacity;
+    private final int mMaxSamples;
+    private final int[] mOffsets;
+    private final int[] mSizes;
+    private final int[] mFlags;
+    private final long[] mPresentationTimesUs;
+
+    private int mHead = 0;
+    private int mCount = 0;
+    private int mKeyFrameCount = 0;
+    private int mWritePosition = 0;
+    private int mUsedBytes = 0;
+    private long mFirstSequence = 0;
+    private boolean mWaitingForKeyFrame = true;
+
+    private long mDroppedCount = 0;
+    private long mEvictedCount = 0;
+
+    /**
+     * @param capacity   bytes of encoded data that can be held
+     * @param maxSamples samples that can be held, whatever their size
+     */
+    public EncodedRingBuffer(int capacity, int maxSamples) {
+        if (capacity <= 0 || maxSamples <= 0) {
+            throw new IllegalArgumentException("capacity " + capacity + " maxSamples " + maxSamples);
+        }
+        mCapacity = capacity;
+        mMaxSamples = maxSamples;
+        mData = ByteBuffer.allocateDirect(capacity);
+        mOffsets = new int[maxSamples];
+        mSizes = new int[maxSamples];
+        mFlags = new int[maxSamples];
+        mPresentationTimesUs = new long[maxSamples];
+    }
+
+    /**
+     * Copies info.size bytes at info.offset of data, evicting the oldest GOPs to make room. A sample
+     * that could only be stored by evicting its own GOP empties the buffer instead, and everything up
+     * to the next key frame is dropped. data's position and limit are restored.
+     * @return false if the sample was dropped
+     */
+    public boolean append(ByteBuffer data, EncodedBufferInfo info) {
+        boolean keyFrame = (info.flags & VideoEncoder.BUFFER_FLAG_KEY_FRAME) != 0;
+        if (info.size <= 0 || info.size > mCapacity) {
+            mWaitingForKeyFrame = true;
+            mDroppedCount++;
+            return false;
+        }
+        if (mWaitingForKeyFrame && !keyFrame) {
+            mDroppedCount++;
+            return false;
+        }
+
+        int offset;
+        while ((offset = findSpace(info.size)) < 0 || mCount == mMaxSamples) {
+            if (evictOldestGop() == 0) {
+                // 今のGOPしか残っていない。途中から欠けたGOPは復号できないので全部捨てる
+                clear();
+                if (!keyFrame) {
+                    mDroppedCount++;
+                    return false;
+                }
+            }
+        }
+
+        int position = data.position();
+        int limit = data.limit();
+        data.limit(info.offset + info.size).position(info.offset);
+        mData.limit(offset + info.size).position(offset);
+        mData.put(data);
+        data.limit(limit).position(position);
+
+        int index = (mHead + mCount) % mMaxSamples;
+        mOffsets[index] = offset;
+        mSizes[index] = info.size;
+        mFlags[index] = info.flags;
+        mPresentationTimesUs[index] = info.presentationTimeUs;
+        mCount++;
+        if (keyFrame) {
+            mKeyFrameCount++;
+        }
+        mWritePosition = offset + info.size;
+        mUsedBytes += info.size;
+        mWaitingForKeyFrame = false;
+        return true;
+    }
+
+    /**
+     * Evicts the oldest GOPs for as long as the rest still covers durationUs up to the newest sample.
+     * @return samples evicted
+     */
+    public int trimToDuration(long durationUs) {
+        int evicted = 0;
+        while (mKeyFrameCount > 1) {
+            int next = nextKeyFrame();
+            if (newestPresentationTimeUs() - mPresentationTimesUs[(mHead + next) % mMaxSamples] < durationUs) {
+                break;
+            }
+            evicted += evictOldestGop();
+        }
+        return evicted;
+    }
+
+    /**
+     * Evicts the oldest key frame and the samples that depend on it. The newest GOP is never evicted.
+     * @return samples evicted, 0 if only one GOP is held
+     */
+    public int evictOldestGop() {
+        if (mKeyFrameCount < 2) {
+            return 0;
+        }
+        int evicted = nextKeyFrame();
+        for (int i = 0; i < evicted; i++) {
+            mUsedBytes -= mSizes[mHead];
+            mHead = (mHead + 1) % mMaxSamples;
+        }
+        mCount -= evicted;
+        mKeyFrameCount--;
+        mFirstSequence += evicted;
+        mEvictedCount += evicted;
+        return evicted;
+    }
+
+    /** Empties the buffer; the next sample kept will be a key frame. */
+    public void clear() {
+        mFirstSequence += mCount;
+        mEvictedCount += mCount;
+        mHead = 0;
+        mCount = 0;
+        mKeyFrameCount = 0;
+        mWritePosition = 0;
+        mUsedBytes = 0;
+        mWaitingForKeyFrame = true;
+    }
+
+    /** Sequence number of the oldest sample held. */
+    public long getFirstSequence() {
+        return mFirstSequence;
+    }
+
+    /** Sequence number the next sample stored will get. */
+    public long getEndSequence() {
+        return mFirstSequence + mCount;
+    }
+
+    /** @return size of the sample, or -1 if it was evicted or has not arrived */
+    public int getSampleSize(long sequence) {
+        int index = indexOf(sequence);
+        return index < 0 ? -1 : mSizes[index];
+    }
+
+    /**
+     * Copies a sample into out, which is cleared and flipped, and its timing and flags into info.
+     * @return false if the sample was evicted or has not arrived
+     * @throws java.nio.BufferOverflowException if out is smaller than getSampleSize()
+     */
+    public boolean read(long sequence, ByteBuffer out, EncodedBufferInfo info) {
+        int index = indexOf(sequence);
+        if (index < 0) {
+            return false;
+        }
+        int offset = mOffsets[index];
+        int size = mSizes[index];
+        ByteBuffer source = mData.duplicate();
+        source.limit(offset + size).position(offset);
+        out.clear();
+        out.put(source);
+        out.flip();
+        info.set(0, size, mPresentationTimesUs[index], mFlags[index]);
+        return true;
+    }
+
+    public int getSampleCount() {
+        return mCount;
+    }
+
+    public int getKeyFrameCount() {
+        return mKeyFrameCount;
+    }
+
+    /** Bytes of sample data held, not counting space skipped at the end of the buffer. */
+    public int getUsedBytes() {
+        return mUsedBytes;
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    public int getMaxSamples() {
+        return mMaxSamples;
+    }
+
+    /** Time from the oldest sample held to the newest. */
+    public long getDurationUs() {
+        if (mCount == 0) {
+            return 0;
+        }
+        return newestPresentationTimeUs() - mPresentationTimesUs[mHead];
+    }
+
+    /** Samples refused: too large, or without a key frame to decode from. */
+    public long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    public long getEvictedCount() {
+        return mEvictedCount;
+    }
+
+    private long newestPresentationTimeUs() {
+        return mPresentationTimesUs[(mHead + mCount - 1) % mMaxSamples];
+    }
+
+    /** Position of the second key frame counted from the head. Needs two key frames. */
+    private int nextKeyFrame() {
+        for (int i = 1; i < mCount; i++) {
+            if ((mFlags[(mHead + i) % mMaxSamples] & VideoEncoder.BUFFER_FLAG_KEY_FRAME) != 0) {
+                return i;
+            }
+        }
+        return mCount;
+    }
+
+    private int indexOf(long sequence) {
+        if (sequence < mFirstSequence || sequence >= mFirstSequence + mCount) {
+            return -1;
+        }
+        return (int) ((mHead + (sequence - mFirstSequence)) % mMaxSamples);
+    }
+
+    /** @return byte offset where size bytes fit contiguously, or -1 */
+    private int findSpace(int size) {
+        if (mCount == 0) {
+            return 0;
+        }
+        int start = mOffsets[mHead];
+        if (mWritePosition > start) {
+            // 使用中は[start, mWritePosition)。後ろに入らなければ先頭に戻る
+            if (mWritePosition + size <= mCapacity) {
+                return mWritePosition;
+            }
+            return size <= start ? 0 : -1;
+        }
+        // 折り返し済み。空きは[mWritePosition, start)だけ
+        return mWritePosition + size <= start ? mWritePosition : -1;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.testcameraglsurfaceview;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Where EncoderDrainer hands encoded samples: MuxerQueue to write a file, ReplayBuffer to keep the
+ * last seconds in memory. Called on the GL thread.
+ */
+public interface EncodedSampleSink {
+
+    /** The encoder output format, csd included. */
+    void setFormat(Object format);
+
+    /**
+     * Copies info.size bytes at info.offset of data. data's position and limit are restored.
+     * @return false if the sample was dropped
+     */
+    boolean offer(ByteBuffer data, EncodedBufferInfo info);
+
+    /** No more samples. */
+    void finish();
+}
@@ -0,0 +1,83 @@
+package com.example.testcameraglsurfaceview;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Moves encoded output from a VideoEncoder into an EncodedSampleSink. Called on the GL thread after each
+ * frame is submitted, so it never blocks unless the stream is being ended.
+ */
+public class EncoderDrainer {
+
+    private static final long END_OF_STREAM_TIMEOUT_US = 10000;
+    private static final int MAX_END_OF_STREAM_RETRIES = 100;
+
+    private final VideoEncoder mEncoder;
+    private final EncodedSampleSink mQueue;
+    private final EncodedBufferInfo mInfo = new EncodedBufferInfo();
+    private boolean mEndOfStream = false;
+
+    private long mEncodedCount = 0;
+
+    public EncoderDrainer(VideoEncoder encoder, EncodedSampleSink queue) {
+        mEncoder = encoder;
+        mQueue = queue;
+    }
+
+    /**
+     * @param endOfInput true to signal end of input and wait for the encoder to flush
+     * @return true once the end of stream has been handed to the queue
+     */
+    public boolean drain(boolean endOfInput) {
+        if (mEndOfStream) {
+            return true;
+        }
+        if (endOfInput) {
+            mEncoder.signalEndOfInputStream();
+        }
+
+        int retries = 0;
+        while (true) {
+            int index = mEncoder.dequeueOutputBuffer(mInfo, endOfInput ? END_OF_STREAM_TIMEOUT_US : 0);
+            if (index == VideoEncoder.INFO_TRY_AGAIN_LATER) {
+                if (!endOfInput) {
+                    return false;
+                }
+                if (++retries >= MAX_END_OF_STREAM_RETRIES) {
+                    // エンコーダがEOSを返さない場合も書き出したところまでで閉じる
+                    finish();
+                    return true;
+                }
+            } else if (index == VideoEncoder.INFO_OUTPUT_FORMAT_CHANGED) {
+                mQueue.setFormat(mEncoder.getOutputFormat());
+            } else if (index == VideoEncoder.INFO_OUTPUT_BUFFERS_CHANGED) {
+                // getOutputBuffer(index) を使っているので何もしない
+            } else if (index >= 0) {
+                ByteBuffer data = mEncoder.getOutputBuffer(index);
+                // codec config は出力フォーマットの csd としてMuxerに渡っている
+                if ((mInfo.flags & VideoEncoder.BUFFER_FLAG_CODEC_CONFIG) == 0 && mInfo.size > 0 && data != null) {
+                    mQueue.offer(data, mInfo);
+                    mEncodedCount++;
+                }
+                boolean endOfStream = (mInfo.flags & VideoEncoder.BUFFER_FLAG_END_OF_STREAM) != 0;
+                mEncoder.releaseOutputBuffer(index);
+                if (endOfStream) {
+                    finish();
+                    return true;
+                }
+            }
+        }
+    }
+
+    public boolean isEndOfStream() {
+        return mEndOfStream;
+    }
+
+    public long getEncodedCount() {
+        return mEncodedCount;
+    }
+
+    private void finish() {
+        mEndOfStream = true;
+        mQueue.finish();
+    }
+}
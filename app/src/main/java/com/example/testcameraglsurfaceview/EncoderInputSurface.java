@@ -0,0 +1,77 @@
+package com.example.testcameraglsurfaceview;
+
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
+import android.opengl.EGLSurface;
+import android.view.Surface;
+
+/**
+ * EGL window surface on an encoder's input Surface, rendered with the GL thread's current context.
+ * The surface uses the context's own config, which Egl14Api picks recordable. Where Egl14Api had to
+ * fall back to a config without EGL_RECORDABLE_ANDROID, the constructor fails and so does recording.
+ * Must be created and used on the GL thread.
+ */
+public class EncoderInputSurface {
+
+    private final EGLDisplay mDisplay;
+    private final EGLContext mContext;
+    private final EGLSurface mSurface;
+
+    private EGLSurface mSavedDrawSurface;
+    private EGLSurface mSavedReadSurface;
+
+    public EncoderInputSurface(Surface surface) {
+        mDisplay = EGL14.eglGetCurrentDisplay();
+        mContext = EGL14.eglGetCurrentContext();
+        if (mDisplay == EGL14.EGL_NO_DISPLAY || mContext == EGL14.EGL_NO_CONTEXT) {
+            throw new IllegalStateException("no current EGL context");
+        }
+
+        int[] value = new int[1];
+        EGL14.eglQueryContext(mDisplay, mContext, EGL14.EGL_CONFIG_ID, value, 0);
+        int[] attribs = {EGL14.EGL_CONFIG_ID, value[0], EGL14.EGL_NONE};
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] numConfigs = new int[1];
+        if (!EGL14.eglChooseConfig(mDisplay, attribs, 0, configs, 0, 1, numConfigs, 0) || numConfigs[0] == 0) {
+            throw new IllegalStateException("eglChooseConfig failed: 0x" + Integer.toHexString(EGL14.eglGetError()));
+        }
+        if (!EGL14.eglGetConfigAttrib(mDisplay, configs[0], EGLExt.EGL_RECORDABLE_ANDROID, value, 0) || value[0] == 0) {
+            throw new IllegalStateException("EGL config is not recordable");
+        }
+
+        mSurface = EGL14.eglCreateWindowSurface(mDisplay, configs[0], surface, new int[]{EGL14.EGL_NONE}, 0);
+        if (mSurface == null || mSurface == EGL14.EGL_NO_SURFACE) {
+            throw new IllegalStateException("eglCreateWindowSurface failed: 0x" + Integer.toHexString(EGL14.eglGetError()));
+        }
+    }
+
+    /** Redirects drawing to the encoder surface, remembering the surfaces that were current. */
+    public void makeCurrent() {
+        mSavedDrawSurface = EGL14.eglGetCurrentSurface(EGL14.EGL_DRAW);
+        mSavedReadSurface = EGL14.eglGetCurrentSurface(EGL14.EGL_READ);
+        EGL14.eglMakeCurrent(mDisplay, mSurface, mSurface, mContext);
+    }
+
+    /** Submits the frame to the encoder with the given presentation time and switches back. */
+    public void swapBuffers(long presentationTimeNano) {
+        EGLExt.eglPresentationTimeANDROID(mDisplay, mSurface, presentationTimeNano);
+        EGL14.eglSwapBuffers(mDisplay, mSurface);
+        restore();
+    }
+
+    public void restore() {
+        if (mSavedDrawSurface != null) {
+            EGL14.eglMakeCurrent(mDisplay, mSavedDrawSurface, mSavedReadSurface, mContext);
+            mSavedDrawSurface = null;
+            mSavedReadSurface = null;
+        }
+    }
+
+    public void release() {
+        restore();
+        EGL14.eglDestroySurface(mDisplay, mSurface);
+    }
+}
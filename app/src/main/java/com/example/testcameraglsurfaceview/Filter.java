@@ -0,0 +1,17 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * One stage of the FilterChain. All methods are called on the GL thread.
+ * draw() samples inputTexture (GL_TEXTURE_2D) into whatever framebuffer the chain has bound.
+ */
+public interface Filter {
+
+    /** Programs should come from shaderCache, which also owns them. */
+    void onSurfaceCreated(GlApi gl, ShaderCache shaderCache);
+
+    void onSizeChanged(int width, int height);
+
+    void draw(GlApi gl, int inputTexture);
+
+    void release(GlApi gl);
+}
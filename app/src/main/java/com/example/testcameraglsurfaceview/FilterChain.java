@@ -0,0 +1,158 @@
+package com.example.testcameraglsurfaceview;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ordered list of Filters applied to the camera image.
+ * The caller renders the OES camera texture once into the chain (beginFrame), then each filter
+ * renders into the other PingPongFramebuffer target and the last one renders to the output viewport.
+ * add/remove/clear may be called from any thread; everything else runs on the GL thread.
+ */
+public class FilterChain {
+
+    private final List<Filter> mFilters = new ArrayList<>();
+    private final List<Filter> mRemoved = new ArrayList<>();
+    private boolean mChanged = false;
+
+    private final ShaderCache mShaderCache;
+    private final PingPongFramebuffer mBuffers = new PingPongFramebuffer();
+    private final List<Filter> mInitialized = new ArrayList<>();
+    private Filter[] mActive = new Filter[0];
+    private int mInputWidth;
+    private int mInputHeight;
+    private int mViewportX;
+    private int mViewportY;
+    private int mViewportWidth;
+    private int mViewportHeight;
+
+    public FilterChain(ShaderCache shaderCache) {
+        mShaderCache = shaderCache;
+    }
+
+    public synchronized void add(Filter filter) {
+        mFilters.add(filter);
+        mRemoved.remove(filter);
+        mChanged = true;
+    }
+
+    public synchronized void remove(Filter filter) {
+        if (mFilters.remove(filter)) {
+            mRemoved.add(filter);
+            mChanged = true;
+        }
+    }
+
+    public synchronized void clear() {
+        mRemoved.addAll(mFilters);
+        mFilters.clear();
+        mChanged = true;
+    }
+
+    public void onSurfaceCreated(GlApi gl) {
+        mBuffers.onContextLost();
+        mInitialized.clear();
+    }
+
+    public void setInputSize(int width, int height) {
+        if (width == mInputWidth && height == mInputHeight) {
+            return;
+        }
+        mInputWidth = width;
+        mInputHeight = height;
+        for (Filter filter : mInitialized) {
+            filter.onSizeChanged(width, height);
+        }
+    }
+
+    public void setOutputViewport(int x, int y, int width, int height) {
+        mViewportX = x;
+        mViewportY = y;
+        mViewportWidth = width;
+        mViewportHeight = height;
+    }
+
+    /**
+     * Binds the target the camera image should be drawn into.
+     * @return true if filters are active and drawFilters() must be called after drawing the input.
+     */
+    public boolean beginFrame(GlApi gl) {
+        syncFilters(gl);
+
+        if (mActive.length == 0) {
+            bindOutput(gl);
+            return false;
+        }
+
+        mBuffers.setup(gl, mInputWidth, mInputHeight);
+        mBuffers.reset();
+        mBuffers.bindForWrite(gl);
+        return true;
+    }
+
+    public void drawFilters(GlApi gl) {
+        int input = mBuffers.swap();
+        for (int i = 0; i < mActive.length; i++) {
+            boolean last = i == mActive.length - 1;
+            if (last) {
+                bindOutput(gl);
+            } else {
+                mBuffers.bindForWrite(gl);
+            }
+            mActive[i].draw(gl, input);
+            if (!last) {
+                input = mBuffers.swap();
+            }
+        }
+    }
+
+    public void release(GlApi gl) {
+        synchronized (this) {
+            mRemoved.addAll(mFilters);
+            mFilters.clear();
+            mChanged = true;
+        }
+        syncFilters(gl);
+        mBuffers.release(gl);
+    }
+
+    public int getActiveFilterCount() {
+        return mActive.length;
+    }
+
+    public int getFramebufferAllocationCount() {
+        return mBuffers.getAllocationCount();
+    }
+
+    private void bindOutput(GlApi gl) {
+        gl.glBindFramebuffer(GlApi.GL_FRAMEBUFFER, 0);
+        gl.glViewport(mViewportX, mViewportY, mViewportWidth, mViewportHeight);
+    }
+
+    private void syncFilters(GlApi gl) {
+        synchronized (this) {
+            if (mChanged) {
+                for (Filter filter : mRemoved) {
+                    if (mInitialized.remove(filter)) {
+                        filter.release(gl);
+                    }
+                }
+                mRemoved.clear();
+                mActive = mFilters.toArray(new Filter[mFilters.size()]);
+                mChanged = false;
+            }
+        }
+
+        // 新規追加分とコンテキスト再生成後の全フィルタをここで初期化する
+        if (mInitialized.size() == mActive.length) {
+            return;
+        }
+        for (Filter filter : mActive) {
+            if (!mInitialized.contains(filter)) {
+                filter.onSurfaceCreated(gl, mShaderCache);
+                filter.onSizeChanged(mInputWidth, mInputHeight);
+                mInitialized.add(filter);
+            }
+        }
+    }
+}
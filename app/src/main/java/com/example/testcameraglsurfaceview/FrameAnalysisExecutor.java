@@ -0,0 +1,365 @@
+package com.example.testcameraglsurfaceview;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs every registered FrameAnalyzer on each submitted frame, in parallel on a worker Executor.
+ * An analyzer never has more than one frame in flight: frames arriving while it is busy, frames that
+ * waited in the queue past its latency budget, and results that finished past the budget are skipped
+ * for that analyzer only. Results are merged per frame and delivered in submission order.
+ * submit() must be called from a single thread; the pooled frame is released once every analyzer is done.
+ */
+public class FrameAnalysisExecutor {
+
+    private static final int WORKER_QUEUE_CAPACITY = 64;
+
+    // ownsPoolのときはaddAnalyzer()で初めて作る。thisで保護
+    private Executor mExecutor;
+    private final boolean mOwnsPool;
+    private final Clock mClock;
+    private final Record[] mRecords;
+    private AnalyzerSlot[] mSlots = new AnalyzerSlot[0];
+    private FrameResultListener mListener;
+    private long mNextSequence = 0;
+    private long mNextEmitSequence = 0;
+
+    private long mSubmittedCount = 0;
+    private long mDroppedCount = 0;
+    private long mCompletedCount = 0;
+    private long mSkippedBusyCount = 0;
+    private long mSkippedLateCount = 0;
+    private long mOverBudgetCount = 0;
+    private long mFailedCount = 0;
+
+    private static class Record {
+        final FrameResult result = new FrameResult();
+        AnalyzerTask[] tasks = new AnalyzerTask[0];
+        AnalyzerSlot[] slots;
+        AnalysisFrame frame;
+        FrameBufferPool<AnalysisFrame> pool;
+        long sequence;
+        int pending;
+        boolean inUse;
+        boolean done;
+    }
+
+    private static class AnalyzerSlot {
+        final FrameAnalyzer analyzer;
+        final long budget;
+        AnalyzerTask task;
+        boolean busy;
+
+        AnalyzerSlot(FrameAnalyzer analyzer) {
+            this.analyzer = analyzer;
+            this.budget = analyzer.getLatencyBudgetNano();
+        }
+    }
+
+    class AnalyzerTask implements Runnable {
+        private final AnalyzerSlot mSlot;
+        private final int mIndex;
+        private Record mRecord;
+
+        AnalyzerTask(AnalyzerSlot slot, int index) {
+            mSlot = slot;
+            mIndex = index;
+        }
+
+        FrameAnalyzer getAnalyzer() {
+            return mSlot.analyzer;
+        }
+
+        long getDeadline() {
+            return mRecord.result.mArrivalTime + mSlot.budget;
+        }
+
+        @Override
+        public void run() {
+            Record record = mRecord;
+            long deadline = getDeadline();
+            Object result = null;
+            int status;
+            if (mClock.nanoTime() > deadline) {
+                status = FrameResult.STATUS_SKIPPED_LATE;
+            } else {
+                try {
+                    result = mSlot.analyzer.analyze(record.frame);
+                    status = mClock.nanoTime() > deadline ? FrameResult.STATUS_OVER_BUDGET : FrameResult.STATUS_COMPLETED;
+                } catch (RuntimeException e) {
+                    status = FrameResult.STATUS_FAILED;
+                }
+            }
+            finishTask(mSlot, mIndex, record, status, status == FrameResult.STATUS_COMPLETED ? result : null);
+        }
+    }
+
+    /** @param maxFramesInFlight frames submitted while this many are still being analyzed are dropped */
+    public FrameAnalysisExecutor(Executor executor, Clock clock, int maxFramesInFlight) {
+        this(executor, false, clock, maxFramesInFlight);
+    }
+
+    /**
+     * Runs the analyzers on a newWorkerPool() of its own, created when the first analyzer is added,
+     * so that no threads exist while nothing is analyzed. shutdown() stops it.
+     */
+    public FrameAnalysisExecutor(Clock clock, int maxFramesInFlight) {
+        this(null, true, clock, maxFramesInFlight);
+    }
+
+    private FrameAnalysisExecutor(Executor executor, boolean ownsPool, Clock clock, int maxFramesInFlight) {
+        mExecutor = executor;
+        mOwnsPool = ownsPool;
+        mClock = clock;
+        mRecords = new Record[maxFramesInFlight];
+        for (int i = 0; i < maxFramesInFlight; i++) {
+            mRecords[i] = new Record();
+        }
+    }
+
+    /** Bounded worker pool for the constructor; threads defaults to the number of cores. */
+    public static ThreadPoolExecutor newWorkerPool(int threads) {
+        final AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(WORKER_QUEUE_CAPACITY), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "FrameAnalysisWorker-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        return executor;
+    }
+
+    public static ThreadPoolExecutor newWorkerPool() {
+        return newWorkerPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    public synchronized void addAnalyzer(FrameAnalyzer analyzer) {
+        if (mOwnsPool && mExecutor == null) {
+            mExecutor = newWorkerPool();
+        }
+        AnalyzerSlot[] slots = new AnalyzerSlot[mSlots.length + 1];
+        System.arraycopy(mSlots, 0, slots, 0, mSlots.length);
+        slots[mSlots.length] = new AnalyzerSlot(analyzer);
+        mSlots = rebuildTasks(slots);
+    }
+
+    public synchronized void removeAnalyzer(FrameAnalyzer analyzer) {
+        for (int i = 0; i < mSlots.length; i++) {
+            if (mSlots[i].analyzer == analyzer) {
+                AnalyzerSlot[] slots = new AnalyzerSlot[mSlots.length - 1];
+                System.arraycopy(mSlots, 0, slots, 0, i);
+                System.arraycopy(mSlots, i + 1, slots, i, slots.length - i);
+                mSlots = rebuildTasks(slots);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops the worker pool this executor created, if any, once the frames already queued are analyzed.
+     * Frames submitted afterwards are skipped; an analyzer added afterwards starts a new pool.
+     */
+    public void shutdown() {
+        Executor executor;
+        synchronized (this) {
+            if (!mOwnsPool) {
+                return;
+            }
+            executor = mExecutor;
+            mExecutor = null;
+        }
+        if (executor != null) {
+            ((ThreadPoolExecutor) executor).shutdown();
+        }
+    }
+
+    public synchronized int getAnalyzerCount() {
+        return mSlots.length;
+    }
+
+    public synchronized void setFrameResultListener(FrameResultListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Hands frame to every idle analyzer. The frame is released to pool when all of them have finished,
+     * or immediately if too many frames are already in flight.
+     * @return false if the frame was dropped
+     */
+    public boolean submit(AnalysisFrame frame, FrameBufferPool<AnalysisFrame> pool) {
+        Record record;
+        Executor executor;
+        synchronized (this) {
+            executor = mExecutor;
+            record = obtainRecord();
+            if (record == null) {
+                mDroppedCount++;
+                pool.release(frame);
+                return false;
+            }
+            mSubmittedCount++;
+
+            AnalyzerSlot[] slots = mSlots;
+            record.inUse = true;
+            record.done = false;
+            record.frame = frame;
+            record.pool = pool;
+            record.slots = slots;
+            record.sequence = mNextSequence++;
+            record.pending = 0;
+            record.result.reset(frame.getTimestamp(), mClock.nanoTime(), slots.length);
+            if (record.tasks.length < slots.length) {
+                record.tasks = new AnalyzerTask[slots.length];
+            }
+            for (int i = 0; i < slots.length; i++) {
+                AnalyzerSlot slot = slots[i];
+                record.result.mAnalyzers[i] = slot.analyzer;
+                if (slot.busy) {
+                    record.tasks[i] = null;
+                    record.result.mStatuses[i] = FrameResult.STATUS_SKIPPED_BUSY;
+                    mSkippedBusyCount++;
+                } else {
+                    slot.busy = true;
+                    slot.task.mRecord = record;
+                    record.tasks[i] = slot.task;
+                    record.pending++;
+                }
+            }
+            if (record.pending == 0) {
+                complete(record);
+                return true;
+            }
+        }
+
+        // ロック外で投入する。直接実行するExecutorでも同じ順序で動く
+        AnalyzerSlot[] slots = record.slots;
+        AnalyzerTask[] tasks = record.tasks;
+        int count = slots.length;
+        for (int i = 0; i < count; i++) {
+            AnalyzerTask task = tasks[i];
+            if (task == null) {
+                continue;
+            }
+            try {
+                if (executor == null) {
+                    throw new RejectedExecutionException("shut down");
+                }
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                finishTask(slots[i], i, record, FrameResult.STATUS_SKIPPED_LATE, null);
+            }
+        }
+        return true;
+    }
+
+    public synchronized long getSubmittedCount() {
+        return mSubmittedCount;
+    }
+
+    public synchronized long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    public synchronized long getCompletedCount() {
+        return mCompletedCount;
+    }
+
+    public synchronized long getSkippedBusyCount() {
+        return mSkippedBusyCount;
+    }
+
+    public synchronized long getSkippedLateCount() {
+        return mSkippedLateCount;
+    }
+
+    public synchronized long getOverBudgetCount() {
+        return mOverBudgetCount;
+    }
+
+    public synchronized long getFailedCount() {
+        return mFailedCount;
+    }
+
+    public synchronized int getFramesInFlight() {
+        int count = 0;
+        for (Record record : mRecords) {
+            if (record.inUse) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private AnalyzerSlot[] rebuildTasks(AnalyzerSlot[] slots) {
+        // 処理中のタスクは投入時のRecordとindexを保持しているので、位置が変わったスロットだけ作り直す
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i].task == null || slots[i].task.mIndex != i) {
+                slots[i].task = new AnalyzerTask(slots[i], i);
+            }
+        }
+        return slots;
+    }
+
+    private Record obtainRecord() {
+        for (Record record : mRecords) {
+            if (!record.inUse) {
+                return record;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void finishTask(AnalyzerSlot slot, int index, Record record, int status, Object result) {
+        record.result.mStatuses[index] = status;
+        record.result.mResults[index] = result;
+        switch (status) {
+            case FrameResult.STATUS_COMPLETED:
+                mCompletedCount++;
+                break;
+            case FrameResult.STATUS_SKIPPED_LATE:
+                mSkippedLateCount++;
+                break;
+            case FrameResult.STATUS_OVER_BUDGET:
+                mOverBudgetCount++;
+                break;
+            default:
+                mFailedCount++;
+                break;
+        }
+        slot.busy = false;
+        if (--record.pending == 0) {
+            complete(record);
+        }
+    }
+
+    private void complete(Record record) {
+        record.pool.release(record.frame);
+        record.frame = null;
+        record.pool = null;
+        record.done = true;
+
+        boolean emitted = true;
+        while (emitted) {
+            emitted = false;
+            for (Record candidate : mRecords) {
+                if (candidate.inUse && candidate.done && candidate.sequence == mNextEmitSequence) {
+                    if (mListener != null) {
+                        mListener.onFrameResult(candidate.result);
+                    }
+                    candidate.inUse = false;
+                    candidate.slots = null;
+                    mNextEmitSequence++;
+                    emitted = true;
+                }
+            }
+        }
+    }
+}
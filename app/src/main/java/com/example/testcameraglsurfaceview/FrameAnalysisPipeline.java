@@ -0,0 +1,139 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Hands camera frames from the producer (ImageReader thread) to a FrameAnalysisExecutor.
+ * Frames are copied into a FrameBufferPool so the camera's Image can be closed immediately, and
+ * a LatestFrameSlot between producer and dispatch thread drops stale frames when analysis falls behind.
+ */
+public class FrameAnalysisPipeline {
+
+    private final FrameBufferPool<AnalysisFrame> mPool;
+    private final LatestFrameSlot mSlot = new LatestFrameSlot();
+    private final FrameAnalysisExecutor mExecutor;
+    private Thread mThread;
+
+    private volatile long mPublishedCount = 0;
+    private volatile long mDroppedCount = 0;
+    private volatile long mAnalyzedCount = 0;
+
+    /**
+     * @param poolSize frames in flight in the executor plus one being filled and one waiting;
+     *                 frames are dropped while the pool is empty
+     */
+    public FrameAnalysisPipeline(int poolSize, FrameAnalysisExecutor executor) {
+        mPool = AnalysisFrame.newPool(poolSize);
+        mExecutor = executor;
+    }
+
+    public void addAnalyzer(FrameAnalyzer analyzer) {
+        mExecutor.addAnalyzer(analyzer);
+    }
+
+    public void removeAnalyzer(FrameAnalyzer analyzer) {
+        mExecutor.removeAnalyzer(analyzer);
+    }
+
+    public boolean hasAnalyzers() {
+        return mExecutor.getAnalyzerCount() > 0;
+    }
+
+    public FrameAnalysisExecutor getExecutor() {
+        return mExecutor;
+    }
+
+    /** Producer side: @return an empty frame to fill, or null if the pool is exhausted (the camera frame is dropped). */
+    public AnalysisFrame obtainFrame(int capacityBytes) {
+        AnalysisFrame frame = mPool.acquire(capacityBytes);
+        if (frame == null) {
+            mDroppedCount++;
+        }
+        return frame;
+    }
+
+    /** Producer side: returns a frame obtained with obtainFrame() that will not be published. */
+    public void cancel(AnalysisFrame frame) {
+        mPool.release(frame);
+    }
+
+    /** Producer side: queues a filled frame, dropping the previous one if it has not been picked up yet. */
+    public void publish(AnalysisFrame frame) {
+        mPublishedCount++;
+        AnalysisFrame displaced = mSlot.offer(frame);
+        if (displaced != null) {
+            mDroppedCount++;
+            mPool.release(displaced);
+        }
+    }
+
+    /** Consumer side: hands the waiting frame, if any, to the executor from the calling thread. */
+    public boolean dispatchPending() {
+        AnalysisFrame frame = mSlot.poll();
+        if (frame == null) {
+            return false;
+        }
+        dispatch(frame);
+        return true;
+    }
+
+    public synchronized void start() {
+        if (mThread != null) {
+            return;
+        }
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        dispatch(mSlot.take());
+                    }
+                } catch (InterruptedException e) {
+                    // stop() requested
+                }
+            }
+        }, "FrameAnalysis");
+        mThread.start();
+    }
+
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            thread = mThread;
+            mThread = null;
+        }
+        if (thread == null) {
+            return;
+        }
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        AnalysisFrame frame = mSlot.poll();
+        if (frame != null) {
+            mPool.release(frame);
+        }
+    }
+
+    public long getPublishedCount() {
+        return mPublishedCount;
+    }
+
+    public long getDroppedCount() {
+        return mDroppedCount + mExecutor.getDroppedCount();
+    }
+
+    public long getAnalyzedCount() {
+        return mAnalyzedCount;
+    }
+
+    public int getFreeBufferCount() {
+        return mPool.getFreeCount();
+    }
+
+    private void dispatch(AnalysisFrame frame) {
+        if (mExecutor.submit(frame, mPool)) {
+            mAnalyzedCount++;
+        }
+    }
+}
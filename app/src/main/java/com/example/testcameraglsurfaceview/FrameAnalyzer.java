@@ -0,0 +1,14 @@
+package com.example.testcameraglsurfaceview;
+
+public interface FrameAnalyzer {
+
+    /**
+     * Called on a FrameAnalysisExecutor worker; never concurrently for the same analyzer.
+     * The frame is only valid until this method returns.
+     * @return result merged into the FrameResult for this frame, may be null
+     */
+    Object analyze(AnalysisFrame frame);
+
+    /** Maximum time from frame arrival to the end of analyze(); later frames are skipped for this analyzer. */
+    long getLatencyBudgetNano();
+}
@@ -0,0 +1,57 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Fixed set of frames backed by direct buffers. Buffers are allocated on first use and only grow
+ * when a bigger frame is requested, so acquire/release do not allocate once frame sizes are stable.
+ */
+public class FrameBufferPool<T extends ResizableDirectBuffer> {
+
+    private final T[] mFrames;
+    private final T[] mFree;
+    private int mFreeCount;
+
+    /** @param frames the pooled frames, all free; the pool keeps the array */
+    public FrameBufferPool(T[] frames) {
+        if (frames.length < 1) {
+            throw new IllegalArgumentException("size must be positive: " + frames.length);
+        }
+        mFrames = frames;
+        mFree = frames.clone();
+        mFreeCount = frames.length;
+    }
+
+    /** @return a frame with at least capacityBytes, or null if every frame is in use */
+    public synchronized T acquire(int capacityBytes) {
+        if (mFreeCount == 0) {
+            return null;
+        }
+        T frame = mFree[--mFreeCount];
+        mFree[mFreeCount] = null;
+        frame.ensureCapacity(capacityBytes);
+        return frame;
+    }
+
+    public synchronized void release(T frame) {
+        if (mFreeCount == mFree.length) {
+            throw new IllegalStateException("Frame released twice");
+        }
+        mFree[mFreeCount++] = frame;
+    }
+
+    public synchronized int getFreeCount() {
+        return mFreeCount;
+    }
+
+    public int getSize() {
+        return mFrames.length;
+    }
+
+    /** Direct buffers allocated so far, over all frames. */
+    public synchronized int getAllocationCount() {
+        int count = 0;
+        for (T frame : mFrames) {
+            count += frame.getAllocationCount();
+        }
+        return count;
+    }
+}
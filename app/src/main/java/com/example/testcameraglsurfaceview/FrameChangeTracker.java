@@ -0,0 +1,76 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Decides, from FrameSource.getFrameSequence(), how much of a frame has to be drawn. A new camera
+ * frame is latched and drawn. Without one, the previous image is drawn again only if the geometry
+ * changed or the swap does not preserve the back buffer; otherwise the whole draw is skipped and the
+ * preserved buffer is shown again. Pure bookkeeping, no GL; GL thread only.
+ */
+public class FrameChangeTracker {
+
+    /** Nothing changed and the back buffer still holds the last frame. */
+    public static final int SKIP = 0;
+    /** No new camera frame, but the last one must be drawn again. */
+    public static final int REDRAW = 1;
+    /** Latch the new camera frame and draw it. */
+    public static final int LATCH = 2;
+
+    private static final long NO_FRAME = -1;
+
+    private boolean mSwapPreserved = false;
+    private boolean mInvalidated = true;
+    private long mLastSequence = NO_FRAME;
+    private long mLatchCount = 0;
+    private long mRedrawCount = 0;
+    private long mSkipCount = 0;
+
+    /** Whether eglSwapBuffers keeps the back buffer (EGL_BUFFER_PRESERVED), so a skipped draw shows the last frame. */
+    public void setSwapPreserved(boolean preserved) {
+        mSwapPreserved = preserved;
+        mInvalidated = true;
+    }
+
+    public boolean isSwapPreserved() {
+        return mSwapPreserved;
+    }
+
+    /** The image must be drawn again even without a new frame, e.g. after a surface or layout change. */
+    public void invalidate() {
+        mInvalidated = true;
+    }
+
+    /** The texture has no image yet, e.g. in a new context, so the next frame latches whatever is there. */
+    public void reset() {
+        mLastSequence = NO_FRAME;
+        mInvalidated = true;
+    }
+
+    /** @return SKIP, REDRAW or LATCH; the caller must draw accordingly. */
+    public int onDrawFrame(long frameSequence) {
+        if (frameSequence != mLastSequence) {
+            mLastSequence = frameSequence;
+            mInvalidated = false;
+            mLatchCount++;
+            return LATCH;
+        }
+        if (mInvalidated || !mSwapPreserved) {
+            mInvalidated = false;
+            mRedrawCount++;
+            return REDRAW;
+        }
+        mSkipCount++;
+        return SKIP;
+    }
+
+    public long getLatchCount() {
+        return mLatchCount;
+    }
+
+    public long getRedrawCount() {
+        return mRedrawCount;
+    }
+
+    public long getSkipCount() {
+        return mSkipCount;
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Per-frame timing recorder for the GL thread. Keeps the most recent samples of each metric in a
+ * ring buffer and every sample since reset() in a LatencyHistogram; recording never allocates.
+ * Snapshots can be taken from any thread.
+ */
+public class FrameMetricsRecorder {
+
+    public static final int METRIC_DRAW_TIME = 0;
+    public static final int METRIC_LATENCY = 1;
+    public static final int METRIC_FRAME_INTERVAL = 2;
+    /** SENSOR_EXPOSURE_TIME of drawn frames whose capture result was found. */
+    public static final int METRIC_EXPOSURE_TIME = 3;
+    /** SENSOR_FRAME_DURATION of drawn frames whose capture result was found. */
+    public static final int METRIC_SENSOR_FRAME_DURATION = 4;
+    public static final int METRIC_COUNT = 5;
+
+    /* カメラのタイムスタンプがMONOTONIC以外の時刻源の場合は遅延として扱わない */
+    private static final long MAX_LATENCY_NANO = 1000000000L;
+
+    private final LatencyHistogram[] mHistograms = new LatencyHistogram[METRIC_COUNT];
+    private final long[][] mRings;
+    private final int[] mRingCounts = new int[METRIC_COUNT];
+    private final int[] mRingHeads = new int[METRIC_COUNT];
+
+    private volatile boolean mEnabled;
+    private long mTargetFrameIntervalNano;
+    private long mLastDrawEndNano = 0;
+    private long mFrameCount = 0;
+    private long mDroppedFrameCount = 0;
+
+    /**
+     * @param ringCapacity            recent samples kept per metric
+     * @param targetFrameIntervalNano expected interval between drawn frames; longer gaps count as dropped frames
+     */
+    public FrameMetricsRecorder(int ringCapacity, long targetFrameIntervalNano, boolean enabled) {
+        mRings = new long[METRIC_COUNT][ringCapacity];
+        for (int i = 0; i < METRIC_COUNT; i++) {
+            mHistograms[i] = new LatencyHistogram();
+        }
+        mTargetFrameIntervalNano = targetFrameIntervalNano;
+        mEnabled = enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    public synchronized void setTargetFrameInterval(long intervalNano) {
+        mTargetFrameIntervalNano = intervalNano;
+    }
+
+    /**
+     * @param cameraTimestampNano SurfaceTexture.getTimestamp() of the drawn image, or 0 if unknown
+     */
+    public synchronized void recordFrame(long drawStartNano, long drawEndNano, long cameraTimestampNano) {
+        if (!mEnabled) {
+            return;
+        }
+        mFrameCount++;
+        add(METRIC_DRAW_TIME, drawEndNano - drawStartNano);
+
+        long latency = drawEndNano - cameraTimestampNano;
+        if (cameraTimestampNano > 0 && latency >= 0 && latency <= MAX_LATENCY_NANO) {
+            add(METRIC_LATENCY, latency);
+        }
+
+        if (mLastDrawEndNano != 0) {
+            long interval = drawEndNano - mLastDrawEndNano;
+            add(METRIC_FRAME_INTERVAL, interval);
+            if (mTargetFrameIntervalNano > 0) {
+                long missed = (interval + mTargetFrameIntervalNano / 2) / mTargetFrameIntervalNano - 1;
+                if (missed > 0) {
+                    mDroppedFrameCount += missed;
+                }
+            }
+        }
+        mLastDrawEndNano = drawEndNano;
+    }
+
+    /** Capture result of a drawn frame; it may belong to an earlier frame than the last recordFrame(). */
+    public synchronized void recordCaptureMetadata(CaptureMetadata metadata) {
+        if (!mEnabled) {
+            return;
+        }
+        if (metadata.exposureTimeNano > 0) {
+            add(METRIC_EXPOSURE_TIME, metadata.exposureTimeNano);
+        }
+        if (metadata.frameDurationNano > 0) {
+            add(METRIC_SENSOR_FRAME_DURATION, metadata.frameDurationNano);
+        }
+    }
+
+    /** Forgets the previous draw, so a pause is not counted as dropped frames. */
+    public synchronized void markDiscontinuity() {
+        mLastDrawEndNano = 0;
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < METRIC_COUNT; i++) {
+            mHistograms[i].reset();
+            mRingCounts[i] = 0;
+            mRingHeads[i] = 0;
+        }
+        mLastDrawEndNano = 0;
+        mFrameCount = 0;
+        mDroppedFrameCount = 0;
+    }
+
+    public synchronized void getSnapshot(FrameMetricsSnapshot out) {
+        for (int i = 0; i < METRIC_COUNT; i++) {
+            out.getStats(i).set(mHistograms[i]);
+        }
+        out.frameCount = mFrameCount;
+        out.droppedFrameCount = mDroppedFrameCount;
+    }
+
+    /**
+     * Copies the most recent samples of a metric, oldest first.
+     * @return number of samples copied
+     */
+    public synchronized int copyRecent(int metric, long[] out) {
+        long[] ring = mRings[metric];
+        int count = Math.min(mRingCounts[metric], out.length);
+        int start = mRingHeads[metric] - count;
+        for (int i = 0; i < count; i++) {
+            out[i] = ring[(start + i + ring.length) % ring.length];
+        }
+        return count;
+    }
+
+    public synchronized long getFrameCount() {
+        return mFrameCount;
+    }
+
+    public synchronized long getDroppedFrameCount() {
+        return mDroppedFrameCount;
+    }
+
+    private void add(int metric, long value) {
+        mHistograms[metric].record(value);
+        long[] ring = mRings[metric];
+        if (ring.length == 0) {
+            return;
+        }
+        ring[mRingHeads[metric]] = value;
+        mRingHeads[metric] = (mRingHeads[metric] + 1) % ring.length;
+        if (mRingCounts[metric] < ring.length) {
+            mRingCounts[metric]++;
+        }
+    }
+}
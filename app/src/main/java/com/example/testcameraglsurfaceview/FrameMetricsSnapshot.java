@@ -0,0 +1,49 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Copy of FrameMetricsRecorder's statistics at one point in time. Reused by the caller.
+ */
+public class FrameMetricsSnapshot {
+
+    public static class Stats {
+        public long count;
+        public long min;
+        public long mean;
+        public long p50;
+        public long p90;
+        public long p99;
+        public long max;
+
+        void set(LatencyHistogram histogram) {
+            count = histogram.getCount();
+            min = histogram.getMin();
+            mean = histogram.getMean();
+            p50 = histogram.getValueAtPercentile(50);
+            p90 = histogram.getValueAtPercentile(90);
+            p99 = histogram.getValueAtPercentile(99);
+            max = histogram.getMax();
+        }
+    }
+
+    private final Stats[] mStats = new Stats[FrameMetricsRecorder.METRIC_COUNT];
+
+    public long frameCount;
+    public long droppedFrameCount;
+
+    public FrameMetricsSnapshot() {
+        for (int i = 0; i < mStats.length; i++) {
+            mStats[i] = new Stats();
+        }
+    }
+
+    /** @param metric one of FrameMetricsRecorder.METRIC_* ; values are in nanoseconds */
+    public Stats getStats(int metric) {
+        return mStats[metric];
+    }
+
+    /** Frames per second from the mean frame interval. */
+    public double getFps() {
+        long interval = mStats[FrameMetricsRecorder.METRIC_FRAME_INTERVAL].mean;
+        return interval == 0 ? 0 : 1000000000.0 / interval;
+    }
+}
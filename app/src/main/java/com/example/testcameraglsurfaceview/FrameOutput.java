@@ -0,0 +1,16 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Second target CameraRenderer draws each frame into, such as the video recorder's encoder surface.
+ */
+public interface FrameOutput {
+
+    /** @return true if the output's surface is now current and the frame must be drawn, then endFrame() called */
+    boolean beginFrame(long cameraTimestampNano);
+
+    void endFrame();
+
+    int getWidth();
+
+    int getHeight();
+}
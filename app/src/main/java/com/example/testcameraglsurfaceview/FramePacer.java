@@ -0,0 +1,27 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Decides when a new camera frame should trigger a render.
+ * onFrameAvailable() may be called from any thread, onDrawStarted() from the GL thread.
+ */
+public interface FramePacer {
+
+    int UNLIMITED_FPS = 0;
+
+    /** @return true if the caller should request a render for the frame that just arrived. */
+    boolean onFrameAvailable();
+
+    void onDrawStarted();
+
+    void setTargetFps(int fps);
+
+    int getTargetFps();
+
+    long getArrivedFrameCount();
+
+    long getRequestedFrameCount();
+
+    long getCoalescedFrameCount();
+
+    long getSkippedFrameCount();
+}
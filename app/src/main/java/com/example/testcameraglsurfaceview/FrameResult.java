@@ -0,0 +1,64 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Per-frame results of every analyzer, delivered in frame order.
+ * Instances are reused, so they are only valid during FrameResultListener.onFrameResult().
+ */
+public class FrameResult {
+
+    public static final int STATUS_COMPLETED = 0;
+    /** The analyzer was still working on an earlier frame. */
+    public static final int STATUS_SKIPPED_BUSY = 1;
+    /** The frame waited in the worker queue past the analyzer's budget. */
+    public static final int STATUS_SKIPPED_LATE = 2;
+    /** analyze() ran but finished past the budget, so its result was discarded. */
+    public static final int STATUS_OVER_BUDGET = 3;
+    public static final int STATUS_FAILED = 4;
+
+    long mTimestamp;
+    long mArrivalTime;
+    int mAnalyzerCount;
+    FrameAnalyzer[] mAnalyzers = new FrameAnalyzer[0];
+    Object[] mResults = new Object[0];
+    int[] mStatuses = new int[0];
+
+    void reset(long timestamp, long arrivalTime, int analyzerCount) {
+        mTimestamp = timestamp;
+        mArrivalTime = arrivalTime;
+        if (mResults.length < analyzerCount) {
+            mAnalyzers = new FrameAnalyzer[analyzerCount];
+            mResults = new Object[analyzerCount];
+            mStatuses = new int[analyzerCount];
+        }
+        for (int i = 0; i < mAnalyzerCount; i++) {
+            mAnalyzers[i] = null;
+            mResults[i] = null;
+        }
+        mAnalyzerCount = analyzerCount;
+    }
+
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    public long getArrivalTime() {
+        return mArrivalTime;
+    }
+
+    public int getAnalyzerCount() {
+        return mAnalyzerCount;
+    }
+
+    /** @param analyzer index in registration order at the time the frame arrived */
+    public FrameAnalyzer getAnalyzer(int analyzer) {
+        return mAnalyzers[analyzer];
+    }
+
+    public Object getResult(int analyzer) {
+        return mResults[analyzer];
+    }
+
+    public int getStatus(int analyzer) {
+        return mStatuses[analyzer];
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.testcameraglsurfaceview;
+
+public interface FrameResultListener {
+
+    /** Called on a worker thread in frame order, with the executor's lock held; keep it short. */
+    void onFrameResult(FrameResult result);
+}
@@ -0,0 +1,44 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Images drawn by CameraRenderer: the camera's SurfaceTexture on a device, replayed frames in the
+ * headless harness. Every method runs on the GL thread.
+ */
+public interface FrameSource {
+
+    /** Whether the buffer size is known and frames can be drawn. */
+    boolean isReady();
+
+    /** GL_TEXTURE_EXTERNAL_OES for SurfaceTexture sources, GL_TEXTURE_2D for uploaded images. */
+    int getTextureTarget();
+
+    /** Makes the images available as textureName in the current context. */
+    void attachToGlContext(int textureName);
+
+    /** Called while the context is still current, before it is destroyed. */
+    void detachFromGlContext();
+
+    /**
+     * Number of images produced so far; may be read from the GL thread while another thread bumps it.
+     * An unchanged value means updateTexture() would latch nothing new.
+     */
+    long getFrameSequence();
+
+    /** Latches the newest image into the texture. */
+    void updateTexture(GlApi gl);
+
+    /** Timestamp of the image latched by the last updateTexture(), in nanoseconds, or 0. */
+    long getTimestamp();
+
+    /**
+     * SurfaceTexture.getTransformMatrix() of the image latched by the last updateTexture(), 16 floats
+     * column-major; TextureTransform.DEFAULT_MATRIX for textures uploaded top row first.
+     */
+    void getTransformMatrix(float[] out);
+
+    /** Rotation from the buffer to the current display orientation; read when the renderer reconfigures. */
+    CameraRotation getRotation();
+
+    /** Size of the image buffer, in sensor orientation. */
+    Resolution getBufferSize();
+}
@@ -0,0 +1,137 @@
+package com.example.testcameraglsurfaceview;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Luminance, a three-bin histogram and motion of one frame, decoded from the RGBA8 tile grid the
+ * statistics reduction reads back. Per tile R is the mean luma, G the mean absolute luma difference
+ * to the previous frame, B the fraction of samples darker than DARK_LEVEL and A the fraction brighter
+ * than BRIGHT_LEVEL. Tiles are in buffer orientation, row 0 at the bottom as glReadPixels returns them.
+ * Not thread-safe; reuse one instance per thread.
+ */
+public class FrameStatistics {
+
+    public static final float DARK_LEVEL = 0.25f;
+    public static final float BRIGHT_LEVEL = 0.75f;
+
+    private int mGridWidth;
+    private int mGridHeight;
+    private float[] mLuma = new float[0];
+    private float[] mMotion = new float[0];
+    private float[] mDark = new float[0];
+    private float[] mBright = new float[0];
+    private float mMeanLuma;
+    private float mMeanMotion;
+    private float mDarkFraction;
+    private float mBrightFraction;
+    private long mTimestamp;
+
+    /** Reads gridWidth * gridHeight RGBA8 texels from the buffer's position on without moving it. */
+    public void decode(ByteBuffer rgba, int gridWidth, int gridHeight, long timestamp) {
+        int tiles = gridWidth * gridHeight;
+        if (rgba.remaining() < tiles * 4) {
+            throw new IllegalArgumentException("Need " + tiles * 4 + " bytes, got " + rgba.remaining());
+        }
+        ensureCapacity(tiles);
+        mGridWidth = gridWidth;
+        mGridHeight = gridHeight;
+        mTimestamp = timestamp;
+
+        int base = rgba.position();
+        float luma = 0;
+        float motion = 0;
+        float dark = 0;
+        float bright = 0;
+        for (int i = 0; i < tiles; i++) {
+            int offset = base + i * 4;
+            mLuma[i] = (rgba.get(offset) & 0xff) / 255.0f;
+            mMotion[i] = (rgba.get(offset + 1) & 0xff) / 255.0f;
+            mDark[i] = (rgba.get(offset + 2) & 0xff) / 255.0f;
+            mBright[i] = (rgba.get(offset + 3) & 0xff) / 255.0f;
+            luma += mLuma[i];
+            motion += mMotion[i];
+            dark += mDark[i];
+            bright += mBright[i];
+        }
+        // タイルはすべて同じ画素数なので平均の平均が全体の平均になる
+        mMeanLuma = luma / tiles;
+        mMeanMotion = motion / tiles;
+        mDarkFraction = dark / tiles;
+        mBrightFraction = bright / tiles;
+    }
+
+    public void copyFrom(FrameStatistics other) {
+        int tiles = other.mGridWidth * other.mGridHeight;
+        ensureCapacity(tiles);
+        mGridWidth = other.mGridWidth;
+        mGridHeight = other.mGridHeight;
+        System.arraycopy(other.mLuma, 0, mLuma, 0, tiles);
+        System.arraycopy(other.mMotion, 0, mMotion, 0, tiles);
+        System.arraycopy(other.mDark, 0, mDark, 0, tiles);
+        System.arraycopy(other.mBright, 0, mBright, 0, tiles);
+        mMeanLuma = other.mMeanLuma;
+        mMeanMotion = other.mMeanMotion;
+        mDarkFraction = other.mDarkFraction;
+        mBrightFraction = other.mBrightFraction;
+        mTimestamp = other.mTimestamp;
+    }
+
+    private void ensureCapacity(int tiles) {
+        if (mLuma.length < tiles) {
+            mLuma = new float[tiles];
+            mMotion = new float[tiles];
+            mDark = new float[tiles];
+            mBright = new float[tiles];
+        }
+    }
+
+    public int getGridWidth() {
+        return mGridWidth;
+    }
+
+    public int getGridHeight() {
+        return mGridHeight;
+    }
+
+    /** Camera timestamp of the frame. */
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    public float getMeanLuma() {
+        return mMeanLuma;
+    }
+
+    /** Mean absolute luma change since the previous frame, 0 for the first frame. */
+    public float getMotion() {
+        return mMeanMotion;
+    }
+
+    public float getDarkFraction() {
+        return mDarkFraction;
+    }
+
+    public float getBrightFraction() {
+        return mBrightFraction;
+    }
+
+    public float getMidFraction() {
+        return Math.max(0, 1 - mDarkFraction - mBrightFraction);
+    }
+
+    public float getTileLuma(int x, int y) {
+        return mLuma[y * mGridWidth + x];
+    }
+
+    public float getTileMotion(int x, int y) {
+        return mMotion[y * mGridWidth + x];
+    }
+
+    public float getTileDarkFraction(int x, int y) {
+        return mDark[y * mGridWidth + x];
+    }
+
+    public float getTileBrightFraction(int x, int y) {
+        return mBright[y * mGridWidth + x];
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.testcameraglsurfaceview;
+
+import java.nio.Buffer;
+
+/**
+ * Thin mirror of the GLES20 calls the renderer uses, so GL-side logic can run against a fake on the JVM.
+ * Method names and arguments follow android.opengl.GLES20.
+ */
+public interface GlApi {
+
+    int GL_NO_ERROR = 0;
+    int GL_TRUE = 1;
+    int GL_FALSE = 0;
+    int GL_FLOAT = 0x1406;
+    int GL_UNSIGNED_BYTE = 0x1401;
+    int GL_RGBA = 0x1908;
+    int GL_TRIANGLE_STRIP = 0x0005;
+    int GL_DEPTH_BUFFER_BIT = 0x00000100;
+    int GL_COLOR_BUFFER_BIT = 0x00004000;
+    int GL_VERTEX_SHADER = 0x8B31;
+    int GL_FRAGMENT_SHADER = 0x8B30;
+    int GL_COMPILE_STATUS = 0x8B81;
+    int GL_LINK_STATUS = 0x8B82;
+    int GL_TEXTURE_2D = 0x0DE1;
+    int GL_TEXTURE_EXTERNAL_OES = 0x8D65;
+    int GL_TEXTURE0 = 0x84C0;
+    int GL_TEXTURE1 = 0x84C1;
+    int GL_TEXTURE_MIN_FILTER = 0x2801;
+    int GL_TEXTURE_MAG_FILTER = 0x2800;
+    int GL_TEXTURE_WRAP_S = 0x2802;
+    int GL_TEXTURE_WRAP_T = 0x2803;
+    int GL_LINEAR = 0x2601;
+    int GL_CLAMP_TO_EDGE = 0x812F;
+    int GL_FRAMEBUFFER = 0x8D40;
+    int GL_COLOR_ATTACHMENT0 = 0x8CE0;
+    int GL_FRAMEBUFFER_COMPLETE = 0x8CD5;
+    int GL_ARRAY_BUFFER = 0x8892;
+    int GL_STATIC_DRAW = 0x88E4;
+    int GL_DYNAMIC_DRAW = 0x88E8;
+    int GL_VENDOR = 0x1F00;
+    int GL_RENDERER = 0x1F01;
+    int GL_VERSION = 0x1F02;
+    /* ES3 only */
+    int GL_PROGRAM_BINARY_LENGTH = 0x8741;
+    int GL_NUM_PROGRAM_BINARY_FORMATS = 0x87FE;
+    int GL_PIXEL_PACK_BUFFER = 0x88EB;
+    int GL_STREAM_READ = 0x88E1;
+    int GL_MAP_READ_BIT = 0x0001;
+    int GL_SYNC_GPU_COMMANDS_COMPLETE = 0x9117;
+    int GL_ALREADY_SIGNALED = 0x911A;
+    int GL_TIMEOUT_EXPIRED = 0x911B;
+    int GL_CONDITION_SATISFIED = 0x911C;
+    int GL_WAIT_FAILED = 0x911D;
+
+    /**
+     * Not a GL call: client version of the current context as EglApi created it, 3 or 2. Calls marked
+     * ES3 only are undefined on a version 2 context, whatever GL_VERSION says.
+     */
+    int getClientVersion();
+
+    void glActiveTexture(int texture);
+
+    void glBindTexture(int target, int texture);
+
+    void glGenTextures(int n, int[] textures, int offset);
+
+    void glDeleteTextures(int n, int[] textures, int offset);
+
+    void glTexParameteri(int target, int pname, int param);
+
+    void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels);
+
+    void glGenFramebuffers(int n, int[] framebuffers, int offset);
+
+    void glDeleteFramebuffers(int n, int[] framebuffers, int offset);
+
+    void glBindFramebuffer(int target, int framebuffer);
+
+    void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level);
+
+    int glCheckFramebufferStatus(int target);
+
+    void glGenBuffers(int n, int[] buffers, int offset);
+
+    void glDeleteBuffers(int n, int[] buffers, int offset);
+
+    void glBindBuffer(int target, int buffer);
+
+    void glBufferData(int target, int size, Buffer data, int usage);
+
+    void glBufferSubData(int target, int offset, int size, Buffer data);
+
+    void glViewport(int x, int y, int width, int height);
+
+    void glClearColor(float red, float green, float blue, float alpha);
+
+    void glClear(int mask);
+
+    int glCreateShader(int type);
+
+    void glShaderSource(int shader, String source);
+
+    void glCompileShader(int shader);
+
+    void glGetShaderiv(int shader, int pname, int[] params, int offset);
+
+    void glDeleteShader(int shader);
+
+    int glCreateProgram();
+
+    void glAttachShader(int program, int shader);
+
+    void glLinkProgram(int program);
+
+    void glGetProgramiv(int program, int pname, int[] params, int offset);
+
+    void glDeleteProgram(int program);
+
+    void glUseProgram(int program);
+
+    int glGetAttribLocation(int program, String name);
+
+    int glGetUniformLocation(int program, String name);
+
+    void glEnableVertexAttribArray(int index);
+
+    void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, Buffer ptr);
+
+    /** Offset in bytes into the bound GL_ARRAY_BUFFER. */
+    void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset);
+
+    void glUniform1i(int location, int x);
+
+    void glUniform1f(int location, float x);
+
+    void glUniform2f(int location, float x, float y);
+
+    void glDrawArrays(int mode, int first, int count);
+
+    int glGetError();
+
+    String glGetString(int name);
+
+    void glGetIntegerv(int pname, int[] params, int offset);
+
+    void glReadPixels(int x, int y, int width, int height, int format, int type, Buffer pixels);
+
+    /* ES3 only */
+    void glGetProgramBinary(int program, int bufSize, int[] length, int lengthOffset, int[] binaryFormat, int binaryFormatOffset, Buffer binary);
+
+    /* ES3 only */
+    void glProgramBinary(int program, int binaryFormat, Buffer binary, int length);
+
+    /* ES3 only: reads into the bound GL_PIXEL_PACK_BUFFER at offset bytes */
+    void glReadPixels(int x, int y, int width, int height, int format, int type, int offset);
+
+    /* ES3 only */
+    Buffer glMapBufferRange(int target, int offset, int length, int access);
+
+    /* ES3 only */
+    boolean glUnmapBuffer(int target);
+
+    /* ES3 only */
+    long glFenceSync(int condition, int flags);
+
+    /* ES3 only */
+    int glClientWaitSync(long sync, int flags, long timeout);
+
+    /* ES3 only */
+    void glDeleteSync(long sync);
+}
@@ -0,0 +1,672 @@
+package com.example.testcameraglsurfaceview;
+
+import java.nio.Buffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * GlApi that shadows the state the renderers set for every draw (program, active texture unit, texture,
+ * buffer and framebuffer bindings, viewport, clear color, enabled attributes, buffer-object attribute
+ * pointers and uniforms per program) and drops calls that would set it to what it already is. Render
+ * code can then set all it needs before each draw and leave it bound afterwards: only the differences
+ * from the previous draw reach the driver. State starts out unknown and must be invalidated whenever
+ * something outside this GlApi may have changed it. With validation on, glGetError() is checked after
+ * every call that is issued, which is a sync point and meant for debug builds only.
+ */
+public class GlStateTracker implements GlApi {
+
+    private static final int UNKNOWN = -1;
+    private static final int MAX_TEXTURE_UNITS = 8;
+    private static final int MAX_ATTRIBS = 8;
+    private static final int UNIFORM_1I = 1;
+    private static final int UNIFORM_1F = 2;
+    private static final int UNIFORM_2F = 3;
+
+    /** Uniform values set on one program; they stay with the program until it is linked again. */
+    private static class ProgramUniforms {
+        int program;
+        int count;
+        int[] locations = new int[4];
+        int[] types = new int[4];
+        int[] x = new int[4];
+        int[] y = new int[4];
+
+        /** @return false if the location already holds the value */
+        boolean set(int location, int type, int xBits, int yBits) {
+            for (int i = 0; i < count; i++) {
+                if (locations[i] == location) {
+                    if (types[i] == type && x[i] == xBits && y[i] == yBits) {
+                        return false;
+                    }
+                    types[i] = type;
+                    x[i] = xBits;
+                    y[i] = yBits;
+                    return true;
+                }
+            }
+            if (count == locations.length) {
+                int capacity = count * 2;
+                locations = Arrays.copyOf(locations, capacity);
+                types = Arrays.copyOf(types, capacity);
+                x = Arrays.copyOf(x, capacity);
+                y = Arrays.copyOf(y, capacity);
+            }
+            locations[count] = location;
+            types[count] = type;
+            x[count] = xBits;
+            y[count] = yBits;
+            count++;
+            return true;
+        }
+    }
+
+    private final GlApi mGl;
+    private boolean mValidation = false;
+
+    private int mProgram;
+    private ProgramUniforms mUniforms;
+    private final List<ProgramUniforms> mProgramUniforms = new ArrayList<>();
+    private int mActiveUnit;
+    private final int[] mTexture2d = new int[MAX_TEXTURE_UNITS];
+    private final int[] mTextureExternal = new int[MAX_TEXTURE_UNITS];
+    private int mArrayBuffer;
+    private int mPixelPackBuffer;
+    private int mFramebuffer;
+    private boolean mViewportKnown;
+    private final int[] mViewport = new int[4];
+    private boolean mClearColorKnown;
+    private final float[] mClearColor = new float[4];
+    // ビットが立っている属性は有効と分かっている
+    private int mEnabledAttribs;
+    private final int[] mAttribBuffer = new int[MAX_ATTRIBS];
+    private final int[] mAttribSize = new int[MAX_ATTRIBS];
+    private final int[] mAttribType = new int[MAX_ATTRIBS];
+    private final boolean[] mAttribNormalized = new boolean[MAX_ATTRIBS];
+    private final int[] mAttribStride = new int[MAX_ATTRIBS];
+    private final int[] mAttribOffset = new int[MAX_ATTRIBS];
+
+    private long mIssuedCount = 0;
+    private long mSkippedCount = 0;
+
+    public GlStateTracker(GlApi gl) {
+        mGl = gl;
+        invalidate();
+    }
+
+    /** Checks glGetError() after every issued call and throws on an error. Off by default. */
+    public void setValidation(boolean validation) {
+        mValidation = validation;
+    }
+
+    public boolean isValidation() {
+        return mValidation;
+    }
+
+    /** Forgets all shadowed state, e.g. for a new context: the next call of every kind is issued. */
+    public void invalidate() {
+        mProgram = UNKNOWN;
+        mUniforms = null;
+        mProgramUniforms.clear();
+        mActiveUnit = UNKNOWN;
+        for (int i = 0; i < MAX_TEXTURE_UNITS; i++) {
+            mTexture2d[i] = UNKNOWN;
+            mTextureExternal[i] = UNKNOWN;
+        }
+        mArrayBuffer = UNKNOWN;
+        mPixelPackBuffer = UNKNOWN;
+        mFramebuffer = UNKNOWN;
+        mViewportKnown = false;
+        mClearColorKnown = false;
+        mEnabledAttribs = 0;
+        for (int i = 0; i < MAX_ATTRIBS; i++) {
+            mAttribBuffer[i] = UNKNOWN;
+        }
+    }
+
+    /**
+     * Forgets what is bound to target on the active unit, after something other than this GlApi bound
+     * a texture there. SurfaceTexture.updateTexImage() does.
+     */
+    public void invalidateTextureBinding(int target) {
+        int[] bindings = textureBindings(target);
+        if (bindings == null) {
+            return;
+        }
+        if (mActiveUnit == UNKNOWN) {
+            for (int i = 0; i < MAX_TEXTURE_UNITS; i++) {
+                bindings[i] = UNKNOWN;
+            }
+        } else if (mActiveUnit < MAX_TEXTURE_UNITS) {
+            bindings[mActiveUnit] = UNKNOWN;
+        }
+    }
+
+    /** Calls passed on to the wrapped GlApi. */
+    public long getIssuedCount() {
+        return mIssuedCount;
+    }
+
+    /** Calls dropped because they would not have changed the state. */
+    public long getSkippedCount() {
+        return mSkippedCount;
+    }
+
+    private void issued(String op) {
+        mIssuedCount++;
+        if (mValidation) {
+            ShaderUtil.checkGlError(mGl, op);
+        }
+    }
+
+    private int[] textureBindings(int target) {
+        if (target == GL_TEXTURE_2D) {
+            return mTexture2d;
+        }
+        return target == GL_TEXTURE_EXTERNAL_OES ? mTextureExternal : null;
+    }
+
+    private static boolean isTrackedAttrib(int index) {
+        return index >= 0 && index < MAX_ATTRIBS;
+    }
+
+    @Override
+    public int getClientVersion() {
+        return mGl.getClientVersion();
+    }
+
+    @Override
+    public void glActiveTexture(int texture) {
+        int unit = texture - GL_TEXTURE0;
+        if (unit == mActiveUnit) {
+            mSkippedCount++;
+            return;
+        }
+        mGl.glActiveTexture(texture);
+        mActiveUnit = unit;
+        issued("glActiveTexture");
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        int[] bindings = textureBindings(target);
+        boolean tracked = bindings != null && mActiveUnit >= 0 && mActiveUnit < MAX_TEXTURE_UNITS;
+        if (tracked && bindings[mActiveUnit] == texture) {
+            mSkippedCount++;
+            return;
+        }
+        mGl.glBindTexture(target, texture);
+        if (tracked) {
+            bindings[mActiveUnit] = texture;
+        } else {
+            invalidateTextureBinding(target);
+        }
+        issued("glBindTexture");
+    }
+
+    @Override
+    public void glGenTextures(int n, int[] textures, int offset) {
+        mGl.glGenTextures(n, textures, offset);
+        issued("glGenTextures");
+    }
+
+    @Override
+    public void glDeleteTextures(int n, int[] textures, int offset) {
+        mGl.glDeleteTextures(n, textures, offset);
+        // 削除されたテクスチャはバインドが0に戻る
+        for (int i = 0; i < n; i++) {
+            int texture = textures[offset + i];
+            if (texture == 0) {
+                continue;
+            }
+            for (int unit = 0; unit < MAX_TEXTURE_UNITS; unit++) {
+                if (mTexture2d[unit] == texture) {
+                    mTexture2d[unit] = 0;
+                }
+                if (mTextureExternal[unit] == texture) {
+                    mTextureExternal[unit] = 0;
+                }
+            }
+        }
+        issued("glDeleteTextures");
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param) {
+        mGl.glTexParameteri(target, pname, param);
+        issued("glTexParameteri");
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) {
+        mGl.glTexImage2D(target, level, internalformat, width, height, border, format, type, pixels);
+        issued("glTexImage2D");
+    }
+
+    @Override
+    public void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+        mGl.glGenFramebuffers(n, framebuffers, offset);
+        issued("glGenFramebuffers");
+    }
+
+    @Override
+    public void glDeleteFramebuffers(int n, int[] framebuffers, int offset) {
+        mGl.glDeleteFramebuffers(n, framebuffers, offset);
+        for (int i = 0; i < n; i++) {
+            if (framebuffers[offset + i] != 0 && framebuffers[offset + i] == mFramebuffer) {
+                mFramebuffer = 0;
+            }
+        }
+        issued("glDeleteFramebuffers");
+    }
+
+    @Override
+    public void glBindFramebuffer(int target, int framebuffer) {
+        if (framebuffer == mFramebuffer) {
+            mSkippedCount++;
+            return;
+        }
+        mGl.glBindFramebuffer(target, framebuffer);
+        mFramebuffer = framebuffer;
+        issued("glBindFramebuffer");
+    }
+
+    @Override
+    public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) {
+        mGl.glFramebufferTexture2D(target, attachment, textarget, texture, level);
+        issued("glFramebufferTexture2D");
+    }
+
+    @Override
+    public int glCheckFramebufferStatus(int target) {
+        int status = mGl.glCheckFramebufferStatus(target);
+        issued("glCheckFramebufferStatus");
+        return status;
+    }
+
+    @Override
+    public void glGenBuffers(int n, int[] buffers, int offset) {
+        mGl.glGenBuffers(n, buffers, offset);
+        issued("glGenBuffers");
+    }
+
+    @Override
+    public void glDeleteBuffers(int n, int[] buffers, int offset) {
+        mGl.glDeleteBuffers(n, buffers, offset);
+        for (int i = 0; i < n; i++) {
+            int buffer = buffers[offset + i];
+            if (buffer == 0) {
+                continue;
+            }
+            if (mArrayBuffer == buffer) {
+                mArrayBuffer = 0;
+            }
+            if (mPixelPackBuffer == buffer) {
+                mPixelPackBuffer = 0;
+            }
+            for (int index = 0; index < MAX_ATTRIBS; index++) {
+                if (mAttribBuffer[index] == buffer) {
+                    mAttribBuffer[index] = UNKNOWN;
+                }
+            }
+        }
+        issued("glDeleteBuffers");
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        if (target == GL_ARRAY_BUFFER) {
+            if (buffer == mArrayBuffer) {
+                mSkippedCount++;
+                return;
+            }
+            mArrayBuffer = buffer;
+        } else if (target == GL_PIXEL_PACK_BUFFER) {
+            if (buffer == mPixelPackBuffer) {
+                mSkippedCount++;
+                return;
+            }
+            mPixelPackBuffer = buffer;
+        }
+        mGl.glBindBuffer(target, buffer);
+        issued("glBindBuffer");
+    }
+
+    @Override
+    public void glBufferData(int target, int size, Buffer data, int usage) {
+        mGl.glBufferData(target, size, data, usage);
+        issued("glBufferData");
+    }
+
+    @Override
+    public void glBufferSubData(int target, int offset, int size, Buffer data) {
+        mGl.glBufferSubData(target, offset, size, data);
+        issued("glBufferSubData");
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        if (mViewportKnown && mViewport[0] == x && mViewport[1] == y
+                && mViewport[2] == width && mViewport[3] == height) {
+            mSkippedCount++;
+            return;
+        }
+        mGl.glViewport(x, y, width, height);
+        mViewport[0] = x;
+        mViewport[1] = y;
+        mViewport[2] = width;
+        mViewport[3] = height;
+        mViewportKnown = true;
+        issued("glViewport");
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        if (mClearColorKnown && mClearColor[0] == red && mClearColor[1] == green
+                && mClearColor[2] == blue && mClearColor[3] == alpha) {
+            mSkippedCount++;
+            return;
+        }
+        mGl.glClearColor(red, green, blue, alpha);
+        mClearColor[0] = red;
+        mClearColor[1] = green;
+        mClearColor[2] = blue;
+        mClearColor[3] = alpha;
+        mClearColorKnown = true;
+        issued("glClearColor");
+    }
+
+    @Override
+    public void glClear(int mask) {
+        mGl.glClear(mask);
+        issued("glClear");
+    }
+
+    @Override
+    public int glCreateShader(int type) {
+        int shader = mGl.glCreateShader(type);
+        issued("glCreateShader");
+        return shader;
+    }
+
+    @Override
+    public void glShaderSource(int shader, String source) {
+        mGl.glShaderSource(shader, source);
+        issued("glShaderSource");
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+        mGl.glCompileShader(shader);
+        issued("glCompileShader");
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+        mGl.glGetShaderiv(shader, pname, params, offset);
+        issued("glGetShaderiv");
+    }
+
+    @Override
+    public void glDeleteShader(int shader) {
+        mGl.glDeleteShader(shader);
+        issued("glDeleteShader");
+    }
+
+    @Override
+    public int glCreateProgram() {
+        int program = mGl.glCreateProgram();
+        forgetUniforms(program);
+        issued("glCreateProgram");
+        return program;
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+        mGl.glAttachShader(program, shader);
+        issued("glAttachShader");
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+        mGl.glLinkProgram(program);
+        // リンクし直すとuniformは初期値に戻る
+        forgetUniforms(program);
+        issued("glLinkProgram");
+    }
+
+    @Override
+    public void glGetProgramiv(int program, int pname, int[] params, int offset) {
+        mGl.glGetProgramiv(program, pname, params, offset);
+        issued("glGetProgramiv");
+    }
+
+    @Override
+    public void glDeleteProgram(int program) {
+        mGl.glDeleteProgram(program);
+        forgetUniforms(program);
+        if (program == mProgram) {
+            // 使用中のプログラムは解除されるまで残り、名前が再利用されることもある
+            mProgram = UNKNOWN;
+            mUniforms = null;
+        }
+        issued("glDeleteProgram");
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        if (program == mProgram) {
+            mSkippedCount++;
+            return;
+        }
+        mGl.glUseProgram(program);
+        mProgram = program;
+        mUniforms = program == 0 ? null : uniformsOf(program);
+        issued("glUseProgram");
+    }
+
+    private ProgramUniforms uniformsOf(int program) {
+        for (int i = 0; i < mProgramUniforms.size(); i++) {
+            ProgramUniforms uniforms = mProgramUniforms.get(i);
+            if (uniforms.program == program) {
+                return uniforms;
+            }
+        }
+        ProgramUniforms uniforms = new ProgramUniforms();
+        uniforms.program = program;
+        mProgramUniforms.add(uniforms);
+        return uniforms;
+    }
+
+    private void forgetUniforms(int program) {
+        for (int i = 0; i < mProgramUniforms.size(); i++) {
+            ProgramUniforms uniforms = mProgramUniforms.get(i);
+            if (uniforms.program == program) {
+                uniforms.count = 0;
+            }
+        }
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name) {
+        int location = mGl.glGetAttribLocation(program, name);
+        issued("glGetAttribLocation");
+        return location;
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        int location = mGl.glGetUniformLocation(program, name);
+        issued("glGetUniformLocation");
+        return location;
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        boolean tracked = isTrackedAttrib(index);
+        if (tracked && (mEnabledAttribs & (1 << index)) != 0) {
+            mSkippedCount++;
+            return;
+        }
+        mGl.glEnableVertexAttribArray(index);
+        if (tracked) {
+            mEnabledAttribs |= 1 << index;
+        }
+        issued("glEnableVertexAttribArray");
+    }
+
+    /**
+     * Client-side arrays are always passed on, as their contents may have changed. A bound
+     * GL_ARRAY_BUFFER would turn ptr into an offset, so it is unbound first; that is what lets
+     * buffer-object users leave their buffer bound.
+     */
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, Buffer ptr) {
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        mGl.glVertexAttribPointer(index, size, type, normalized, stride, ptr);
+        if (isTrackedAttrib(index)) {
+            mAttribBuffer[index] = UNKNOWN;
+        }
+        issued("glVertexAttribPointer");
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset) {
+        boolean tracked = isTrackedAttrib(index) && mArrayBuffer != UNKNOWN;
+        if (tracked && mAttribBuffer[index] == mArrayBuffer && mAttribSize[index] == size
+                && mAttribType[index] == type && mAttribNormalized[index] == normalized
+                && mAttribStride[index] == stride && mAttribOffset[index] == offset) {
+            mSkippedCount++;
+            return;
+        }
+        mGl.glVertexAttribPointer(index, size, type, normalized, stride, offset);
+        if (tracked) {
+            mAttribBuffer[index] = mArrayBuffer;
+            mAttribSize[index] = size;
+            mAttribType[index] = type;
+            mAttribNormalized[index] = normalized;
+            mAttribStride[index] = stride;
+            mAttribOffset[index] = offset;
+        } else if (isTrackedAttrib(index)) {
+            mAttribBuffer[index] = UNKNOWN;
+        }
+        issued("glVertexAttribPointer");
+    }
+
+    private boolean isUniformSet(int location, int type, int x, int y) {
+        return mUniforms != null && !mUniforms.set(location, type, x, y);
+    }
+
+    @Override
+    public void glUniform1i(int location, int x) {
+        if (isUniformSet(location, UNIFORM_1I, x, 0)) {
+            mSkippedCount++;
+            return;
+        }
+        mGl.glUniform1i(location, x);
+        issued("glUniform1i");
+    }
+
+    @Override
+    public void glUniform1f(int location, float x) {
+        if (isUniformSet(location, UNIFORM_1F, Float.floatToRawIntBits(x), 0)) {
+            mSkippedCount++;
+            return;
+        }
+        mGl.glUniform1f(location, x);
+        issued("glUniform1f");
+    }
+
+    @Override
+    public void glUniform2f(int location, float x, float y) {
+        if (isUniformSet(location, UNIFORM_2F, Float.floatToRawIntBits(x), Float.floatToRawIntBits(y))) {
+            mSkippedCount++;
+            return;
+        }
+        mGl.glUniform2f(location, x, y);
+        issued("glUniform2f");
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        mGl.glDrawArrays(mode, first, count);
+        issued("glDrawArrays");
+    }
+
+    @Override
+    public int glGetError() {
+        return mGl.glGetError();
+    }
+
+    @Override
+    public String glGetString(int name) {
+        String value = mGl.glGetString(name);
+        issued("glGetString");
+        return value;
+    }
+
+    @Override
+    public void glGetIntegerv(int pname, int[] params, int offset) {
+        mGl.glGetIntegerv(pname, params, offset);
+        issued("glGetIntegerv");
+    }
+
+    @Override
+    public void glReadPixels(int x, int y, int width, int height, int format, int type, Buffer pixels) {
+        mGl.glReadPixels(x, y, width, height, format, type, pixels);
+        issued("glReadPixels");
+    }
+
+    @Override
+    public void glGetProgramBinary(int program, int bufSize, int[] length, int lengthOffset, int[] binaryFormat, int binaryFormatOffset, Buffer binary) {
+        mGl.glGetProgramBinary(program, bufSize, length, lengthOffset, binaryFormat, binaryFormatOffset, binary);
+        issued("glGetProgramBinary");
+    }
+
+    @Override
+    public void glProgramBinary(int program, int binaryFormat, Buffer binary, int length) {
+        mGl.glProgramBinary(program, binaryFormat, binary, length);
+        forgetUniforms(program);
+        issued("glProgramBinary");
+    }
+
+    @Override
+    public void glReadPixels(int x, int y, int width, int height, int format, int type, int offset) {
+        mGl.glReadPixels(x, y, width, height, format, type, offset);
+        issued("glReadPixels");
+    }
+
+    @Override
+    public Buffer glMapBufferRange(int target, int offset, int length, int access) {
+        Buffer mapped = mGl.glMapBufferRange(target, offset, length, access);
+        issued("glMapBufferRange");
+        return mapped;
+    }
+
+    @Override
+    public boolean glUnmapBuffer(int target) {
+        boolean unmapped = mGl.glUnmapBuffer(target);
+        issued("glUnmapBuffer");
+        return unmapped;
+    }
+
+    @Override
+    public long glFenceSync(int condition, int flags) {
+        long sync = mGl.glFenceSync(condition, flags);
+        issued("glFenceSync");
+        return sync;
+    }
+
+    @Override
+    public int glClientWaitSync(long sync, int flags, long timeout) {
+        int status = mGl.glClientWaitSync(sync, flags, timeout);
+        issued("glClientWaitSync");
+        return status;
+    }
+
+    @Override
+    public void glDeleteSync(long sync) {
+        mGl.glDeleteSync(sync);
+        issued("glDeleteSync");
+    }
+}
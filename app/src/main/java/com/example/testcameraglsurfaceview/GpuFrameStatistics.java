@@ -0,0 +1,316 @@
+package com.example.testcameraglsurfaceview;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Reduces each latched camera frame to a few FrameStatistics tiles on the GPU. Level 0 of the
+ * ReductionPlan samples the camera texture into luma, change against the previous frame's level 0
+ * and dark/bright flags; every further level renders into a framebuffer half the size, where one
+ * bilinear tap averages 2x2 texels. Only the last level, a few dozen bytes, goes through GpuReadback,
+ * so the decoded statistics arrive on its consumer thread a frame or more later.
+ * GL methods run on the GL thread; setEnabled/setListener/getLatest may be called from any thread.
+ */
+public class GpuFrameStatistics {
+
+    public interface Listener {
+        /** Called on the readback consumer thread; copy what must outlive the call. */
+        void onStatistics(FrameStatistics statistics);
+    }
+
+    private static final int FLOAT_SIZE_BYTES = 4;
+    private static final float[] VERTICES = {
+            -1.0f, -1.0f,
+            1.0f, -1.0f,
+            -1.0f, 1.0f,
+            1.0f, 1.0f
+    };
+    // バッファの向きのまま縮小するので回転はかけない
+    private static final float[] TEX_COORDS = {
+            0.0f, 0.0f,
+            1.0f, 0.0f,
+            0.0f, 1.0f,
+            1.0f, 1.0f
+    };
+    private static final String SAMPLE_SHADER_BODY =
+            "varying vec2 texcoordVarying;\n" +
+                    "uniform sampler2D previous;\n" +
+                    "uniform float hasPrevious;\n" +
+                    "void main() {\n" +
+                    "  float luma = dot(texture2D(texture, texcoordVarying).rgb, vec3(0.299, 0.587, 0.114));\n" +
+                    "  float change = abs(luma - texture2D(previous, texcoordVarying).r) * hasPrevious;\n" +
+                    "  gl_FragColor = vec4(luma, change, 1.0 - step(" + FrameStatistics.DARK_LEVEL + ", luma), step("
+                    + FrameStatistics.BRIGHT_LEVEL + ", luma));\n" +
+                    "}\n";
+    private static final String SAMPLE_SHADER_EXTERNAL =
+            "#extension GL_OES_EGL_image_external : require\n" +
+                    "precision mediump float;\n" +
+                    "uniform samplerExternalOES texture;\n" +
+                    SAMPLE_SHADER_BODY;
+    private static final String SAMPLE_SHADER_2D =
+            "precision mediump float;\n" +
+                    "uniform sampler2D texture;\n" +
+                    SAMPLE_SHADER_BODY;
+
+    private final ShaderCache mShaderCache;
+    private final GpuReadback mReadback;
+    private final int mGridWidth;
+    private final int mGridHeight;
+    private final int mMaxSampleSize;
+    private final FloatBuffer mVertexBuffer;
+    private final FloatBuffer mTexCoordBuffer;
+
+    private volatile boolean mEnabled = true;
+    private volatile Listener mListener;
+    private final FrameStatistics mDecoded = new FrameStatistics();
+    private final FrameStatistics mLatest = new FrameStatistics();
+    private boolean mHasLatest = false;
+
+    private ReductionPlan mPlan;
+    private ReductionPlan mAllocatedPlan;
+    // 0と1はレベル0の現在と前回、以降はレベル1から
+    private int[] mTextures = new int[0];
+    private int[] mFramebuffers = new int[0];
+    private int mCurrent = 0;
+    private boolean mHasPrevious = false;
+    private int mSampleTarget = -1;
+    private int mSampleProgram;
+    private int mSamplePositionHandle;
+    private int mSampleTexCoordHandle;
+    private int mSampleTextureHandle;
+    private int mPreviousHandle;
+    private int mHasPreviousHandle;
+    private int mReduceProgram;
+    private int mReducePositionHandle;
+    private int mReduceTexCoordHandle;
+    private int mReduceTextureHandle;
+    private int mAllocationCount = 0;
+    private long mProcessedCount = 0;
+
+    /**
+     * @param readback      reads the tile grid back; its stream consumer is taken over
+     * @param maxSampleSize largest level 0 side, bounds the cost of the first pass
+     */
+    public GpuFrameStatistics(ShaderCache shaderCache, GpuReadback readback,
+                              int gridWidth, int gridHeight, int maxSampleSize) {
+        mShaderCache = shaderCache;
+        mReadback = readback;
+        mGridWidth = gridWidth;
+        mGridHeight = gridHeight;
+        mMaxSampleSize = maxSampleSize;
+        mVertexBuffer = createBuffer(VERTICES);
+        mTexCoordBuffer = createBuffer(TEX_COORDS);
+        mReadback.setStreamConsumer(new ReadbackConsumer() {
+            @Override
+            public void onFrame(ReadbackFrame frame) {
+                onGridRead(frame);
+            }
+        });
+    }
+
+    /** Turns the passes and the readback off while nobody looks at the statistics. */
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /** Copies the most recent statistics into out. @return false if there are none yet */
+    public boolean getLatest(FrameStatistics out) {
+        synchronized (mLatest) {
+            if (!mHasLatest) {
+                return false;
+            }
+            out.copyFrom(mLatest);
+            return true;
+        }
+    }
+
+    /** Must be called once per new GL context. Targets of the old context are forgotten. */
+    public void onSurfaceCreated(GlApi gl) {
+        mAllocatedPlan = null;
+        mHasPrevious = false;
+        mSampleTarget = -1;
+        mReduceProgram = mShaderCache.getProgram(gl, CameraRenderer.VERTEX_SHADER,
+                CameraRenderer.fragmentShaderFor(GlApi.GL_TEXTURE_2D));
+        mReducePositionHandle = gl.glGetAttribLocation(mReduceProgram, "position");
+        mReduceTexCoordHandle = gl.glGetAttribLocation(mReduceProgram, "texcoord");
+        mReduceTextureHandle = gl.glGetUniformLocation(mReduceProgram, "texture");
+        mReadback.onSurfaceCreated(gl);
+    }
+
+    /** Size of the camera buffer; the targets are reallocated on the next frame when it changes. */
+    public void setInputSize(int width, int height) {
+        if (mPlan != null && mPlan.matches(width, height)) {
+            return;
+        }
+        mPlan = new ReductionPlan(width, height, mGridWidth, mGridHeight, mMaxSampleSize);
+        mHasPrevious = false;
+    }
+
+    /**
+     * Runs the reduction on a freshly latched frame and queues the grid for readback. Leaves the
+     * default framebuffer bound; the viewport and texture bindings have to be set again afterwards.
+     */
+    public void process(GlApi gl, int textureTarget, int texture, long timestampNano) {
+        if (!mEnabled || mPlan == null) {
+            mHasPrevious = false;
+            return;
+        }
+        setup(gl);
+        if (textureTarget != mSampleTarget) {
+            mSampleProgram = mShaderCache.getProgram(gl, CameraRenderer.VERTEX_SHADER,
+                    textureTarget == GlApi.GL_TEXTURE_EXTERNAL_OES ? SAMPLE_SHADER_EXTERNAL : SAMPLE_SHADER_2D);
+            mSamplePositionHandle = gl.glGetAttribLocation(mSampleProgram, "position");
+            mSampleTexCoordHandle = gl.glGetAttribLocation(mSampleProgram, "texcoord");
+            mSampleTextureHandle = gl.glGetUniformLocation(mSampleProgram, "texture");
+            mPreviousHandle = gl.glGetUniformLocation(mSampleProgram, "previous");
+            mHasPreviousHandle = gl.glGetUniformLocation(mSampleProgram, "hasPrevious");
+            mSampleTarget = textureTarget;
+        }
+
+        bindLevel(gl, mCurrent, 0);
+        gl.glUseProgram(mSampleProgram);
+        gl.glActiveTexture(GlApi.GL_TEXTURE1);
+        gl.glBindTexture(GlApi.GL_TEXTURE_2D, mTextures[1 - mCurrent]);
+        gl.glActiveTexture(GlApi.GL_TEXTURE0);
+        gl.glBindTexture(textureTarget, texture);
+        gl.glUniform1i(mSampleTextureHandle, 0);
+        gl.glUniform1i(mPreviousHandle, 1);
+        gl.glUniform1f(mHasPreviousHandle, mHasPrevious ? 1.0f : 0.0f);
+        drawQuad(gl, mSamplePositionHandle, mSampleTexCoordHandle);
+        gl.glBindTexture(textureTarget, 0);
+        gl.glActiveTexture(GlApi.GL_TEXTURE1);
+        gl.glBindTexture(GlApi.GL_TEXTURE_2D, 0);
+        gl.glActiveTexture(GlApi.GL_TEXTURE0);
+
+        int input = mTextures[mCurrent];
+        gl.glUseProgram(mReduceProgram);
+        gl.glUniform1i(mReduceTextureHandle, 0);
+        for (int level = 1; level < mPlan.getLevelCount(); level++) {
+            bindLevel(gl, level + 1, level);
+            gl.glBindTexture(GlApi.GL_TEXTURE_2D, input);
+            drawQuad(gl, mReducePositionHandle, mReduceTexCoordHandle);
+            input = mTextures[level + 1];
+        }
+        gl.glBindTexture(GlApi.GL_TEXTURE_2D, 0);
+        gl.glUseProgram(0);
+
+        // 最後のレベルが束縛されたまま読む
+        mReadback.setRegion(0, 0, mGridWidth, mGridHeight);
+        mReadback.onFrameRendered(gl, timestampNano);
+        gl.glBindFramebuffer(GlApi.GL_FRAMEBUFFER, 0);
+
+        mCurrent = 1 - mCurrent;
+        mHasPrevious = true;
+        mProcessedCount++;
+    }
+
+    /** Deletes the targets and readback buffers; GL thread, context current. */
+    public void release(GlApi gl) {
+        releaseTargets(gl);
+        mReadback.release(gl);
+        mHasPrevious = false;
+    }
+
+    private void setup(GlApi gl) {
+        if (mAllocatedPlan == mPlan) {
+            return;
+        }
+        releaseTargets(gl);
+
+        int count = mPlan.getLevelCount() + 1;
+        mTextures = new int[count];
+        mFramebuffers = new int[count];
+        gl.glGenTextures(count, mTextures, 0);
+        gl.glGenFramebuffers(count, mFramebuffers, 0);
+        for (int i = 0; i < count; i++) {
+            int level = Math.max(0, i - 1);
+            int width = mPlan.getLevelWidth(level);
+            int height = mPlan.getLevelHeight(level);
+            gl.glBindTexture(GlApi.GL_TEXTURE_2D, mTextures[i]);
+            gl.glTexParameteri(GlApi.GL_TEXTURE_2D, GlApi.GL_TEXTURE_MIN_FILTER, GlApi.GL_LINEAR);
+            gl.glTexParameteri(GlApi.GL_TEXTURE_2D, GlApi.GL_TEXTURE_MAG_FILTER, GlApi.GL_LINEAR);
+            gl.glTexParameteri(GlApi.GL_TEXTURE_2D, GlApi.GL_TEXTURE_WRAP_S, GlApi.GL_CLAMP_TO_EDGE);
+            gl.glTexParameteri(GlApi.GL_TEXTURE_2D, GlApi.GL_TEXTURE_WRAP_T, GlApi.GL_CLAMP_TO_EDGE);
+            gl.glTexImage2D(GlApi.GL_TEXTURE_2D, 0, GlApi.GL_RGBA, width, height, 0,
+                    GlApi.GL_RGBA, GlApi.GL_UNSIGNED_BYTE, null);
+
+            gl.glBindFramebuffer(GlApi.GL_FRAMEBUFFER, mFramebuffers[i]);
+            gl.glFramebufferTexture2D(GlApi.GL_FRAMEBUFFER, GlApi.GL_COLOR_ATTACHMENT0,
+                    GlApi.GL_TEXTURE_2D, mTextures[i], 0);
+            int status = gl.glCheckFramebufferStatus(GlApi.GL_FRAMEBUFFER);
+            if (status != GlApi.GL_FRAMEBUFFER_COMPLETE) {
+                throw new RuntimeException("Framebuffer incomplete: " + status);
+            }
+        }
+        gl.glBindTexture(GlApi.GL_TEXTURE_2D, 0);
+        gl.glBindFramebuffer(GlApi.GL_FRAMEBUFFER, 0);
+
+        mCurrent = 0;
+        mHasPrevious = false;
+        mAllocatedPlan = mPlan;
+        mAllocationCount++;
+    }
+
+    private void releaseTargets(GlApi gl) {
+        if (mAllocatedPlan == null) {
+            return;
+        }
+        gl.glDeleteFramebuffers(mFramebuffers.length, mFramebuffers, 0);
+        gl.glDeleteTextures(mTextures.length, mTextures, 0);
+        mAllocatedPlan = null;
+    }
+
+    private void bindLevel(GlApi gl, int target, int level) {
+        gl.glBindFramebuffer(GlApi.GL_FRAMEBUFFER, mFramebuffers[target]);
+        gl.glViewport(0, 0, mPlan.getLevelWidth(level), mPlan.getLevelHeight(level));
+    }
+
+    private void drawQuad(GlApi gl, int positionHandle, int texCoordHandle) {
+        gl.glEnableVertexAttribArray(positionHandle);
+        gl.glVertexAttribPointer(positionHandle, 2, GlApi.GL_FLOAT, false, 0, mVertexBuffer);
+        gl.glEnableVertexAttribArray(texCoordHandle);
+        gl.glVertexAttribPointer(texCoordHandle, 2, GlApi.GL_FLOAT, false, 0, mTexCoordBuffer);
+        gl.glDrawArrays(GlApi.GL_TRIANGLE_STRIP, 0, 4);
+    }
+
+    private void onGridRead(ReadbackFrame frame) {
+        mDecoded.decode(frame.getBuffer(), frame.getWidth(), frame.getHeight(), frame.getTimestamp());
+        synchronized (mLatest) {
+            mLatest.copyFrom(mDecoded);
+            mHasLatest = true;
+        }
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onStatistics(mDecoded);
+        }
+    }
+
+    private static FloatBuffer createBuffer(float[] data) {
+        FloatBuffer buffer =
+                ByteBuffer.allocateDirect(data.length * FLOAT_SIZE_BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        buffer.put(data).position(0);
+        return buffer;
+    }
+
+    /** Plan for the current input size, or null before the first setInputSize(). */
+    public ReductionPlan getPlan() {
+        return mPlan;
+    }
+
+    public long getProcessedCount() {
+        return mProcessedCount;
+    }
+
+    public int getAllocationCount() {
+        return mAllocationCount;
+    }
+}
@@ -0,0 +1,369 @@
+package com.example.testcameraglsurfaceview;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copies rendered frames off the GPU for snapshots and streaming without stalling the draw loop.
+ * On an ES3 context each read goes into one of a few pixel pack buffers guarded by a fence and is
+ * mapped on a later frame once the fence has signaled; when every buffer is still in flight the frame
+ * is skipped. On ES2 glReadPixels blocks, so streaming only reads every syncFrameInterval-th frame.
+ * Finished frames are copied into a FrameBufferPool and handed to the consumers on the executor.
+ * GL methods run on the GL thread; requestSnapshot/setStreamConsumer may be called from any thread.
+ */
+public class GpuReadback {
+
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private static class Slot {
+        int buffer;
+        int capacity;
+        long sync;
+        boolean inFlight;
+        long timestamp;
+        int width;
+        int height;
+        ReadbackConsumer stream;
+        final List<ReadbackConsumer> snapshots = new ArrayList<>();
+    }
+
+    private final FrameBufferPool<ReadbackFrame> mPool;
+    private final Executor mExecutor;
+    private final int mSyncFrameInterval;
+    private final Slot[] mSlots;
+    private int mNextSlot = 0;
+    private int mOldestSlot = 0;
+    private int mInFlightCount = 0;
+    private boolean mPixelBuffers = false;
+
+    private int mX;
+    private int mY;
+    private int mWidth;
+    private int mHeight;
+
+    private volatile ReadbackConsumer mStreamConsumer;
+    private final List<ReadbackConsumer> mSnapshotRequests = new ArrayList<>();
+    private final List<ReadbackConsumer> mTakenSnapshots = new ArrayList<>();
+    private long mStreamFrameCount = 0;
+
+    private long mIssuedCount = 0;
+    private long mSkippedBusyCount = 0;
+    private final AtomicLong mDroppedCount = new AtomicLong();
+    private final AtomicLong mDeliveredCount = new AtomicLong();
+    private final AtomicLong mFailedCount = new AtomicLong();
+
+    private class Delivery implements Runnable {
+        private final ReadbackFrame mFrame;
+
+        Delivery(ReadbackFrame frame) {
+            mFrame = frame;
+        }
+
+        @Override
+        public void run() {
+            List<ReadbackConsumer> consumers = mFrame.consumers;
+            for (int i = 0; i < consumers.size(); i++) {
+                try {
+                    consumers.get(i).onFrame(mFrame);
+                } catch (RuntimeException e) {
+                    mFailedCount.incrementAndGet();
+                }
+            }
+            consumers.clear();
+            mPool.release(mFrame);
+            mDeliveredCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param pool              frames handed to consumers; its size bounds how far consumers may fall behind
+     * @param pixelBufferCount  pixel pack buffers in flight on ES3, 2 or 3
+     * @param executor          consumer thread, see newConsumerExecutor()
+     * @param syncFrameInterval ES2 streaming reads one frame out of this many
+     */
+    public GpuReadback(FrameBufferPool<ReadbackFrame> pool, int pixelBufferCount, Executor executor, int syncFrameInterval) {
+        mPool = pool;
+        mExecutor = executor;
+        mSyncFrameInterval = Math.max(1, syncFrameInterval);
+        mSlots = new Slot[pixelBufferCount];
+        for (int i = 0; i < pixelBufferCount; i++) {
+            mSlots[i] = new Slot();
+        }
+    }
+
+    public static ThreadPoolExecutor newConsumerExecutor(int queueCapacity) {
+        return new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "GpuReadbackConsumer");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /** Delivers every readable frame to consumer until set to null. */
+    public void setStreamConsumer(ReadbackConsumer consumer) {
+        mStreamConsumer = consumer;
+    }
+
+    /** Delivers the next readable frame to consumer once. */
+    public void requestSnapshot(ReadbackConsumer consumer) {
+        synchronized (mSnapshotRequests) {
+            mSnapshotRequests.add(consumer);
+        }
+    }
+
+    /** Must be called once per new GL context. Buffers of the old context are forgotten. */
+    public void onSurfaceCreated(GlApi gl) {
+        mPixelBuffers = gl.getClientVersion() >= 3;
+        for (Slot slot : mSlots) {
+            requeueSnapshots(slot);
+            slot.buffer = 0;
+            slot.capacity = 0;
+            slot.sync = 0;
+            slot.inFlight = false;
+            slot.stream = null;
+        }
+        mNextSlot = 0;
+        mOldestSlot = 0;
+        mInFlightCount = 0;
+    }
+
+    /** Region of the bound framebuffer to read, in window coordinates. */
+    public void setRegion(int x, int y, int width, int height) {
+        mX = x;
+        mY = y;
+        mWidth = width;
+        mHeight = height;
+    }
+
+    /** Call after drawing a frame, with the framebuffer to read still bound and before swapping. */
+    public void onFrameRendered(GlApi gl, long timestampNano) {
+        if (mPixelBuffers) {
+            collectCompleted(gl);
+        }
+        ReadbackConsumer stream = mStreamConsumer;
+        boolean snapshot = hasSnapshotRequests();
+        if ((stream == null && !snapshot) || mWidth <= 0 || mHeight <= 0) {
+            return;
+        }
+
+        if (mPixelBuffers) {
+            if (mInFlightCount == mSlots.length) {
+                // GPUが追いついていない。スナップショットは次のフレームで読む
+                mSkippedBusyCount++;
+                return;
+            }
+            issue(gl, timestampNano, stream);
+            return;
+        }
+
+        if (stream != null && !snapshot && mStreamFrameCount++ % mSyncFrameInterval != 0) {
+            return;
+        }
+        readSynchronously(gl, timestampNano, stream);
+    }
+
+    /** Deletes the pixel buffers and fences; frames still in flight are dropped. GL thread, context current. */
+    public void release(GlApi gl) {
+        int[] names = new int[1];
+        for (Slot slot : mSlots) {
+            if (slot.inFlight) {
+                gl.glDeleteSync(slot.sync);
+                requeueSnapshots(slot);
+                mDroppedCount.incrementAndGet();
+            }
+            if (slot.buffer != 0) {
+                names[0] = slot.buffer;
+                gl.glDeleteBuffers(1, names, 0);
+            }
+            slot.buffer = 0;
+            slot.capacity = 0;
+            slot.sync = 0;
+            slot.inFlight = false;
+            slot.stream = null;
+        }
+        mNextSlot = 0;
+        mOldestSlot = 0;
+        mInFlightCount = 0;
+    }
+
+    private void issue(GlApi gl, long timestampNano, ReadbackConsumer stream) {
+        Slot slot = mSlots[mNextSlot];
+        int bytes = mWidth * mHeight * BYTES_PER_PIXEL;
+        if (slot.buffer == 0) {
+            int[] names = new int[1];
+            gl.glGenBuffers(1, names, 0);
+            slot.buffer = names[0];
+            slot.capacity = 0;
+        }
+        gl.glBindBuffer(GlApi.GL_PIXEL_PACK_BUFFER, slot.buffer);
+        if (slot.capacity < bytes) {
+            gl.glBufferData(GlApi.GL_PIXEL_PACK_BUFFER, bytes, null, GlApi.GL_STREAM_READ);
+            slot.capacity = bytes;
+        }
+        gl.glReadPixels(mX, mY, mWidth, mHeight, GlApi.GL_RGBA, GlApi.GL_UNSIGNED_BYTE, 0);
+        gl.glBindBuffer(GlApi.GL_PIXEL_PACK_BUFFER, 0);
+        slot.sync = gl.glFenceSync(GlApi.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        slot.inFlight = true;
+        slot.timestamp = timestampNano;
+        slot.width = mWidth;
+        slot.height = mHeight;
+        slot.stream = stream;
+        takeSnapshots(slot.snapshots);
+
+        mNextSlot = (mNextSlot + 1) % mSlots.length;
+        mInFlightCount++;
+        mIssuedCount++;
+    }
+
+    /** Maps every pixel buffer whose fence has signaled, oldest first, without waiting. */
+    private void collectCompleted(GlApi gl) {
+        while (mInFlightCount > 0) {
+            Slot slot = mSlots[mOldestSlot];
+            int status = gl.glClientWaitSync(slot.sync, 0, 0);
+            if (status == GlApi.GL_TIMEOUT_EXPIRED) {
+                return;
+            }
+            gl.glDeleteSync(slot.sync);
+            slot.sync = 0;
+            slot.inFlight = false;
+            mOldestSlot = (mOldestSlot + 1) % mSlots.length;
+            mInFlightCount--;
+
+            int bytes = slot.width * slot.height * BYTES_PER_PIXEL;
+            ReadbackFrame frame = status == GlApi.GL_WAIT_FAILED ? null : mPool.acquire(bytes);
+            if (frame == null) {
+                requeueSnapshots(slot);
+                slot.stream = null;
+                mDroppedCount.incrementAndGet();
+                continue;
+            }
+            frame.begin(slot.timestamp, slot.width, slot.height);
+            gl.glBindBuffer(GlApi.GL_PIXEL_PACK_BUFFER, slot.buffer);
+            ByteBuffer mapped = (ByteBuffer) gl.glMapBufferRange(GlApi.GL_PIXEL_PACK_BUFFER, 0, bytes, GlApi.GL_MAP_READ_BIT);
+            if (mapped != null) {
+                frame.getBuffer().put(mapped);
+                frame.getBuffer().position(0);
+                gl.glUnmapBuffer(GlApi.GL_PIXEL_PACK_BUFFER);
+            }
+            gl.glBindBuffer(GlApi.GL_PIXEL_PACK_BUFFER, 0);
+            if (mapped == null) {
+                mPool.release(frame);
+                requeueSnapshots(slot);
+                slot.stream = null;
+                mDroppedCount.incrementAndGet();
+                continue;
+            }
+            if (slot.stream != null) {
+                frame.consumers.add(slot.stream);
+                slot.stream = null;
+            }
+            for (int i = 0; i < slot.snapshots.size(); i++) {
+                frame.consumers.add(slot.snapshots.get(i));
+            }
+            slot.snapshots.clear();
+            deliver(frame);
+        }
+    }
+
+    private void readSynchronously(GlApi gl, long timestampNano, ReadbackConsumer stream) {
+        int bytes = mWidth * mHeight * BYTES_PER_PIXEL;
+        ReadbackFrame frame = mPool.acquire(bytes);
+        if (frame == null) {
+            mDroppedCount.incrementAndGet();
+            return;
+        }
+        frame.begin(timestampNano, mWidth, mHeight);
+        gl.glReadPixels(mX, mY, mWidth, mHeight, GlApi.GL_RGBA, GlApi.GL_UNSIGNED_BYTE, frame.getBuffer());
+        mIssuedCount++;
+        if (stream != null) {
+            frame.consumers.add(stream);
+        }
+        takeSnapshots(frame.consumers);
+        deliver(frame);
+    }
+
+    private void deliver(ReadbackFrame frame) {
+        if (frame.delivery == null) {
+            frame.delivery = new Delivery(frame);
+        }
+        try {
+            mExecutor.execute(frame.delivery);
+        } catch (RejectedExecutionException e) {
+            frame.consumers.clear();
+            mPool.release(frame);
+            mDroppedCount.incrementAndGet();
+        }
+    }
+
+    private boolean hasSnapshotRequests() {
+        synchronized (mSnapshotRequests) {
+            return !mSnapshotRequests.isEmpty();
+        }
+    }
+
+    private void takeSnapshots(List<ReadbackConsumer> out) {
+        synchronized (mSnapshotRequests) {
+            for (int i = 0; i < mSnapshotRequests.size(); i++) {
+                out.add(mSnapshotRequests.get(i));
+            }
+            mSnapshotRequests.clear();
+        }
+    }
+
+    private void requeueSnapshots(Slot slot) {
+        if (slot.snapshots.isEmpty()) {
+            return;
+        }
+        synchronized (mSnapshotRequests) {
+            mTakenSnapshots.clear();
+            mTakenSnapshots.addAll(mSnapshotRequests);
+            mSnapshotRequests.clear();
+            mSnapshotRequests.addAll(slot.snapshots);
+            mSnapshotRequests.addAll(mTakenSnapshots);
+        }
+        slot.snapshots.clear();
+    }
+
+    public boolean isUsingPixelBuffers() {
+        return mPixelBuffers;
+    }
+
+    public int getInFlightCount() {
+        return mInFlightCount;
+    }
+
+    /** Reads issued to the GPU, pixel buffer or synchronous. */
+    public long getIssuedCount() {
+        return mIssuedCount;
+    }
+
+    /** Frames not read because every pixel buffer was still in flight. */
+    public long getSkippedBusyCount() {
+        return mSkippedBusyCount;
+    }
+
+    /** Frames read but not delivered: pool exhausted, executor full, map failure or release(). */
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    public long getDeliveredCount() {
+        return mDeliveredCount.get();
+    }
+
+    public long getFailedConsumerCount() {
+        return mFailedCount.get();
+    }
+}
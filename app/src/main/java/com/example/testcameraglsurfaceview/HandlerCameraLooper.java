@@ -0,0 +1,47 @@
+package com.example.testcameraglsurfaceview;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+public class HandlerCameraLooper implements CameraLooper {
+
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+
+    public HandlerCameraLooper(String name) {
+        mThread = new HandlerThread(name);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    /** For camera2 APIs that take a Handler; their callbacks then run on this looper. */
+    public Handler getHandler() {
+        return mHandler;
+    }
+
+    @Override
+    public void post(Runnable task) {
+        mHandler.post(task);
+    }
+
+    @Override
+    public void postDelayed(Runnable task, long delayMs) {
+        mHandler.postDelayed(task, delayMs);
+    }
+
+    @Override
+    public void removeCallbacks(Runnable task) {
+        mHandler.removeCallbacks(task);
+    }
+
+    @Override
+    public boolean isCurrentThread() {
+        return Looper.myLooper() == mThread.getLooper();
+    }
+
+    @Override
+    public void quitSafely() {
+        mThread.quitSafely();
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.testcameraglsurfaceview;
+
+import android.graphics.ImageFormat;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Handler;
+import android.view.Surface;
+
+import java.nio.ByteBuffer;
+
+/**
+ * YUV_420_888 side output of the capture session. Each image is copied into the pipeline's pool
+ * and closed right away, so analyzers never hold camera buffers. The copy runs on the given
+ * handler's thread, normally the camera control looper.
+ */
+public class ImageAnalysisStream {
+
+    private static final int MAX_IMAGES = 2;
+
+    private final FrameAnalysisPipeline mPipeline;
+    private final ImageReader mImageReader;
+
+    public ImageAnalysisStream(int width, int height, FrameAnalysisPipeline pipeline, Handler handler) {
+        mPipeline = pipeline;
+        mImageReader = ImageReader.newInstance(width, height, ImageFormat.YUV_420_888, MAX_IMAGES);
+        mImageReader.setOnImageAvailableListener(mOnImageAvailableListener, handler);
+        mPipeline.start();
+    }
+
+    private final ImageReader.OnImageAvailableListener mOnImageAvailableListener = new ImageReader.OnImageAvailableListener() {
+        @Override
+        public void onImageAvailable(ImageReader reader) {
+            Image image = reader.acquireLatestImage();
+            if (image == null) {
+                return;
+            }
+            try {
+                Image.Plane[] planes = image.getPlanes();
+                int size = 0;
+                for (Image.Plane plane : planes) {
+                    size += plane.getBuffer().remaining();
+                }
+                AnalysisFrame frame = mPipeline.obtainFrame(size);
+                if (frame == null) {
+                    return;
+                }
+                frame.begin(image.getTimestamp(), image.getWidth(), image.getHeight());
+                for (Image.Plane plane : planes) {
+                    ByteBuffer buffer = plane.getBuffer();
+                    frame.putPlane(buffer, plane.getRowStride(), plane.getPixelStride());
+                }
+                mPipeline.publish(frame);
+            } finally {
+                image.close();
+            }
+        }
+    };
+
+    public Surface getSurface() {
+        return mImageReader.getSurface();
+    }
+
+    public void close() {
+        mPipeline.stop();
+        mImageReader.close();
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Single-entry hand-off that keeps only the newest frame.
+ * Offering while a frame is still waiting replaces it, and the replaced frame is returned to the caller.
+ */
+public class LatestFrameSlot {
+
+    private AnalysisFrame mPending;
+
+    /** @return the frame that was displaced, or null */
+    public synchronized AnalysisFrame offer(AnalysisFrame frame) {
+        AnalysisFrame displaced = mPending;
+        mPending = frame;
+        notifyAll();
+        return displaced;
+    }
+
+    public synchronized AnalysisFrame poll() {
+        AnalysisFrame frame = mPending;
+        mPending = null;
+        return frame;
+    }
+
+    /** Blocks until a frame is offered or the thread is interrupted. */
+    public synchronized AnalysisFrame take() throws InterruptedException {
+        while (mPending == null) {
+            wait();
+        }
+        return poll();
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.testcameraglsurfaceview;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Color lookup with a 64x64x64 LUT laid out as an 8x8 grid of 64x64 tiles (512x512 RGBA).
+ */
+public class LutFilter extends ShaderFilter {
+
+    public static final int LUT_SIZE = 512;
+
+    private static final String FRAGMENT_SHADER =
+            "precision mediump float;\n" +
+                    "varying vec2 texcoordVarying;\n" +
+                    "uniform sampler2D texture;\n" +
+                    "uniform sampler2D lut;\n" +
+                    "uniform float intensity;\n" +
+                    "void main() {\n" +
+                    "  vec4 color = texture2D(texture, texcoordVarying);\n" +
+                    "  float blue = color.b * 63.0;\n" +
+                    "  vec2 quad1 = vec2(mod(floor(blue), 8.0), floor(floor(blue) / 8.0));\n" +
+                    "  vec2 quad2 = vec2(mod(ceil(blue), 8.0), floor(ceil(blue) / 8.0));\n" +
+                    "  vec2 inner = 0.5 / 512.0 + (0.125 - 1.0 / 512.0) * color.rg;\n" +
+                    "  vec4 color1 = texture2D(lut, quad1 * 0.125 + inner);\n" +
+                    "  vec4 color2 = texture2D(lut, quad2 * 0.125 + inner);\n" +
+                    "  vec4 mapped = mix(color1, color2, fract(blue));\n" +
+                    "  gl_FragColor = vec4(mix(color.rgb, mapped.rgb, intensity), color.a);\n" +
+                    "}\n";
+
+    private final ByteBuffer mLutPixels;
+    private volatile float mIntensity = 1.0f;
+    private int mLutTexture;
+    private int mLutHandle;
+    private int mIntensityHandle;
+
+    /** @param lutPixels LUT_SIZE x LUT_SIZE RGBA pixels, uploaded on the GL thread */
+    public LutFilter(ByteBuffer lutPixels) {
+        super(FRAGMENT_SHADER);
+        if (lutPixels.capacity() < LUT_SIZE * LUT_SIZE * 4) {
+            throw new IllegalArgumentException("LUT must be " + LUT_SIZE + "x" + LUT_SIZE + " RGBA");
+        }
+        mLutPixels = lutPixels;
+    }
+
+    public void setIntensity(float intensity) {
+        mIntensity = intensity;
+    }
+
+    @Override
+    protected void onProgramCreated(GlApi gl, int program) {
+        mLutHandle = gl.glGetUniformLocation(program, "lut");
+        mIntensityHandle = gl.glGetUniformLocation(program, "intensity");
+
+        int[] textures = new int[1];
+        gl.glGenTextures(1, textures, 0);
+        mLutTexture = textures[0];
+        gl.glBindTexture(GlApi.GL_TEXTURE_2D, mLutTexture);
+        gl.glTexParameteri(GlApi.GL_TEXTURE_2D, GlApi.GL_TEXTURE_MIN_FILTER, GlApi.GL_LINEAR);
+        gl.glTexParameteri(GlApi.GL_TEXTURE_2D, GlApi.GL_TEXTURE_MAG_FILTER, GlApi.GL_LINEAR);
+        gl.glTexParameteri(GlApi.GL_TEXTURE_2D, GlApi.GL_TEXTURE_WRAP_S, GlApi.GL_CLAMP_TO_EDGE);
+        gl.glTexParameteri(GlApi.GL_TEXTURE_2D, GlApi.GL_TEXTURE_WRAP_T, GlApi.GL_CLAMP_TO_EDGE);
+        mLutPixels.position(0);
+        gl.glTexImage2D(GlApi.GL_TEXTURE_2D, 0, GlApi.GL_RGBA, LUT_SIZE, LUT_SIZE, 0,
+                GlApi.GL_RGBA, GlApi.GL_UNSIGNED_BYTE, mLutPixels);
+    }
+
+    @Override
+    protected void onDraw(GlApi gl) {
+        gl.glActiveTexture(GlApi.GL_TEXTURE1);
+        gl.glBindTexture(GlApi.GL_TEXTURE_2D, mLutTexture);
+        gl.glUniform1i(mLutHandle, 1);
+        gl.glUniform1f(mIntensityHandle, mIntensity);
+        gl.glActiveTexture(GlApi.GL_TEXTURE0);
+    }
+
+    @Override
+    public void release(GlApi gl) {
+        super.release(gl);
+        if (mLutTexture != 0) {
+            gl.glDeleteTextures(1, new int[]{mLutTexture}, 0);
+            mLutTexture = 0;
+        }
+    }
+}
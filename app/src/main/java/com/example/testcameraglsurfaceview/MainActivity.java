@@ -6,29 +6,43 @@ import androidx.core.content.ContextCompat;
 
 import android.content.pm.PackageManager;
 import android.graphics.Point;
-import android.opengl.EGLConfig;
-import android.opengl.GLES11Ext;
-import android.opengl.GLES20;
-import android.opengl.GLSurfaceView;
+import android.graphics.SurfaceTexture;
+import android.hardware.camera2.CameraCharacteristics;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.PowerManager;
 import android.util.Log;
-import android.util.Size;
-import android.view.WindowManager;
-
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
-
-import javax.microedition.khronos.opengles.GL10;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+import android.view.View;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ThreadPoolExecutor;
 
 public class MainActivity extends AppCompatActivity {
 
     private final boolean IS_DIRTY_MODE = true;
+    // インカメラを右下に重ねて表示する。同時に開けるかは端末次第
+    private final boolean IS_PICTURE_IN_PICTURE = false;
 
     private Renderer mRenderer;
-    private GLSurfaceView mView;
+    private Camera mCamera;
+    private Camera mInsetCamera;
+    private SurfaceView mView;
+    private DigitalZoom mDigitalZoom;
+    private RenderLoop mRenderLoop;
+    private MetricsOverlay mMetricsOverlay;
+    private PowerManager.OnThermalStatusChangedListener mThermalListener;
     private int REQUEST_CODE_FOR_PERMISSIONS = 1234;;
     private final String[] REQUIRED_PERMISSIONS = new String[]{"android.permission.CAMERA"};
+    // 描画からパネルに出るまでのvsync数
+    private static final int PRESENTATION_LATENCY_FRAMES = 2;
+    private static final long SURFACE_DESTROY_TIMEOUT_MS = 1000;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -44,25 +58,157 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onPause() {
         super.onPause();
-        mView.onPause();
+        // 描画スレッドのイベントはpauseより先に処理される
+        mRenderer.stopRecording();
+        mRenderer.stopReplay();
+        mRenderLoop.pause();
+        mCamera.stop();
+        if (mInsetCamera != null) {
+            mInsetCamera.stop();
+        }
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        mView.onResume();
+        mRenderLoop.resume();
+        mCamera.start();
+        if (mInsetCamera != null) {
+            mInsetCamera.start();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mThermalListener != null) {
+            ((PowerManager) getSystemService(POWER_SERVICE)).removeThermalStatusListener(mThermalListener);
+        }
+        if (mCamera != null) {
+            mCamera.release();
+        }
+        if (mInsetCamera != null) {
+            mInsetCamera.release();
+        }
+        if (mRenderLoop != null) {
+            mRenderLoop.quit();
+        }
+        if (mRenderer != null) {
+            mRenderer.release();
+        }
     }
 
     private void init(){
         setContentView(R.layout.activity_main);
-        mView = (GLSurfaceView)findViewById(R.id.gl_surface_view);
+        mView = (SurfaceView)findViewById(R.id.gl_surface_view);
 
-        // Kotetsuではここが3。違いは？
-        mView.setEGLContextClientVersion(2);
         mRenderer = new Renderer(this);
-        mView.setRenderer(mRenderer);
-        if(IS_DIRTY_MODE){
-            mView.setRenderMode(GLSurfaceView.RENDERMODE_WHEN_DIRTY);
+        long vsyncPeriod = (long) (1000000000L / getWindowManager().getDefaultDisplay().getRefreshRate());
+        mRenderLoop = new RenderLoop(new HandlerCameraLooper("RenderLoop"), new Egl14Api(),
+                new ChoreographerVsyncSource(), mRenderer,
+                new PresentationScheduler(vsyncPeriod, PRESENTATION_LATENCY_FRAMES));
+        mCamera = new Camera(this);
+        mCamera.setFrameAnalysisPipeline(mRenderer.getFrameAnalysisPipeline());
+        if (IS_PICTURE_IN_PICTURE) {
+            mInsetCamera = new Camera(this, CameraCharacteristics.LENS_FACING_FRONT, Camera.DEFAULT_IDLE_TIMEOUT_MS);
+            mRenderer.setCameras(new Camera[]{mCamera, mInsetCamera},
+                    new CompositeLayout(CompositeLayout.Arrangement.PICTURE_IN_PICTURE));
+        } else {
+            mCamera.setOnFrameAvailableListener(mRenderer);
+            mRenderer.setCamera(mCamera);
+            mDigitalZoom = new DigitalZoom();
+            mCamera.setDigitalZoom(mDigitalZoom);
+            mRenderer.setDigitalZoom(mDigitalZoom);
+        }
+        Camera.ErrorListener errorListener = new Camera.ErrorListener() {
+            @Override
+            public void onCameraError(final int error) {
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Toast.makeText(MainActivity.this, "camera error " + error, Toast.LENGTH_LONG).show();
+                    }
+                });
+            }
+        };
+        mCamera.setErrorListener(errorListener);
+        if (mInsetCamera != null) {
+            mInsetCamera.setErrorListener(errorListener);
+        }
+        mRenderLoop.setContinuous(!IS_DIRTY_MODE);
+        mView.getHolder().addCallback(new SurfaceHolder.Callback() {
+            private int mOutput = 0;
+
+            @Override
+            public void surfaceCreated(SurfaceHolder holder) {
+            }
+
+            @Override
+            public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+                if (mOutput == 0) {
+                    mOutput = mRenderLoop.addOutput(holder.getSurface(), width, height);
+                } else {
+                    mRenderLoop.setOutputSize(mOutput, width, height);
+                }
+            }
+
+            @Override
+            public void surfaceDestroyed(SurfaceHolder holder) {
+                mRenderLoop.removeOutput(mOutput);
+                mOutput = 0;
+                // 戻るとSurfaceが破棄されるので、EGLサーフェスが消えるまで待つ
+                try {
+                    if (!mRenderLoop.awaitIdle(SURFACE_DESTROY_TIMEOUT_MS)) {
+                        Log.w("DEBUG", "render thread did not release the surface in time");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        // 長押しで計測値のオーバーレイを表示/非表示
+        mMetricsOverlay = new MetricsOverlay((TextView)findViewById(R.id.metrics_overlay), mRenderer.getFrameMetrics(),
+                mCamera.getLifecycle(), mRenderer.getStatistics());
+        mView.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                mMetricsOverlay.toggle();
+                return true;
+            }
+        });
+        if (mDigitalZoom != null) {
+            // ピンチでズーム。セッションは組み直さない
+            final ScaleGestureDetector scaleDetector = new ScaleGestureDetector(this,
+                    new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+                        @Override
+                        public boolean onScale(ScaleGestureDetector detector) {
+                            mDigitalZoom.zoomBy(detector.getScaleFactor(),
+                                    detector.getFocusX() / mView.getWidth(), detector.getFocusY() / mView.getHeight());
+                            mRenderLoop.requestRender();
+                            return true;
+                        }
+                    });
+            mView.setOnTouchListener(new View.OnTouchListener() {
+                @Override
+                public boolean onTouch(View v, MotionEvent event) {
+                    scaleDetector.onTouchEvent(event);
+                    // 長押しの判定はビューに任せる
+                    return false;
+                }
+            });
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
+            mRenderer.setThermalStatus(powerManager.getCurrentThermalStatus());
+            mThermalListener = new PowerManager.OnThermalStatusChangedListener() {
+                @Override
+                public void onThermalStatusChanged(int status) {
+                    mRenderer.setThermalStatus(status);
+                }
+            };
+            powerManager.addThermalStatusListener(mThermalListener);
         }
 
         ScreenUtil.hideSystemUI(this);
@@ -79,282 +225,330 @@ public class MainActivity extends AppCompatActivity {
         return true;
     }
 
-    public class Renderer implements GLSurfaceView.Renderer {
-        private static final int FLOAT_SIZE_BYTES = 4;
-        private static final String VERTEX_SHADER =
-                "attribute vec4 position;\n" +
-                        "attribute vec2 texcoord;\n" +
-                        "varying vec2 texcoordVarying;\n" +
-                        "void main() {\n" +
-                        "    gl_Position = position;\n" +
-                        "    texcoordVarying = texcoord;\n" +
-                        "}\n";
-        private static final String FRAGMENT_SHADER =
-                "#extension GL_OES_EGL_image_external : require\n" +
-                        "precision mediump float;\n" +
-                        "varying vec2 texcoordVarying;\n" +
-                        "uniform samplerExternalOES texture;\n" +
-                        "void main() {\n" +
-                        "  gl_FragColor = texture2D(texture, texcoordVarying);\n" +
-                        "}\n";
-
-        private final float TEX_COORDS_ROTATION_0[] = {
-                0.0f, 0.0f,
-                0.0f, 1.0f,
-                1.0f, 0.0f,
-                1.0f, 1.0f
-        };
-        private final float TEX_COORDS_ROTATION_90[] = {
-                1.0f, 0.0f,
-                0.0f, 0.0f,
-                1.0f, 1.0f,
-                0.0f, 1.0f
-        };
-        private final float TEX_COORDS_ROTATION_180[] = {
-                1.0f, 1.0f,
-                1.0f, 0.0f,
-                0.0f, 1.0f,
-                0.0f, 0.0f
-        };
-        private final float TEX_COORDS_ROTATION_270[] = {
-                0.0f, 1.0f,
-                1.0f, 1.0f,
-                0.0f, 0.0f,
-                1.0f, 0.0f
-        };
-        private final float VERTECES[] = {
-                -1.0f, 1.0f, 0.0f,
-                -1.0f, -1.0f, 0.0f,
-                1.0f, 1.0f, 0.0f,
-                1.0f, -1.0f, 0.0f
-        };
+    public class Renderer implements RenderLoop.Renderer, SurfaceTexture.OnFrameAvailableListener {
+        private static final int TARGET_FPS = 30;
+        private static final int SHADER_CACHE_CAPACITY = 16;
+        private static final int ANALYSIS_FRAMES_IN_FLIGHT = 4;
+        private static final int METRICS_RING_CAPACITY = 256;
+        private static final int READBACK_POOL_SIZE = 3;
+        private static final int READBACK_PIXEL_BUFFERS = 2;
+        private static final int READBACK_SYNC_FRAME_INTERVAL = 6;
+        private static final int INSET_FPS = 15;
+        private static final int STATISTICS_GRID_SIZE = 4;
+        private static final int STATISTICS_MAX_SAMPLE_SIZE = 256;
+        private static final int STATISTICS_POOL_SIZE = 2;
+        private static final int STATISTICS_PIXEL_BUFFERS = 3;
+        private static final int STATISTICS_SYNC_FRAME_INTERVAL = 6;
+        private static final int REPLAY_WINDOW_SEC = 20;
+        private static final int REPLAY_BUDGET_BYTES = 32 * 1024 * 1024;
 
         private AppCompatActivity mActivity;
-        private int mProgram;
-        private int mPositionHandle;
-        private int mTexCoordHandle;
-        private int mTextureHandle;
-        private int mTextureID;
-        private FloatBuffer mTexCoordBuffer;
-        private FloatBuffer mVertexBuffer;
-
+        private final Gles20Api mGl = new Gles20Api();
+        private final ShaderCache mShaderCache;
+        private final FrameAnalysisPipeline mFrameAnalysisPipeline = new FrameAnalysisPipeline(
+                ANALYSIS_FRAMES_IN_FLIGHT + 2,
+                new FrameAnalysisExecutor(Clock.SYSTEM, ANALYSIS_FRAMES_IN_FLIGHT));
+        private final FramePacer mFramePacer = new TimestampFramePacer(Clock.SYSTEM, TARGET_FPS);
+        private final FrameMetricsRecorder mFrameMetrics =
+                new FrameMetricsRecorder(METRICS_RING_CAPACITY, 1000000000L / TARGET_FPS, true);
+        private final ThreadPoolExecutor mReadbackExecutor = GpuReadback.newConsumerExecutor(READBACK_POOL_SIZE);
+        private final GpuReadback mReadback = new GpuReadback(ReadbackFrame.newPool(READBACK_POOL_SIZE),
+                READBACK_PIXEL_BUFFERS, mReadbackExecutor, READBACK_SYNC_FRAME_INTERVAL);
+        private final ThreadPoolExecutor mStatisticsExecutor = GpuReadback.newConsumerExecutor(STATISTICS_POOL_SIZE);
+        private final GpuFrameStatistics mStatistics;
+        private final QualityGovernor mQualityGovernor = new QualityGovernor(QualityGovernor.defaultLevels());
+        private volatile int mThermalStatus = QualityGovernor.THERMAL_NONE;
+        private long mLastDroppedFrameCount = 0;
         private Camera mCamera;
-        private boolean mConfigured = false;
+        private CameraRenderer mCameraRenderer;
+        private CameraCompositor mCompositor;
+        private VideoRecorder mRecorder;
+        private volatile ReplayRecorder mReplayRecorder;
 
         public Renderer(AppCompatActivity activity) {
             mActivity = activity;
+            mShaderCache = new ShaderCache(SHADER_CACHE_CAPACITY,
+                    new ProgramBinaryStore(new File(activity.getCodeCacheDir(), "shader_cache")), Clock.SYSTEM);
+            mStatistics = new GpuFrameStatistics(mShaderCache,
+                    new GpuReadback(ReadbackFrame.newPool(STATISTICS_POOL_SIZE), STATISTICS_PIXEL_BUFFERS,
+                            mStatisticsExecutor, STATISTICS_SYNC_FRAME_INTERVAL),
+                    STATISTICS_GRID_SIZE, STATISTICS_GRID_SIZE, STATISTICS_MAX_SAMPLE_SIZE);
+            // 見る人がいるときだけ縮小とリードバックを行う
+            mStatistics.setEnabled(false);
         }
 
-        @Override
-        public void onSurfaceCreated(GL10 unused, javax.microedition.khronos.egl.EGLConfig config) {
-            onSurfaceCreated();
+        /**
+         * Stops frame analysis and the worker and readback threads; call once the cameras and the
+         * render loop have been released. Frames still queued are delivered first.
+         */
+        public void release() {
+            mFrameAnalysisPipeline.stop();
+            mFrameAnalysisPipeline.getExecutor().shutdown();
+            mReadbackExecutor.shutdown();
+            mStatisticsExecutor.shutdown();
         }
 
-        public void onSurfaceCreated(GL10 unused, EGLConfig config) {
-            onSurfaceCreated();
+        /** Must be called before the render loop is resumed. */
+        public void setCamera(Camera camera) {
+            mCamera = camera;
+            mCameraRenderer = new CameraRenderer(mGl, camera, mShaderCache, mFrameMetrics, mReadback, Clock.SYSTEM);
+            mCameraRenderer.getGlState().setValidation(BuildConfig.DEBUG);
+            mCameraRenderer.setCaptureMetadata(camera.getCaptureMetadata());
+            mCameraRenderer.setStatistics(mStatistics);
         }
 
-        private void onSurfaceCreated(){
-
-            int[] textures = new int[1];
-            GLES20.glGenTextures(1, textures, 0);
-            mTextureID = textures[0];
-
-            GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, mTextureID);
-            GLES20.glTexParameterf(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GL10.GL_TEXTURE_MIN_FILTER, GL10.GL_LINEAR);
-            GLES20.glTexParameterf(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GL10.GL_TEXTURE_MAG_FILTER, GL10.GL_LINEAR);
-            GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GL10.GL_TEXTURE_WRAP_S, GL10.GL_CLAMP_TO_EDGE);
-            GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GL10.GL_TEXTURE_WRAP_T, GL10.GL_CLAMP_TO_EDGE);
-
-            mCamera = new Camera(mActivity, mTextureID);
-            mCamera.open();
-
-            mTexCoordBuffer =
-                    ByteBuffer.allocateDirect(TEX_COORDS_ROTATION_0.length * FLOAT_SIZE_BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
-            mVertexBuffer =
-                    ByteBuffer.allocateDirect(VERTECES.length * FLOAT_SIZE_BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
-            mVertexBuffer.put(VERTECES).position(0);
-
-            mProgram = createProgram(VERTEX_SHADER, FRAGMENT_SHADER);
-
-            mPositionHandle = GLES20.glGetAttribLocation(mProgram, "position");
-            GLES20.glEnableVertexAttribArray(mPositionHandle);
-            mTexCoordHandle = GLES20.glGetAttribLocation(mProgram, "texcoord");
-            GLES20.glEnableVertexAttribArray(mTexCoordHandle);
-            checkGlError("glGetAttribLocation");
+        /** Crops the preview to zoom unless the camera does; setCamera() first. */
+        public void setDigitalZoom(DigitalZoom zoom) {
+            mCameraRenderer.setDigitalZoom(zoom);
+        }
 
-            mTextureHandle = GLES20.glGetUniformLocation(mProgram, "texture");
-            checkGlError("glGetUniformLocation");
+        /**
+         * Composites several cameras instead of setCamera(); must be called before the render loop is
+         * resumed. The first camera runs at TARGET_FPS and the others at INSET_FPS. Filters, readback,
+         * recording and quality scaling only apply to a single camera.
+         */
+        public void setCameras(Camera[] cameras, CompositeLayout layout) {
+            mCamera = cameras[0];
+            mCompositor = new CameraCompositor(mGl, mShaderCache, mFrameMetrics, layout, Clock.SYSTEM);
+            mCompositor.getGlState().setValidation(BuildConfig.DEBUG);
+            for (Camera camera : cameras) {
+                final int source = mCompositor.addSource(camera,
+                        camera == mCamera ? mFramePacer : new TimestampFramePacer(Clock.SYSTEM, INSET_FPS));
+                camera.setOnFrameAvailableListener(new SurfaceTexture.OnFrameAvailableListener() {
+                    @Override
+                    public void onFrameAvailable(SurfaceTexture surfaceTexture) {
+                        if (mCompositor.onFrameAvailable(source)) {
+                            mRenderLoop.requestRender();
+                        }
+                    }
+                });
+            }
+        }
 
-            mView.requestRender();
+        /** Delivers the next drawn preview frame to consumer on the readback thread. */
+        public void requestSnapshot(ReadbackConsumer consumer) {
+            mReadback.requestSnapshot(consumer);
         }
 
-        private final boolean DEBUG_IMPORTANT = false;
-        private final boolean DEBUG_DETAIL = false;
-        private final String TAG = "DEBUG";
-        private final long BASE_NANO_SEC_30FPS = 33333334;
-        private final long BASE_NANO_SEC_15FPS = BASE_NANO_SEC_30FPS * 2;
-        private final long INTERVAL_NANO_SEC = BASE_NANO_SEC_30FPS;
-        private int frameCount = 0;
-        private long lastUpdateTime = 0;
-        private long lastEndTime = 0;
+        /** Delivers drawn preview frames to consumer until set to null; on ES2 only every few frames. */
+        public void setStreamConsumer(ReadbackConsumer consumer) {
+            mReadback.setStreamConsumer(consumer);
+        }
 
-        public void onDrawFrame(GL10 unused ) {
+        public GpuReadback getReadback() {
+            return mReadback;
+        }
 
-            long startTime = System.nanoTime();
-            long delayTime = startTime - lastEndTime;
+        public FrameAnalysisPipeline getFrameAnalysisPipeline() {
+            return mFrameAnalysisPipeline;
+        }
 
-            GLES20.glClearColor(0.5f, 0.5f, 1.0f, 1.0f);
-            GLES20.glClear(GLES20.GL_DEPTH_BUFFER_BIT | GLES20.GL_COLOR_BUFFER_BIT);
+        public ShaderCache getShaderCache() {
+            return mShaderCache;
+        }
 
-            if(mCamera == null){
-                mView.requestRender();
-                return;
-            }
+        /** @return null while compositing several cameras */
+        public FilterChain getFilterChain() {
+            return mCameraRenderer == null ? null : mCameraRenderer.getFilterChain();
+        }
 
-            if (!mConfigured) {
-                if (mConfigured = mCamera.getInitialized()) {
-                    mCamera.setCameraRotation();
-                    setConfig();
-                } else {
-                    mView.requestRender();
-                    return;
+        public void setScaleMode(final QuadGeometry.ScaleMode mode) {
+            mRenderLoop.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mCameraRenderer == null) {
+                        return;
+                    }
+                    mCameraRenderer.setScaleMode(mode);
+                    mRenderLoop.requestRender();
                 }
-            }
-
-            mCamera.updateTexture();
-
-            GLES20.glUseProgram(mProgram);
-
-            GLES20.glVertexAttribPointer(mTexCoordHandle, 2, GLES20.GL_FLOAT, false, 0, mTexCoordBuffer);
-            GLES20.glVertexAttribPointer(mPositionHandle, 3, GLES20.GL_FLOAT, false, 0, mVertexBuffer);
-            checkGlError("glVertexAttribPointer");
-
-            GLES20.glUniform1i(mTextureHandle, 0);
-            checkGlError("glUniform1i");
+            });
+        }
 
-            GLES20.glActiveTexture(GLES20.GL_TEXTURE0);
-            GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, mTextureID);
-            checkGlError("glBindTexture");
+        public FrameMetricsRecorder getFrameMetrics() {
+            return mFrameMetrics;
+        }
 
-            GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        /** Luminance, histogram and motion of the single-camera preview; disabled until setEnabled(true). */
+        public GpuFrameStatistics getStatistics() {
+            return mStatistics;
+        }
 
-            GLES20.glUseProgram(0);
-            GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, 0);
+        /** PowerManager thermal status, from any thread. */
+        public void setThermalStatus(int status) {
+            mThermalStatus = status;
+        }
 
-            mView.requestRender();
+        public QualityGovernor getQualityGovernor() {
+            return mQualityGovernor;
+        }
 
-            /* 平均50fps以上出ているので、30fpsになるように調整 */
-            long endTime = System.nanoTime();
-            long processingTime = endTime - startTime;
-            if(DEBUG_IMPORTANT && DEBUG_DETAIL) Log.d(TAG, String.format("process:%.2f,  delay:%.2f", processingTime/1000000.0, delayTime/1000000.0));
-            processingTime += delayTime;
-            if(IS_DIRTY_MODE && INTERVAL_NANO_SEC > processingTime){
-                try{
-                    long sleepTimeMills = (INTERVAL_NANO_SEC - processingTime) / 1000000;
-                    if(DEBUG_IMPORTANT && DEBUG_DETAIL) Log.d(TAG, String.format("Sleep for %d[ms] to adjust fps.", sleepTimeMills));
-                    Thread.sleep(sleepTimeMills);
-                } catch (InterruptedException e){
-                    Log.e(TAG, "onDrawFrame()", e);
+        /** Starts recording the rendered image, filters included, to an MP4 file. */
+        public void startRecording(final File file) {
+            mRenderLoop.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mRecorder != null || mReplayRecorder != null
+                            || mCameraRenderer == null || !mCameraRenderer.isConfigured()) {
+                        return;
+                    }
+                    try {
+                        Viewport viewport = mCameraRenderer.getViewport();
+                        mRecorder = new VideoRecorder(file, viewport.width, viewport.height, TARGET_FPS);
+                        mCameraRenderer.setOutput(mRecorder);
+                    } catch (IOException | RuntimeException e) {
+                        Log.e(TAG, "failed to start recording", e);
+                    }
                 }
-            }
+            });
+        }
 
-            if(DEBUG_IMPORTANT){
-                frameCount++;
-                long timeDiff = endTime - lastUpdateTime;
-                if(timeDiff > 1000000000){
-                    long timeDiffMills = timeDiff / 1000000;
-                    double fps = (double)(frameCount * 1000) / (double)timeDiffMills;
-                    Log.d(TAG, String.format("fps:%.2f,  frame:%d,  ms:%d", fps, frameCount, timeDiffMills));
-                    frameCount = 0;
-                    lastUpdateTime = endTime;
+        public void stopRecording() {
+            mRenderLoop.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mRecorder != null) {
+                        mCameraRenderer.setOutput(null);
+                        mRecorder.stop();
+                        mRecorder = null;
+                    }
                 }
-            }
+            });
+        }
 
-            lastEndTime = System.nanoTime();
+        /**
+         * Keeps encoding the last REPLAY_WINDOW_SEC seconds into memory for saveReplay(). The renderer
+         * has one output, so this and startRecording() exclude each other.
+         */
+        public void startReplay() {
+            mRenderLoop.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mRecorder != null || mReplayRecorder != null
+                            || mCameraRenderer == null || !mCameraRenderer.isConfigured()) {
+                        return;
+                    }
+                    try {
+                        Viewport viewport = mCameraRenderer.getViewport();
+                        mReplayRecorder = new ReplayRecorder(viewport.width, viewport.height, TARGET_FPS,
+                                REPLAY_WINDOW_SEC, REPLAY_BUDGET_BYTES);
+                        mCameraRenderer.setOutput(mReplayRecorder);
+                    } catch (IOException | RuntimeException e) {
+                        Log.e(TAG, "failed to start replay buffer", e);
+                    }
+                }
+            });
         }
 
-        public void onSurfaceChanged (GL10 unused, int width, int height) {
-            mConfigured = false;
-            mView.requestRender();
+        /** Writes the buffered seconds to an MP4 file while the preview and the buffering go on. Any thread. */
+        public boolean saveReplay(File file) {
+            ReplayRecorder recorder = mReplayRecorder;
+            return recorder != null && recorder.save(file);
         }
 
-        private int loadShader(int shaderType, String source) {
-            int shader = GLES20.glCreateShader(shaderType);
-            if (shader != 0) {
-                GLES20.glShaderSource(shader, source);
-                GLES20.glCompileShader(shader);
-                int[] compiled = new int[1];
-                GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, compiled, 0);
-                if (compiled[0] == 0) {
-                    GLES20.glDeleteShader(shader);
-                    shader = 0;
+        public void stopReplay() {
+            mRenderLoop.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mReplayRecorder != null) {
+                        mCameraRenderer.setOutput(null);
+                        mReplayRecorder.stop();
+                        mReplayRecorder = null;
+                    }
                 }
-            }
-            return shader;
+            });
         }
 
-        private int createProgram(String vertexSource, String fragmentSource) {
-            int vertexShader = loadShader(GLES20.GL_VERTEX_SHADER, vertexSource);
-            if (vertexShader == 0) {
-                return 0;
+        @Override
+        public void onFrameAvailable(SurfaceTexture surfaceTexture) {
+            if (!IS_DIRTY_MODE) {
+                return;
+            }
+            if (mFramePacer.onFrameAvailable()) {
+                mRenderLoop.requestRender();
             }
+        }
 
-            int pixelShader = loadShader(GLES20.GL_FRAGMENT_SHADER, fragmentSource);
-            if (pixelShader == 0) {
-                return 0;
+        @Override
+        public void onContextCreated(int clientVersion) {
+            mGl.setClientVersion(clientVersion);
+            if (mCompositor != null) {
+                mCompositor.onSurfaceCreated();
+            } else {
+                mCameraRenderer.onSurfaceCreated();
             }
+        }
 
-            int program = GLES20.glCreateProgram();
-            if (program == 0) {
-                return 0;
+        /** Hands the camera texture back and frees readback buffers before the context is destroyed. */
+        @Override
+        public void onContextReleasing() {
+            if (mCompositor != null) {
+                mCompositor.releaseContextResources();
+            } else {
+                mCameraRenderer.releaseContextResources();
             }
+        }
 
-            GLES20.glAttachShader(program, vertexShader);
-            GLES20.glAttachShader(program, pixelShader);
-            GLES20.glLinkProgram(program);
+        private final String TAG = "DEBUG";
 
-            int[] linkStatus = new int[1];
-            GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, linkStatus, 0);
-            if (linkStatus[0] != GLES20.GL_TRUE) {
-                GLES20.glDeleteProgram(program);
-                program = 0;
+        @Override
+        public int onDrawFrame() {
+            /* 次の描画はカメラの新フレーム到着時にFramePacerが判断して要求する。
+               カメラの準備中や停止中に描画を要求し続けることはしない */
+            if (mCompositor != null) {
+                // 各カメラのペーサーはコンポジタが取り込み時に更新する
+                mCompositor.drawFrame();
+                return FrameChangeTracker.REDRAW;
             }
-            return program;
+            mFramePacer.onDrawStarted();
+            if (mCameraRenderer.drawFrame()) {
+                updateQuality();
+            }
+            return mCameraRenderer.getLastDecision();
+        }
+
+        @Override
+        public long getFrameTimestamp() {
+            return mCameraRenderer.getFrameTimestamp();
         }
 
-        private void checkGlError(String op) {
-            int error = GLES20.glGetError();
-            if (error != GLES20.GL_NO_ERROR) {
-                throw new RuntimeException(op + ": glError " + error);
+        @Override
+        public void onDrawCopy(int width, int height) {
+            if (mCompositor != null) {
+                // 取り込み済みの各カメラの画像を合成し直す
+                mCompositor.drawFrame();
+            } else {
+                mCameraRenderer.drawCopy(width, height);
             }
         }
 
-        private void setConfig() {
-            switch(mCamera.getCameraRotation()) {
-                case ROTATION_0:
-                    mTexCoordBuffer.put(TEX_COORDS_ROTATION_0);
-                    break;
-                case ROTATION_90:
-                    mTexCoordBuffer.put(TEX_COORDS_ROTATION_90);
-                    break;
-                case ROTATION_180:
-                    mTexCoordBuffer.put(TEX_COORDS_ROTATION_180);
-                    break;
-                case ROTATION_270:
-                    mTexCoordBuffer.put(TEX_COORDS_ROTATION_270);
-                    break;
+        private void updateQuality() {
+            long dropped = mFrameMetrics.getDroppedFrameCount();
+            // reset()された直後は負になる
+            int missed = (int) Math.max(0, dropped - mLastDroppedFrameCount);
+            mLastDroppedFrameCount = dropped;
+            if (!mQualityGovernor.onFrame(mCameraRenderer.getLastDrawTimeNano(), missed, mThermalStatus)) {
+                return;
             }
-            mTexCoordBuffer.position(0);
+            QualityGovernor.Level level = mQualityGovernor.getLevel();
+            Log.i(TAG, "quality " + level);
+            mFramePacer.setTargetFps(level.fps);
+            mFrameMetrics.setTargetFrameInterval(1000000000L / level.fps);
+            mCamera.setQuality(level.maxPixels, level.fps);
+        }
 
+        @Override
+        public void onSurfaceChanged(int width, int height) {
+            if (mCompositor != null) {
+                mCompositor.onSurfaceChanged(width, height);
+                return;
+            }
+            // RenderLoopはSKIPのフレームをスワップしないので、前の画像がそのまま表示され続ける
+            mCameraRenderer.getChangeTracker().setSwapPreserved(true);
             Point displaySize = new Point();
             mActivity.getWindowManager().getDefaultDisplay().getSize(displaySize);
-            Size textureSize = mCamera.getCameraSize();
-            Point textureOrigin = new Point(
-                    (displaySize.x - textureSize.getWidth()) / 2,
-                    (displaySize.y - textureSize.getHeight()) / 2);
-
-            GLES20.glViewport(textureOrigin.x, textureOrigin.y, textureSize.getWidth(), textureSize.getHeight());
+            mCameraRenderer.setDisplaySize(displaySize.x, displaySize.y);
+            mCameraRenderer.onSurfaceChanged(width, height);
         }
     }
 }
@@ -0,0 +1,83 @@
+package com.example.testcameraglsurfaceview;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.util.Log;
+import android.view.Surface;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * H.264 MediaCodec with a surface input, exposed through VideoEncoder.
+ */
+public class MediaCodecVideoEncoder implements VideoEncoder {
+
+    private static final String TAG = "MediaCodecVideoEncoder";
+    private static final String MIME_TYPE = MediaFormat.MIMETYPE_VIDEO_AVC;
+    private static final int I_FRAME_INTERVAL_SEC = 1;
+
+    private final MediaCodec mCodec;
+    private final Surface mInputSurface;
+    private final MediaCodec.BufferInfo mBufferInfo = new MediaCodec.BufferInfo();
+
+    public MediaCodecVideoEncoder(int width, int height, int bitRate, int frameRate) throws IOException {
+        MediaFormat format = MediaFormat.createVideoFormat(MIME_TYPE, width, height);
+        format.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, bitRate);
+        format.setInteger(MediaFormat.KEY_FRAME_RATE, frameRate);
+        format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, I_FRAME_INTERVAL_SEC);
+
+        mCodec = MediaCodec.createEncoderByType(MIME_TYPE);
+        try {
+            mCodec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            mInputSurface = mCodec.createInputSurface();
+            mCodec.start();
+        } catch (RuntimeException e) {
+            mCodec.release();
+            throw e;
+        }
+    }
+
+    public Surface getInputSurface() {
+        return mInputSurface;
+    }
+
+    @Override
+    public int dequeueOutputBuffer(EncodedBufferInfo info, long timeoutUs) {
+        int index = mCodec.dequeueOutputBuffer(mBufferInfo, timeoutUs);
+        info.set(mBufferInfo.offset, mBufferInfo.size, mBufferInfo.presentationTimeUs, mBufferInfo.flags);
+        return index;
+    }
+
+    @Override
+    public ByteBuffer getOutputBuffer(int index) {
+        return mCodec.getOutputBuffer(index);
+    }
+
+    @Override
+    public Object getOutputFormat() {
+        return mCodec.getOutputFormat();
+    }
+
+    @Override
+    public void releaseOutputBuffer(int index) {
+        mCodec.releaseOutputBuffer(index, false);
+    }
+
+    @Override
+    public void signalEndOfInputStream() {
+        mCodec.signalEndOfInputStream();
+    }
+
+    public void release() {
+        try {
+            mCodec.stop();
+        } catch (IllegalStateException e) {
+            Log.w(TAG, "codec stop failed", e);
+        }
+        mCodec.release();
+        mInputSurface.release();
+    }
+}
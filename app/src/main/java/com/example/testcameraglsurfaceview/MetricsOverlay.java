@@ -0,0 +1,93 @@
+package com.example.testcameraglsurfaceview;
+
+import android.view.View;
+import android.widget.TextView;
+
+import java.util.Locale;
+
+/**
+ * Shows FrameMetricsRecorder percentiles in a TextView, refreshed on the UI thread while visible.
+ */
+public class MetricsOverlay {
+
+    private static final long UPDATE_INTERVAL_MS = 500;
+
+    private final TextView mView;
+    private final FrameMetricsRecorder mRecorder;
+    private final CameraLifecycle mCameraLifecycle;
+    private final GpuFrameStatistics mStatistics;
+    private final FrameMetricsSnapshot mSnapshot = new FrameMetricsSnapshot();
+    private final FrameStatistics mFrameStatistics = new FrameStatistics();
+    private boolean mVisible = false;
+
+    /** @param statistics enabled while the overlay is visible, or null */
+    public MetricsOverlay(TextView view, FrameMetricsRecorder recorder, CameraLifecycle cameraLifecycle,
+                          GpuFrameStatistics statistics) {
+        mView = view;
+        mRecorder = recorder;
+        mCameraLifecycle = cameraLifecycle;
+        mStatistics = statistics;
+        mView.setVisibility(View.GONE);
+    }
+
+    public void setVisible(boolean visible) {
+        if (visible == mVisible) {
+            return;
+        }
+        mVisible = visible;
+        mView.removeCallbacks(mUpdate);
+        if (mStatistics != null) {
+            mStatistics.setEnabled(visible);
+        }
+        if (visible) {
+            mRecorder.setEnabled(true);
+            mView.setVisibility(View.VISIBLE);
+            mUpdate.run();
+        } else {
+            mView.setVisibility(View.GONE);
+        }
+    }
+
+    public void toggle() {
+        setVisible(!mVisible);
+    }
+
+    private final Runnable mUpdate = new Runnable() {
+        @Override
+        public void run() {
+            mRecorder.getSnapshot(mSnapshot);
+            StringBuilder text = new StringBuilder();
+            text.append(String.format(Locale.US, "fps %.1f  frames %d  dropped %d\n",
+                    mSnapshot.getFps(), mSnapshot.frameCount, mSnapshot.droppedFrameCount));
+            append(text, "draw    ", mSnapshot.getStats(FrameMetricsRecorder.METRIC_DRAW_TIME));
+            append(text, "latency ", mSnapshot.getStats(FrameMetricsRecorder.METRIC_LATENCY));
+            append(text, "interval", mSnapshot.getStats(FrameMetricsRecorder.METRIC_FRAME_INTERVAL));
+            if (mSnapshot.getStats(FrameMetricsRecorder.METRIC_EXPOSURE_TIME).count > 0) {
+                append(text, "exposure", mSnapshot.getStats(FrameMetricsRecorder.METRIC_EXPOSURE_TIME));
+            }
+            if (mSnapshot.getStats(FrameMetricsRecorder.METRIC_SENSOR_FRAME_DURATION).count > 0) {
+                append(text, "sensor  ", mSnapshot.getStats(FrameMetricsRecorder.METRIC_SENSOR_FRAME_DURATION));
+            }
+            long timeToFirstFrame = mCameraLifecycle.getTimeToFirstFrameNano();
+            if (timeToFirstFrame >= 0) {
+                text.append(String.format(Locale.US, "first frame %.1f ms (%s)  opens %d\n",
+                        timeToFirstFrame / 1000000.0, mCameraLifecycle.isLastStartWarm() ? "warm" : "cold",
+                        mCameraLifecycle.getOpenCount()));
+            }
+            if (mStatistics != null && mStatistics.getLatest(mFrameStatistics)) {
+                text.append(String.format(Locale.US, "luma %.2f  dark %.0f%%  bright %.0f%%  motion %.3f\n",
+                        mFrameStatistics.getMeanLuma(), mFrameStatistics.getDarkFraction() * 100,
+                        mFrameStatistics.getBrightFraction() * 100, mFrameStatistics.getMotion()));
+            }
+            mView.setText(text);
+            if (mVisible) {
+                mView.postDelayed(this, UPDATE_INTERVAL_MS);
+            }
+        }
+    };
+
+    private static void append(StringBuilder text, String label, FrameMetricsSnapshot.Stats stats) {
+        text.append(String.format(Locale.US, "%s p50 %.2f  p90 %.2f  p99 %.2f  max %.2f ms\n", label,
+                stats.p50 / 1000000.0, stats.p90 / 1000000.0, stats.p99 / 1000000.0, stats.max / 1000000.0));
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.testcameraglsurfaceview;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+
+/**
+ * Bounded hand-off of encoded samples from the encoder drain (GL thread) to the muxer writer thread,
+ * so file I/O never stalls rendering. Sample buffers are pooled and only grow when a larger sample arrives.
+ * When the writer falls behind, samples are dropped until the next key frame so the stream stays decodable.
+ */
+public class MuxerQueue implements EncodedSampleSink {
+
+    private static final long FINISH_TIMEOUT_MS = 3000;
+
+    private static class Sample {
+        ByteBuffer data;
+        final EncodedBufferInfo info = new EncodedBufferInfo();
+
+        void ensureCapacity(int size) {
+            if (data == null || data.capacity() < size) {
+                data = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+            }
+        }
+    }
+
+    private final MuxerSink mSink;
+    private final Object mLock = new Object();
+    private final ArrayDeque<Sample> mFree;
+    private final ArrayDeque<Sample> mPending;
+
+    // mLock で保護
+    private Object mFormat;
+    private boolean mFinishRequested = false;
+    private boolean mFinished = false;
+    private boolean mWaitingForKeyFrame = false;
+
+    // writer スレッドのみ
+    private int mTrack = -1;
+
+    private Thread mThread;
+
+    private volatile long mQueuedCount = 0;
+    private volatile long mWrittenCount = 0;
+    private volatile long mDroppedCount = 0;
+
+    /**
+     * @param capacity          samples that can wait for the writer
+     * @param initialSampleSize starting size of each pooled sample buffer in bytes
+     */
+    public MuxerQueue(MuxerSink sink, int capacity, int initialSampleSize) {
+        mSink = sink;
+        mFree = new ArrayDeque<>(capacity);
+        mPending = new ArrayDeque<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            Sample sample = new Sample();
+            sample.ensureCapacity(initialSampleSize);
+            mFree.add(sample);
+        }
+    }
+
+    /** Producer side: the encoder output format. The track is added before the first sample is written. */
+    @Override
+    public void setFormat(Object format) {
+        synchronized (mLock) {
+            if (mFormat == null) {
+                mFormat = format;
+                mLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Producer side: copies info.size bytes at info.offset of data. data's position and limit are restored.
+     * @return false if the sample was dropped
+     */
+    @Override
+    public boolean offer(ByteBuffer data, EncodedBufferInfo info) {
+        boolean keyFrame = (info.flags & VideoEncoder.BUFFER_FLAG_KEY_FRAME) != 0;
+        Sample sample;
+        synchronized (mLock) {
+            if (mFinishRequested) {
+                return false;
+            }
+            if (mWaitingForKeyFrame && !keyFrame) {
+                mDroppedCount++;
+                return false;
+            }
+            sample = mFree.poll();
+            if (sample == null) {
+                mWaitingForKeyFrame = true;
+                mDroppedCount++;
+                return false;
+            }
+            mWaitingForKeyFrame = false;
+        }
+
+        sample.ensureCapacity(info.size);
+        int position = data.position();
+        int limit = data.limit();
+        data.limit(info.offset + info.size).position(info.offset);
+        sample.data.clear();
+        sample.data.put(data);
+        sample.data.flip();
+        data.limit(limit).position(position);
+        sample.info.set(0, info.size, info.presentationTimeUs, info.flags);
+
+        synchronized (mLock) {
+            mPending.add(sample);
+            mQueuedCount++;
+            mLock.notifyAll();
+        }
+        return true;
+    }
+
+    /** Producer side: no more samples. The writer stops the muxer once everything queued is written. */
+    @Override
+    public void finish() {
+        synchronized (mLock) {
+            mFinishRequested = true;
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * Writer side: writes every sample that is ready from the calling thread.
+     * @return true once finish() was called and the sink has been stopped and released
+     */
+    public boolean writePending() {
+        while (true) {
+            Object format = null;
+            Sample sample = null;
+            boolean finish = false;
+            synchronized (mLock) {
+                if (mFinished) {
+                    return true;
+                }
+                if (mTrack < 0 && mFormat != null) {
+                    format = mFormat;
+                } else if (mTrack >= 0 && !mPending.isEmpty()) {
+                    sample = mPending.poll();
+                } else if (mFinishRequested) {
+                    finish = true;
+                } else {
+                    return false;
+                }
+            }
+
+            if (format != null) {
+                mTrack = mSink.addTrack(format);
+                mSink.start();
+            } else if (sample != null) {
+                mSink.writeSampleData(mTrack, sample.data, sample.info);
+                mWrittenCount++;
+                synchronized (mLock) {
+                    mFree.add(sample);
+                }
+            } else if (finish) {
+                try {
+                    if (mTrack >= 0) {
+                        mSink.stop();
+                    }
+                } finally {
+                    mSink.release();
+                    synchronized (mLock) {
+                        recycleAllPending();
+                        mFinished = true;
+                        mLock.notifyAll();
+                    }
+                }
+                return true;
+            }
+        }
+    }
+
+    public synchronized void start() {
+        if (mThread != null) {
+            return;
+        }
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (!writePending()) {
+                        synchronized (mLock) {
+                            while (!hasWorkLocked()) {
+                                mLock.wait();
+                            }
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    // awaitFinished() timed out
+                }
+            }
+        }, "MuxerWriter");
+        mThread.start();
+    }
+
+    /** Waits for the writer to finalize the file after finish(). @return false on timeout */
+    public boolean awaitFinished() {
+        Thread thread;
+        synchronized (this) {
+            thread = mThread;
+        }
+        synchronized (mLock) {
+            long deadline = System.currentTimeMillis() + FINISH_TIMEOUT_MS;
+            try {
+                while (!mFinished) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    mLock.wait(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (mFinished) {
+                return true;
+            }
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+        return false;
+    }
+
+    public boolean isFinished() {
+        synchronized (mLock) {
+            return mFinished;
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (mLock) {
+            return mPending.size();
+        }
+    }
+
+    public long getQueuedCount() {
+        return mQueuedCount;
+    }
+
+    public long getWrittenCount() {
+        return mWrittenCount;
+    }
+
+    public long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    private boolean hasWorkLocked() {
+        return mFinishRequested
+                || (mTrack < 0 && mFormat != null)
+                || (mTrack >= 0 && !mPending.isEmpty());
+    }
+
+    private void recycleAllPending() {
+        Sample sample;
+        while ((sample = mPending.poll()) != null) {
+            mFree.add(sample);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.testcameraglsurfaceview;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Container writer (MediaMuxer on device). Only called from the MuxerQueue writer.
+ */
+public interface MuxerSink {
+
+    /** @return track index */
+    int addTrack(Object format);
+
+    void start();
+
+    void writeSampleData(int track, ByteBuffer data, EncodedBufferInfo info);
+
+    void stop();
+
+    void release();
+}
@@ -0,0 +1,90 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Two framebuffer-backed 2D textures that filter stages alternately render into and sample from.
+ * Targets are only (re)allocated when the size changes or after the GL context is lost.
+ */
+public class PingPongFramebuffer {
+
+    private final int[] mTextures = new int[2];
+    private final int[] mFramebuffers = new int[2];
+    private int mWidth;
+    private int mHeight;
+    private int mWriteIndex = 0;
+    private boolean mAllocated = false;
+    private int mAllocationCount = 0;
+
+    public void setup(GlApi gl, int width, int height) {
+        if (mAllocated && width == mWidth && height == mHeight) {
+            return;
+        }
+        release(gl);
+
+        mWidth = width;
+        mHeight = height;
+        gl.glGenTextures(2, mTextures, 0);
+        gl.glGenFramebuffers(2, mFramebuffers, 0);
+        for (int i = 0; i < 2; i++) {
+            gl.glBindTexture(GlApi.GL_TEXTURE_2D, mTextures[i]);
+            gl.glTexParameteri(GlApi.GL_TEXTURE_2D, GlApi.GL_TEXTURE_MIN_FILTER, GlApi.GL_LINEAR);
+            gl.glTexParameteri(GlApi.GL_TEXTURE_2D, GlApi.GL_TEXTURE_MAG_FILTER, GlApi.GL_LINEAR);
+            gl.glTexParameteri(GlApi.GL_TEXTURE_2D, GlApi.GL_TEXTURE_WRAP_S, GlApi.GL_CLAMP_TO_EDGE);
+            gl.glTexParameteri(GlApi.GL_TEXTURE_2D, GlApi.GL_TEXTURE_WRAP_T, GlApi.GL_CLAMP_TO_EDGE);
+            gl.glTexImage2D(GlApi.GL_TEXTURE_2D, 0, GlApi.GL_RGBA, width, height, 0,
+                    GlApi.GL_RGBA, GlApi.GL_UNSIGNED_BYTE, null);
+
+            gl.glBindFramebuffer(GlApi.GL_FRAMEBUFFER, mFramebuffers[i]);
+            gl.glFramebufferTexture2D(GlApi.GL_FRAMEBUFFER, GlApi.GL_COLOR_ATTACHMENT0,
+                    GlApi.GL_TEXTURE_2D, mTextures[i], 0);
+            int status = gl.glCheckFramebufferStatus(GlApi.GL_FRAMEBUFFER);
+            if (status != GlApi.GL_FRAMEBUFFER_COMPLETE) {
+                throw new RuntimeException("Framebuffer incomplete: " + status);
+            }
+        }
+        gl.glBindTexture(GlApi.GL_TEXTURE_2D, 0);
+        gl.glBindFramebuffer(GlApi.GL_FRAMEBUFFER, 0);
+
+        mWriteIndex = 0;
+        mAllocated = true;
+        mAllocationCount++;
+    }
+
+    /** Binds the current write target and sets the viewport to cover it. */
+    public void bindForWrite(GlApi gl) {
+        gl.glBindFramebuffer(GlApi.GL_FRAMEBUFFER, mFramebuffers[mWriteIndex]);
+        gl.glViewport(0, 0, mWidth, mHeight);
+    }
+
+    /** @return the texture that was just written, which becomes the next read source. */
+    public int swap() {
+        int written = mTextures[mWriteIndex];
+        mWriteIndex = 1 - mWriteIndex;
+        return written;
+    }
+
+    public void reset() {
+        mWriteIndex = 0;
+    }
+
+    public void release(GlApi gl) {
+        if (!mAllocated) {
+            return;
+        }
+        gl.glDeleteFramebuffers(2, mFramebuffers, 0);
+        gl.glDeleteTextures(2, mTextures, 0);
+        mAllocated = false;
+    }
+
+    /** The context that owned the targets is gone, so forget them without deleting. */
+    public void onContextLost() {
+        mAllocated = false;
+    }
+
+    public boolean isAllocated() {
+        return mAllocated;
+    }
+
+    public int getAllocationCount() {
+        return mAllocationCount;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Picks eglPresentationTimeANDROID() times for camera frames. A frame is shown at its camera
+ * timestamp plus a fixed offset, so frames keep the spacing the sensor captured them with however
+ * late each one was drawn, and every frame of a 30 fps stream stays up for the same number of display
+ * refreshes. The offset is re-anchored at latencyFrames vsyncs ahead when a frame would miss the next
+ * vsync or sit queued for more than one vsync longer than that, e.g. after a camera restart or a
+ * change of the timestamp base. Pure arithmetic on the System.nanoTime() clock; render thread only.
+ */
+public class PresentationScheduler {
+
+    private static final long NO_OFFSET = Long.MIN_VALUE;
+    /* カメラとディスプレイの周期の端数を吸収するため、次のvsyncより周期の1/4までは早くてもよい */
+    private static final int TOLERANCE_DIVISOR = 4;
+
+    private final int mLatencyFrames;
+    private long mVsyncPeriodNano;
+    private long mOffsetNano = NO_OFFSET;
+    private long mLastPresentationNano = Long.MIN_VALUE;
+    private long mScheduledCount = 0;
+    private long mReanchorCount = 0;
+
+    /**
+     * @param vsyncPeriodNano display refresh interval
+     * @param latencyFrames   vsyncs between drawing a frame and showing it, at least 1
+     */
+    public PresentationScheduler(long vsyncPeriodNano, int latencyFrames) {
+        if (latencyFrames < 1) {
+            throw new IllegalArgumentException("latencyFrames must be at least 1: " + latencyFrames);
+        }
+        mLatencyFrames = latencyFrames;
+        setVsyncPeriod(vsyncPeriodNano);
+    }
+
+    public void setVsyncPeriod(long vsyncPeriodNano) {
+        if (vsyncPeriodNano <= 0) {
+            throw new IllegalArgumentException("vsyncPeriodNano must be positive: " + vsyncPeriodNano);
+        }
+        mVsyncPeriodNano = vsyncPeriodNano;
+    }
+
+    public long getVsyncPeriodNano() {
+        return mVsyncPeriodNano;
+    }
+
+    /**
+     * @param cameraTimestampNano timestamp of the frame being drawn
+     * @param vsyncNano           time of the vsync the frame is drawn for
+     * @return when the frame should be shown; later than any time returned before
+     */
+    public long schedule(long cameraTimestampNano, long vsyncNano) {
+        long earliest = vsyncNano + mVsyncPeriodNano - mVsyncPeriodNano / TOLERANCE_DIVISOR;
+        long latest = vsyncNano + (mLatencyFrames + 1) * mVsyncPeriodNano;
+        long presentation = mOffsetNano == NO_OFFSET ? Long.MIN_VALUE : cameraTimestampNano + mOffsetNano;
+        if (presentation < earliest || presentation > latest) {
+            mOffsetNano = vsyncNano + mLatencyFrames * mVsyncPeriodNano - cameraTimestampNano;
+            presentation = cameraTimestampNano + mOffsetNano;
+            mReanchorCount++;
+        }
+        // 下方向に合わせ直したときも、前のフレームより先には出さない
+        if (mLastPresentationNano != Long.MIN_VALUE && presentation <= mLastPresentationNano) {
+            presentation = mLastPresentationNano + mVsyncPeriodNano;
+        }
+        mLastPresentationNano = presentation;
+        mScheduledCount++;
+        return presentation;
+    }
+
+    /** Forgets the offset, e.g. when the camera restarts. */
+    public void reset() {
+        mOffsetNano = NO_OFFSET;
+    }
+
+    public long getScheduledCount() {
+        return mScheduledCount;
+    }
+
+    /** Times the offset had to be chosen anew, the first frame included. */
+    public long getReanchorCount() {
+        return mReanchorCount;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Size and placement of the camera image on the display.
+ */
+public class PreviewGeometry {
+
+    private PreviewGeometry() {
+    }
+
+    /**
+     * Scales the camera image so its short side fills the display's short side.
+     * The camera size is given in sensor orientation (landscape); the result is in display orientation.
+     */
+    public static Resolution fitToDisplay(int displayWidth, int displayHeight, int cameraWidth, int cameraHeight) {
+        if (displayWidth > displayHeight) {
+            double scale = (double) displayHeight / (double) cameraHeight;
+            return new Resolution((int) (scale * cameraWidth), (int) (scale * cameraHeight));
+        } else {
+            double scale = (double) displayWidth / (double) cameraHeight;
+            return new Resolution((int) (scale * cameraHeight), (int) (scale * cameraWidth));
+        }
+    }
+
+    /** Viewport of an image of the given size centered on the display. */
+    public static Viewport centerOnDisplay(int displayWidth, int displayHeight, int imageWidth, int imageHeight) {
+        return new Viewport((displayWidth - imageWidth) / 2, (displayHeight - imageHeight) / 2, imageWidth, imageHeight);
+    }
+}
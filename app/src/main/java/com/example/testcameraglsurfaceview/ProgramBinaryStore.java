@@ -0,0 +1,177 @@
+package com.example.testcameraglsurfaceview;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Linked program binaries on disk, one "<key>.bin" file per program plus an index.
+ * Index layout (DataOutputStream): MAGIC, FORMAT_VERSION, driver version (UTF), entry count,
+ * then per entry key (UTF), binary format, binary length.
+ * The whole store is wiped when the driver version differs from the one it was written with.
+ */
+public class ProgramBinaryStore {
+
+    static final int MAGIC = 0x53484443; // "SHDC"
+    static final int FORMAT_VERSION = 1;
+    static final String INDEX_FILE = "index";
+    private static final String BINARY_SUFFIX = ".bin";
+
+    public static class Entry {
+        public final int format;
+        public final byte[] binary;
+
+        public Entry(int format, byte[] binary) {
+            this.format = format;
+            this.binary = binary;
+        }
+    }
+
+    private static class IndexEntry {
+        final int format;
+        final int length;
+
+        IndexEntry(int format, int length) {
+            this.format = format;
+            this.length = length;
+        }
+    }
+
+    private final File mDir;
+    private final Map<String, IndexEntry> mIndex = new LinkedHashMap<>();
+    private String mDriverVersion;
+    private boolean mOpened = false;
+
+    public ProgramBinaryStore(File dir) {
+        mDir = dir;
+    }
+
+    /** Loads the index, discarding everything if it was written by another driver or is unreadable. */
+    public synchronized void open(String driverVersion) {
+        mDriverVersion = driverVersion;
+        mIndex.clear();
+        mOpened = true;
+        if (!readIndex(driverVersion)) {
+            clear();
+        }
+    }
+
+    public synchronized Entry load(String key) {
+        IndexEntry indexEntry = mIndex.get(key);
+        if (!mOpened || indexEntry == null) {
+            return null;
+        }
+        byte[] binary = new byte[indexEntry.length];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(binaryFile(key)))) {
+            in.readFully(binary);
+        } catch (IOException e) {
+            remove(key);
+            return null;
+        }
+        return new Entry(indexEntry.format, binary);
+    }
+
+    public synchronized void save(String key, int format, byte[] binary) {
+        if (!mOpened) {
+            return;
+        }
+        mDir.mkdirs();
+        try (FileOutputStream out = new FileOutputStream(binaryFile(key))) {
+            out.write(binary);
+        } catch (IOException e) {
+            return;
+        }
+        mIndex.put(key, new IndexEntry(format, binary.length));
+        writeIndex();
+    }
+
+    public synchronized void remove(String key) {
+        if (mIndex.remove(key) != null) {
+            writeIndex();
+        }
+        binaryFile(key).delete();
+    }
+
+    public synchronized void clear() {
+        mIndex.clear();
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(BINARY_SUFFIX)) {
+                    file.delete();
+                }
+            }
+        }
+        writeIndex();
+    }
+
+    public synchronized boolean contains(String key) {
+        return mIndex.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return mIndex.size();
+    }
+
+    private File binaryFile(String key) {
+        return new File(mDir, key + BINARY_SUFFIX);
+    }
+
+    private boolean readIndex(String driverVersion) {
+        File indexFile = new File(mDir, INDEX_FILE);
+        if (!indexFile.exists()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return false;
+            }
+            if (!driverVersion.equals(in.readUTF())) {
+                return false;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                int format = in.readInt();
+                int length = in.readInt();
+                if (binaryFile(key).length() == length) {
+                    mIndex.put(key, new IndexEntry(format, length));
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            mIndex.clear();
+            return false;
+        }
+    }
+
+    private void writeIndex() {
+        if (!mOpened) {
+            return;
+        }
+        mDir.mkdirs();
+        File tmpFile = new File(mDir, INDEX_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(mDriverVersion);
+            out.writeInt(mIndex.size());
+            for (Map.Entry<String, IndexEntry> entry : mIndex.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().format);
+                out.writeInt(entry.getValue().length);
+            }
+        } catch (IOException e) {
+            tmpFile.delete();
+            return;
+        }
+        tmpFile.renameTo(new File(mDir, INDEX_FILE));
+    }
+}
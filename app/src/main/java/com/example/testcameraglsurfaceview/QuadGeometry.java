@@ -0,0 +1,208 @@
+package com.example.testcameraglsurfaceview;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Fullscreen triangle strip for the camera texture, kept in one interleaved VBO that holds the quad
+ * for every CameraRotation (x, y, s, t per vertex). A draw only selects the byte offset of its rotation.
+ * The quads are rebuilt, and re-uploaded once, only when the scale mode, the aspect ratios, the zoom
+ * crop or the SurfaceTexture transform change; a pinch zoom costs one small glBufferSubData per step.
+ */
+public class QuadGeometry {
+
+    public enum ScaleMode {
+        /** Fill the viewport, ignoring aspect ratios. The viewport is expected to match the image aspect. */
+        STRETCH,
+        /** Whole image visible, bars on the sides or top and bottom. */
+        LETTERBOX,
+        /** Viewport filled, image edges cropped. */
+        CROP
+    }
+
+    public static final int POSITION_SIZE = 2;
+    public static final int TEXCOORD_SIZE = 2;
+    public static final int FLOATS_PER_VERTEX = POSITION_SIZE + TEXCOORD_SIZE;
+    public static final int VERTEX_COUNT = 4;
+    public static final int STRIDE_BYTES = FLOATS_PER_VERTEX * 4;
+    public static final int QUAD_BYTES = VERTEX_COUNT * STRIDE_BYTES;
+    public static final int FLOAT_COUNT = CameraRotation.values().length * VERTEX_COUNT * FLOATS_PER_VERTEX;
+
+    /* 頂点順: 左上, 左下, 右上, 右下 (TRIANGLE_STRIP) */
+    private static final float[] CORNER_X = {-1.0f, -1.0f, 1.0f, 1.0f};
+    private static final float[] CORNER_Y = {1.0f, -1.0f, 1.0f, -1.0f};
+    /** Crop that shows the whole image. */
+    public static final float[] FULL_CROP = {0.0f, 0.0f, 1.0f, 1.0f};
+
+    private final float[] mVertices = new float[FLOAT_COUNT];
+    private final FloatBuffer mUploadBuffer =
+            ByteBuffer.allocateDirect(FLOAT_COUNT * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    private final int[] mBuffer = new int[1];
+    private final float[] mCrop = FULL_CROP.clone();
+    private final float[] mTextureMatrix = TextureTransform.DEFAULT_MATRIX.clone();
+
+    private ScaleMode mScaleMode = ScaleMode.STRETCH;
+    private int mContentWidth;
+    private int mContentHeight;
+    private int mViewWidth;
+    private int mViewHeight;
+    private boolean mDirty = true;
+    private int mUploadCount = 0;
+
+    public QuadGeometry() {
+        build(mVertices, ScaleMode.STRETCH, 0, 0, 0, 0);
+    }
+
+    /** Byte offset of the rotation's first vertex in the VBO. */
+    public static int quadOffset(CameraRotation rotation) {
+        return rotation.ordinal() * QUAD_BYTES;
+    }
+
+    public static int positionOffset(CameraRotation rotation) {
+        return quadOffset(rotation);
+    }
+
+    public static int texCoordOffset(CameraRotation rotation) {
+        return quadOffset(rotation) + POSITION_SIZE * 4;
+    }
+
+    /** Fills out (FLOAT_COUNT floats) with the quads of all rotations, uncropped and for TextureTransform.DEFAULT_MATRIX. */
+    public static void build(float[] out, ScaleMode mode, int contentWidth, int contentHeight, int viewWidth, int viewHeight) {
+        build(out, mode, contentWidth, contentHeight, viewWidth, viewHeight, FULL_CROP, TextureTransform.DEFAULT_MATRIX);
+    }
+
+    /**
+     * Fills out (FLOAT_COUNT floats) with the quads of all rotations.
+     *
+     * @param contentWidth  camera buffer size in sensor orientation; 90 and 270 degree rotations swap it
+     * @param viewWidth     viewport size; 0 sizes fall back to STRETCH
+     * @param crop          part of the image to show, left, top, right, bottom in display space; a zoom
+     *                      crop keeps the aspect ratio, so the scale mode math is unaffected
+     * @param textureMatrix SurfaceTexture.getTransformMatrix()
+     */
+    public static void build(float[] out, ScaleMode mode, int contentWidth, int contentHeight, int viewWidth, int viewHeight,
+                             float[] crop, float[] textureMatrix) {
+        float cropWidth = crop[2] - crop[0];
+        float cropHeight = crop[3] - crop[1];
+        for (CameraRotation rotation : CameraRotation.values()) {
+            float scaleX = 1.0f;
+            float scaleY = 1.0f;
+            float visibleX = 1.0f;
+            float visibleY = 1.0f;
+            if (mode != ScaleMode.STRETCH && contentWidth > 0 && contentHeight > 0 && viewWidth > 0 && viewHeight > 0) {
+                boolean swap = rotation == CameraRotation.ROTATION_90 || rotation == CameraRotation.ROTATION_270;
+                double contentAspect = swap
+                        ? (double) contentHeight / contentWidth
+                        : (double) contentWidth / contentHeight;
+                double viewAspect = (double) viewWidth / viewHeight;
+                if (mode == ScaleMode.LETTERBOX) {
+                    if (contentAspect > viewAspect) {
+                        scaleY = (float) (viewAspect / contentAspect);
+                    } else {
+                        scaleX = (float) (contentAspect / viewAspect);
+                    }
+                } else {
+                    if (contentAspect > viewAspect) {
+                        visibleX = (float) (viewAspect / contentAspect);
+                    } else {
+                        visibleY = (float) (contentAspect / viewAspect);
+                    }
+                }
+            }
+
+            // テクスチャ座標は画面上の位置(u, v)に対してアフィンなので、切り取った位置で補間する
+            int base = rotation.ordinal() * VERTEX_COUNT * FLOATS_PER_VERTEX;
+            for (int i = 0; i < VERTEX_COUNT; i++) {
+                float u = crop[0] + (0.5f + CORNER_X[i] * 0.5f * visibleX) * cropWidth;
+                float v = crop[1] + (0.5f - CORNER_Y[i] * 0.5f * visibleY) * cropHeight;
+                int o = base + i * FLOATS_PER_VERTEX;
+                out[o] = CORNER_X[i] * scaleX;
+                out[o + 1] = CORNER_Y[i] * scaleY;
+                TextureTransform.toTexture(rotation, textureMatrix, u, v, out, o + 2);
+            }
+        }
+    }
+
+    public void setScaleMode(ScaleMode mode) {
+        if (mode != mScaleMode) {
+            mScaleMode = mode;
+            mDirty = true;
+        }
+    }
+
+    public ScaleMode getScaleMode() {
+        return mScaleMode;
+    }
+
+    public void setSizes(int contentWidth, int contentHeight, int viewWidth, int viewHeight) {
+        if (contentWidth != mContentWidth || contentHeight != mContentHeight
+                || viewWidth != mViewWidth || viewHeight != mViewHeight) {
+            mContentWidth = contentWidth;
+            mContentHeight = contentHeight;
+            mViewWidth = viewWidth;
+            mViewHeight = viewHeight;
+            mDirty = mDirty || mScaleMode != ScaleMode.STRETCH;
+        }
+    }
+
+    /** Part of the image to show, left, top, right, bottom in display space; FULL_CROP for all of it. */
+    public void setCrop(float[] crop) {
+        if (!Arrays.equals(crop, mCrop)) {
+            System.arraycopy(crop, 0, mCrop, 0, mCrop.length);
+            mDirty = true;
+        }
+    }
+
+    /** SurfaceTexture.getTransformMatrix() of the latched image; cheap to call every frame. */
+    public void setTextureMatrix(float[] matrix) {
+        if (!Arrays.equals(matrix, mTextureMatrix)) {
+            System.arraycopy(matrix, 0, mTextureMatrix, 0, mTextureMatrix.length);
+            mDirty = true;
+        }
+    }
+
+    /** Creates and fills the VBO. Call from onSurfaceCreated. */
+    public void onSurfaceCreated(GlApi gl) {
+        gl.glGenBuffers(1, mBuffer, 0);
+        gl.glBindBuffer(GlApi.GL_ARRAY_BUFFER, mBuffer[0]);
+        build(mVertices, mScaleMode, mContentWidth, mContentHeight, mViewWidth, mViewHeight, mCrop, mTextureMatrix);
+        mUploadBuffer.clear();
+        mUploadBuffer.put(mVertices).position(0);
+        gl.glBufferData(GlApi.GL_ARRAY_BUFFER, FLOAT_COUNT * 4, mUploadBuffer, GlApi.GL_DYNAMIC_DRAW);
+        gl.glBindBuffer(GlApi.GL_ARRAY_BUFFER, 0);
+        mUploadCount++;
+        mDirty = false;
+    }
+
+    /** Binds the VBO and points the attributes at the rotation's quad, re-uploading first if needed. */
+    public void bind(GlApi gl, CameraRotation rotation, int positionHandle, int texCoordHandle) {
+        gl.glBindBuffer(GlApi.GL_ARRAY_BUFFER, mBuffer[0]);
+        if (mDirty) {
+            build(mVertices, mScaleMode, mContentWidth, mContentHeight, mViewWidth, mViewHeight, mCrop, mTextureMatrix);
+            mUploadBuffer.clear();
+            mUploadBuffer.put(mVertices).position(0);
+            gl.glBufferSubData(GlApi.GL_ARRAY_BUFFER, 0, FLOAT_COUNT * 4, mUploadBuffer);
+            mUploadCount++;
+            mDirty = false;
+        }
+        gl.glVertexAttribPointer(positionHandle, POSITION_SIZE, GlApi.GL_FLOAT, false, STRIDE_BYTES, positionOffset(rotation));
+        gl.glVertexAttribPointer(texCoordHandle, TEXCOORD_SIZE, GlApi.GL_FLOAT, false, STRIDE_BYTES, texCoordOffset(rotation));
+    }
+
+    public void unbind(GlApi gl) {
+        gl.glBindBuffer(GlApi.GL_ARRAY_BUFFER, 0);
+    }
+
+    public void release(GlApi gl) {
+        if (mBuffer[0] != 0) {
+            gl.glDeleteBuffers(1, mBuffer, 0);
+            mBuffer[0] = 0;
+        }
+    }
+
+    public int getUploadCount() {
+        return mUploadCount;
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Picks the capture quality level from frame-time and thermal feedback. Levels are ordered from the
+ * best to the cheapest and judged in windows of WINDOW_SECONDS at the level's frame rate.
+ * A level is left downwards after DOWN_WINDOWS overloaded windows in a row; it is left upwards only
+ * after a run of healthy windows whose required length doubles each time a step up has to be undone
+ * soon after, so a level that is just over budget is not probed again and again.
+ * The thermal status caps the best allowed level and takes effect at once.
+ * Not thread-safe: call it from the GL thread.
+ */
+public class QualityGovernor {
+
+    /* PowerManager.THERMAL_STATUS_* */
+    public static final int THERMAL_NONE = 0;
+    public static final int THERMAL_LIGHT = 1;
+    public static final int THERMAL_MODERATE = 2;
+    public static final int THERMAL_SEVERE = 3;
+    public static final int THERMAL_CRITICAL = 4;
+
+    public static final int WINDOW_SECONDS = 2;
+    /** p95 draw time over this share of the frame budget is overloaded. */
+    public static final double DOWN_LOAD = 0.85;
+    /** p95 draw time under this share of the frame budget, with no missed frame, is healthy. */
+    public static final double UP_LOAD = 0.5;
+    /** Missed frames over this share of the window also count as overloaded, unless drawing is cheap. */
+    public static final double DOWN_MISSED_RATIO = 0.05;
+    public static final int DOWN_WINDOWS = 2;
+    public static final int UP_WINDOWS = 4;
+    public static final int MAX_UP_WINDOWS = 64;
+    /** A step down within this many windows after a step up means the step up failed. */
+    public static final int UP_FAILURE_WINDOWS = 8;
+
+    public static final class Level {
+        public final long maxPixels;
+        public final int fps;
+
+        public Level(long maxPixels, int fps) {
+            this.maxPixels = maxPixels;
+            this.fps = fps;
+        }
+
+        @Override
+        public String toString() {
+            return maxPixels + "px@" + fps;
+        }
+    }
+
+    private final Level[] mLevels;
+    private final LatencyHistogram mWindowDrawTimes = new LatencyHistogram();
+    private int mLevel = 0;
+    private int mThermalStatus = THERMAL_NONE;
+    private int mWindowFrames = 0;
+    private int mWindowMissed = 0;
+    private int mOverloadedWindows = 0;
+    private int mHealthyWindows = 0;
+    private int mUpWindowsRequired = UP_WINDOWS;
+    // 最後に上げてから何ウィンドウ経ったか。-1は判定済み
+    private int mWindowsSinceStepUp = -1;
+    private int mChangeCount = 0;
+    private long mWindowCount = 0;
+
+    public QualityGovernor(Level[] levels) {
+        if (levels.length == 0) {
+            throw new IllegalArgumentException("no levels");
+        }
+        mLevels = levels.clone();
+    }
+
+    /** Preview capture levels from the size the app used to request down to VGA. */
+    public static Level[] defaultLevels() {
+        return new Level[]{
+                new Level(1920 * 1440, 30),
+                new Level(1280 * 960, 30),
+                new Level(1280 * 960, 24),
+                new Level(960 * 720, 24),
+                new Level(640 * 480, 20),
+        };
+    }
+
+    /**
+     * Call once per drawn frame.
+     * @param missedFrames  frames missed since the previous drawn frame
+     * @param thermalStatus PowerManager thermal status, or THERMAL_NONE where it is not available
+     * @return true if the level changed and getLevel() must be applied
+     */
+    public boolean onFrame(long drawTimeNano, int missedFrames, int thermalStatus) {
+        boolean changed = false;
+        if (thermalStatus != mThermalStatus) {
+            mThermalStatus = thermalStatus;
+            int floor = thermalFloor(thermalStatus);
+            if (mLevel < floor) {
+                mWindowsSinceStepUp = -1;
+                setLevel(floor);
+                changed = true;
+            }
+        }
+
+        mWindowDrawTimes.record(drawTimeNano);
+        mWindowFrames++;
+        mWindowMissed += missedFrames;
+        if (mWindowFrames >= mLevels[mLevel].fps * WINDOW_SECONDS) {
+            changed |= evaluateWindow();
+        }
+        return changed;
+    }
+
+    private boolean evaluateWindow() {
+        long budgetNano = 1000000000L / mLevels[mLevel].fps;
+        double load = (double) mWindowDrawTimes.getValueAtPercentile(95) / budgetNano;
+        double missedRatio = (double) mWindowMissed / (mWindowFrames + mWindowMissed);
+        boolean missed = mWindowMissed > 0;
+        resetWindow();
+        mWindowCount++;
+        if (mWindowsSinceStepUp >= 0) {
+            mWindowsSinceStepUp++;
+        }
+
+        // 描画に余裕があるのに落ちたフレームはカメラ側(暗所での露光など)が原因なので下げない
+        if (load > DOWN_LOAD || (missedRatio > DOWN_MISSED_RATIO && load > UP_LOAD)) {
+            mHealthyWindows = 0;
+            if (++mOverloadedWindows < DOWN_WINDOWS || mLevel == mLevels.length - 1) {
+                return false;
+            }
+            if (mWindowsSinceStepUp >= 0 && mWindowsSinceStepUp <= UP_FAILURE_WINDOWS) {
+                mUpWindowsRequired = Math.min(mUpWindowsRequired * 2, MAX_UP_WINDOWS);
+            }
+            mWindowsSinceStepUp = -1;
+            setLevel(mLevel + 1);
+            return true;
+        }
+        mOverloadedWindows = 0;
+
+        if (mWindowsSinceStepUp > UP_FAILURE_WINDOWS) {
+            // 上げた段で落ち着いたので、次に上げるまでの待ちを少し戻す
+            mUpWindowsRequired = Math.max(UP_WINDOWS, mUpWindowsRequired / 2);
+            mWindowsSinceStepUp = -1;
+        }
+        if (load >= UP_LOAD || missed) {
+            mHealthyWindows = 0;
+            return false;
+        }
+        if (++mHealthyWindows < mUpWindowsRequired || mLevel <= thermalFloor(mThermalStatus)) {
+            return false;
+        }
+        setLevel(mLevel - 1);
+        mWindowsSinceStepUp = 0;
+        return true;
+    }
+
+    private void setLevel(int level) {
+        mLevel = level;
+        mChangeCount++;
+        mOverloadedWindows = 0;
+        mHealthyWindows = 0;
+        resetWindow();
+    }
+
+    private void resetWindow() {
+        mWindowDrawTimes.reset();
+        mWindowFrames = 0;
+        mWindowMissed = 0;
+    }
+
+    private int thermalFloor(int thermalStatus) {
+        int floor;
+        if (thermalStatus >= THERMAL_CRITICAL) {
+            floor = mLevels.length - 1;
+        } else if (thermalStatus == THERMAL_SEVERE) {
+            floor = 2;
+        } else if (thermalStatus == THERMAL_MODERATE) {
+            floor = 1;
+        } else {
+            floor = 0;
+        }
+        return Math.min(floor, mLevels.length - 1);
+    }
+
+    public Level getLevel() {
+        return mLevels[mLevel];
+    }
+
+    public int getLevelIndex() {
+        return mLevel;
+    }
+
+    public int getLevelCount() {
+        return mLevels.length;
+    }
+
+    public int getChangeCount() {
+        return mChangeCount;
+    }
+
+    public long getWindowCount() {
+        return mWindowCount;
+    }
+
+    /** Healthy windows currently needed before stepping up. */
+    public int getUpWindowsRequired() {
+        return mUpWindowsRequired;
+    }
+}
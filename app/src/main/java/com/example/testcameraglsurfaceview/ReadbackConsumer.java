@@ -0,0 +1,10 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Receives rendered frames from GpuReadback on its consumer thread.
+ */
+public interface ReadbackConsumer {
+
+    /** The frame goes back to the pool when this returns; copy what must outlive the call. */
+    void onFrame(ReadbackFrame frame);
+}
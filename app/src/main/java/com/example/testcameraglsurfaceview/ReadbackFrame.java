@@ -0,0 +1,70 @@
+package com.example.testcameraglsurfaceview;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pooled copy of one rendered frame: RGBA8, width * 4 bytes per row, rows bottom-up as
+ * glReadPixels returns them. Only valid during ReadbackConsumer.onFrame().
+ */
+public class ReadbackFrame implements ResizableDirectBuffer {
+
+    private ByteBuffer mBuffer;
+    private int mWidth;
+    private int mHeight;
+    private long mTimestamp;
+    private int mAllocationCount;
+
+    final List<ReadbackConsumer> consumers = new ArrayList<>();
+    Runnable delivery;
+
+    /** A pool of size empty frames. */
+    public static FrameBufferPool<ReadbackFrame> newPool(int size) {
+        ReadbackFrame[] frames = new ReadbackFrame[size];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = new ReadbackFrame();
+        }
+        return new FrameBufferPool<>(frames);
+    }
+
+    @Override
+    public void ensureCapacity(int bytes) {
+        if (mBuffer == null || mBuffer.capacity() < bytes) {
+            mBuffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+            mAllocationCount++;
+        }
+    }
+
+    void begin(long timestamp, int width, int height) {
+        mTimestamp = timestamp;
+        mWidth = width;
+        mHeight = height;
+        mBuffer.clear();
+        mBuffer.limit(width * height * 4);
+    }
+
+    /** Position 0, limit width * height * 4. */
+    public ByteBuffer getBuffer() {
+        return mBuffer;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /** Camera timestamp of the rendered image, as passed to GpuReadback.onFrameRendered(). */
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    @Override
+    public int getAllocationCount() {
+        return mAllocationCount;
+    }
+}
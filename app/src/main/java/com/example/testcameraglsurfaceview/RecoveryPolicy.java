@@ -0,0 +1,105 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Decides how CameraLifecycle recovers from device errors: reopen after an exponentially growing
+ * delay, lower the stream plan after repeated configure failures, and give up after too many
+ * failures in a row or on an error retrying cannot fix. The first frame after a reopen counts as
+ * recovered and starts the next outage from the initial delay again. Pure bookkeeping, no timers.
+ */
+public class RecoveryPolicy {
+
+    public static final int GIVE_UP = 0;
+    public static final int RETRY = 1;
+    /** Retry with a lower resolution or frame rate, see levelBelow(). */
+    public static final int RETRY_DOWNGRADED = 2;
+
+    public static final long DEFAULT_INITIAL_DELAY_NANO = 250 * 1000000L;
+    public static final long DEFAULT_MAX_DELAY_NANO = 8000 * 1000000L;
+    public static final int DEFAULT_MAX_ATTEMPTS = 8;
+    public static final int DEFAULT_CONFIGURE_FAILURES_BEFORE_DOWNGRADE = 2;
+
+    // CameraDevice.StateCallback.ERROR_CAMERA_DISABLED: 端末ポリシーで無効なので再試行しても開けない
+    private static final int ERROR_CAMERA_DISABLED = 3;
+
+    private final long mInitialDelayNano;
+    private final long mMaxDelayNano;
+    private final int mMaxAttempts;
+    private final int mConfigureFailuresBeforeDowngrade;
+
+    private int mAttempts = 0;
+    private int mConfigureFailures = 0;
+    private long mRetryDelayNano = 0;
+
+    public RecoveryPolicy() {
+        this(DEFAULT_INITIAL_DELAY_NANO, DEFAULT_MAX_DELAY_NANO, DEFAULT_MAX_ATTEMPTS,
+                DEFAULT_CONFIGURE_FAILURES_BEFORE_DOWNGRADE);
+    }
+
+    /**
+     * @param maxAttempts                      failures in a row that are retried
+     * @param configureFailuresBeforeDowngrade configure failures in a row before the plan is lowered
+     */
+    public RecoveryPolicy(long initialDelayNano, long maxDelayNano, int maxAttempts,
+                          int configureFailuresBeforeDowngrade) {
+        mInitialDelayNano = initialDelayNano;
+        mMaxDelayNano = maxDelayNano;
+        mMaxAttempts = maxAttempts;
+        mConfigureFailuresBeforeDowngrade = configureFailuresBeforeDowngrade;
+    }
+
+    /**
+     * @param error CameraLifecycle.ERROR_* or a CameraDevice.StateCallback error code
+     * @return GIVE_UP, RETRY or RETRY_DOWNGRADED; getRetryDelayNano() holds the delay of a retry
+     */
+    public int onFailure(int error) {
+        mAttempts++;
+        if (error == ERROR_CAMERA_DISABLED || mAttempts > mMaxAttempts) {
+            return GIVE_UP;
+        }
+        long delay = mInitialDelayNano;
+        for (int i = 1; i < mAttempts && delay < mMaxDelayNano; i++) {
+            delay *= 2;
+        }
+        mRetryDelayNano = Math.min(delay, mMaxDelayNano);
+
+        if (error != CameraLifecycle.ERROR_CONFIGURE_FAILED) {
+            mConfigureFailures = 0;
+            return RETRY;
+        }
+        mConfigureFailures++;
+        if (mConfigureFailures < mConfigureFailuresBeforeDowngrade) {
+            return RETRY;
+        }
+        mConfigureFailures = 0;
+        return RETRY_DOWNGRADED;
+    }
+
+    /** Frames flow again, or the preview is started anew. */
+    public void reset() {
+        mAttempts = 0;
+        mConfigureFailures = 0;
+    }
+
+    public long getRetryDelayNano() {
+        return mRetryDelayNano;
+    }
+
+    /** Failures since the last recovery. */
+    public int getAttempts() {
+        return mAttempts;
+    }
+
+    /**
+     * @param levels from the most to the least expensive, e.g. QualityGovernor.defaultLevels()
+     * @return the first level cheaper than maxPixels at fps, or null if there is none
+     */
+    public static QualityGovernor.Level levelBelow(QualityGovernor.Level[] levels, long maxPixels, int fps) {
+        for (QualityGovernor.Level level : levels) {
+            if (level.maxPixels <= maxPixels && level.fps <= fps
+                    && (level.maxPixels < maxPixels || level.fps < fps)) {
+                return level;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Level sizes of the statistics reduction from a camera buffer down to a grid of tiles.
+ * Level 0 samples the input once per texel at gridWidth * 2^n by gridHeight * 2^m, the largest such
+ * size within the input and maxSampleSize; every further level halves each axis that is still larger
+ * than the grid, so one bilinear tap at the shared corner of a 2x2 block averages it exactly.
+ * The last level is the grid itself, one texel per tile.
+ */
+public class ReductionPlan {
+
+    private final int mInputWidth;
+    private final int mInputHeight;
+    private final int mGridWidth;
+    private final int mGridHeight;
+    private final int[] mWidths;
+    private final int[] mHeights;
+
+    public ReductionPlan(int inputWidth, int inputHeight, int gridWidth, int gridHeight, int maxSampleSize) {
+        if (gridWidth <= 0 || gridHeight <= 0) {
+            throw new IllegalArgumentException("grid " + gridWidth + "x" + gridHeight);
+        }
+        mInputWidth = inputWidth;
+        mInputHeight = inputHeight;
+        mGridWidth = gridWidth;
+        mGridHeight = gridHeight;
+
+        int width = sampleSize(inputWidth, gridWidth, maxSampleSize);
+        int height = sampleSize(inputHeight, gridHeight, maxSampleSize);
+        int count = 1 + Math.max(halvings(width, gridWidth), halvings(height, gridHeight));
+        mWidths = new int[count];
+        mHeights = new int[count];
+        for (int i = 0; i < count; i++) {
+            mWidths[i] = width;
+            mHeights[i] = height;
+            width = Math.max(gridWidth, width / 2);
+            height = Math.max(gridHeight, height / 2);
+        }
+    }
+
+    private static int sampleSize(int input, int grid, int maxSampleSize) {
+        int size = grid;
+        while (size * 2 <= input && size * 2 <= maxSampleSize) {
+            size *= 2;
+        }
+        return size;
+    }
+
+    private static int halvings(int size, int grid) {
+        int count = 0;
+        while (size > grid) {
+            size /= 2;
+            count++;
+        }
+        return count;
+    }
+
+    public int getInputWidth() {
+        return mInputWidth;
+    }
+
+    public int getInputHeight() {
+        return mInputHeight;
+    }
+
+    public int getGridWidth() {
+        return mGridWidth;
+    }
+
+    public int getGridHeight() {
+        return mGridHeight;
+    }
+
+    /** Levels including level 0 and the grid; one render pass each. */
+    public int getLevelCount() {
+        return mWidths.length;
+    }
+
+    public int getLevelWidth(int level) {
+        return mWidths[level];
+    }
+
+    public int getLevelHeight(int level) {
+        return mHeights[level];
+    }
+
+    /** Level 0 texels averaged into one tile. */
+    public int getSamplesPerTile() {
+        return (mWidths[0] / mGridWidth) * (mHeights[0] / mGridHeight);
+    }
+
+    public boolean matches(int inputWidth, int inputHeight) {
+        return inputWidth == mInputWidth && inputHeight == mInputHeight;
+    }
+}
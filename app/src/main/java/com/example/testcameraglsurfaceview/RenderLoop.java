@@ -0,0 +1,407 @@
+package com.example.testcameraglsurfaceview;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Render thread that owns the EGL context and its window surfaces, in place of GLSurfaceView.
+ * requestRender() may be called from any thread; the frame is drawn at the next vsync, so any number
+ * of requests between two vsyncs cost one draw, and no vsync is asked for while there is nothing to
+ * draw. A frame the renderer skips is not swapped at all, and a frame with a new camera image is
+ * swapped with a presentation time from PresentationScheduler. The first output surface is the one
+ * the renderer draws into; every other output is given a copy of the same image.
+ * Every EglApi, VsyncSource and Renderer call runs on the looper.
+ */
+public class RenderLoop {
+
+    public interface Renderer {
+        /**
+         * The new context is current, on a pbuffer.
+         * @param clientVersion EglApi.getClientVersion(): ES3 calls are only allowed if 3
+         */
+        void onContextCreated(int clientVersion);
+
+        /** The first output has a new size; its surface is current. */
+        void onSurfaceChanged(int width, int height);
+
+        /**
+         * Draws into the first output, which is current.
+         * @return FrameChangeTracker.SKIP to keep showing the last image, REDRAW or LATCH to swap
+         */
+        int onDrawFrame();
+
+        /** Camera timestamp of the image the last LATCH drew. */
+        long getFrameTimestamp();
+
+        /** Draws the image onDrawFrame() drew once more into another output, which is current. */
+        void onDrawCopy(int width, int height);
+
+        /** The context is still current and about to be destroyed. */
+        void onContextReleasing();
+    }
+
+    private static class Output {
+        final int id;
+        final Object window;
+        int surface = EglApi.NO_SURFACE;
+        int width;
+        int height;
+
+        Output(int id, Object window, int width, int height) {
+            this.id = id;
+            this.window = window;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private final CameraLooper mLooper;
+    private final EglApi mEgl;
+    private final VsyncSource mVsync;
+    private final Renderer mRenderer;
+    private final PresentationScheduler mScheduler;
+    private final AtomicInteger mNextOutputId = new AtomicInteger(1);
+    private final AtomicBoolean mRenderRequested = new AtomicBoolean(false);
+
+    // ここから下はルーパー上でのみ触る
+    private final List<Output> mOutputs = new ArrayList<>();
+    private boolean mResumed = false;
+    private boolean mContextCreated = false;
+    private boolean mVsyncRequested = false;
+    private boolean mContinuous = false;
+    private volatile long mDrawCount = 0;
+    private volatile long mSwapCount = 0;
+    private volatile long mSkippedSwapCount = 0;
+    private volatile long mSwapFailureCount = 0;
+
+    public RenderLoop(CameraLooper looper, EglApi egl, VsyncSource vsync, Renderer renderer,
+                      PresentationScheduler scheduler) {
+        mLooper = looper;
+        mEgl = egl;
+        mVsync = vsync;
+        mRenderer = renderer;
+        mScheduler = scheduler;
+    }
+
+    /** Creates the context and the output surfaces, like GLSurfaceView.onResume(). */
+    public void resume() {
+        mLooper.post(new Runnable() {
+            @Override
+            public void run() {
+                mResumed = true;
+                createContext();
+            }
+        });
+    }
+
+    /** Lets the renderer release its resources and destroys the context, like GLSurfaceView.onPause(). */
+    public void pause() {
+        mLooper.post(new Runnable() {
+            @Override
+            public void run() {
+                mResumed = false;
+                releaseContext();
+            }
+        });
+    }
+
+    /** Destroys the context and ends the thread; the loop cannot be resumed again. */
+    public void quit() {
+        mLooper.post(new Runnable() {
+            @Override
+            public void run() {
+                mResumed = false;
+                releaseContext();
+                mOutputs.clear();
+            }
+        });
+        mLooper.quitSafely();
+    }
+
+    /**
+     * Adds a window to draw into. The first output added is the one the renderer draws into.
+     * @param window Surface, SurfaceTexture or SurfaceHolder
+     * @return id for setOutputSize() and removeOutput()
+     */
+    public int addOutput(final Object window, final int width, final int height) {
+        final int id = mNextOutputId.getAndIncrement();
+        mLooper.post(new Runnable() {
+            @Override
+            public void run() {
+                Output output = new Output(id, window, width, height);
+                mOutputs.add(output);
+                if (mContextCreated) {
+                    createSurface(output);
+                    if (output == mOutputs.get(0)) {
+                        onPrimaryChanged();
+                    }
+                }
+                requestRenderOnLooper();
+            }
+        });
+        return id;
+    }
+
+    public void setOutputSize(final int id, final int width, final int height) {
+        mLooper.post(new Runnable() {
+            @Override
+            public void run() {
+                Output output = findOutput(id);
+                if (output == null || (output.width == width && output.height == height)) {
+                    return;
+                }
+                output.width = width;
+                output.height = height;
+                if (output == mOutputs.get(0) && mContextCreated) {
+                    onPrimaryChanged();
+                }
+                requestRenderOnLooper();
+            }
+        });
+    }
+
+    /**
+     * Destroys the output's EGL surface. A window that is going away, e.g. in
+     * SurfaceHolder.Callback.surfaceDestroyed(), must be followed by awaitIdle().
+     */
+    public void removeOutput(final int id) {
+        mLooper.post(new Runnable() {
+            @Override
+            public void run() {
+                Output output = findOutput(id);
+                if (output == null) {
+                    return;
+                }
+                boolean primary = output == mOutputs.get(0);
+                destroySurface(output);
+                mOutputs.remove(output);
+                if (primary && !mOutputs.isEmpty() && mContextCreated) {
+                    onPrimaryChanged();
+                    requestRenderOnLooper();
+                }
+            }
+        });
+    }
+
+    /** Draws at the next vsync. Any thread. */
+    public void requestRender() {
+        if (mRenderRequested.compareAndSet(false, true)) {
+            mLooper.post(mScheduleVsync);
+        }
+    }
+
+    /** Draws at every vsync instead of on request, like GLSurfaceView.RENDERMODE_CONTINUOUSLY. */
+    public void setContinuous(final boolean continuous) {
+        mLooper.post(new Runnable() {
+            @Override
+            public void run() {
+                mContinuous = continuous;
+                if (continuous) {
+                    requestRenderOnLooper();
+                }
+            }
+        });
+    }
+
+    /** Runs task on the render thread, with the context current if there is one. */
+    public void post(Runnable task) {
+        mLooper.post(task);
+    }
+
+    /**
+     * Waits until everything posted so far has run. Returns at once on the render thread.
+     * @return false on timeout
+     */
+    public boolean awaitIdle(long timeoutMs) throws InterruptedException {
+        if (mLooper.isCurrentThread()) {
+            return true;
+        }
+        final CountDownLatch latch = new CountDownLatch(1);
+        mLooper.post(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        return latch.await(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isRenderThread() {
+        return mLooper.isCurrentThread();
+    }
+
+    private final Runnable mScheduleVsync = new Runnable() {
+        @Override
+        public void run() {
+            scheduleVsync();
+        }
+    };
+
+    private final VsyncSource.Callback mVsyncCallback = new VsyncSource.Callback() {
+        @Override
+        public void onVsync(long frameTimeNanos) {
+            mVsyncRequested = false;
+            drawFrame(frameTimeNanos);
+            if (mContinuous) {
+                requestRenderOnLooper();
+            }
+        }
+    };
+
+    private void requestRenderOnLooper() {
+        mRenderRequested.set(true);
+        scheduleVsync();
+    }
+
+    private void scheduleVsync() {
+        // 描画先がない間は要求を残しておき、サーフェスができたところで改めてvsyncを待つ
+        if (mVsyncRequested || !mRenderRequested.get() || !canDraw()) {
+            return;
+        }
+        mVsyncRequested = true;
+        mVsync.requestVsync(mVsyncCallback);
+    }
+
+    private boolean canDraw() {
+        return mContextCreated && !mOutputs.isEmpty() && mOutputs.get(0).surface != EglApi.NO_SURFACE;
+    }
+
+    private void drawFrame(long frameTimeNanos) {
+        if (!canDraw()) {
+            return;
+        }
+        // 描画中に届いた要求は次のvsyncで処理する
+        mRenderRequested.set(false);
+        Output primary = mOutputs.get(0);
+        mEgl.makeCurrent(primary.surface);
+        int decision = mRenderer.onDrawFrame();
+        mDrawCount++;
+        if (decision == FrameChangeTracker.SKIP) {
+            // スワップしなければ前の画像がそのまま表示され続ける
+            mSkippedSwapCount++;
+            return;
+        }
+        long presentationTime = decision == FrameChangeTracker.LATCH
+                ? mScheduler.schedule(mRenderer.getFrameTimestamp(), frameTimeNanos) : Long.MIN_VALUE;
+        swap(primary, presentationTime);
+        if (mOutputs.size() == 1) {
+            return;
+        }
+        for (int i = 1; i < mOutputs.size(); i++) {
+            Output output = mOutputs.get(i);
+            if (output.surface == EglApi.NO_SURFACE || !mEgl.makeCurrent(output.surface)) {
+                continue;
+            }
+            mRenderer.onDrawCopy(output.width, output.height);
+            swap(output, presentationTime);
+        }
+        mEgl.makeCurrent(primary.surface);
+    }
+
+    private void swap(Output output, long presentationTime) {
+        if (presentationTime != Long.MIN_VALUE) {
+            mEgl.setPresentationTime(output.surface, presentationTime);
+        }
+        if (mEgl.swapBuffers(output.surface)) {
+            mSwapCount++;
+        } else {
+            // ウィンドウが破棄されかけている。surfaceDestroyed()からremoveOutput()が届く
+            mSwapFailureCount++;
+        }
+    }
+
+    private void createContext() {
+        if (!mResumed || mContextCreated) {
+            return;
+        }
+        mEgl.createContext();
+        mContextCreated = true;
+        mScheduler.reset();
+        mRenderer.onContextCreated(mEgl.getClientVersion());
+        for (Output output : mOutputs) {
+            createSurface(output);
+        }
+        if (!mOutputs.isEmpty()) {
+            onPrimaryChanged();
+        }
+        requestRenderOnLooper();
+    }
+
+    private void releaseContext() {
+        if (!mContextCreated) {
+            return;
+        }
+        if (mVsyncRequested) {
+            mVsync.cancelVsync(mVsyncCallback);
+            mVsyncRequested = false;
+        }
+        mRenderer.onContextReleasing();
+        for (Output output : mOutputs) {
+            destroySurface(output);
+        }
+        mEgl.releaseContext();
+        mContextCreated = false;
+    }
+
+    private void createSurface(Output output) {
+        output.surface = mEgl.createWindowSurface(output.window);
+    }
+
+    private void destroySurface(Output output) {
+        if (output.surface == EglApi.NO_SURFACE) {
+            return;
+        }
+        mEgl.destroySurface(output.surface);
+        output.surface = EglApi.NO_SURFACE;
+        if (canDraw()) {
+            mEgl.makeCurrent(mOutputs.get(0).surface);
+        } else {
+            mEgl.makeCurrent(EglApi.NO_SURFACE);
+        }
+    }
+
+    private void onPrimaryChanged() {
+        Output primary = mOutputs.get(0);
+        if (primary.surface == EglApi.NO_SURFACE) {
+            mEgl.makeCurrent(EglApi.NO_SURFACE);
+            return;
+        }
+        mEgl.makeCurrent(primary.surface);
+        mRenderer.onSurfaceChanged(primary.width, primary.height);
+    }
+
+    private Output findOutput(int id) {
+        for (Output output : mOutputs) {
+            if (output.id == id) {
+                return output;
+            }
+        }
+        return null;
+    }
+
+    public PresentationScheduler getPresentationScheduler() {
+        return mScheduler;
+    }
+
+    /** onDrawFrame() calls, skipped frames included. */
+    public long getDrawCount() {
+        return mDrawCount;
+    }
+
+    public long getSwapCount() {
+        return mSwapCount;
+    }
+
+    /** Frames the renderer skipped, which were therefore not swapped. */
+    public long getSkippedSwapCount() {
+        return mSkippedSwapCount;
+    }
+
+    public long getSwapFailureCount() {
+        return mSwapFailureCount;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.testcameraglsurfaceview;
+
+import java.util.Locale;
+
+/**
+ * Time CameraRenderer.drawFrame() spends in each stage, one LatencyHistogram per stage.
+ * GL calls are asynchronous, so this is the cost on the GL thread rather than on the GPU.
+ * Not thread-safe: read it on the GL thread or once rendering has stopped.
+ */
+public class RenderStageTimer {
+
+    /** Clear and updateTexture(). */
+    public static final int STAGE_LATCH = 0;
+    /** Camera quad and filter chain into the viewport. */
+    public static final int STAGE_DRAW = 1;
+    public static final int STAGE_READBACK = 2;
+    /** GpuFrameStatistics reduction, when enabled. */
+    public static final int STAGE_STATISTICS = 3;
+    /** Second draw into the FrameOutput, when it took the frame. */
+    public static final int STAGE_OUTPUT = 4;
+    public static final int STAGE_COUNT = 5;
+
+    private static final String[] NAMES = {"latch", "draw", "readback", "stats", "output"};
+
+    private final Clock mClock;
+    private final LatencyHistogram[] mHistograms = new LatencyHistogram[STAGE_COUNT];
+
+    public RenderStageTimer(Clock clock) {
+        mClock = clock;
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            mHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Records the time from startNano to now for the stage.
+     * @return now, to be passed as startNano of the next stage
+     */
+    public long record(int stage, long startNano) {
+        long now = mClock.nanoTime();
+        mHistograms[stage].record(now - startNano);
+        return now;
+    }
+
+    public LatencyHistogram getHistogram(int stage) {
+        return mHistograms[stage];
+    }
+
+    public static String getName(int stage) {
+        return NAMES[stage];
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : mHistograms) {
+            histogram.reset();
+        }
+    }
+
+    /** One line per stage with samples: count, then mean, p50, p95 and max in microseconds. */
+    public String formatReport() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            LatencyHistogram histogram = mHistograms[i];
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            builder.append(String.format(Locale.US, "%-9s n=%-6d mean=%8.1f p50=%8.1f p95=%8.1f max=%8.1f us%n",
+                    NAMES[i], histogram.getCount(),
+                    histogram.getMean() / 1000.0,
+                    histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(95) / 1000.0,
+                    histogram.getMax() / 1000.0));
+        }
+        return builder.toString();
+    }
+}
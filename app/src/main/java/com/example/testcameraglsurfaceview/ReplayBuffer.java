@@ -0,0 +1,165 @@
+package com.example.testcameraglsurfaceview;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Keeps the last windowUs of encoded video in an EncodedRingBuffer, so that after something
+ * happens the seconds before it can be saved ("instant replay"). EncoderDrainer offers samples
+ * on the GL thread and never waits; save() writes what was held at the time it was called from
+ * another thread while recording goes on. The saved file starts at a key frame and at time 0.
+ */
+public class ReplayBuffer implements EncodedSampleSink {
+
+    private final EncodedRingBuffer mRing;
+    private final long mWindowUs;
+    private final Object mLock = new Object();
+
+    // mLock で保護
+    private Object mFormat;
+    private boolean mFinished = false;
+
+    // save() を呼ぶスレッドのみ
+    private ByteBuffer mReadBuffer;
+    private final EncodedBufferInfo mReadInfo = new EncodedBufferInfo();
+
+    private volatile long mSavedCount = 0;
+    private volatile long mTruncatedCount = 0;
+
+    /**
+     * @param capacity   bytes of encoded data to hold at most; allocated here
+     * @param maxSamples samples to hold at most, e.g. twice the frames in the window
+     * @param windowUs   how far back to keep; older GOPs are evicted even when there is room
+     */
+    public ReplayBuffer(int capacity, int maxSamples, long windowUs) {
+        mRing = new EncodedRingBuffer(capacity, maxSamples);
+        mWindowUs = windowUs;
+    }
+
+    @Override
+    public void setFormat(Object format) {
+        synchronized (mLock) {
+            if (mFormat == null) {
+                mFormat = format;
+            }
+        }
+    }
+
+    @Override
+    public boolean offer(ByteBuffer data, EncodedBufferInfo info) {
+        synchronized (mLock) {
+            if (mFinished) {
+                return false;
+            }
+            boolean stored = mRing.append(data, info);
+            mRing.trimToDuration(mWindowUs);
+            return stored;
+        }
+    }
+
+    /** The encoder stopped. What is held can still be saved. */
+    @Override
+    public void finish() {
+        synchronized (mLock) {
+            mFinished = true;
+        }
+    }
+
+    /**
+     * Writes the samples held right now to sink, then stops and releases it. Samples are copied out
+     * one at a time, so offer() is only held up for a single copy; should recording overtake the
+     * writer and evict a sample before it is written, the file ends before that GOP.
+     * Must not be called on the GL thread, nor from two threads at once.
+     * @return samples written
+     */
+    public int save(MuxerSink sink) {
+        long first;
+        long end;
+        Object format;
+        synchronized (mLock) {
+            first = mRing.getFirstSequence();
+            end = mRing.getEndSequence();
+            format = mFormat;
+        }
+
+        int written = 0;
+        boolean started = false;
+        try {
+            if (format == null || first == end) {
+                return 0;
+            }
+            int track = sink.addTrack(format);
+            sink.start();
+            started = true;
+            long firstPresentationTimeUs = 0;
+            for (long sequence = first; sequence < end; sequence++) {
+                synchronized (mLock) {
+                    int size = mRing.getSampleSize(sequence);
+                    if (size < 0) {
+                        // 書き出しより先に上書きされた。欠けたGOPの手前で止める
+                        mTruncatedCount++;
+                        break;
+                    }
+                    if (mReadBuffer == null || mReadBuffer.capacity() < size) {
+                        mReadBuffer = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+                    }
+                    mRing.read(sequence, mReadBuffer, mReadInfo);
+                }
+                if (sequence == first) {
+                    firstPresentationTimeUs = mReadInfo.presentationTimeUs;
+                }
+                mReadInfo.presentationTimeUs -= firstPresentationTimeUs;
+                sink.writeSampleData(track, mReadBuffer, mReadInfo);
+                written++;
+            }
+        } finally {
+            try {
+                if (started) {
+                    sink.stop();
+                }
+            } finally {
+                sink.release();
+            }
+        }
+        mSavedCount++;
+        return written;
+    }
+
+    /** Time held, from the oldest key frame to the newest sample. */
+    public long getDurationUs() {
+        synchronized (mLock) {
+            return mRing.getDurationUs();
+        }
+    }
+
+    public int getSampleCount() {
+        synchronized (mLock) {
+            return mRing.getSampleCount();
+        }
+    }
+
+    public int getUsedBytes() {
+        synchronized (mLock) {
+            return mRing.getUsedBytes();
+        }
+    }
+
+    public int getCapacity() {
+        return mRing.getCapacity();
+    }
+
+    public long getDroppedCount() {
+        synchronized (mLock) {
+            return mRing.getDroppedCount();
+        }
+    }
+
+    public long getSavedCount() {
+        return mSavedCount;
+    }
+
+    /** Saves that ended early because recording evicted samples before they were written. */
+    public long getTruncatedCount() {
+        return mTruncatedCount;
+    }
+}
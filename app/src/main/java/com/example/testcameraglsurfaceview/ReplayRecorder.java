@@ -0,0 +1,121 @@
+package com.example.testcameraglsurfaceview;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Encodes the rendered camera image all the time into a ReplayBuffer, so that save() can write the
+ * last seconds to an MP4 file without interrupting the preview. Encoding runs on the GL thread like
+ * VideoRecorder; each save() writes on a thread of its own. The bit rate is chosen so the window fits
+ * the memory budget.
+ */
+public class ReplayRecorder implements FrameOutput {
+
+    private static final String TAG = "ReplayRecorder";
+    private static final float BITS_PER_PIXEL = 0.25f;
+    private static final int SIZE_ALIGNMENT = 16;
+    // キーフレームの大きさのばらつきと、バッファ末尾で使えない分の余裕
+    private static final float BUDGET_USAGE = 0.75f;
+    private static final int SAMPLES_PER_FRAME = 2;
+
+    private final MediaCodecVideoEncoder mEncoder;
+    private final EncoderInputSurface mInputSurface;
+    private final ReplayBuffer mBuffer;
+    private final EncoderDrainer mDrainer;
+    private final TimestampRebaser mRebaser = new TimestampRebaser();
+    private final int mWidth;
+    private final int mHeight;
+    private long mPresentationTimeNano;
+    private Thread mSaveThread;
+
+    /**
+     * Must be called on the GL thread with the renderer's context current.
+     * @param windowSec   seconds to keep
+     * @param budgetBytes memory for the encoded window, allocated here
+     */
+    public ReplayRecorder(int width, int height, int frameRate, int windowSec, int budgetBytes) throws IOException {
+        mWidth = width / SIZE_ALIGNMENT * SIZE_ALIGNMENT;
+        mHeight = height / SIZE_ALIGNMENT * SIZE_ALIGNMENT;
+        int bitRate = (int) Math.min(BITS_PER_PIXEL * mWidth * mHeight * frameRate,
+                (long) budgetBytes * 8 * BUDGET_USAGE / windowSec);
+
+        mEncoder = new MediaCodecVideoEncoder(mWidth, mHeight, bitRate, frameRate);
+        try {
+            mInputSurface = new EncoderInputSurface(mEncoder.getInputSurface());
+        } catch (RuntimeException e) {
+            mEncoder.release();
+            throw e;
+        }
+        mBuffer = new ReplayBuffer(budgetBytes, frameRate * windowSec * SAMPLES_PER_FRAME, windowSec * 1000000L);
+        mDrainer = new EncoderDrainer(mEncoder, mBuffer);
+    }
+
+    @Override
+    public int getWidth() {
+        return mWidth;
+    }
+
+    @Override
+    public int getHeight() {
+        return mHeight;
+    }
+
+    @Override
+    public boolean beginFrame(long cameraTimestampNano) {
+        if (mDrainer.isEndOfStream()) {
+            return false;
+        }
+        long pts = mRebaser.rebase(cameraTimestampNano);
+        if (pts == TimestampRebaser.SKIP) {
+            return false;
+        }
+        mPresentationTimeNano = pts;
+        mInputSurface.makeCurrent();
+        return true;
+    }
+
+    @Override
+    public void endFrame() {
+        mInputSurface.swapBuffers(mPresentationTimeNano);
+        mDrainer.drain(false);
+    }
+
+    /**
+     * Writes what is held now to file on a background thread. Any thread.
+     * @return false if the previous save is still being written
+     */
+    public synchronized boolean save(final File file) {
+        if (mSaveThread != null && mSaveThread.isAlive()) {
+            return false;
+        }
+        mSaveThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int written = mBuffer.save(new MediaMuxerSink(file));
+                    Log.i(TAG, "saved " + written + " samples to " + file);
+                } catch (IOException | RuntimeException e) {
+                    Log.e(TAG, "failed to save replay", e);
+                }
+            }
+        }, "ReplayWriter");
+        mSaveThread.start();
+        return true;
+    }
+
+    /** Stops encoding. A save in progress still completes. */
+    public void stop() {
+        try {
+            mDrainer.drain(true);
+        } finally {
+            mInputSurface.release();
+            mEncoder.release();
+        }
+    }
+
+    public ReplayBuffer getBuffer() {
+        return mBuffer;
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Pooled frame backed by one direct buffer that is reallocated only to grow. See FrameBufferPool.
+ */
+public interface ResizableDirectBuffer {
+
+    /** Reallocates the buffer if it holds fewer than bytes. */
+    void ensureCapacity(int bytes);
+
+    /** Direct buffers allocated by ensureCapacity() so far. */
+    int getAllocationCount();
+}
@@ -0,0 +1,46 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Width and height in pixels. Plain-Java stand-in for android.util.Size so size logic runs on any JVM.
+ */
+public final class Resolution {
+
+    private final int mWidth;
+    private final int mHeight;
+
+    public Resolution(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public long getArea() {
+        return (long) mWidth * mHeight;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Resolution)) {
+            return false;
+        }
+        Resolution other = (Resolution) o;
+        return mWidth == other.mWidth && mHeight == other.mHeight;
+    }
+
+    @Override
+    public int hashCode() {
+        return mHeight ^ ((mWidth << (Integer.SIZE / 2)) | (mWidth >>> (Integer.SIZE / 2)));
+    }
+
+    @Override
+    public String toString() {
+        return mWidth + "x" + mHeight;
+    }
+}
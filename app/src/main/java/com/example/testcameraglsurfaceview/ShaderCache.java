@@ -0,0 +1,206 @@
+package com.example.testcameraglsurfaceview;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Linked programs keyed by a hash of their sources.
+ * Programs live in an LRU for the current GL context and, on ES3 drivers, their binaries are persisted
+ * through ProgramBinaryStore so the next context (or the next launch) skips compile and link.
+ * The cache owns the programs it returns: callers must not delete them, and capacity should cover
+ * every program that is in use at the same time.
+ * All methods except the counters must be called on the GL thread.
+ */
+public class ShaderCache {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final int mCapacity;
+    private final ProgramBinaryStore mStore;
+    private final Clock mClock;
+    private final LinkedHashMap<String, Integer> mPrograms;
+    private GlApi mGl;
+    private boolean mBinarySupported = false;
+
+    private volatile long mHitCount = 0;
+    private volatile long mBinaryHitCount = 0;
+    private volatile long mMissCount = 0;
+    private volatile long mEvictionCount = 0;
+    private volatile long mCompileTimeNano = 0;
+    private volatile long mBinaryLoadTimeNano = 0;
+
+    /** @param store may be null to keep the cache in memory only */
+    public ShaderCache(int capacity, ProgramBinaryStore store, Clock clock) {
+        mCapacity = capacity;
+        mStore = store;
+        mClock = clock;
+        mPrograms = new LinkedHashMap<String, Integer>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                if (size() <= mCapacity) {
+                    return false;
+                }
+                mGl.glDeleteProgram(eldest.getValue());
+                mEvictionCount++;
+                return true;
+            }
+        };
+    }
+
+    /** Must be called once per new GL context, before getProgram(). Programs of the old context are forgotten. */
+    public void onSurfaceCreated(GlApi gl) {
+        mGl = gl;
+        mPrograms.clear();
+
+        int[] formats = new int[1];
+        if (gl.getClientVersion() >= 3) {
+            gl.glGetIntegerv(GlApi.GL_NUM_PROGRAM_BINARY_FORMATS, formats, 0);
+        }
+        mBinarySupported = mStore != null && formats[0] > 0;
+        if (mBinarySupported) {
+            mStore.open(getDriverVersion(gl));
+        }
+    }
+
+    /** @return linked program, or 0 if compile or link failed */
+    public int getProgram(GlApi gl, String vertexSource, String fragmentSource) {
+        String key = key(vertexSource, fragmentSource);
+        Integer cached = mPrograms.get(key);
+        if (cached != null) {
+            mHitCount++;
+            return cached;
+        }
+
+        int program = 0;
+        if (mBinarySupported) {
+            long start = mClock.nanoTime();
+            program = loadBinary(gl, key);
+            if (program != 0) {
+                mBinaryHitCount++;
+                mBinaryLoadTimeNano += mClock.nanoTime() - start;
+            }
+        }
+
+        if (program == 0) {
+            long start = mClock.nanoTime();
+            program = ShaderUtil.createProgram(gl, vertexSource, fragmentSource);
+            mMissCount++;
+            mCompileTimeNano += mClock.nanoTime() - start;
+            if (program == 0) {
+                return 0;
+            }
+            if (mBinarySupported) {
+                saveBinary(gl, key, program);
+            }
+        }
+
+        mPrograms.put(key, program);
+        return program;
+    }
+
+    public void release(GlApi gl) {
+        for (int program : mPrograms.values()) {
+            gl.glDeleteProgram(program);
+        }
+        mPrograms.clear();
+    }
+
+    public boolean isBinarySupported() {
+        return mBinarySupported;
+    }
+
+    public int size() {
+        return mPrograms.size();
+    }
+
+    public long getHitCount() {
+        return mHitCount;
+    }
+
+    public long getBinaryHitCount() {
+        return mBinaryHitCount;
+    }
+
+    public long getMissCount() {
+        return mMissCount;
+    }
+
+    public long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    public long getCompileTimeNano() {
+        return mCompileTimeNano;
+    }
+
+    public long getBinaryLoadTimeNano() {
+        return mBinaryLoadTimeNano;
+    }
+
+    /** SHA-1 of both sources; the separator keeps ("ab","c") and ("a","bc") apart. */
+    public static String key(String vertexSource, String fragmentSource) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(vertexSource.getBytes("UTF-8"));
+            digest.update((byte) 0);
+            digest.update(fragmentSource.getBytes("UTF-8"));
+            byte[] hash = digest.digest();
+            char[] hex = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; i++) {
+                hex[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+                hex[i * 2 + 1] = HEX[hash[i] & 0xf];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String getDriverVersion(GlApi gl) {
+        return gl.glGetString(GlApi.GL_VENDOR) + "|" + gl.glGetString(GlApi.GL_RENDERER) + "|" + gl.glGetString(GlApi.GL_VERSION);
+    }
+
+    private int loadBinary(GlApi gl, String key) {
+        ProgramBinaryStore.Entry entry = mStore.load(key);
+        if (entry == null) {
+            return 0;
+        }
+        int program = gl.glCreateProgram();
+        if (program == 0) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(entry.binary.length).order(ByteOrder.nativeOrder());
+        buffer.put(entry.binary).position(0);
+        gl.glProgramBinary(program, entry.format, buffer, entry.binary.length);
+
+        int[] linkStatus = new int[1];
+        gl.glGetProgramiv(program, GlApi.GL_LINK_STATUS, linkStatus, 0);
+        if (linkStatus[0] != GlApi.GL_TRUE) {
+            // ドライバ側で受理されなかったバイナリは以後使わない
+            gl.glDeleteProgram(program);
+            mStore.remove(key);
+            return 0;
+        }
+        return program;
+    }
+
+    private void saveBinary(GlApi gl, String key, int program) {
+        int[] length = new int[1];
+        gl.glGetProgramiv(program, GlApi.GL_PROGRAM_BINARY_LENGTH, length, 0);
+        if (length[0] <= 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length[0]).order(ByteOrder.nativeOrder());
+        int[] format = new int[1];
+        gl.glGetProgramBinary(program, length[0], length, 0, format, 0, buffer);
+        byte[] binary = new byte[length[0]];
+        buffer.position(0);
+        buffer.get(binary);
+        mStore.save(key, format[0], binary);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.testcameraglsurfaceview;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+public abstract class ShaderFilter implements Filter {
+
+    private static final int FLOAT_SIZE_BYTES = 4;
+    private static final String VERTEX_SHADER =
+            "attribute vec4 position;\n" +
+                    "attribute vec2 texcoord;\n" +
+                    "varying vec2 texcoordVarying;\n" +
+                    "void main() {\n" +
+                    "    gl_Position = position;\n" +
+                    "    texcoordVarying = texcoord;\n" +
+                    "}\n";
+    private static final float VERTECES[] = {
+            -1.0f, 1.0f,
+            -1.0f, -1.0f,
+            1.0f, 1.0f,
+            1.0f, -1.0f
+    };
+    private static final float TEX_COORDS[] = {
+            0.0f, 1.0f,
+            0.0f, 0.0f,
+            1.0f, 1.0f,
+            1.0f, 0.0f
+    };
+
+    private final String mFragmentShader;
+    private final FloatBuffer mVertexBuffer;
+    private final FloatBuffer mTexCoordBuffer;
+    private int mProgram;
+    private int mPositionHandle;
+    private int mTexCoordHandle;
+    private int mTextureHandle;
+    private int mWidth;
+    private int mHeight;
+
+    /** fragmentShader must declare "varying vec2 texcoordVarying" and "uniform sampler2D texture". */
+    protected ShaderFilter(String fragmentShader) {
+        mFragmentShader = fragmentShader;
+        mVertexBuffer = createBuffer(VERTECES);
+        mTexCoordBuffer = createBuffer(TEX_COORDS);
+    }
+
+    @Override
+    public void onSurfaceCreated(GlApi gl, ShaderCache shaderCache) {
+        mProgram = shaderCache.getProgram(gl, VERTEX_SHADER, mFragmentShader);
+        mPositionHandle = gl.glGetAttribLocation(mProgram, "position");
+        mTexCoordHandle = gl.glGetAttribLocation(mProgram, "texcoord");
+        mTextureHandle = gl.glGetUniformLocation(mProgram, "texture");
+        onProgramCreated(gl, mProgram);
+    }
+
+    @Override
+    public void onSizeChanged(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+    }
+
+    @Override
+    public void draw(GlApi gl, int inputTexture) {
+        gl.glUseProgram(mProgram);
+
+        gl.glEnableVertexAttribArray(mPositionHandle);
+        gl.glVertexAttribPointer(mPositionHandle, 2, GlApi.GL_FLOAT, false, 0, mVertexBuffer);
+        gl.glEnableVertexAttribArray(mTexCoordHandle);
+        gl.glVertexAttribPointer(mTexCoordHandle, 2, GlApi.GL_FLOAT, false, 0, mTexCoordBuffer);
+
+        gl.glActiveTexture(GlApi.GL_TEXTURE0);
+        gl.glBindTexture(GlApi.GL_TEXTURE_2D, inputTexture);
+        gl.glUniform1i(mTextureHandle, 0);
+
+        onDraw(gl);
+
+        gl.glDrawArrays(GlApi.GL_TRIANGLE_STRIP, 0, 4);
+    }
+
+    @Override
+    public void release(GlApi gl) {
+        // プログラムはShaderCacheの所有なので削除しない
+        mProgram = 0;
+    }
+
+    protected int getWidth() {
+        return mWidth;
+    }
+
+    protected int getHeight() {
+        return mHeight;
+    }
+
+    /** Look up filter-specific uniform locations here. */
+    protected abstract void onProgramCreated(GlApi gl, int program);
+
+    /** Set filter-specific uniforms here; the program is already in use. */
+    protected void onDraw(GlApi gl) {
+    }
+
+    private static FloatBuffer createBuffer(float[] data) {
+        FloatBuffer buffer =
+                ByteBuffer.allocateDirect(data.length * FLOAT_SIZE_BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        buffer.put(data).position(0);
+        return buffer;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.testcameraglsurfaceview;
+
+public class ShaderUtil {
+
+    public static int loadShader(GlApi gl, int shaderType, String source) {
+        int shader = gl.glCreateShader(shaderType);
+        if (shader != 0) {
+            gl.glShaderSource(shader, source);
+            gl.glCompileShader(shader);
+            int[] compiled = new int[1];
+            gl.glGetShaderiv(shader, GlApi.GL_COMPILE_STATUS, compiled, 0);
+            if (compiled[0] == 0) {
+                gl.glDeleteShader(shader);
+                shader = 0;
+            }
+        }
+        return shader;
+    }
+
+    public static int createProgram(GlApi gl, String vertexSource, String fragmentSource) {
+        int vertexShader = loadShader(gl, GlApi.GL_VERTEX_SHADER, vertexSource);
+        if (vertexShader == 0) {
+            return 0;
+        }
+
+        int pixelShader = loadShader(gl, GlApi.GL_FRAGMENT_SHADER, fragmentSource);
+        if (pixelShader == 0) {
+            return 0;
+        }
+
+        int program = gl.glCreateProgram();
+        if (program == 0) {
+            return 0;
+        }
+
+        gl.glAttachShader(program, vertexShader);
+        gl.glAttachShader(program, pixelShader);
+        gl.glLinkProgram(program);
+
+        int[] linkStatus = new int[1];
+        gl.glGetProgramiv(program, GlApi.GL_LINK_STATUS, linkStatus, 0);
+        if (linkStatus[0] != GlApi.GL_TRUE) {
+            gl.glDeleteProgram(program);
+            program = 0;
+        }
+        return program;
+    }
+
+    public static void checkGlError(GlApi gl, String op) {
+        int error = gl.glGetError();
+        if (error != GlApi.GL_NO_ERROR) {
+            throw new RuntimeException(op + ": glError " + error);
+        }
+    }
+}
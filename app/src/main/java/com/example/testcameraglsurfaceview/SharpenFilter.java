@@ -0,0 +1,45 @@
+package com.example.testcameraglsurfaceview;
+
+public class SharpenFilter extends ShaderFilter {
+
+    private static final String FRAGMENT_SHADER =
+            "precision mediump float;\n" +
+                    "varying vec2 texcoordVarying;\n" +
+                    "uniform sampler2D texture;\n" +
+                    "uniform vec2 texelSize;\n" +
+                    "uniform float amount;\n" +
+                    "void main() {\n" +
+                    "  vec4 center = texture2D(texture, texcoordVarying);\n" +
+                    "  vec4 neighbors = texture2D(texture, texcoordVarying + vec2(texelSize.x, 0.0))\n" +
+                    "          + texture2D(texture, texcoordVarying - vec2(texelSize.x, 0.0))\n" +
+                    "          + texture2D(texture, texcoordVarying + vec2(0.0, texelSize.y))\n" +
+                    "          + texture2D(texture, texcoordVarying - vec2(0.0, texelSize.y));\n" +
+                    "  vec3 rgb = center.rgb * (1.0 + 4.0 * amount) - neighbors.rgb * amount;\n" +
+                    "  gl_FragColor = vec4(clamp(rgb, 0.0, 1.0), center.a);\n" +
+                    "}\n";
+
+    private volatile float mAmount;
+    private int mTexelSizeHandle;
+    private int mAmountHandle;
+
+    public SharpenFilter(float amount) {
+        super(FRAGMENT_SHADER);
+        mAmount = amount;
+    }
+
+    public void setAmount(float amount) {
+        mAmount = amount;
+    }
+
+    @Override
+    protected void onProgramCreated(GlApi gl, int program) {
+        mTexelSizeHandle = gl.glGetUniformLocation(program, "texelSize");
+        mAmountHandle = gl.glGetUniformLocation(program, "amount");
+    }
+
+    @Override
+    protected void onDraw(GlApi gl) {
+        gl.glUniform2f(mTexelSizeHandle, 1.0f / Math.max(1, getWidth()), 1.0f / Math.max(1, getHeight()));
+        gl.glUniform1f(mAmountHandle, mAmount);
+    }
+}
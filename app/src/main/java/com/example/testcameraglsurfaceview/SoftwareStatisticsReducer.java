@@ -0,0 +1,127 @@
+package com.example.testcameraglsurfaceview;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * CPU reference for GpuFrameStatistics: runs the same ReductionPlan on an RGBA8 image with the same
+ * level 0 encoding, bilinear sampling and 8-bit rounding per level, so its tile grid should match the
+ * GPU readback to within a step or two of rounding. For tests and on-device cross-checks, not for
+ * the preview path.
+ */
+public class SoftwareStatisticsReducer {
+
+    private final ReductionPlan mPlan;
+    private byte[] mLevel;
+    private byte[] mNext;
+    private byte[] mPreviousLuma;
+    private byte[] mLuma;
+    private boolean mHasPrevious = false;
+    private final ByteBuffer mGrid;
+
+    public SoftwareStatisticsReducer(ReductionPlan plan) {
+        mPlan = plan;
+        int samples = plan.getLevelWidth(0) * plan.getLevelHeight(0);
+        mLevel = new byte[samples * 4];
+        mNext = new byte[samples * 4];
+        mPreviousLuma = new byte[samples];
+        mLuma = new byte[samples];
+        mGrid = ByteBuffer.allocateDirect(plan.getGridWidth() * plan.getGridHeight() * 4)
+                .order(ByteOrder.nativeOrder());
+    }
+
+    /** The next frame has no previous one to compare against. */
+    public void reset() {
+        mHasPrevious = false;
+    }
+
+    /**
+     * @param rgba RGBA8, rows bottom-up, width * height texels from position 0
+     * @return the tile grid as GpuFrameStatistics reads it back, valid until the next call
+     */
+    public ByteBuffer reduce(ByteBuffer rgba, int width, int height) {
+        int levelWidth = mPlan.getLevelWidth(0);
+        int levelHeight = mPlan.getLevelHeight(0);
+        for (int j = 0; j < levelHeight; j++) {
+            float y = (j + 0.5f) / levelHeight * height - 0.5f;
+            for (int i = 0; i < levelWidth; i++) {
+                float x = (i + 0.5f) / levelWidth * width - 0.5f;
+                float luma = 0.299f * sample(rgba, width, height, x, y, 0)
+                        + 0.587f * sample(rgba, width, height, x, y, 1)
+                        + 0.114f * sample(rgba, width, height, x, y, 2);
+                int index = j * levelWidth + i;
+                float previous = (mPreviousLuma[index] & 0xff) / 255.0f;
+                byte encoded = quantize(luma);
+                mLuma[index] = encoded;
+                mLevel[index * 4] = encoded;
+                mLevel[index * 4 + 1] = mHasPrevious ? quantize(Math.abs(luma - previous)) : 0;
+                mLevel[index * 4 + 2] = luma < FrameStatistics.DARK_LEVEL ? (byte) 255 : 0;
+                mLevel[index * 4 + 3] = luma >= FrameStatistics.BRIGHT_LEVEL ? (byte) 255 : 0;
+            }
+        }
+        byte[] swap = mPreviousLuma;
+        mPreviousLuma = mLuma;
+        mLuma = swap;
+        mHasPrevious = true;
+
+        for (int level = 1; level < mPlan.getLevelCount(); level++) {
+            int sourceWidth = mPlan.getLevelWidth(level - 1);
+            int sourceHeight = mPlan.getLevelHeight(level - 1);
+            int targetWidth = mPlan.getLevelWidth(level);
+            int targetHeight = mPlan.getLevelHeight(level);
+            int stepX = sourceWidth / targetWidth;
+            int stepY = sourceHeight / targetHeight;
+            for (int j = 0; j < targetHeight; j++) {
+                for (int i = 0; i < targetWidth; i++) {
+                    for (int c = 0; c < 4; c++) {
+                        int sum = 0;
+                        for (int dy = 0; dy < stepY; dy++) {
+                            for (int dx = 0; dx < stepX; dx++) {
+                                sum += mLevel[((j * stepY + dy) * sourceWidth + i * stepX + dx) * 4 + c] & 0xff;
+                            }
+                        }
+                        int count = stepX * stepY;
+                        mNext[(j * targetWidth + i) * 4 + c] = (byte) ((sum + count / 2) / count);
+                    }
+                }
+            }
+            swap = mLevel;
+            mLevel = mNext;
+            mNext = swap;
+        }
+
+        mGrid.clear();
+        mGrid.put(mLevel, 0, mGrid.capacity());
+        mGrid.flip();
+        return mGrid;
+    }
+
+    /** Bilinear, clamped to the edge like the GPU sampler; 0..1. */
+    private static float sample(ByteBuffer rgba, int width, int height, float x, float y, int channel) {
+        int x0 = (int) Math.floor(x);
+        int y0 = (int) Math.floor(y);
+        float fx = x - x0;
+        float fy = y - y0;
+        float lower = lerp(texel(rgba, width, height, x0, y0, channel), texel(rgba, width, height, x0 + 1, y0, channel), fx);
+        float upper = lerp(texel(rgba, width, height, x0, y0 + 1, channel), texel(rgba, width, height, x0 + 1, y0 + 1, channel), fx);
+        return lerp(lower, upper, fy) / 255.0f;
+    }
+
+    private static int texel(ByteBuffer rgba, int width, int height, int x, int y, int channel) {
+        x = Math.min(width - 1, Math.max(0, x));
+        y = Math.min(height - 1, Math.max(0, y));
+        return rgba.get((y * width + x) * 4 + channel) & 0xff;
+    }
+
+    private static float lerp(float a, float b, float t) {
+        return a + (b - a) * t;
+    }
+
+    private static byte quantize(float value) {
+        return (byte) Math.round(Math.min(1.0f, Math.max(0.0f, value)) * 255);
+    }
+
+    public ReductionPlan getPlan() {
+        return mPlan;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.testcameraglsurfaceview;
+
+import java.util.List;
+
+/**
+ * Chooses capture sizes and an AE fps range for a session. Each candidate size is scored by
+ * how far its aspect ratio is from the target, how far its area is from what the stream needs
+ * (being too small costs more than being too big), and whether it can sustain the target fps.
+ * Sizes above a stream's pixel budget are only used when nothing else exists.
+ */
+public class StreamNegotiator {
+
+    static final double ASPECT_WEIGHT = 4.0;
+    static final double UNDERSIZE_WEIGHT = 2.0;
+    static final double OVERSIZE_WEIGHT = 0.5;
+    static final double FPS_WEIGHT = 10.0;
+
+    private StreamNegotiator() {
+    }
+
+    /**
+     * @param displayAspect width / height of the area the preview is shown in, either orientation
+     * @return the plan, or null if the camera has no output for one of the requested formats
+     */
+    public static CapturePlan negotiate(CameraCapabilities capabilities, double displayAspect, int targetFps,
+                                        StreamRequest... requests) {
+        double landscapeAspect = displayAspect >= 1 ? displayAspect : 1 / displayAspect;
+        Resolution[] sizes = new Resolution[requests.length];
+        double maxFps = Double.MAX_VALUE;
+
+        for (int i = 0; i < requests.length; i++) {
+            StreamRequest request = requests[i];
+            double aspect = request.matchFirstStreamAspect && i > 0
+                    ? aspectOf(sizes[0])
+                    : landscapeAspect;
+            CameraCapabilities.StreamConfig best = choose(capabilities.getOutputs(request.format), request, aspect, targetFps);
+            if (best == null) {
+                return null;
+            }
+            sizes[i] = best.size;
+            maxFps = Math.min(maxFps, best.getMaxFps());
+        }
+
+        return new CapturePlan(sizes, chooseFpsRange(capabilities.getFpsRanges(), targetFps, maxFps), maxFps);
+    }
+
+    static double score(CameraCapabilities.StreamConfig config, StreamRequest request, double targetAspect, int targetFps) {
+        double aspectError = Math.abs(Math.log(aspectOf(config.size) / targetAspect));
+
+        long needed = request.getTargetPixels();
+        long area = config.size.getArea();
+        double sizeError;
+        if (area < needed) {
+            sizeError = UNDERSIZE_WEIGHT * (needed - area) / (double) needed;
+        } else {
+            sizeError = OVERSIZE_WEIGHT * (area - needed) / (double) needed;
+        }
+
+        double fpsError = 0;
+        double maxFps = config.getMaxFps();
+        if (maxFps < targetFps) {
+            fpsError = FPS_WEIGHT * (targetFps - maxFps) / targetFps;
+        }
+        return ASPECT_WEIGHT * aspectError + sizeError + fpsError;
+    }
+
+    private static CameraCapabilities.StreamConfig choose(List<CameraCapabilities.StreamConfig> candidates,
+                                                          StreamRequest request, double targetAspect, int targetFps) {
+        CameraCapabilities.StreamConfig best = null;
+        double bestScore = 0;
+        boolean bestInBudget = false;
+        for (CameraCapabilities.StreamConfig candidate : candidates) {
+            boolean inBudget = candidate.size.getArea() <= request.maxPixels;
+            double score = score(candidate, request, targetAspect, targetFps);
+            boolean better;
+            if (best == null || inBudget != bestInBudget) {
+                better = best == null || inBudget;
+            } else if (!inBudget) {
+                // 予算内の候補が無い場合は最小のものを使う
+                better = candidate.size.getArea() < best.size.getArea();
+            } else {
+                better = score < bestScore
+                        || (score == bestScore && candidate.size.getArea() < best.size.getArea());
+            }
+            if (better) {
+                best = candidate;
+                bestScore = score;
+                bestInBudget = inBudget;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Prefers the range whose upper bound is closest to the fps the streams can deliver (capped at the
+     * target), then the narrowest one, since frame pacing works best with a steady camera rate.
+     */
+    static CameraCapabilities.FpsRange chooseFpsRange(List<CameraCapabilities.FpsRange> ranges, int targetFps, double maxFps) {
+        double desired = Math.min(targetFps, maxFps);
+        CameraCapabilities.FpsRange best = null;
+        double bestUpperError = 0;
+        for (CameraCapabilities.FpsRange range : ranges) {
+            // 上限がストリームの出せるfpsを超える範囲は選ばない (1fpsの丸め誤差は許容)
+            if (range.max > maxFps + 1) {
+                continue;
+            }
+            double upperError = Math.abs(range.max - desired);
+            if (best == null
+                    || upperError < bestUpperError
+                    || (upperError == bestUpperError && range.max - range.min < best.max - best.min)) {
+                best = range;
+                bestUpperError = upperError;
+            }
+        }
+        return best;
+    }
+
+    private static double aspectOf(Resolution size) {
+        return (double) size.getWidth() / size.getHeight();
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * What one output surface of the capture session needs: its format, the size it will be shown or
+ * processed at, and an upper pixel budget. Sizes are in sensor orientation (landscape).
+ */
+public class StreamRequest {
+
+    final int format;
+    final int targetWidth;
+    final int targetHeight;
+    long maxPixels = Long.MAX_VALUE;
+    boolean matchFirstStreamAspect = false;
+
+    public StreamRequest(int format, int targetWidth, int targetHeight) {
+        this.format = format;
+        this.targetWidth = Math.max(targetWidth, targetHeight);
+        this.targetHeight = Math.min(targetWidth, targetHeight);
+    }
+
+    /** Sizes above this many pixels are only used when nothing smaller exists. */
+    public StreamRequest setMaxPixels(long maxPixels) {
+        this.maxPixels = maxPixels;
+        return this;
+    }
+
+    /** Aim for the aspect ratio chosen for the first (preview) stream instead of the display's. */
+    public StreamRequest setMatchFirstStreamAspect(boolean match) {
+        this.matchFirstStreamAspect = match;
+        return this;
+    }
+
+    long getTargetPixels() {
+        return (long) targetWidth * targetHeight;
+    }
+}
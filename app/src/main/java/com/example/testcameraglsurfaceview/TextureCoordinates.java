@@ -0,0 +1,52 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Texture coordinates of the fullscreen triangle strip for each camera rotation.
+ */
+public class TextureCoordinates {
+
+    private static final float TEX_COORDS_ROTATION_0[] = {
+            0.0f, 0.0f,
+            0.0f, 1.0f,
+            1.0f, 0.0f,
+            1.0f, 1.0f
+    };
+    private static final float TEX_COORDS_ROTATION_90[] = {
+            1.0f, 0.0f,
+            0.0f, 0.0f,
+            1.0f, 1.0f,
+            0.0f, 1.0f
+    };
+    private static final float TEX_COORDS_ROTATION_180[] = {
+            1.0f, 1.0f,
+            1.0f, 0.0f,
+            0.0f, 1.0f,
+            0.0f, 0.0f
+    };
+    private static final float TEX_COORDS_ROTATION_270[] = {
+            0.0f, 1.0f,
+            1.0f, 1.0f,
+            0.0f, 0.0f,
+            1.0f, 0.0f
+    };
+
+    public static final int COUNT = TEX_COORDS_ROTATION_0.length;
+
+    private TextureCoordinates() {
+    }
+
+    /** @return shared array, must not be modified */
+    static float[] forRotation(CameraRotation rotation) {
+        switch (rotation) {
+            case ROTATION_90:
+                return TEX_COORDS_ROTATION_90;
+            case ROTATION_180:
+                return TEX_COORDS_ROTATION_180;
+            case ROTATION_270:
+                return TEX_COORDS_ROTATION_270;
+            case ROTATION_0:
+            default:
+                return TEX_COORDS_ROTATION_0;
+        }
+    }
+}
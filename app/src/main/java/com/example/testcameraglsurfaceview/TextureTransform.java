@@ -0,0 +1,75 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Maps a point on the display, (u, v) from the top left corner in 0..1, to the texture coordinate the
+ * sampling shader reads for it: through the CameraRotation corners of TextureCoordinates into buffer
+ * space (x right and y down, also 0..1), then through SurfaceTexture.getTransformMatrix(). The
+ * rotation tables are written for DEFAULT_MATRIX, so any other matrix only adds what it does beyond
+ * that, such as cropping away buffer padding. A zoom crop is a rectangle in display space, which
+ * makes the same mapping give the sensor crop as well.
+ */
+public final class TextureTransform {
+
+    /**
+     * Column-major matrix SurfaceTexture reports for an unpadded camera buffer: t flipped, because GL
+     * puts t = 0 at the bottom while the buffer's first row is the top of the image.
+     */
+    public static final float[] DEFAULT_MATRIX = {
+            1, 0, 0, 0,
+            0, -1, 0, 0,
+            0, 0, 1, 0,
+            0, 1, 0, 1
+    };
+
+    public static final int MATRIX_SIZE = 16;
+
+    private TextureTransform() {
+    }
+
+    /**
+     * Buffer-space position of display point (u, v) for the rotation, written to out[offset] and
+     * out[offset + 1].
+     */
+    public static void toBuffer(CameraRotation rotation, float u, float v, float[] out, int offset) {
+        float[] corners = TextureCoordinates.forRotation(rotation);
+        // 左上、左下、右上の頂点からのアフィン補間
+        float topLeftX = corners[0];
+        float topLeftY = corners[1];
+        out[offset] = topLeftX + (corners[4] - topLeftX) * u + (corners[2] - topLeftX) * v;
+        out[offset + 1] = topLeftY + (corners[5] - topLeftY) * u + (corners[3] - topLeftY) * v;
+    }
+
+    /**
+     * Texture coordinate of display point (u, v), written to out[offset] and out[offset + 1].
+     * @param matrix SurfaceTexture.getTransformMatrix(), or DEFAULT_MATRIX for uploaded textures
+     */
+    public static void toTexture(CameraRotation rotation, float[] matrix, float u, float v, float[] out, int offset) {
+        toBuffer(rotation, u, v, out, offset);
+        float x = out[offset];
+        // DEFAULT_MATRIXの反転を打ち消してから実際の行列を掛ける
+        float y = 1 - out[offset + 1];
+        out[offset] = matrix[0] * x + matrix[4] * y + matrix[12];
+        out[offset + 1] = matrix[1] * x + matrix[5] * y + matrix[13];
+    }
+
+    /**
+     * Buffer-space rectangle shown by a display-space crop.
+     * @param crop left, top, right, bottom in display space
+     * @param out  left, top, right, bottom in buffer space; may be crop itself
+     */
+    public static void cropToBuffer(CameraRotation rotation, float[] crop, float[] out) {
+        // 角をoutに直接変換してから並べ替えるので、作業用の配列は要らない
+        float right = crop[2];
+        float bottom = crop[3];
+        toBuffer(rotation, crop[0], crop[1], out, 0);
+        toBuffer(rotation, right, bottom, out, 2);
+        float x0 = out[0];
+        float y0 = out[1];
+        float x1 = out[2];
+        float y1 = out[3];
+        out[0] = Math.min(x0, x1);
+        out[1] = Math.min(y0, y1);
+        out[2] = Math.max(x0, x1);
+        out[3] = Math.max(y0, y1);
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.testcameraglsurfaceview;
+
+public class TimestampFramePacer implements FramePacer {
+
+    private static final long NANO_SEC_PER_SEC = 1000000000L;
+    /* カメラ側のタイムスタンプの揺らぎを吸収するため、間隔の1/4までは早着を許容する */
+    private static final int TOLERANCE_DIVISOR = 4;
+    private static final long NO_FRAME = Long.MIN_VALUE;
+
+    private final Clock mClock;
+    private int mTargetFps;
+    private long mMinIntervalNano;
+    private long mLastRequestTime = NO_FRAME;
+    private boolean mRenderPending = false;
+
+    private long mArrivedCount = 0;
+    private long mRequestedCount = 0;
+    private long mCoalescedCount = 0;
+    private long mSkippedCount = 0;
+
+    public TimestampFramePacer(Clock clock, int targetFps) {
+        mClock = clock;
+        setTargetFps(targetFps);
+    }
+
+    @Override
+    public synchronized boolean onFrameAvailable() {
+        long now = mClock.nanoTime();
+        mArrivedCount++;
+
+        if (mRenderPending) {
+            // まだ描画されていないので、次の描画で最新フレームがまとめて取り込まれる
+            mCoalescedCount++;
+            return false;
+        }
+
+        if (mMinIntervalNano > 0 && mLastRequestTime != NO_FRAME) {
+            long elapsed = now - mLastRequestTime;
+            if (elapsed < mMinIntervalNano - mMinIntervalNano / TOLERANCE_DIVISOR) {
+                mSkippedCount++;
+                return false;
+            }
+        }
+
+        mLastRequestTime = now;
+        mRenderPending = true;
+        mRequestedCount++;
+        return true;
+    }
+
+    @Override
+    public synchronized void onDrawStarted() {
+        mRenderPending = false;
+    }
+
+    @Override
+    public synchronized void setTargetFps(int fps) {
+        if (fps < 0) {
+            throw new IllegalArgumentException("fps must not be negative: " + fps);
+        }
+        mTargetFps = fps;
+        mMinIntervalNano = fps == UNLIMITED_FPS ? 0 : NANO_SEC_PER_SEC / fps;
+    }
+
+    @Override
+    public synchronized int getTargetFps() {
+        return mTargetFps;
+    }
+
+    @Override
+    public synchronized long getArrivedFrameCount() {
+        return mArrivedCount;
+    }
+
+    @Override
+    public synchronized long getRequestedFrameCount() {
+        return mRequestedCount;
+    }
+
+    @Override
+    public synchronized long getCoalescedFrameCount() {
+        return mCoalescedCount;
+    }
+
+    @Override
+    public synchronized long getSkippedFrameCount() {
+        return mSkippedCount;
+    }
+}
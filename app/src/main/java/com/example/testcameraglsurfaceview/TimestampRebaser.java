@@ -0,0 +1,65 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Turns camera frame timestamps (SurfaceTexture.getTimestamp(), arbitrary monotonic base) into
+ * recording presentation times that start at 0 and strictly increase.
+ * Frames while paused are skipped and the paused gap is removed from the output timeline.
+ */
+public class TimestampRebaser {
+
+    public static final long SKIP = -1;
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private long mOffset = NONE;
+    private long mLastInput = NONE;
+    private long mLastOutput = NONE;
+    private long mLastDelta = 0;
+    private boolean mPaused = false;
+    private boolean mResumed = false;
+
+    /** @return presentation time in nanoseconds, or SKIP if the frame must not be encoded */
+    public long rebase(long timestampNano) {
+        if (mPaused || timestampNano == 0) {
+            return SKIP;
+        }
+        if (mOffset == NONE) {
+            mOffset = timestampNano;
+        } else if (mResumed) {
+            // 停止中の時間を詰めて、直前のフレーム間隔で続ける
+            mOffset = timestampNano - (mLastOutput + Math.max(mLastDelta, 1));
+        }
+        mResumed = false;
+
+        if (mLastInput != NONE && timestampNano <= mLastInput) {
+            return SKIP;
+        }
+        long output = timestampNano - mOffset;
+        if (mLastOutput != NONE) {
+            mLastDelta = output - mLastOutput;
+        }
+        mLastInput = timestampNano;
+        mLastOutput = output;
+        return output;
+    }
+
+    public void pause() {
+        mPaused = true;
+    }
+
+    public void resume() {
+        if (mPaused) {
+            mPaused = false;
+            mResumed = mLastOutput != NONE;
+        }
+    }
+
+    public void reset() {
+        mOffset = NONE;
+        mLastInput = NONE;
+        mLastOutput = NONE;
+        mLastDelta = 0;
+        mPaused = false;
+        mResumed = false;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.testcameraglsurfaceview;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Output side of a surface-input video encoder. Constants match MediaCodec.
+ * Formats are opaque to the drain loop and are handed to the MuxerSink as is.
+ */
+public interface VideoEncoder {
+
+    int INFO_TRY_AGAIN_LATER = -1;
+    int INFO_OUTPUT_FORMAT_CHANGED = -2;
+    int INFO_OUTPUT_BUFFERS_CHANGED = -3;
+
+    int BUFFER_FLAG_KEY_FRAME = 1;
+    int BUFFER_FLAG_CODEC_CONFIG = 2;
+    int BUFFER_FLAG_END_OF_STREAM = 4;
+
+    int dequeueOutputBuffer(EncodedBufferInfo info, long timeoutUs);
+
+    ByteBuffer getOutputBuffer(int index);
+
+    Object getOutputFormat();
+
+    void releaseOutputBuffer(int index);
+
+    void signalEndOfInputStream();
+}
@@ -0,0 +1,108 @@
+package com.example.testcameraglsurfaceview;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Records the rendered camera image to an MP4 file. Every method runs on the GL thread:
+ * the renderer draws a frame a second time between beginFrame() and endFrame(), the encoder
+ * output is drained right after, and the MuxerQueue writer thread does the file I/O.
+ */
+public class VideoRecorder implements FrameOutput {
+
+    private static final int MUXER_QUEUE_CAPACITY = 30;
+    private static final float BITS_PER_PIXEL = 0.25f;
+    private static final int SIZE_ALIGNMENT = 16;
+
+    private final MediaCodecVideoEncoder mEncoder;
+    private final EncoderInputSurface mInputSurface;
+    private final MuxerQueue mMuxerQueue;
+    private final EncoderDrainer mDrainer;
+    private final TimestampRebaser mRebaser = new TimestampRebaser();
+    private final int mWidth;
+    private final int mHeight;
+    private long mPresentationTimeNano;
+
+    /** Must be called on the GL thread with the renderer's context current. */
+    public VideoRecorder(File file, int width, int height, int frameRate) throws IOException {
+        // エンコーダによっては16の倍数でないと失敗する
+        mWidth = width / SIZE_ALIGNMENT * SIZE_ALIGNMENT;
+        mHeight = height / SIZE_ALIGNMENT * SIZE_ALIGNMENT;
+        int bitRate = (int) (BITS_PER_PIXEL * mWidth * mHeight * frameRate);
+
+        MediaMuxerSink sink = new MediaMuxerSink(file);
+        mEncoder = new MediaCodecVideoEncoder(mWidth, mHeight, bitRate, frameRate);
+        try {
+            mInputSurface = new EncoderInputSurface(mEncoder.getInputSurface());
+        } catch (RuntimeException e) {
+            mEncoder.release();
+            sink.release();
+            throw e;
+        }
+        mMuxerQueue = new MuxerQueue(sink, MUXER_QUEUE_CAPACITY, mWidth * mHeight / 4);
+        mDrainer = new EncoderDrainer(mEncoder, mMuxerQueue);
+        mMuxerQueue.start();
+    }
+
+    @Override
+    public int getWidth() {
+        return mWidth;
+    }
+
+    @Override
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * @param cameraTimestampNano SurfaceTexture.getTimestamp() of the frame about to be drawn
+     * @return true if the encoder surface is now current and the frame must be drawn, then endFrame() called
+     */
+    @Override
+    public boolean beginFrame(long cameraTimestampNano) {
+        if (mDrainer.isEndOfStream()) {
+            return false;
+        }
+        long pts = mRebaser.rebase(cameraTimestampNano);
+        if (pts == TimestampRebaser.SKIP) {
+            return false;
+        }
+        mPresentationTimeNano = pts;
+        mInputSurface.makeCurrent();
+        return true;
+    }
+
+    @Override
+    public void endFrame() {
+        mInputSurface.swapBuffers(mPresentationTimeNano);
+        mDrainer.drain(false);
+    }
+
+    public void pause() {
+        mRebaser.pause();
+    }
+
+    public void resume() {
+        mRebaser.resume();
+    }
+
+    /** Flushes the encoder and waits for the writer to finalize the file. */
+    public void stop() {
+        try {
+            mDrainer.drain(true);
+        } finally {
+            mInputSurface.release();
+            mEncoder.release();
+            mMuxerQueue.finish();
+            mMuxerQueue.awaitFinished();
+        }
+    }
+
+    public long getEncodedFrameCount() {
+        return mDrainer.getEncodedCount();
+    }
+
+    public long getDroppedSampleCount() {
+        return mMuxerQueue.getDroppedCount();
+    }
+}
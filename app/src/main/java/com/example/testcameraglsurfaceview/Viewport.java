@@ -0,0 +1,38 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * glViewport rectangle.
+ */
+public final class Viewport {
+
+    public final int x;
+    public final int y;
+    public final int width;
+    public final int height;
+
+    public Viewport(int x, int y, int width, int height) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Viewport)) {
+            return false;
+        }
+        Viewport other = (Viewport) o;
+        return x == other.x && y == other.y && width == other.width && height == other.height;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((x * 31 + y) * 31 + width) * 31 + height;
+    }
+
+    @Override
+    public String toString() {
+        return "Viewport(" + x + ", " + y + ", " + width + ", " + height + ")";
+    }
+}
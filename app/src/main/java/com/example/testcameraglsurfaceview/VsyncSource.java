@@ -0,0 +1,18 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * One-shot display vsync callbacks on the render looper. On the device this is Choreographer; the
+ * unit tests fire vsyncs by hand.
+ */
+public interface VsyncSource {
+
+    interface Callback {
+        /** @param frameTimeNanos vsync time on the System.nanoTime() clock */
+        void onVsync(long frameTimeNanos);
+    }
+
+    /** Calls callback once at the next vsync. Must be called on the render looper. */
+    void requestVsync(Callback callback);
+
+    void cancelVsync(Callback callback);
+}
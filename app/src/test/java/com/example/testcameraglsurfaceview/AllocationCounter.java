@@ -0,0 +1,51 @@
+package com.example.testcameraglsurfaceview;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Bytes allocated by the current thread, via HotSpot's com.sun.management.ThreadMXBean.
+ */
+public class AllocationCounter {
+
+    /* JITコンパイル中は一時的な割り当てが発生するため、十分に暖機してから計測する */
+    public static final int WARMUP_ITERATIONS = 50000;
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static long allocatedBytes() {
+        return THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /* GCやJITが計測中にまれに割り当てることがあるので、何度か計り直す */
+    private static final int ATTEMPTS = 3;
+
+    /**
+     * Fails unless one of a few measurements of task allocates exactly nothing. Retrying only gets
+     * past the runtime's own noise: an allocation every n runs shows up in every attempt.
+     */
+    public static void assertAllocationFree(Runnable task, int warmup, int iterations) {
+        long bytes = 0;
+        for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+            bytes = measure(task, attempt == 0 ? warmup : 0, iterations);
+            if (bytes == 0) {
+                return;
+            }
+        }
+        throw new AssertionError(bytes + " bytes allocated in " + iterations + " runs");
+    }
+
+    /** Runs task repeatedly after warming it up and returns the bytes allocated by the measured runs. */
+    public static long measure(Runnable task, int warmup, int iterations) {
+        for (int i = 0; i < warmup; i++) {
+            task.run();
+        }
+        long overhead = allocatedBytes();
+        overhead = allocatedBytes() - overhead;
+        long before = allocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        return allocatedBytes() - before - overhead;
+    }
+}
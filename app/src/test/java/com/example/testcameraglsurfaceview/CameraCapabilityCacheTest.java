@@ -0,0 +1,200 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class CameraCapabilityCacheTest {
+
+    private static final String FINGERPRINT = CameraCapabilityIndexTest.FINGERPRINT;
+
+    /** Stands in for CameraManager: counts queries and answers with whatever index is set. */
+    private static class FakeQuery implements CameraCapabilityCache.Query {
+        CameraCapabilityIndex index = CameraCapabilityIndexTest.deviceIndex();
+        int count = 0;
+
+        @Override
+        public CameraCapabilityIndex queryAll() {
+            count++;
+            return index;
+        }
+    }
+
+    /** Runs refreshes only when the test says so. */
+    private static class ManualExecutor implements Executor {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.remove(0).run();
+            }
+        }
+    }
+
+    private File mDir;
+    private File mFile;
+    private final FakeQuery mQuery = new FakeQuery();
+    private final ManualExecutor mExecutor = new ManualExecutor();
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = Files.createTempDirectory("camera_capabilities").toFile();
+        mFile = new File(new File(mDir, "cache"), "camera_capabilities");
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+        new File(mFile.getPath() + ".tmp").delete();
+        mFile.getParentFile().delete();
+        mDir.delete();
+    }
+
+    private CameraCapabilityCache newCache(String fingerprint) {
+        return new CameraCapabilityCache(mFile, fingerprint, mQuery, mExecutor);
+    }
+
+    @Test
+    public void coldStart_queriesOnceAndWritesFile() {
+        CameraCapabilityCache cache = newCache(FINGERPRINT);
+
+        CameraCapabilityIndex index = cache.get();
+        assertSame(index, cache.get());
+
+        assertEquals(1, mQuery.count);
+        assertEquals(1, cache.getQueryCount());
+        assertEquals(0, cache.getFileLoadCount());
+        assertTrue(mFile.exists());
+        assertEquals("0", index.findByFacing(CameraCapabilityIndexTest.FACING_BACK).cameraId);
+    }
+
+    @Test
+    public void warmStart_readsFileWithoutQuerying() {
+        newCache(FINGERPRINT).get();
+        mQuery.count = 0;
+
+        CameraCapabilityCache cache = newCache(FINGERPRINT);
+        CameraCapabilityIndex index = cache.get();
+
+        assertEquals(0, mQuery.count);
+        assertEquals(1, cache.getFileLoadCount());
+        assertEquals(3, index.getEntries().size());
+        CameraCapabilityIndexTest.assertSameCapabilities(mQuery.index.findById("2").capabilities,
+                index.findById("2").capabilities);
+        assertFalse(cache.isStale());
+    }
+
+    @Test
+    public void otherFingerprint_queriesAndReplacesFile() {
+        newCache(FINGERPRINT).get();
+
+        CameraCapabilityCache updated = newCache(FINGERPRINT + "-ota");
+        updated.get();
+        assertEquals(2, mQuery.count);
+
+        newCache(FINGERPRINT + "-ota").get();
+        assertEquals(2, mQuery.count);
+    }
+
+    @Test
+    public void corruptFile_isQueriedAgain() throws IOException {
+        mFile.getParentFile().mkdirs();
+        try (FileOutputStream out = new FileOutputStream(mFile)) {
+            out.write(new byte[]{0x43, 0x41, 0x50});
+        }
+
+        CameraCapabilityCache cache = newCache(FINGERPRINT);
+
+        assertNotNull(cache.get());
+        assertEquals(1, mQuery.count);
+        // 書き直されたファイルは次の起動で読める
+        CameraCapabilityCache warm = newCache(FINGERPRINT);
+        assertEquals(3, warm.get().getEntries().size());
+        assertEquals(1, warm.getFileLoadCount());
+        assertEquals(1, mQuery.count);
+    }
+
+    @Test
+    public void failedQuery_isRetriedByNextGet() {
+        mQuery.index = null;
+        CameraCapabilityCache cache = newCache(FINGERPRINT);
+
+        assertNull(cache.get());
+        assertFalse(mFile.exists());
+
+        mQuery.index = CameraCapabilityIndexTest.deviceIndex();
+        assertNotNull(cache.get());
+        assertEquals(2, mQuery.count);
+    }
+
+    @Test
+    public void invalidate_servesOldIndexUntilBackgroundRefresh() {
+        CameraCapabilityCache cache = newCache(FINGERPRINT);
+        CameraCapabilityIndex old = cache.get();
+        mQuery.index = new CameraCapabilityIndex()
+                .add(new CameraCapabilityIndex.Entry("5", CameraCapabilityIndexTest.FACING_BACK, 0,
+                        CameraCapabilityIndexTest.LEVEL_FULL, CapabilityTables.midRange()));
+
+        cache.invalidate();
+        cache.invalidate();
+
+        assertTrue(cache.isStale());
+        assertFalse(mFile.exists());
+        assertSame(old, cache.get());
+        assertEquals(1, mQuery.count);
+        assertEquals(1, mExecutor.tasks.size());
+
+        mExecutor.runAll();
+
+        assertFalse(cache.isStale());
+        assertEquals(2, mQuery.count);
+        assertEquals("5", cache.get().findByFacing(CameraCapabilityIndexTest.FACING_BACK).cameraId);
+        assertEquals("5", newCache(FINGERPRINT).get().getEntries().get(0).cameraId);
+    }
+
+    @Test
+    public void failedRefresh_keepsOldIndexAndStaysStale() {
+        CameraCapabilityCache cache = newCache(FINGERPRINT);
+        CameraCapabilityIndex old = cache.get();
+        mQuery.index = null;
+
+        cache.invalidate();
+        mExecutor.runAll();
+
+        assertSame(old, cache.get());
+        assertTrue(cache.isStale());
+        cache.invalidate();
+        assertEquals(1, mExecutor.tasks.size());
+    }
+
+    @Test
+    public void unknownCameraBecomingAvailable_refreshes() {
+        CameraCapabilityCache cache = newCache(FINGERPRINT);
+        cache.onCameraAvailable("7");
+        assertTrue(mExecutor.tasks.isEmpty());
+
+        cache.get();
+        cache.onCameraAvailable("1");
+        assertTrue(mExecutor.tasks.isEmpty());
+        assertFalse(cache.isStale());
+
+        cache.onCameraAvailable("7");
+        assertTrue(cache.isStale());
+        assertEquals(1, mExecutor.tasks.size());
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CameraCapabilityIndexTest {
+
+    // CameraCharacteristics の値
+    static final int FACING_FRONT = 0;
+    static final int FACING_BACK = 1;
+    static final int LEVEL_FULL = 1;
+    static final int LEVEL_LEGACY = 2;
+    static final String FINGERPRINT = "vendor/device/device:10/QP1A/123:user/release-keys";
+
+    static CameraCapabilityIndex deviceIndex() {
+        return new CameraCapabilityIndex()
+                .add(new CameraCapabilityIndex.Entry("0", FACING_BACK, 90, LEVEL_FULL,
+                        CapabilityTables.highEnd().setZoom(8.0f, new Resolution(4032, 3024))))
+                .add(new CameraCapabilityIndex.Entry("1", FACING_FRONT, 270, LEVEL_LEGACY, CapabilityTables.legacy()))
+                .add(new CameraCapabilityIndex.Entry("2", FACING_BACK, 90, LEVEL_LEGACY, CapabilityTables.midRange()));
+    }
+
+    private static byte[] write(CameraCapabilityIndex index, String fingerprint) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(bytes), fingerprint);
+        return bytes.toByteArray();
+    }
+
+    private static CameraCapabilityIndex read(byte[] data, String fingerprint) throws IOException {
+        return CameraCapabilityIndex.readFrom(new DataInputStream(new ByteArrayInputStream(data)), fingerprint);
+    }
+
+    static void assertSameCapabilities(CameraCapabilities expected, CameraCapabilities actual) {
+        List<CameraCapabilities.StreamConfig> expectedOutputs = expected.getAllOutputs();
+        List<CameraCapabilities.StreamConfig> actualOutputs = actual.getAllOutputs();
+        assertEquals(expectedOutputs.size(), actualOutputs.size());
+        for (int i = 0; i < expectedOutputs.size(); i++) {
+            assertEquals(expectedOutputs.get(i).format, actualOutputs.get(i).format);
+            assertEquals(expectedOutputs.get(i).size, actualOutputs.get(i).size);
+            assertEquals(expectedOutputs.get(i).minFrameDurationNano, actualOutputs.get(i).minFrameDurationNano);
+        }
+        assertEquals(expected.getFpsRanges(), actual.getFpsRanges());
+        assertEquals(expected.getMaxDigitalZoom(), actual.getMaxDigitalZoom(), 0);
+        assertEquals(expected.getActiveArraySize(), actual.getActiveArraySize());
+    }
+
+    @Test
+    public void roundTrip_keepsEveryField() throws IOException {
+        CameraCapabilityIndex index = deviceIndex();
+
+        CameraCapabilityIndex read = read(write(index, FINGERPRINT), FINGERPRINT);
+
+        assertNotNull(read);
+        assertEquals(3, read.getEntries().size());
+        for (int i = 0; i < 3; i++) {
+            CameraCapabilityIndex.Entry expected = index.getEntries().get(i);
+            CameraCapabilityIndex.Entry actual = read.getEntries().get(i);
+            assertEquals(expected.cameraId, actual.cameraId);
+            assertEquals(expected.lensFacing, actual.lensFacing);
+            assertEquals(expected.sensorOrientation, actual.sensorOrientation);
+            assertEquals(expected.hardwareLevel, actual.hardwareLevel);
+            assertSameCapabilities(expected.capabilities, actual.capabilities);
+        }
+        assertTrue(read.findById("0").capabilities.supportsCropRegion());
+        assertNull(read.findById("1").capabilities.getActiveArraySize());
+        // StreamNegotiatorが読み出した表だけで同じ結果を出せる
+        assertEquals(StreamNegotiator.negotiate(index.findById("0").capabilities, 16.0 / 9, 30,
+                        new StreamRequest(CameraCapabilities.FORMAT_PRIVATE, 1920, 1080)),
+                StreamNegotiator.negotiate(read.findById("0").capabilities, 16.0 / 9, 30,
+                        new StreamRequest(CameraCapabilities.FORMAT_PRIVATE, 1920, 1080)));
+    }
+
+    @Test
+    public void lookups_followCameraIdOrder() {
+        CameraCapabilityIndex index = deviceIndex();
+
+        assertEquals("0", index.findByFacing(FACING_BACK).cameraId);
+        assertEquals("1", index.findByFacing(FACING_FRONT).cameraId);
+        assertNull(index.findByFacing(2));
+        assertEquals(FACING_BACK, index.findById("2").lensFacing);
+        assertNull(index.findById("3"));
+    }
+
+    @Test
+    public void otherFingerprintOrVersion_isNotRead() throws IOException {
+        byte[] data = write(deviceIndex(), FINGERPRINT);
+
+        assertNull(read(data, FINGERPRINT + "-ota"));
+
+        data[7]++;
+        assertNull(read(data, FINGERPRINT));
+        data[7]--;
+        data[0]++;
+        assertNull(read(data, FINGERPRINT));
+    }
+
+    @Test(expected = EOFException.class)
+    public void truncated_throws() throws IOException {
+        byte[] data = write(deviceIndex(), FINGERPRINT);
+        byte[] truncated = new byte[data.length - 5];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+
+        read(truncated, FINGERPRINT);
+    }
+
+    @Test
+    public void compact_comparedToQueryCost() throws IOException {
+        // 3台分で数KB。起動時に読むのはこのファイルひとつ
+        assertTrue(write(deviceIndex(), FINGERPRINT).length < 4096);
+        // MAGIC、版数、フィンガープリント、台数
+        assertEquals(4 + 4 + 2 + FINGERPRINT.length() + 4, write(new CameraCapabilityIndex(), FINGERPRINT).length);
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class CameraCompositorTest {
+
+    private static final int SURFACE_WIDTH = 96;
+    private static final int SURFACE_HEIGHT = 64;
+    private static final long FRAME_INTERVAL = 33333333L;
+    private static final int TOLERANCE = 1;
+
+    private SoftwareGlApi mGl;
+    private FakeClock mClock;
+
+    @Before
+    public void setUp() {
+        mGl = new SoftwareGlApi(SURFACE_WIDTH, SURFACE_HEIGHT);
+        mClock = new FakeClock(1000000000L);
+    }
+
+    private CameraCompositor newCompositor(CompositeLayout.Arrangement arrangement) {
+        return new CameraCompositor(mGl, new ShaderCache(16, null, mClock),
+                new FrameMetricsRecorder(64, FRAME_INTERVAL, true), new CompositeLayout(arrangement), mClock);
+    }
+
+    private static ReplayFrameSource newSource(int width, int height, CameraRotation rotation) {
+        ReplayFrameSource source = ReplayFrameSource.synthetic(width, height, 8, FRAME_INTERVAL);
+        source.setRotation(rotation);
+        return source;
+    }
+
+    private void start(CameraCompositor compositor) {
+        compositor.onSurfaceCreated();
+        compositor.onSurfaceChanged(SURFACE_WIDTH, SURFACE_HEIGHT);
+    }
+
+    private ByteBuffer readWindow() {
+        ByteBuffer pixels = ByteBuffer.allocateDirect(SURFACE_WIDTH * SURFACE_HEIGHT * 4).order(ByteOrder.nativeOrder());
+        mGl.glBindFramebuffer(GlApi.GL_FRAMEBUFFER, 0);
+        mGl.glReadPixels(0, 0, SURFACE_WIDTH, SURFACE_HEIGHT, GlApi.GL_RGBA, GlApi.GL_UNSIGNED_BYTE, pixels);
+        return pixels;
+    }
+
+    private int pixel(ByteBuffer pixels, int x, int y) {
+        int offset = (y * SURFACE_WIDTH + x) * 4;
+        return (pixels.get(offset) & 0xff) << 16 | (pixels.get(offset + 1) & 0xff) << 8 | pixels.get(offset + 2) & 0xff;
+    }
+
+    @Test
+    public void pictureInPictureMatchesGoldenImage() throws IOException {
+        CameraCompositor compositor = newCompositor(CompositeLayout.Arrangement.PICTURE_IN_PICTURE);
+        compositor.addSource(newSource(64, 48, CameraRotation.ROTATION_0),
+                new TimestampFramePacer(mClock, FramePacer.UNLIMITED_FPS));
+        compositor.addSource(newSource(32, 32, CameraRotation.ROTATION_90),
+                new TimestampFramePacer(mClock, FramePacer.UNLIMITED_FPS));
+        start(compositor);
+
+        assertTrue(compositor.drawFrame());
+
+        GoldenImages.assertMatches("composite_pip", readWindow(), SURFACE_WIDTH, SURFACE_HEIGHT, TOLERANCE);
+    }
+
+    @Test
+    public void sideBySideMatchesGoldenImage() throws IOException {
+        CameraCompositor compositor = newCompositor(CompositeLayout.Arrangement.SIDE_BY_SIDE);
+        compositor.addSource(newSource(64, 48, CameraRotation.ROTATION_0),
+                new TimestampFramePacer(mClock, FramePacer.UNLIMITED_FPS));
+        compositor.addSource(newSource(64, 48, CameraRotation.ROTATION_180),
+                new TimestampFramePacer(mClock, FramePacer.UNLIMITED_FPS));
+        start(compositor);
+
+        assertTrue(compositor.drawFrame());
+
+        GoldenImages.assertMatches("composite_side_by_side", readWindow(), SURFACE_WIDTH, SURFACE_HEIGHT, TOLERANCE);
+    }
+
+    @Test
+    public void sourcesArePacedIndependently() {
+        CameraCompositor compositor = newCompositor(CompositeLayout.Arrangement.PICTURE_IN_PICTURE);
+        ReplayFrameSource main = newSource(64, 48, CameraRotation.ROTATION_0);
+        ReplayFrameSource inset = newSource(32, 32, CameraRotation.ROTATION_0);
+        ReplayFrameSource slow = newSource(32, 32, CameraRotation.ROTATION_0);
+        compositor.addSource(main, new TimestampFramePacer(mClock, 30));
+        compositor.addSource(inset, new TimestampFramePacer(mClock, 10));
+        compositor.addSource(slow, new TimestampFramePacer(mClock, 30));
+        start(compositor);
+
+        // 3秒間: mainとinsetのカメラは30fps、slowのカメラは7.5fpsで届く
+        int renders = 0;
+        for (int tick = 0; tick < 90; tick++) {
+            mClock.advance(FRAME_INTERVAL);
+            boolean render = compositor.onFrameAvailable(0);
+            render |= compositor.onFrameAvailable(1);
+            if (tick % 4 == 0) {
+                render |= compositor.onFrameAvailable(2);
+            }
+            if (render && compositor.drawFrame()) {
+                renders++;
+            }
+        }
+
+        assertEquals(90, renders);
+        assertEquals(90, compositor.getLatchCount(0));
+        assertEquals(30, compositor.getLatchCount(1), 1);
+        assertEquals(23, compositor.getLatchCount(2), 1);
+        assertEquals(compositor.getLatchCount(1), inset.getUploadCount());
+        assertEquals(90, compositor.getCompositeCount());
+    }
+
+    @Test
+    public void unreadySourceIsLeftOut() {
+        CameraCompositor compositor = newCompositor(CompositeLayout.Arrangement.PICTURE_IN_PICTURE);
+        ReplayFrameSource main = newSource(64, 48, CameraRotation.ROTATION_0);
+        ReplayFrameSource inset = newSource(32, 32, CameraRotation.ROTATION_0);
+        compositor.addSource(main, new TimestampFramePacer(mClock, FramePacer.UNLIMITED_FPS));
+        compositor.addSource(inset, new TimestampFramePacer(mClock, FramePacer.UNLIMITED_FPS));
+        start(compositor);
+
+        main.setReady(false);
+        inset.setReady(false);
+        assertFalse(compositor.drawFrame());
+
+        main.setReady(true);
+        assertTrue(compositor.drawFrame());
+        assertEquals(0, compositor.getLatchCount(1));
+        // 子画面の位置には親画面が見えている
+        Viewport insetViewport = new CompositeLayout(CompositeLayout.Arrangement.PICTURE_IN_PICTURE)
+                .getViewport(1, 2, SURFACE_WIDTH, SURFACE_HEIGHT);
+        assertNotEquals(0x8080ff, pixel(readWindow(), insetViewport.x + 1, insetViewport.y + 1));
+
+        inset.setReady(true);
+        assertTrue(compositor.drawFrame());
+        assertEquals(1, compositor.getLatchCount(1));
+    }
+
+    @Test
+    public void recreatedContextRelatchesEverySource() {
+        CameraCompositor compositor = newCompositor(CompositeLayout.Arrangement.SIDE_BY_SIDE);
+        ReplayFrameSource left = newSource(64, 48, CameraRotation.ROTATION_0);
+        ReplayFrameSource right = newSource(64, 48, CameraRotation.ROTATION_0);
+        compositor.addSource(left, new TimestampFramePacer(mClock, 30));
+        compositor.addSource(right, new TimestampFramePacer(mClock, 30));
+        start(compositor);
+        compositor.drawFrame();
+        compositor.drawFrame();
+        assertEquals(1, left.getUploadCount());
+
+        compositor.releaseContextResources();
+        assertFalse(left.isAttached());
+        start(compositor);
+        assertTrue(left.isAttached());
+        compositor.drawFrame();
+
+        assertEquals(2, left.getUploadCount());
+        assertEquals(2, right.getUploadCount());
+    }
+}
@@ -0,0 +1,294 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class CameraExecutorTest {
+
+    private static final int CALLBACK_CAPACITY = 4;
+
+    private FakeCameraLooper mLooper;
+    private CameraExecutor mExecutor;
+
+    @Before
+    public void setUp() {
+        mLooper = new FakeCameraLooper();
+        mExecutor = new CameraExecutor(mLooper, CALLBACK_CAPACITY);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        mExecutor.shutdown();
+        mLooper.runPending();
+        assertTrue(mExecutor.awaitTermination(1000));
+    }
+
+    private static Runnable append(final List<Integer> out, final int value) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                out.add(value);
+            }
+        };
+    }
+
+    @Test
+    public void post_runsInOrderOnControlLooper() {
+        final List<Integer> order = new ArrayList<>();
+        final AtomicBoolean onControl = new AtomicBoolean();
+        mExecutor.post(append(order, 1));
+        mExecutor.post(new Runnable() {
+            @Override
+            public void run() {
+                onControl.set(mExecutor.isControlThread());
+                order.add(2);
+            }
+        });
+        assertTrue(order.isEmpty());
+
+        mLooper.runPending();
+
+        assertEquals(2, order.size());
+        assertEquals(1, (int) order.get(0));
+        assertTrue(onControl.get());
+        assertFalse(mExecutor.isControlThread());
+    }
+
+    @Test
+    public void controlQueueDepth_tracksPendingTasks() {
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            mExecutor.post(append(order, i));
+        }
+        assertEquals(5, mExecutor.getControlQueueDepth());
+
+        mLooper.runPending();
+
+        assertEquals(0, mExecutor.getControlQueueDepth());
+        assertEquals(5, mExecutor.getMaxControlQueueDepth());
+    }
+
+    @Test
+    public void postDelayed_canBeCancelled() {
+        List<Integer> order = new ArrayList<>();
+        Runnable cancelled = append(order, 1);
+        mExecutor.postDelayed(cancelled, 100);
+        mExecutor.postDelayed(append(order, 2), 100);
+
+        mExecutor.removeCallbacks(cancelled);
+        mLooper.advanceMillis(99);
+        assertTrue(order.isEmpty());
+        mLooper.advanceMillis(1);
+
+        assertEquals(Collections.singletonList(2), order);
+    }
+
+    @Test
+    public void dispatchCallback_runsOffTheCallingThread() throws InterruptedException {
+        final AtomicReference<Thread> thread = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        mExecutor.dispatchCallback(new Runnable() {
+            @Override
+            public void run() {
+                thread.set(Thread.currentThread());
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertNotSame(Thread.currentThread(), thread.get());
+        assertEquals("CameraCallback", thread.get().getName());
+    }
+
+    @Test
+    public void fullCallbackQueue_dropsOldest() throws InterruptedException {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        mExecutor.dispatchCallback(new Runnable() {
+            @Override
+            public void run() {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(blocked.await(1, TimeUnit.SECONDS));
+
+        final List<Integer> delivered = Collections.synchronizedList(new ArrayList<Integer>());
+        for (int i = 0; i < CALLBACK_CAPACITY + 3; i++) {
+            assertTrue(mExecutor.dispatchCallback(append(delivered, i)));
+        }
+        assertEquals(CALLBACK_CAPACITY, mExecutor.getCallbackQueueDepth());
+        assertEquals(3, mExecutor.getDroppedCallbackCount());
+
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (mExecutor.getCompletedCallbackCount() < 1 + CALLBACK_CAPACITY && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(CALLBACK_CAPACITY, delivered.size());
+        assertEquals(3, (int) delivered.get(0));
+    }
+
+    @Test
+    public void failingCallback_doesNotReplaceTheThread() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        for (int i = 0; i < 10; i++) {
+            mExecutor.dispatchCallback(new Runnable() {
+                @Override
+                public void run() {
+                    throw new IllegalStateException("listener bug");
+                }
+            });
+        }
+        mExecutor.dispatchCallback(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertTrue(mExecutor.getFailedCallbackCount() > 0);
+        assertEquals(2, mExecutor.getThreadsCreated());
+    }
+
+    @Test
+    public void shutdown_runsPostedTasksThenRejects() throws InterruptedException {
+        List<Integer> order = new ArrayList<>();
+        mExecutor.post(append(order, 1));
+        mExecutor.postDelayed(append(order, 2), 100);
+
+        mExecutor.shutdown();
+
+        assertFalse(mExecutor.post(append(order, 3)));
+        assertFalse(mExecutor.dispatchCallback(append(order, 4)));
+        mLooper.advanceMillis(1000);
+        assertEquals(Collections.singletonList(1), order);
+        assertTrue(mLooper.isQuit());
+        assertTrue(mExecutor.awaitTermination(1000));
+    }
+
+    /** Drives CameraLifecycle the way Camera does: camera2 answers on the control looper. */
+    private static class LoopingDriver implements CameraLifecycle.Driver {
+        final CameraExecutor executor;
+        final CameraLifecycle lifecycle;
+        final Runnable idleTimeout = new Runnable() {
+            @Override
+            public void run() {
+                lifecycle.onIdleTimeout();
+            }
+        };
+
+        LoopingDriver(CameraExecutor executor, Clock clock) {
+            this.executor = executor;
+            this.lifecycle = new CameraLifecycle(this, clock, 50 * 1000000L);
+        }
+
+        @Override
+        public void openDevice() {
+            executor.post(new Runnable() {
+                @Override
+                public void run() {
+                    lifecycle.onDeviceOpened();
+                }
+            });
+        }
+
+        @Override
+        public void createSession() {
+            executor.post(new Runnable() {
+                @Override
+                public void run() {
+                    lifecycle.onSessionConfigured();
+                }
+            });
+        }
+
+        @Override
+        public void startRepeating() {
+            executor.dispatchCallback(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+        }
+
+        @Override
+        public void stopRepeating() {
+        }
+
+        @Override
+        public void closeDevice() {
+        }
+
+        @Override
+        public void scheduleIdleTimeout(long delayNano) {
+            executor.removeCallbacks(idleTimeout);
+            executor.postDelayed(idleTimeout, delayNano / 1000000);
+        }
+
+        @Override
+        public void scheduleRetry(long delayNano) {
+        }
+
+        @Override
+        public boolean downgradePlan() {
+            return false;
+        }
+    }
+
+    @Test
+    public void threadCount_staysFlatAcrossReopenCycles() throws InterruptedException {
+        FakeClock clock = new FakeClock(0);
+        final LoopingDriver driver = new LoopingDriver(mExecutor, clock);
+        Runnable start = new Runnable() {
+            @Override
+            public void run() {
+                driver.lifecycle.start();
+            }
+        };
+        Runnable stop = new Runnable() {
+            @Override
+            public void run() {
+                driver.lifecycle.stop();
+            }
+        };
+        int threadsBefore = Thread.activeCount();
+
+        for (int i = 0; i < 200; i++) {
+            mExecutor.post(start);
+            mLooper.runPending();
+            assertEquals(CameraLifecycle.State.STREAMING, driver.lifecycle.getState());
+            mExecutor.post(stop);
+            mLooper.runPending();
+            // 1回おきにアイドルタイムアウトで閉じさせて、再オープンとウォーム再開を交互に行う
+            if (i % 2 == 1) {
+                clock.advanceMillis(50);
+                mLooper.advanceMillis(50);
+                assertEquals(CameraLifecycle.State.CLOSED, driver.lifecycle.getState());
+            }
+        }
+
+        assertEquals(100, driver.lifecycle.getOpenCount());
+        assertEquals(100, driver.lifecycle.getWarmStartCount());
+        assertEquals(2, mExecutor.getThreadsCreated());
+        assertEquals(0, mExecutor.getControlQueueDepth());
+        assertTrue(Thread.activeCount() <= threadsBefore);
+    }
+}
@@ -0,0 +1,624 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CameraLifecycleTest {
+
+    private static final long IDLE_TIMEOUT_MS = 5000;
+
+    private static class FakeDriver implements CameraLifecycle.Driver {
+        final List<String> calls = new ArrayList<>();
+        long scheduledDelayNano = -1;
+        long retryDelayNano = -1;
+        boolean failOpen = false;
+        int downgradesLeft = 0;
+        CameraLifecycle lifecycle;
+
+        @Override
+        public void openDevice() {
+            calls.add("open");
+            if (failOpen) {
+                lifecycle.onDeviceError(CameraLifecycle.ERROR_OPEN_FAILED);
+            }
+        }
+
+        @Override
+        public void createSession() {
+            calls.add("session");
+        }
+
+        @Override
+        public void startRepeating() {
+            calls.add("repeat");
+        }
+
+        @Override
+        public void stopRepeating() {
+            calls.add("stopRepeat");
+        }
+
+        @Override
+        public void closeDevice() {
+            calls.add("close");
+        }
+
+        @Override
+        public void scheduleIdleTimeout(long delayNano) {
+            calls.add("schedule");
+            scheduledDelayNano = delayNano;
+        }
+
+        @Override
+        public void scheduleRetry(long delayNano) {
+            calls.add("retry");
+            retryDelayNano = delayNano;
+        }
+
+        @Override
+        public boolean downgradePlan() {
+            if (downgradesLeft == 0) {
+                return false;
+            }
+            calls.add("downgrade");
+            downgradesLeft--;
+            return true;
+        }
+
+        int count(String call) {
+            int count = 0;
+            for (String c : calls) {
+                if (c.equals(call)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    private FakeClock mClock;
+    private FakeDriver mDriver;
+    private CameraLifecycle mLifecycle;
+
+    @Before
+    public void setUp() {
+        mClock = new FakeClock(1000000000L);
+        mDriver = new FakeDriver();
+        mLifecycle = new CameraLifecycle(mDriver, mClock, IDLE_TIMEOUT_MS * 1000000L);
+        mDriver.lifecycle = mLifecycle;
+    }
+
+    private void streaming() {
+        mLifecycle.start();
+        mLifecycle.onDeviceOpened();
+        mLifecycle.onSessionConfigured();
+        mDriver.calls.clear();
+    }
+
+    @Test
+    public void coldStart_opensConfiguresAndStreams() {
+        mLifecycle.start();
+        assertEquals(CameraLifecycle.State.OPENING, mLifecycle.getState());
+        mLifecycle.onDeviceOpened();
+        assertEquals(CameraLifecycle.State.CONFIGURING, mLifecycle.getState());
+        mLifecycle.onSessionConfigured();
+
+        assertEquals(CameraLifecycle.State.STREAMING, mLifecycle.getState());
+        assertEquals(Arrays.asList("open", "session", "repeat"), mDriver.calls);
+        assertEquals(1, mLifecycle.getOpenCount());
+    }
+
+    @Test
+    public void stop_keepsDeviceAndSessionWarm() {
+        streaming();
+
+        mLifecycle.stop();
+
+        assertEquals(CameraLifecycle.State.PAUSED, mLifecycle.getState());
+        assertEquals(Arrays.asList("stopRepeat", "schedule"), mDriver.calls);
+        assertEquals(IDLE_TIMEOUT_MS * 1000000L, mDriver.scheduledDelayNano);
+    }
+
+    @Test
+    public void startWithinIdleTimeout_resumesWithoutReopening() {
+        streaming();
+        mLifecycle.stop();
+        mClock.advanceMillis(1000);
+        mDriver.calls.clear();
+
+        mLifecycle.start();
+
+        assertEquals(CameraLifecycle.State.STREAMING, mLifecycle.getState());
+        assertEquals(Arrays.asList("repeat"), mDriver.calls);
+        assertEquals(1, mLifecycle.getOpenCount());
+        assertEquals(1, mLifecycle.getWarmStartCount());
+    }
+
+    @Test
+    public void idleTimeout_closesPausedDevice() {
+        streaming();
+        mLifecycle.stop();
+        mClock.advanceMillis(IDLE_TIMEOUT_MS);
+
+        mLifecycle.onIdleTimeout();
+
+        assertEquals(CameraLifecycle.State.CLOSED, mLifecycle.getState());
+        assertEquals(1, mDriver.count("close"));
+    }
+
+    @Test
+    public void startAfterIdleTimeout_reopens() {
+        streaming();
+        mLifecycle.stop();
+        mClock.advanceMillis(IDLE_TIMEOUT_MS);
+        mLifecycle.onIdleTimeout();
+
+        mLifecycle.start();
+
+        assertEquals(CameraLifecycle.State.OPENING, mLifecycle.getState());
+        assertEquals(2, mLifecycle.getOpenCount());
+    }
+
+    @Test
+    public void idleTimeoutAfterResume_isIgnored() {
+        streaming();
+        mLifecycle.stop();
+        mLifecycle.start();
+        mClock.advanceMillis(IDLE_TIMEOUT_MS);
+
+        mLifecycle.onIdleTimeout();
+
+        assertEquals(CameraLifecycle.State.STREAMING, mLifecycle.getState());
+        assertEquals(0, mDriver.count("close"));
+    }
+
+    @Test
+    public void staleIdleTimeoutFromEarlierPause_isRescheduled() {
+        streaming();
+        mLifecycle.stop();
+        mClock.advanceMillis(3000);
+        mLifecycle.start();
+        mLifecycle.stop();
+        mClock.advanceMillis(2000);
+        mDriver.calls.clear();
+
+        // 1回目のstop()の予約が届く
+        mLifecycle.onIdleTimeout();
+
+        assertEquals(CameraLifecycle.State.PAUSED, mLifecycle.getState());
+        assertEquals(Arrays.asList("schedule"), mDriver.calls);
+        assertEquals(3000 * 1000000L, mDriver.scheduledDelayNano);
+    }
+
+    @Test
+    public void zeroIdleTimeout_closesOnStop() {
+        mLifecycle = new CameraLifecycle(mDriver, mClock, 0);
+        streaming();
+
+        mLifecycle.stop();
+
+        assertEquals(CameraLifecycle.State.CLOSED, mLifecycle.getState());
+        assertEquals(Arrays.asList("stopRepeat", "close"), mDriver.calls);
+    }
+
+    @Test
+    public void stopWhileOpening_configuresWithoutStreaming() {
+        mLifecycle.start();
+        mLifecycle.stop();
+        mLifecycle.onDeviceOpened();
+        mLifecycle.onSessionConfigured();
+
+        assertEquals(CameraLifecycle.State.PAUSED, mLifecycle.getState());
+        assertEquals(Arrays.asList("open", "session", "schedule"), mDriver.calls);
+    }
+
+    @Test
+    public void stopWhileOpening_idleTimeoutCountsFromStop() {
+        mLifecycle.start();
+        mLifecycle.stop();
+        mClock.advanceMillis(2000);
+        mLifecycle.onDeviceOpened();
+        mLifecycle.onSessionConfigured();
+
+        assertEquals(3000 * 1000000L, mDriver.scheduledDelayNano);
+    }
+
+    @Test
+    public void stopWhileOpening_pastDeadline_closesOnceConfigured() {
+        mLifecycle.start();
+        mLifecycle.stop();
+        mClock.advanceMillis(IDLE_TIMEOUT_MS + 1);
+        mLifecycle.onDeviceOpened();
+        mLifecycle.onSessionConfigured();
+
+        assertEquals(CameraLifecycle.State.CLOSED, mLifecycle.getState());
+        assertEquals(Arrays.asList("open", "session", "close"), mDriver.calls);
+    }
+
+    @Test
+    public void stopThenStartWhileOpening_streamsOnceConfigured() {
+        mLifecycle.start();
+        mLifecycle.stop();
+        mLifecycle.start();
+        mLifecycle.onDeviceOpened();
+        mLifecycle.onSessionConfigured();
+
+        assertEquals(CameraLifecycle.State.STREAMING, mLifecycle.getState());
+        assertEquals(Arrays.asList("open", "session", "repeat"), mDriver.calls);
+    }
+
+    @Test
+    public void releaseWhileOpening_closesDeviceWhenItOpens() {
+        mLifecycle.start();
+        mLifecycle.release();
+        assertEquals(CameraLifecycle.State.CLOSED, mLifecycle.getState());
+        assertEquals(0, mDriver.count("close"));
+
+        mLifecycle.onDeviceOpened();
+
+        assertEquals(CameraLifecycle.State.CLOSED, mLifecycle.getState());
+        assertEquals(Arrays.asList("open", "close"), mDriver.calls);
+    }
+
+    @Test
+    public void startAfterReleaseWhileOpening_waitsForPendingOpen() {
+        mLifecycle.start();
+        mLifecycle.release();
+        mLifecycle.start();
+        mLifecycle.onDeviceOpened();
+
+        assertEquals(CameraLifecycle.State.CONFIGURING, mLifecycle.getState());
+        assertEquals(Arrays.asList("open", "session"), mDriver.calls);
+    }
+
+    @Test
+    public void releaseWhileConfiguring_ignoresLateSession() {
+        mLifecycle.start();
+        mLifecycle.onDeviceOpened();
+        mLifecycle.release();
+        mLifecycle.onSessionConfigured();
+
+        assertEquals(CameraLifecycle.State.CLOSED, mLifecycle.getState());
+        assertEquals(Arrays.asList("open", "session", "close"), mDriver.calls);
+    }
+
+    @Test
+    public void releaseWhilePaused_closes() {
+        streaming();
+        mLifecycle.stop();
+        mDriver.calls.clear();
+
+        mLifecycle.release();
+        mLifecycle.onIdleTimeout();
+
+        assertEquals(Arrays.asList("close"), mDriver.calls);
+    }
+
+    @Test
+    public void errorWhileStreaming_closesUntilStartedAgain() {
+        streaming();
+
+        mLifecycle.onDeviceError(CameraLifecycle.ERROR_DISCONNECTED);
+
+        assertEquals(CameraLifecycle.State.CLOSED, mLifecycle.getState());
+        assertEquals(CameraLifecycle.ERROR_DISCONNECTED, mLifecycle.getLastError());
+        assertFalse(mLifecycle.isStarted());
+        assertEquals(Arrays.asList("close"), mDriver.calls);
+
+        mLifecycle.start();
+        assertEquals(CameraLifecycle.ERROR_NONE, mLifecycle.getLastError());
+        assertEquals(2, mLifecycle.getOpenCount());
+    }
+
+    @Test
+    public void disconnectWhilePaused_nextStartIsCold() {
+        streaming();
+        mLifecycle.stop();
+        mLifecycle.onDeviceError(CameraLifecycle.ERROR_DISCONNECTED);
+        mDriver.calls.clear();
+
+        mLifecycle.start();
+
+        assertEquals(Arrays.asList("open"), mDriver.calls);
+        assertEquals(0, mLifecycle.getWarmStartCount());
+    }
+
+    @Test
+    public void errorWhileOpening_allowsNewOpen() {
+        mLifecycle.start();
+        mLifecycle.onDeviceError(4);
+        mLifecycle.start();
+
+        assertEquals(2, mDriver.count("open"));
+        assertEquals(1, mDriver.count("close"));
+    }
+
+    @Test
+    public void errorAfterReleaseWhileOpening_clearsPendingOpen() {
+        mLifecycle.start();
+        mLifecycle.release();
+        mLifecycle.onDeviceError(4);
+        mLifecycle.start();
+
+        assertEquals(2, mDriver.count("open"));
+        assertEquals(0, mDriver.count("close"));
+    }
+
+    @Test
+    public void configureFailed_closes() {
+        mLifecycle.start();
+        mLifecycle.onDeviceOpened();
+
+        mLifecycle.onDeviceError(CameraLifecycle.ERROR_CONFIGURE_FAILED);
+        mLifecycle.onSessionConfigured();
+
+        assertEquals(CameraLifecycle.State.CLOSED, mLifecycle.getState());
+        assertEquals(CameraLifecycle.ERROR_CONFIGURE_FAILED, mLifecycle.getLastError());
+        assertEquals(0, mDriver.count("repeat"));
+    }
+
+    @Test
+    public void openFailingSynchronously_endsClosed() {
+        mDriver.failOpen = true;
+
+        mLifecycle.start();
+
+        assertEquals(CameraLifecycle.State.CLOSED, mLifecycle.getState());
+        assertEquals(CameraLifecycle.ERROR_OPEN_FAILED, mLifecycle.getLastError());
+    }
+
+    @Test
+    public void repeatedStartAndStop_areIdempotent() {
+        mLifecycle.stop();
+        streaming();
+        mLifecycle.start();
+        mLifecycle.stop();
+        mLifecycle.stop();
+
+        assertEquals(Arrays.asList("stopRepeat", "schedule"), mDriver.calls);
+    }
+
+    @Test
+    public void timeToFirstFrame_coldStart() {
+        mLifecycle.start();
+        mClock.advanceMillis(200);
+        mLifecycle.onDeviceOpened();
+        mClock.advanceMillis(100);
+        mLifecycle.onSessionConfigured();
+        mClock.advanceMillis(150);
+
+        mLifecycle.onFrameAvailable();
+        mClock.advanceMillis(33);
+        mLifecycle.onFrameAvailable();
+
+        assertEquals(450 * 1000000L, mLifecycle.getTimeToFirstFrameNano());
+        assertFalse(mLifecycle.isLastStartWarm());
+    }
+
+    @Test
+    public void timeToFirstFrame_warmStart() {
+        streaming();
+        mLifecycle.onFrameAvailable();
+        mLifecycle.stop();
+        mClock.advanceMillis(1000);
+
+        mLifecycle.start();
+        mClock.advanceMillis(40);
+        mLifecycle.onFrameAvailable();
+
+        assertEquals(40 * 1000000L, mLifecycle.getTimeToFirstFrameNano());
+        assertTrue(mLifecycle.isLastStartWarm());
+    }
+
+    @Test
+    public void timeToFirstFrame_ignoresFramesOutsideStreaming() {
+        assertEquals(-1, mLifecycle.getTimeToFirstFrameNano());
+        mLifecycle.start();
+        mLifecycle.onDeviceOpened();
+        mLifecycle.onFrameAvailable();
+        assertEquals(-1, mLifecycle.getTimeToFirstFrameNano());
+
+        mLifecycle.onSessionConfigured();
+        mLifecycle.stop();
+        // stopRepeating()前に送られたフレーム
+        mLifecycle.onFrameAvailable();
+
+        assertEquals(-1, mLifecycle.getTimeToFirstFrameNano());
+    }
+
+    @Test
+    public void reconfigure_whileStreaming_recreatesSessionAndResumes() {
+        streaming();
+
+        mLifecycle.reconfigure();
+        assertEquals(CameraLifecycle.State.CONFIGURING, mLifecycle.getState());
+        mLifecycle.onSessionConfigured();
+
+        assertEquals(CameraLifecycle.State.STREAMING, mLifecycle.getState());
+        assertEquals(Arrays.asList("session", "repeat"), mDriver.calls);
+        assertEquals(1, mLifecycle.getOpenCount());
+        assertEquals(1, mLifecycle.getReconfigureCount());
+    }
+
+    @Test
+    public void reconfigure_whilePaused_staysPaused() {
+        streaming();
+        mLifecycle.stop();
+        mDriver.calls.clear();
+
+        mLifecycle.reconfigure();
+        mLifecycle.onSessionConfigured();
+
+        assertEquals(CameraLifecycle.State.PAUSED, mLifecycle.getState());
+        assertEquals(Arrays.asList("session", "schedule"), mDriver.calls);
+    }
+
+    @Test
+    public void reconfigure_whileConfiguring_recreatesOnceConfigured() {
+        mLifecycle.start();
+        mLifecycle.onDeviceOpened();
+        mDriver.calls.clear();
+
+        mLifecycle.reconfigure();
+        mLifecycle.reconfigure();
+        assertTrue(mDriver.calls.isEmpty());
+        mLifecycle.onSessionConfigured();
+        assertEquals(CameraLifecycle.State.CONFIGURING, mLifecycle.getState());
+        mLifecycle.onSessionConfigured();
+
+        assertEquals(Arrays.asList("session", "repeat"), mDriver.calls);
+        assertEquals(1, mLifecycle.getReconfigureCount());
+    }
+
+    @Test
+    public void reconfigure_whileClosedOrOpening_isIgnored() {
+        mLifecycle.reconfigure();
+        mLifecycle.start();
+        mLifecycle.reconfigure();
+        mLifecycle.onDeviceOpened();
+        mLifecycle.onSessionConfigured();
+
+        assertEquals(Arrays.asList("open", "session", "repeat"), mDriver.calls);
+        assertEquals(0, mLifecycle.getReconfigureCount());
+    }
+
+    private CameraLifecycle newRecoveringLifecycle() {
+        mLifecycle = new CameraLifecycle(mDriver, mClock, IDLE_TIMEOUT_MS * 1000000L,
+                new RecoveryPolicy(100 * 1000000L, 1000 * 1000000L, 3, 2));
+        mDriver.lifecycle = mLifecycle;
+        return mLifecycle;
+    }
+
+    @Test
+    public void recovery_disconnectWhileStreaming_reopensAfterBackoff() {
+        newRecoveringLifecycle();
+        streaming();
+
+        mLifecycle.onDeviceError(CameraLifecycle.ERROR_DISCONNECTED);
+
+        assertEquals(CameraLifecycle.State.RETRY_WAIT, mLifecycle.getState());
+        assertTrue(mLifecycle.isStarted());
+        assertEquals(Arrays.asList("close", "retry"), mDriver.calls);
+        assertEquals(100 * 1000000L, mDriver.retryDelayNano);
+
+        mDriver.calls.clear();
+        mLifecycle.onRetry();
+        mLifecycle.onDeviceOpened();
+        mLifecycle.onSessionConfigured();
+        mLifecycle.onFrameAvailable();
+
+        assertEquals(Arrays.asList("open", "session", "repeat"), mDriver.calls);
+        assertEquals(CameraLifecycle.State.STREAMING, mLifecycle.getState());
+        assertEquals(1, mLifecycle.getRetryCount());
+        assertEquals(1, mLifecycle.getRecoveryCount());
+    }
+
+    @Test
+    public void recovery_backoffGrowsUntilGivingUp() {
+        newRecoveringLifecycle();
+        mDriver.failOpen = true;
+
+        mLifecycle.start();
+        assertEquals(100 * 1000000L, mDriver.retryDelayNano);
+        mLifecycle.onRetry();
+        assertEquals(200 * 1000000L, mDriver.retryDelayNano);
+        mLifecycle.onRetry();
+        assertEquals(400 * 1000000L, mDriver.retryDelayNano);
+        mLifecycle.onRetry();
+
+        // 4回目の失敗で諦める
+        assertEquals(CameraLifecycle.State.CLOSED, mLifecycle.getState());
+        assertFalse(mLifecycle.isStarted());
+        assertEquals(3, mDriver.count("retry"));
+        assertEquals(4, mDriver.count("open"));
+        assertEquals(CameraLifecycle.ERROR_OPEN_FAILED, mLifecycle.getLastError());
+    }
+
+    @Test
+    public void recovery_frameResetsBackoff() {
+        newRecoveringLifecycle();
+        streaming();
+        mLifecycle.onDeviceError(4);
+        mLifecycle.onRetry();
+        mLifecycle.onDeviceError(4);
+        assertEquals(200 * 1000000L, mDriver.retryDelayNano);
+        mLifecycle.onRetry();
+        mLifecycle.onDeviceOpened();
+        mLifecycle.onSessionConfigured();
+        mLifecycle.onFrameAvailable();
+
+        mLifecycle.onDeviceError(4);
+
+        assertEquals(100 * 1000000L, mDriver.retryDelayNano);
+    }
+
+    @Test
+    public void recovery_repeatedConfigureFailuresDowngradePlan() {
+        newRecoveringLifecycle();
+        mDriver.downgradesLeft = 1;
+        mLifecycle.start();
+        mLifecycle.onDeviceOpened();
+
+        mLifecycle.onDeviceError(CameraLifecycle.ERROR_CONFIGURE_FAILED);
+        assertEquals(0, mDriver.count("downgrade"));
+        mLifecycle.onRetry();
+        mLifecycle.onDeviceOpened();
+        mLifecycle.onDeviceError(CameraLifecycle.ERROR_CONFIGURE_FAILED);
+
+        assertEquals(1, mDriver.count("downgrade"));
+        assertEquals(1, mLifecycle.getDowngradeCount());
+        assertEquals(CameraLifecycle.State.RETRY_WAIT, mLifecycle.getState());
+
+        mLifecycle.onRetry();
+        mLifecycle.onDeviceOpened();
+        mLifecycle.onSessionConfigured();
+        assertEquals(CameraLifecycle.State.STREAMING, mLifecycle.getState());
+    }
+
+    @Test
+    public void recovery_stopCancelsPendingRetry() {
+        newRecoveringLifecycle();
+        streaming();
+        mLifecycle.onDeviceError(CameraLifecycle.ERROR_DISCONNECTED);
+
+        mLifecycle.stop();
+        mLifecycle.onRetry();
+
+        assertEquals(CameraLifecycle.State.CLOSED, mLifecycle.getState());
+        assertEquals(0, mDriver.count("open"));
+
+        mLifecycle.start();
+        assertEquals(1, mDriver.count("open"));
+    }
+
+    @Test
+    public void recovery_lateErrorWhileWaitingIsIgnored() {
+        newRecoveringLifecycle();
+        streaming();
+        mLifecycle.onDeviceError(CameraLifecycle.ERROR_DISCONNECTED);
+
+        mLifecycle.onDeviceError(4);
+
+        assertEquals(1, mDriver.count("retry"));
+        assertEquals(1, mDriver.count("close"));
+        assertEquals(CameraLifecycle.ERROR_DISCONNECTED, mLifecycle.getLastError());
+    }
+
+    @Test
+    public void recovery_errorWhilePausedDoesNotRetry() {
+        newRecoveringLifecycle();
+        streaming();
+        mLifecycle.stop();
+
+        mLifecycle.onDeviceError(CameraLifecycle.ERROR_DISCONNECTED);
+
+        assertEquals(CameraLifecycle.State.CLOSED, mLifecycle.getState());
+        assertEquals(0, mDriver.count("retry"));
+    }
+}
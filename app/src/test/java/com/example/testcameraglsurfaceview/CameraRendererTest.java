@@ -0,0 +1,405 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class CameraRendererTest {
+
+    private static final int BUFFER_WIDTH = 64;
+    private static final int BUFFER_HEIGHT = 48;
+    private static final int LANDSCAPE_WIDTH = 48;
+    private static final int LANDSCAPE_HEIGHT = 32;
+    private static final long FRAME_INTERVAL = 33333333L;
+    private static final int TOLERANCE = 1;
+
+    private static HeadlessRenderHarness newHarness(int width, int height, FrameSource source, QuadGeometry.ScaleMode mode) {
+        HeadlessRenderHarness harness = new HeadlessRenderHarness(width, height, source);
+        harness.getRenderer().setScaleMode(mode);
+        return harness.start();
+    }
+
+    private static ReplayFrameSource newSource(CameraRotation rotation) {
+        ReplayFrameSource source = ReplayFrameSource.synthetic(BUFFER_WIDTH, BUFFER_HEIGHT, 8, FRAME_INTERVAL);
+        source.setRotation(rotation);
+        return source;
+    }
+
+    private static void assertGolden(String name, HeadlessRenderHarness harness) throws IOException {
+        GoldenImages.assertMatches(name, harness.readWindow(),
+                harness.getGl().getWindowWidth(), harness.getGl().getWindowHeight(), TOLERANCE);
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void rotationsMatchGoldenImages() throws IOException {
+        for (CameraRotation rotation : CameraRotation.values()) {
+            boolean portrait = rotation == CameraRotation.ROTATION_90 || rotation == CameraRotation.ROTATION_270;
+            HeadlessRenderHarness harness = newHarness(
+                    portrait ? LANDSCAPE_HEIGHT : LANDSCAPE_WIDTH, portrait ? LANDSCAPE_WIDTH : LANDSCAPE_HEIGHT,
+                    newSource(rotation), QuadGeometry.ScaleMode.LETTERBOX);
+
+            assertEquals(1, harness.renderFrames(1));
+
+            assertGolden("rotation_" + rotation.ordinal() * 90, harness);
+        }
+    }
+
+    @Test
+    public void scaleModesMatchGoldenImages() throws IOException {
+        for (QuadGeometry.ScaleMode mode : QuadGeometry.ScaleMode.values()) {
+            // 4:3のバッファを6:5のサーフェスに描く
+            HeadlessRenderHarness harness = newHarness(48, 40, newSource(CameraRotation.ROTATION_0), mode);
+
+            harness.renderFrames(1);
+
+            assertGolden("scale_" + mode.name().toLowerCase(Locale.US), harness);
+        }
+    }
+
+    @Test
+    public void replayedSequenceMatchesGoldenImage() throws IOException {
+        HeadlessRenderHarness harness = newHarness(LANDSCAPE_WIDTH, LANDSCAPE_HEIGHT,
+                newSource(CameraRotation.ROTATION_0), QuadGeometry.ScaleMode.LETTERBOX);
+
+        harness.renderFrames(4);
+        byte[] fourth = toArray(harness.readWindow());
+        harness.renderFrames(1);
+
+        assertGolden("sequence_frame_5", harness);
+        assertFalse(Arrays.equals(fourth, toArray(harness.readWindow())));
+    }
+
+    @Test
+    public void recordedFramesReplay() throws IOException {
+        List<byte[]> frames = new ArrayList<>();
+        try (InputStream in = getClass().getResourceAsStream("/golden/rotation_0.ppm")) {
+            frames.add(GoldenImages.readRgba(in, LANDSCAPE_WIDTH, LANDSCAPE_HEIGHT));
+        }
+        ReplayFrameSource source = new ReplayFrameSource(LANDSCAPE_WIDTH, LANDSCAPE_HEIGHT, frames, FRAME_INTERVAL);
+        HeadlessRenderHarness harness = newHarness(LANDSCAPE_HEIGHT, LANDSCAPE_WIDTH, source, QuadGeometry.ScaleMode.CROP);
+
+        harness.renderFrames(3);
+
+        assertEquals(3, source.getUploadCount());
+        assertGolden("recorded_replay", harness);
+    }
+
+    @Test
+    public void filtersRunThroughFramebuffers() throws IOException {
+        HeadlessRenderHarness harness = new HeadlessRenderHarness(LANDSCAPE_WIDTH, LANDSCAPE_HEIGHT,
+                newSource(CameraRotation.ROTATION_0));
+        harness.getRenderer().setScaleMode(QuadGeometry.ScaleMode.LETTERBOX);
+        harness.getRenderer().getFilterChain().add(new ColorCorrectionFilter());
+        harness.start();
+
+        harness.renderFrames(1);
+
+        // ソフトウェアGLはシェーダを実行しないので、フィルタ用バッファを経由した画像がそのまま出る
+        assertEquals(1, harness.getRenderer().getFilterChain().getActiveFilterCount());
+        assertEquals(2, harness.getGl().getDrawCount());
+        assertGolden("filter_passthrough", harness);
+        ByteBuffer window = harness.readWindow();
+        assertEquals("letterbox bar keeps the clear color", (byte) 128, window.get(0));
+    }
+
+    @Test
+    public void streamedFramesMatchWindow() {
+        HeadlessRenderHarness harness = newHarness(LANDSCAPE_WIDTH, LANDSCAPE_HEIGHT,
+                newSource(CameraRotation.ROTATION_0), QuadGeometry.ScaleMode.LETTERBOX);
+        final List<byte[]> streamed = new ArrayList<>();
+        final List<Long> timestamps = new ArrayList<>();
+        harness.getRenderer().getReadback().setStreamConsumer(new ReadbackConsumer() {
+            @Override
+            public void onFrame(ReadbackFrame frame) {
+                streamed.add(toArray(frame.getBuffer()));
+                timestamps.add(frame.getTimestamp());
+            }
+        });
+
+        harness.renderFrames(3);
+
+        assertEquals(3, streamed.size());
+        assertEquals(Long.valueOf(3 * FRAME_INTERVAL), timestamps.get(2));
+        assertArrayEquals(toArray(harness.readWindow()), streamed.get(2));
+    }
+
+    @Test
+    public void unreadySourceOnlyClears() {
+        ReplayFrameSource source = newSource(CameraRotation.ROTATION_0);
+        source.setReady(false);
+        HeadlessRenderHarness harness = newHarness(LANDSCAPE_WIDTH, LANDSCAPE_HEIGHT, source,
+                QuadGeometry.ScaleMode.LETTERBOX);
+
+        assertEquals(0, harness.renderFrames(3));
+
+        assertEquals(0, source.getUploadCount());
+        assertEquals(0, harness.getGl().getDrawCount());
+        ByteBuffer window = harness.readWindow();
+        assertEquals((byte) 128, window.get(0));
+        assertEquals((byte) 255, window.get(2));
+
+        source.setReady(true);
+        assertEquals(1, harness.renderFrames(1));
+    }
+
+    @Test
+    public void outputGetsSecondDrawAtItsSize() {
+        HeadlessRenderHarness harness = newHarness(LANDSCAPE_WIDTH, LANDSCAPE_HEIGHT,
+                newSource(CameraRotation.ROTATION_0), QuadGeometry.ScaleMode.LETTERBOX);
+        final List<Long> begun = new ArrayList<>();
+        final int[] ended = new int[1];
+        harness.getRenderer().setOutput(new FrameOutput() {
+            @Override
+            public boolean beginFrame(long cameraTimestampNano) {
+                begun.add(cameraTimestampNano);
+                // 2フレームに1回だけ受け取るエンコーダ
+                return begun.size() % 2 == 1;
+            }
+
+            @Override
+            public void endFrame() {
+                ended[0]++;
+            }
+
+            @Override
+            public int getWidth() {
+                return 16;
+            }
+
+            @Override
+            public int getHeight() {
+                return 16;
+            }
+        });
+
+        harness.renderFrames(4);
+
+        assertEquals(4, begun.size());
+        assertEquals(2, ended[0]);
+        assertEquals(6, harness.getGl().getDrawCount());
+        assertEquals(2, harness.getRenderer().getStageTimer().getHistogram(RenderStageTimer.STAGE_OUTPUT).getCount());
+    }
+
+    @Test
+    public void recreatedContextRendersSameImage() throws IOException {
+        ReplayFrameSource source = newSource(CameraRotation.ROTATION_0);
+        HeadlessRenderHarness harness = newHarness(LANDSCAPE_WIDTH, LANDSCAPE_HEIGHT, source,
+                QuadGeometry.ScaleMode.LETTERBOX);
+        harness.renderFrames(8);
+
+        harness.recreateContext();
+        assertTrue(source.isAttached());
+        harness.renderFrames(1);
+
+        // 9フレーム目は先頭のフレームに戻る
+        assertGolden("rotation_0", harness);
+    }
+
+    @Test
+    public void statisticsLeaveDrawnImageUnchanged() throws IOException {
+        ReplayFrameSource source = newSource(CameraRotation.ROTATION_0);
+        HeadlessRenderHarness harness = new HeadlessRenderHarness(LANDSCAPE_WIDTH, LANDSCAPE_HEIGHT, source);
+        final List<Long> timestamps = new ArrayList<>();
+        GpuFrameStatistics statistics = new GpuFrameStatistics(harness.getRenderer().getShaderCache(),
+                new GpuReadback(ReadbackFrame.newPool(2), 2, new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        command.run();
+                    }
+                }, 1), 4, 4, 32);
+        statistics.setListener(new GpuFrameStatistics.Listener() {
+            @Override
+            public void onStatistics(FrameStatistics statistics) {
+                timestamps.add(statistics.getTimestamp());
+            }
+        });
+        harness.getRenderer().setStatistics(statistics);
+        harness.getRenderer().setScaleMode(QuadGeometry.ScaleMode.LETTERBOX);
+        harness.start();
+
+        assertEquals(1, harness.renderFrames(1));
+
+        assertGolden("rotation_0", harness);
+        assertEquals(Arrays.asList(source.getTimestamp()), timestamps);
+        assertEquals(32, statistics.getPlan().getLevelWidth(0));
+        assertEquals(1, harness.getRenderer().getStageTimer().getHistogram(RenderStageTimer.STAGE_STATISTICS).getCount());
+    }
+
+    @Test
+    public void reportCoversEveryStage() {
+        HeadlessRenderHarness harness = newHarness(LANDSCAPE_WIDTH, LANDSCAPE_HEIGHT,
+                newSource(CameraRotation.ROTATION_90), QuadGeometry.ScaleMode.CROP);
+
+        harness.renderFrames(60);
+
+        RenderStageTimer timer = harness.getRenderer().getStageTimer();
+        assertEquals(60, timer.getHistogram(RenderStageTimer.STAGE_LATCH).getCount());
+        assertEquals(60, timer.getHistogram(RenderStageTimer.STAGE_DRAW).getCount());
+        assertEquals(60, timer.getHistogram(RenderStageTimer.STAGE_READBACK).getCount());
+        assertEquals(0, timer.getHistogram(RenderStageTimer.STAGE_OUTPUT).getCount());
+        assertEquals(60, harness.getRenderer().getFrameMetrics().getFrameCount());
+        String report = harness.formatReport();
+        assertTrue(report.contains("draw"));
+        assertFalse(report.contains("output"));
+    }
+
+    @Test
+    public void stalledSourceSkipsDrawWithPreservedSwap() throws IOException {
+        ReplayFrameSource source = newSource(CameraRotation.ROTATION_0);
+        source.setAutoAdvance(false);
+        source.deliverFrame();
+        HeadlessRenderHarness harness = newHarness(LANDSCAPE_WIDTH, LANDSCAPE_HEIGHT, source,
+                QuadGeometry.ScaleMode.LETTERBOX);
+        FrameChangeTracker tracker = harness.getRenderer().getChangeTracker();
+        tracker.setSwapPreserved(true);
+        assertEquals(1, harness.renderFrames(1));
+        assertEquals(FrameChangeTracker.LATCH, harness.getRenderer().getLastDecision());
+        long draws = harness.getGl().getDrawCount();
+
+        assertEquals(0, harness.renderFrames(5));
+
+        // RenderLoopはこのフレームをスワップしない
+        assertEquals(FrameChangeTracker.SKIP, harness.getRenderer().getLastDecision());
+        assertEquals(draws, harness.getGl().getDrawCount());
+        assertEquals(1, source.getUploadCount());
+        assertEquals(5, tracker.getSkipCount());
+        assertEquals(1, harness.getRenderer().getFrameMetrics().getFrameCount());
+        // バックバッファには前のフレームが残っている
+        assertGolden("rotation_0", harness);
+
+        source.deliverFrame();
+        assertEquals(1, harness.renderFrames(1));
+        assertEquals(2, source.getUploadCount());
+    }
+
+    @Test
+    public void stalledSourceIsRedrawnWithoutPreservedSwap() {
+        ReplayFrameSource source = newSource(CameraRotation.ROTATION_0);
+        source.setAutoAdvance(false);
+        source.deliverFrame();
+        HeadlessRenderHarness harness = newHarness(LANDSCAPE_WIDTH, LANDSCAPE_HEIGHT, source,
+                QuadGeometry.ScaleMode.LETTERBOX);
+        harness.renderFrames(1);
+        long draws = harness.getGl().getDrawCount();
+
+        assertEquals(0, harness.renderFrames(3));
+
+        assertEquals(draws + 3, harness.getGl().getDrawCount());
+        assertEquals(1, source.getUploadCount());
+        assertEquals(3, harness.getRenderer().getChangeTracker().getRedrawCount());
+        assertEquals(1, harness.getRenderer().getStageTimer().getHistogram(RenderStageTimer.STAGE_READBACK).getCount());
+    }
+
+    @Test
+    public void surfaceChangeRedrawsStalledFrameOnce() {
+        ReplayFrameSource source = newSource(CameraRotation.ROTATION_0);
+        source.setAutoAdvance(false);
+        source.deliverFrame();
+        HeadlessRenderHarness harness = newHarness(LANDSCAPE_WIDTH, LANDSCAPE_HEIGHT, source,
+                QuadGeometry.ScaleMode.LETTERBOX);
+        FrameChangeTracker tracker = harness.getRenderer().getChangeTracker();
+        tracker.setSwapPreserved(true);
+        harness.renderFrames(2);
+        long draws = harness.getGl().getDrawCount();
+
+        harness.getRenderer().onSurfaceChanged(LANDSCAPE_WIDTH, LANDSCAPE_HEIGHT);
+        harness.renderFrames(3);
+
+        assertEquals(draws + 1, harness.getGl().getDrawCount());
+        assertEquals(1, tracker.getRedrawCount());
+        assertEquals(1, source.getUploadCount());
+    }
+
+    @Test
+    public void drawCopyDrawsLastFrameWithoutLatching() {
+        ReplayFrameSource source = newSource(CameraRotation.ROTATION_0);
+        HeadlessRenderHarness harness = newHarness(LANDSCAPE_WIDTH, LANDSCAPE_HEIGHT, source,
+                QuadGeometry.ScaleMode.LETTERBOX);
+        harness.renderFrames(2);
+        long timestamp = source.getTimestamp();
+        long draws = harness.getGl().getDrawCount();
+
+        harness.getRenderer().drawCopy(LANDSCAPE_WIDTH / 2, LANDSCAPE_HEIGHT / 2);
+
+        assertEquals(draws + 1, harness.getGl().getDrawCount());
+        assertEquals(2, source.getUploadCount());
+        assertEquals(source.getTimestamp(), harness.getRenderer().getFrameTimestamp());
+        assertEquals(timestamp, harness.getRenderer().getFrameTimestamp());
+    }
+
+    @Test
+    public void zoomRedrawsStalledFrameWithCropAndNoUpload() {
+        ReplayFrameSource source = newSource(CameraRotation.ROTATION_90);
+        source.setAutoAdvance(false);
+        source.deliverFrame();
+        HeadlessRenderHarness harness = newHarness(LANDSCAPE_WIDTH, LANDSCAPE_HEIGHT, source,
+                QuadGeometry.ScaleMode.LETTERBOX);
+        harness.getRenderer().getChangeTracker().setSwapPreserved(true);
+        DigitalZoom zoom = new DigitalZoom();
+        harness.getRenderer().setDigitalZoom(zoom);
+        harness.renderFrames(2);
+        byte[] unzoomed = toArray(harness.readWindow());
+        long draws = harness.getGl().getDrawCount();
+
+        zoom.zoomBy(2, 0.5f, 0.5f);
+        harness.renderFrames(3);
+
+        // ズームの変更だけで一度描き直し、カメラのフレームは取り込まない
+        assertEquals(draws + 1, harness.getGl().getDrawCount());
+        assertEquals(FrameChangeTracker.SKIP, harness.getRenderer().getLastDecision());
+        assertEquals(1, source.getUploadCount());
+        assertFalse(Arrays.equals(unzoomed, toArray(harness.readWindow())));
+
+        // カメラ側で切り取るときは全体を描く
+        zoom.setCroppedBySensor(true);
+        harness.renderFrames(1);
+        assertArrayEquals(unzoomed, toArray(harness.readWindow()));
+    }
+
+    @Test
+    public void steadyFrames_issueOnlyChangedState() {
+        RecordingGlApi gl = new RecordingGlApi();
+        CameraRenderer renderer = new CameraRenderer(gl, newSource(CameraRotation.ROTATION_0),
+                new ShaderCache(16, null, Clock.SYSTEM), new FrameMetricsRecorder(16, FRAME_INTERVAL, true),
+                new GpuReadback(ReadbackFrame.newPool(2), 2, new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        command.run();
+                    }
+                }, 1), Clock.SYSTEM);
+        renderer.onSurfaceCreated();
+        renderer.onSurfaceChanged(LANDSCAPE_WIDTH, LANDSCAPE_HEIGHT);
+        renderer.drawFrame();
+        gl.resetCounts();
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(renderer.drawFrame());
+        }
+
+        // 取り込みでソースがバインドを変えうるので、テクスチャだけは取り込みごとにバインドし直す
+        assertEquals(5, gl.count("glDrawArrays"));
+        assertEquals(0, gl.count("glUseProgram"));
+        assertEquals(0, gl.count("glBindBuffer"));
+        assertEquals(0, gl.count("glVertexAttribPointer"));
+        assertEquals(0, gl.count("glUniform1i"));
+        assertEquals(0, gl.count("glActiveTexture"));
+        assertEquals(0, gl.count("glGetError"));
+        assertEquals(5, gl.count("glBindTexture"));
+        assertTrue(renderer.getGlState().getSkippedCount() > 0);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.testcameraglsurfaceview;
+
+/**
+ * Capability tables shaped like what real back cameras report: sizes with minimum frame durations
+ * and AE target fps ranges.
+ */
+class CapabilityTables {
+
+    private static final long FPS_60 = 16666666L;
+    private static final long FPS_30 = 33333333L;
+    private static final long FPS_20 = 50000000L;
+    private static final long FPS_15 = 66666666L;
+
+    private static final int PRIVATE = CameraCapabilities.FORMAT_PRIVATE;
+    private static final int YUV = CameraCapabilities.FORMAT_YUV_420_888;
+
+    /** FULL level device: 60fps up to 1080p, 4K at 30fps, full-resolution YUV at 20fps. */
+    static CameraCapabilities highEnd() {
+        return new CameraCapabilities()
+                .addOutput(PRIVATE, 4032, 3024, FPS_30)
+                .addOutput(PRIVATE, 4000, 3000, FPS_30)
+                .addOutput(PRIVATE, 3840, 2160, FPS_30)
+                .addOutput(PRIVATE, 1920, 1440, FPS_60)
+                .addOutput(PRIVATE, 1920, 1080, FPS_60)
+                .addOutput(PRIVATE, 1600, 1200, FPS_60)
+                .addOutput(PRIVATE, 1440, 1080, FPS_60)
+                .addOutput(PRIVATE, 1280, 960, FPS_60)
+                .addOutput(PRIVATE, 1280, 720, FPS_60)
+                .addOutput(PRIVATE, 960, 720, FPS_60)
+                .addOutput(PRIVATE, 640, 480, FPS_60)
+                .addOutput(PRIVATE, 320, 240, FPS_60)
+                .addOutput(YUV, 4032, 3024, FPS_20)
+                .addOutput(YUV, 1920, 1080, FPS_60)
+                .addOutput(YUV, 1280, 720, FPS_60)
+                .addOutput(YUV, 640, 480, FPS_60)
+                .addOutput(YUV, 640, 360, FPS_60)
+                .addOutput(YUV, 320, 240, FPS_60)
+                .addFpsRange(15, 15)
+                .addFpsRange(7, 30)
+                .addFpsRange(15, 30)
+                .addFpsRange(30, 30)
+                .addFpsRange(15, 60);
+    }
+
+    /** LIMITED level device: 30fps at most, full sensor only at 15fps, no fixed 30fps range. */
+    static CameraCapabilities midRange() {
+        return new CameraCapabilities()
+                .addOutput(PRIVATE, 4160, 3120, FPS_15)
+                .addOutput(PRIVATE, 4160, 2340, FPS_20)
+                .addOutput(PRIVATE, 1920, 1080, FPS_30)
+                .addOutput(PRIVATE, 1440, 1080, FPS_30)
+                .addOutput(PRIVATE, 1280, 720, FPS_30)
+                .addOutput(PRIVATE, 640, 480, FPS_30)
+                .addOutput(YUV, 4160, 3120, FPS_15)
+                .addOutput(YUV, 1920, 1080, FPS_30)
+                .addOutput(YUV, 1280, 720, FPS_30)
+                .addOutput(YUV, 640, 480, FPS_30)
+                .addFpsRange(7, 30)
+                .addFpsRange(15, 30);
+    }
+
+    /** LEGACY level device: no frame durations reported. */
+    static CameraCapabilities legacy() {
+        return new CameraCapabilities()
+                .addOutput(PRIVATE, 2592, 1944, 0)
+                .addOutput(PRIVATE, 1920, 1080, 0)
+                .addOutput(PRIVATE, 1280, 960, 0)
+                .addOutput(PRIVATE, 640, 480, 0)
+                .addOutput(YUV, 1280, 960, 0)
+                .addOutput(YUV, 640, 480, 0)
+                .addFpsRange(15, 15)
+                .addFpsRange(7, 30)
+                .addFpsRange(30, 30);
+    }
+}
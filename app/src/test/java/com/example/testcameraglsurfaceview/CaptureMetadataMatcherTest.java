@@ -0,0 +1,60 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CaptureMetadataMatcherTest {
+
+    private CaptureMetadataRing mRing;
+    private CaptureMetadataMatcher mMatcher;
+    private final CaptureMetadata mOut = new CaptureMetadata();
+
+    @Before
+    public void setUp() {
+        mRing = new CaptureMetadataRing(8);
+        mMatcher = new CaptureMetadataMatcher(mRing, 0);
+    }
+
+    @Test
+    public void resultBeforeDraw_matchesImmediately() {
+        mRing.publish(1000, 10, 33, 1);
+
+        assertFalse(mMatcher.matchPending(mOut));
+        assertTrue(mMatcher.match(1000, mOut));
+
+        assertEquals(1, mOut.frameNumber);
+        assertEquals(1, mMatcher.getMatchedCount());
+    }
+
+    @Test
+    public void lateResult_isMatchedOnNextFrame() {
+        assertFalse(mMatcher.match(1000, mOut));
+        mRing.publish(1000, 10, 33, 1);
+
+        assertTrue(mMatcher.matchPending(mOut));
+
+        assertEquals(1000, mOut.sensorTimestampNano);
+        assertEquals(1, mMatcher.getLateMatchedCount());
+        assertEquals(0, mMatcher.getMissedCount());
+    }
+
+    @Test
+    public void resultStillMissingOnNextFrame_countsAsMissed() {
+        assertFalse(mMatcher.match(1000, mOut));
+
+        assertFalse(mMatcher.matchPending(mOut));
+        assertFalse(mMatcher.matchPending(mOut));
+
+        assertEquals(1, mMatcher.getMissedCount());
+    }
+
+    @Test
+    public void unknownTimestamp_isIgnored() {
+        assertFalse(mMatcher.match(0, mOut));
+        assertFalse(mMatcher.matchPending(mOut));
+
+        assertEquals(0, mMatcher.getMissedCount());
+    }
+}
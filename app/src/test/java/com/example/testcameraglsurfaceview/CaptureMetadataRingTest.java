@@ -0,0 +1,189 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class CaptureMetadataRingTest {
+
+    private static final long FRAME_NANO = 33333333L;
+
+    private static long timestamp(long frameNumber) {
+        return 1000000000L + frameNumber * FRAME_NANO;
+    }
+
+    /** Every field is derived from the frame number so a torn read is detectable. */
+    private static void publish(CaptureMetadataRing ring, long frameNumber) {
+        ring.publish(timestamp(frameNumber), 10000000L + frameNumber, FRAME_NANO + frameNumber, frameNumber);
+    }
+
+    private static void assertConsistent(CaptureMetadata metadata) {
+        long frameNumber = metadata.frameNumber;
+        assertEquals(timestamp(frameNumber), metadata.sensorTimestampNano);
+        assertEquals(10000000L + frameNumber, metadata.exposureTimeNano);
+        assertEquals(FRAME_NANO + frameNumber, metadata.frameDurationNano);
+    }
+
+    @Test
+    public void capacity_isRoundedUpToPowerOfTwo() {
+        assertEquals(32, new CaptureMetadataRing(20).getCapacity());
+        assertEquals(16, new CaptureMetadataRing(16).getCapacity());
+    }
+
+    @Test
+    public void find_returnsEntryWithMatchingTimestamp() {
+        CaptureMetadataRing ring = new CaptureMetadataRing(8);
+        for (int i = 0; i < 5; i++) {
+            publish(ring, i);
+        }
+        CaptureMetadata out = new CaptureMetadata();
+
+        assertTrue(ring.find(timestamp(2), 0, out));
+
+        assertEquals(2, out.frameNumber);
+        assertConsistent(out);
+    }
+
+    @Test
+    public void find_withTolerance() {
+        CaptureMetadataRing ring = new CaptureMetadataRing(8);
+        for (int i = 0; i < 5; i++) {
+            publish(ring, i);
+        }
+        CaptureMetadata out = new CaptureMetadata();
+
+        assertFalse(ring.find(timestamp(3) + 500, 0, out));
+        assertTrue(ring.find(timestamp(3) + 500, 1000, out));
+        assertEquals(3, out.frameNumber);
+    }
+
+    @Test
+    public void find_unpublishedOrOverwritten_isNotFound() {
+        CaptureMetadataRing ring = new CaptureMetadataRing(4);
+        CaptureMetadata out = new CaptureMetadata();
+        assertFalse(ring.find(timestamp(0), 0, out));
+
+        for (int i = 0; i < 10; i++) {
+            publish(ring, i);
+        }
+
+        assertFalse(ring.find(timestamp(5), 0, out));
+        assertTrue(ring.find(timestamp(6), 0, out));
+        assertFalse(ring.find(timestamp(10), 0, out));
+        assertEquals(10, ring.getPublishedCount());
+    }
+
+    @Test
+    public void publishAndFind_doNotAllocate() {
+        final CaptureMetadataRing ring = new CaptureMetadataRing(16);
+        final CaptureMetadata out = new CaptureMetadata();
+        Runnable frame = new Runnable() {
+            long mFrameNumber = 0;
+
+            @Override
+            public void run() {
+                publish(ring, mFrameNumber);
+                ring.find(timestamp(mFrameNumber - 2), 0, out);
+                mFrameNumber++;
+            }
+        };
+
+        AllocationCounter.assertAllocationFree(frame, AllocationCounter.WARMUP_ITERATIONS, 10000);
+    }
+
+    @Test
+    public void concurrentProducerAndConsumer_neverSeeTornEntries() throws InterruptedException {
+        final int frames = 200000;
+        // 上書きとの競合を起こしやすくするため小さくする
+        final CaptureMetadataRing ring = new CaptureMetadataRing(4);
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final AtomicLong found = new AtomicLong();
+        final CountDownLatch ready = new CountDownLatch(1);
+
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                CaptureMetadata out = new CaptureMetadata();
+                ready.countDown();
+                try {
+                    while (!done.get()) {
+                        long latest = ring.getPublishedCount() - 1;
+                        for (long frameNumber = latest; frameNumber >= latest - 6 && frameNumber >= 0; frameNumber--) {
+                            if (ring.find(timestamp(frameNumber), 0, out)) {
+                                assertEquals(frameNumber, out.frameNumber);
+                                assertConsistent(out);
+                                found.incrementAndGet();
+                            }
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }
+        }, "consumer");
+        consumer.start();
+        assertTrue(ready.await(1, TimeUnit.SECONDS));
+
+        for (int i = 0; i < frames; i++) {
+            publish(ring, i);
+        }
+        done.set(true);
+        consumer.join(5000);
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertEquals(frames, ring.getPublishedCount());
+        assertTrue(found.get() > 0);
+    }
+
+    @Test
+    public void consumerKeepingUp_findsEveryFrame() throws InterruptedException {
+        final int frames = 2000;
+        final CaptureMetadataRing ring = new CaptureMetadataRing(32);
+        final AtomicLong published = new AtomicLong();
+        final AtomicLong consumed = new AtomicLong();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < frames; i++) {
+                    publish(ring, i);
+                    published.set(i + 1);
+                    // 消費側より速く一周しないよう待つ
+                    while (published.get() - consumed.get() > 8) {
+                        Thread.yield();
+                    }
+                }
+            }
+        }, "producer");
+        producer.start();
+
+        CaptureMetadata out = new CaptureMetadata();
+        try {
+            for (long frameNumber = 0; frameNumber < frames; frameNumber++) {
+                while (published.get() <= frameNumber) {
+                    Thread.yield();
+                }
+                assertTrue(ring.find(timestamp(frameNumber), 0, out));
+                assertConsistent(out);
+                consumed.set(frameNumber + 1);
+            }
+        } catch (Throwable t) {
+            failure.set(t);
+        }
+        consumed.set(frames);
+        producer.join(5000);
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CompositeLayoutTest {
+
+    private static final CompositeLayout PIP = new CompositeLayout(CompositeLayout.Arrangement.PICTURE_IN_PICTURE);
+    private static final CompositeLayout SIDE_BY_SIDE = new CompositeLayout(CompositeLayout.Arrangement.SIDE_BY_SIDE);
+
+    @Test
+    public void pictureInPictureInsetsSitBottomRight() {
+        assertEquals(new Viewport(0, 0, 1000, 500), PIP.getViewport(0, 2, 1000, 500));
+        // 余白は短辺の3%で15、子画面は300x150
+        assertEquals(new Viewport(685, 15, 300, 150), PIP.getViewport(1, 2, 1000, 500));
+    }
+
+    @Test
+    public void pictureInPictureInsetsFillRowsRightToLeftThenUpwards() {
+        Viewport second = PIP.getViewport(2, 5, 1000, 500);
+        assertEquals(370, second.x);
+        assertEquals(15, second.y);
+
+        // 1行に3つまで
+        Viewport fourth = PIP.getViewport(4, 5, 1000, 500);
+        assertEquals(685, fourth.x);
+        assertEquals(15 + 150 + 15, fourth.y);
+    }
+
+    @Test
+    public void sideBySideSplitsLongerSideWithoutGaps() {
+        int right = 0;
+        for (int i = 0; i < 3; i++) {
+            Viewport viewport = SIDE_BY_SIDE.getViewport(i, 3, 100, 40);
+            assertEquals(right, viewport.x);
+            assertEquals(0, viewport.y);
+            assertEquals(40, viewport.height);
+            right = viewport.x + viewport.width;
+        }
+        assertEquals(100, right);
+    }
+
+    @Test
+    public void sideBySideStacksTopToBottomOnPortrait() {
+        assertEquals(new Viewport(0, 50, 40, 50), SIDE_BY_SIDE.getViewport(0, 2, 40, 100));
+        assertEquals(new Viewport(0, 0, 40, 50), SIDE_BY_SIDE.getViewport(1, 2, 40, 100));
+    }
+
+    @Test
+    public void scaleModes() {
+        assertEquals(QuadGeometry.ScaleMode.CROP, PIP.getScaleMode(1));
+        assertEquals(QuadGeometry.ScaleMode.LETTERBOX, SIDE_BY_SIDE.getScaleMode(0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsIndexOutsideCount() {
+        PIP.getViewport(2, 2, 100, 100);
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DigitalZoomTest {
+
+    private static final float EPSILON = 1e-5f;
+
+    private static class CountingListener implements DigitalZoom.Listener {
+        int count;
+
+        @Override
+        public void onZoomChanged(DigitalZoom zoom) {
+            count++;
+        }
+    }
+
+    @Test
+    public void defaults_showWholeImage() {
+        DigitalZoom zoom = new DigitalZoom();
+        float[] crop = new float[4];
+        zoom.getCrop(crop);
+        assertEquals(1.0f, zoom.getZoom(), 0);
+        assertEquals(DigitalZoom.DEFAULT_MAX_ZOOM, zoom.getMaxZoom(), 0);
+        assertArrayEquals(QuadGeometry.FULL_CROP, crop, 0);
+    }
+
+    @Test
+    public void setZoom_clampsToMaxAndKeepsCropInsideImage() {
+        DigitalZoom zoom = new DigitalZoom();
+        zoom.setZoom(10);
+        assertEquals(DigitalZoom.DEFAULT_MAX_ZOOM, zoom.getZoom(), 0);
+        zoom.setZoom(0.5f);
+        assertEquals(1.0f, zoom.getZoom(), 0);
+
+        zoom.setZoom(2);
+        zoom.setCenter(0.9f, 0.1f);
+        float[] crop = new float[4];
+        zoom.getCrop(crop);
+        assertArrayEquals(new float[]{0.5f, 0.0f, 1.0f, 0.5f}, crop, EPSILON);
+
+        // 上限を下げると今のズームも下がる
+        zoom.setMaxZoom(1.5f);
+        assertEquals(1.5f, zoom.getZoom(), 0);
+        zoom.getCrop(crop);
+        assertEquals(1.0f, crop[2], EPSILON);
+        assertEquals(0.0f, crop[1], EPSILON);
+    }
+
+    @Test
+    public void zoomBy_keepsImagePointUnderFocus() {
+        DigitalZoom zoom = new DigitalZoom();
+        float focusU = 0.2f;
+        float focusV = 0.7f;
+        float[] before = new float[4];
+        float[] after = new float[4];
+        for (float scale : new float[]{1.5f, 1.2f, 0.9f}) {
+            zoom.getCrop(before);
+            zoom.zoomBy(scale, focusU, focusV);
+            zoom.getCrop(after);
+            assertEquals(before[0] + focusU * (before[2] - before[0]), after[0] + focusU * (after[2] - after[0]), EPSILON);
+            assertEquals(before[1] + focusV * (before[3] - before[1]), after[1] + focusV * (after[3] - after[1]), EPSILON);
+        }
+        assertEquals(1.5f * 1.2f * 0.9f, zoom.getZoom(), EPSILON);
+    }
+
+    @Test
+    public void listener_onlyCalledOnChange() {
+        DigitalZoom zoom = new DigitalZoom();
+        CountingListener listener = new CountingListener();
+        zoom.setListener(listener);
+        long sequence = zoom.getSequence();
+
+        zoom.setZoom(1);
+        zoom.zoomBy(0.5f, 0.5f, 0.5f);
+        zoom.reset();
+        assertEquals(0, listener.count);
+        assertEquals(sequence, zoom.getSequence());
+
+        zoom.zoomBy(2, 0.5f, 0.5f);
+        zoom.setZoom(2);
+        assertEquals(1, listener.count);
+        assertNotEquals(sequence, zoom.getSequence());
+
+        zoom.setZoom(DigitalZoom.DEFAULT_MAX_ZOOM);
+        zoom.zoomBy(2, 0.3f, 0.3f);
+        assertEquals(2, listener.count);
+    }
+
+    @Test
+    public void croppedBySensor_rendererShowsWholeBuffer() {
+        DigitalZoom zoom = new DigitalZoom();
+        CountingListener listener = new CountingListener();
+        zoom.setListener(listener);
+        zoom.setZoom(2);
+        float[] crop = new float[4];
+        zoom.getRendererCrop(crop);
+        assertArrayEquals(new float[]{0.25f, 0.25f, 0.75f, 0.75f}, crop, EPSILON);
+
+        long sequence = zoom.getSequence();
+        zoom.setCroppedBySensor(true);
+        assertTrue(zoom.isCroppedBySensor());
+        assertNotEquals(sequence, zoom.getSequence());
+        assertEquals(2, listener.count);
+        zoom.getRendererCrop(crop);
+        assertArrayEquals(QuadGeometry.FULL_CROP, crop, 0);
+        zoom.getCrop(crop);
+        assertArrayEquals(new float[]{0.25f, 0.25f, 0.75f, 0.75f}, crop, EPSILON);
+    }
+
+    @Test
+    public void toCropRegion_placesCropInsideStreamFieldForEveryRotation() {
+        // 4:3のセンサーから16:9のストリーム: 4000x2250が上下375pxずつ削られて見えている
+        float[] crop = {0.5f, 0.0f, 1.0f, 0.5f};
+        int[][] expected = {
+                {2000, 375, 4000, 1500},
+                {2000, 1500, 4000, 2625},
+                {0, 1500, 2000, 2625},
+                {0, 375, 2000, 1500},
+        };
+        int[] out = new int[4];
+        for (CameraRotation r : CameraRotation.values()) {
+            DigitalZoom.toCropRegion(crop, r, 4000, 3000, 1920, 1080, out);
+            assertArrayEquals(r.toString(), expected[r.ordinal()], out);
+        }
+    }
+
+    @Test
+    public void toCropRegion_wideSensorNarrowStream() {
+        // 16:9のセンサーから4:3のストリーム: 左右500pxずつ削られる
+        int[] out = new int[4];
+        DigitalZoom.toCropRegion(QuadGeometry.FULL_CROP, CameraRotation.ROTATION_90, 4000, 2250, 640, 480, out);
+        assertArrayEquals(new int[]{500, 0, 3500, 2250}, out);
+        DigitalZoom.toCropRegion(new float[]{0.25f, 0.25f, 0.75f, 0.75f}, CameraRotation.ROTATION_0, 4000, 2250, 640, 480, out);
+        assertArrayEquals(new int[]{1250, 563, 2750, 1688}, out);
+    }
+}
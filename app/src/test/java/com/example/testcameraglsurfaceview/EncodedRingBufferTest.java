@@ -0,0 +1,235 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class EncodedRingBufferTest {
+
+    private static final int KEY = VideoEncoder.BUFFER_FLAG_KEY_FRAME;
+    private static final long FRAME_US = 33333;
+
+    private final EncodedBufferInfo mInfo = new EncodedBufferInfo();
+    private final ByteBuffer mData = ByteBuffer.allocate(1024);
+    private final ByteBuffer mOut = ByteBuffer.allocate(1024);
+    private final EncodedBufferInfo mOutInfo = new EncodedBufferInfo();
+
+    /** size bytes of the low byte of ptsUs, after 3 bytes of padding. */
+    private boolean append(EncodedRingBuffer ring, int size, long ptsUs, int flags) {
+        mData.clear();
+        for (int i = 0; i < 3 + size; i++) {
+            mData.put(i, i < 3 ? 0 : (byte) ptsUs);
+        }
+        mInfo.set(3, size, ptsUs, flags);
+        return ring.append(mData, mInfo);
+    }
+
+    /** A key frame of keySize followed by gopLength - 1 frames of deltaSize. */
+    private void appendGop(EncodedRingBuffer ring, long firstFrame, int gopLength, int keySize, int deltaSize) {
+        for (int i = 0; i < gopLength; i++) {
+            long frame = firstFrame + i;
+            append(ring, i == 0 ? keySize : deltaSize, frame * FRAME_US, i == 0 ? KEY : 0);
+        }
+    }
+
+    private void assertSample(EncodedRingBuffer ring, long sequence, int size, long ptsUs, int flags) {
+        assertEquals(size, ring.getSampleSize(sequence));
+        assertTrue(ring.read(sequence, mOut, mOutInfo));
+        assertEquals(0, mOutInfo.offset);
+        assertEquals(size, mOutInfo.size);
+        assertEquals(ptsUs, mOutInfo.presentationTimeUs);
+        assertEquals(flags, mOutInfo.flags);
+        assertEquals(size, mOut.remaining());
+        for (int i = 0; i < size; i++) {
+            assertEquals((byte) ptsUs, mOut.get(i));
+        }
+    }
+
+    private void assertStartsAtKeyFrame(EncodedRingBuffer ring) {
+        if (ring.getSampleCount() > 0) {
+            assertTrue(ring.read(ring.getFirstSequence(), mOut, mOutInfo));
+            assertTrue((mOutInfo.flags & KEY) != 0);
+        }
+    }
+
+    @Test
+    public void dropsUntilFirstKeyFrame() {
+        EncodedRingBuffer ring = new EncodedRingBuffer(100, 10);
+
+        assertFalse(append(ring, 10, 0, 0));
+        assertTrue(append(ring, 20, FRAME_US, KEY));
+        assertTrue(append(ring, 10, 2 * FRAME_US, 0));
+
+        assertEquals(1, ring.getDroppedCount());
+        assertEquals(2, ring.getSampleCount());
+        assertEquals(30, ring.getUsedBytes());
+        assertEquals(0, ring.getFirstSequence());
+        assertSample(ring, 0, 20, FRAME_US, KEY);
+        assertSample(ring, 1, 10, 2 * FRAME_US, 0);
+        assertEquals(FRAME_US, ring.getDurationUs());
+    }
+
+    @Test
+    public void append_copiesAndRestoresSourceBuffer() {
+        EncodedRingBuffer ring = new EncodedRingBuffer(100, 10);
+        ByteBuffer data = ByteBuffer.wrap(new byte[]{0, 0, 1, 2, 3, 4, 5, 0});
+        data.position(1).limit(7);
+        mInfo.set(2, 5, 0, KEY);
+
+        assertTrue(ring.append(data, mInfo));
+        data.put(2, (byte) 99);
+
+        assertEquals(1, data.position());
+        assertEquals(7, data.limit());
+        assertTrue(ring.read(0, mOut, mOutInfo));
+        assertEquals(5, mOut.remaining());
+        assertEquals(1, mOut.get(0));
+        assertEquals(5, mOut.get(4));
+    }
+
+    @Test
+    public void full_evictsOldestWholeGop() {
+        EncodedRingBuffer ring = new EncodedRingBuffer(100, 20);
+        appendGop(ring, 0, 4, 20, 10);
+        appendGop(ring, 4, 4, 20, 10);
+        assertEquals(100, ring.getUsedBytes());
+        assertEquals(0, ring.getEvictedCount());
+
+        assertTrue(append(ring, 20, 8 * FRAME_US, KEY));
+
+        assertEquals(4, ring.getEvictedCount());
+        assertEquals(4, ring.getFirstSequence());
+        assertEquals(9, ring.getEndSequence());
+        assertEquals(2, ring.getKeyFrameCount());
+        assertEquals(70, ring.getUsedBytes());
+        assertFalse(ring.read(3, mOut, mOutInfo));
+        assertEquals(-1, ring.getSampleSize(3));
+        assertSample(ring, 4, 20, 4 * FRAME_US, KEY);
+        assertSample(ring, 8, 20, 8 * FRAME_US, KEY);
+    }
+
+    @Test
+    public void wrapAround_keepsSamplesContiguous() {
+        // 30バイトのGOPが100バイトに入りきらなくなると先頭に戻る
+        EncodedRingBuffer ring = new EncodedRingBuffer(100, 20);
+        for (int gop = 0; gop < 10; gop++) {
+            appendGop(ring, gop * 3, 3, 14, 8);
+            assertTrue(ring.getUsedBytes() <= 100);
+            assertStartsAtKeyFrame(ring);
+            for (long sequence = ring.getFirstSequence(); sequence < ring.getEndSequence(); sequence++) {
+                boolean key = sequence % 3 == 0;
+                assertSample(ring, sequence, key ? 14 : 8, sequence * FRAME_US, key ? KEY : 0);
+            }
+        }
+        assertEquals(30, ring.getEndSequence());
+        assertTrue(ring.getSampleCount() >= 6);
+    }
+
+    @Test
+    public void maxSamples_evictsOldestGop() {
+        EncodedRingBuffer ring = new EncodedRingBuffer(1000, 6);
+        appendGop(ring, 0, 3, 10, 5);
+        appendGop(ring, 3, 3, 10, 5);
+        assertEquals(6, ring.getSampleCount());
+
+        assertTrue(append(ring, 10, 6 * FRAME_US, KEY));
+
+        assertEquals(4, ring.getSampleCount());
+        assertEquals(3, ring.getFirstSequence());
+        assertSample(ring, 6, 10, 6 * FRAME_US, KEY);
+    }
+
+    @Test
+    public void gopLargerThanCapacity_isDroppedUntilNextKeyFrame() {
+        EncodedRingBuffer ring = new EncodedRingBuffer(100, 20);
+        appendGop(ring, 0, 4, 40, 20);
+        assertEquals(100, ring.getUsedBytes());
+
+        // 同じGOPの続きは入らない。途中で欠けたGOPは残さない
+        assertFalse(append(ring, 20, 4 * FRAME_US, 0));
+        assertEquals(0, ring.getSampleCount());
+        assertFalse(append(ring, 20, 5 * FRAME_US, 0));
+
+        assertTrue(append(ring, 40, 6 * FRAME_US, KEY));
+        assertEquals(1, ring.getSampleCount());
+        assertEquals(4, ring.getFirstSequence());
+        assertSample(ring, ring.getFirstSequence(), 40, 6 * FRAME_US, KEY);
+        assertEquals(2, ring.getDroppedCount());
+    }
+
+    @Test
+    public void sampleLargerThanCapacity_isDroppedWithItsGop() {
+        EncodedRingBuffer ring = new EncodedRingBuffer(100, 20);
+        appendGop(ring, 0, 2, 20, 10);
+
+        assertFalse(append(ring, 101, 2 * FRAME_US, KEY));
+        assertFalse(append(ring, 10, 3 * FRAME_US, 0));
+        assertEquals(2, ring.getSampleCount());
+        assertTrue(append(ring, 20, 4 * FRAME_US, KEY));
+        assertEquals(3, ring.getSampleCount());
+    }
+
+    @Test
+    public void trimToDuration_keepsShortestKeyFrameAlignedWindow() {
+        EncodedRingBuffer ring = new EncodedRingBuffer(10000, 100);
+        for (int gop = 0; gop < 5; gop++) {
+            appendGop(ring, gop * 10, 10, 30, 10);
+        }
+        long window = 25 * FRAME_US;
+
+        int evicted = ring.trimToDuration(window);
+
+        // 最新は49フレーム目。30フレーム目から始めると19フレーム分しかない
+        assertEquals(20, evicted);
+        assertEquals(20, ring.getFirstSequence());
+        assertEquals(29 * FRAME_US, ring.getDurationUs());
+        assertTrue(ring.getDurationUs() >= window);
+        assertStartsAtKeyFrame(ring);
+        assertEquals(0, ring.trimToDuration(window));
+    }
+
+    @Test
+    public void cannedStream_staysWithinBudget() {
+        // 1秒GOP、キーフレームは差分の数倍の大きさでばらつく
+        EncodedRingBuffer ring = new EncodedRingBuffer(4096, 64);
+        int maxUsed = 0;
+        for (int frame = 0; frame < 3000; frame++) {
+            boolean key = frame % 30 == 0;
+            int size = key ? 300 + frame % 7 * 40 : 40 + frame * 13 % 50;
+            append(ring, size, frame * FRAME_US, key ? KEY : 0);
+            ring.trimToDuration(2000000);
+
+            assertTrue(ring.getUsedBytes() <= ring.getCapacity());
+            assertTrue(ring.getSampleCount() <= ring.getMaxSamples());
+            assertTrue(ring.getDurationUs() < 3000000);
+            assertStartsAtKeyFrame(ring);
+            maxUsed = Math.max(maxUsed, ring.getUsedBytes());
+        }
+        assertEquals(3000, ring.getEndSequence());
+        assertEquals(0, ring.getDroppedCount());
+        assertTrue(maxUsed > 2048);
+    }
+
+    @Test
+    public void append_doesNotAllocate() {
+        final EncodedRingBuffer ring = new EncodedRingBuffer(4096, 64);
+        Runnable frame = new Runnable() {
+            private long mFrame = 0;
+
+            @Override
+            public void run() {
+                boolean key = mFrame % 30 == 0;
+                mInfo.set(0, key ? 400 : 60, mFrame * FRAME_US, key ? KEY : 0);
+                mData.clear();
+                ring.append(mData, mInfo);
+                ring.trimToDuration(1000000);
+                mFrame++;
+            }
+        };
+
+        AllocationCounter.assertAllocationFree(frame, AllocationCounter.WARMUP_ITERATIONS, 10000);
+        assertTrue(ring.getEvictedCount() > 0);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class EncoderDrainerTest {
+
+    private final FakeVideoEncoder mEncoder = new FakeVideoEncoder();
+    private final RecordingMuxerSink mSink = new RecordingMuxerSink();
+    private final MuxerQueue mQueue = new MuxerQueue(mSink, 4, 16);
+    private final EncoderDrainer mDrainer = new EncoderDrainer(mEncoder, mQueue);
+
+    @Test
+    public void drain_movesSamplesUntilTryAgain() {
+        mEncoder.queueFormatChanged();
+        mEncoder.queueSample(0, 8, (byte) 1, 0, VideoEncoder.BUFFER_FLAG_KEY_FRAME);
+        mEncoder.queueSample(0, 4, (byte) 2, 33333, 0);
+
+        assertFalse(mDrainer.drain(false));
+        assertEquals(2, mDrainer.getEncodedCount());
+        assertEquals(Arrays.asList(0, 1), mEncoder.getReleased());
+        assertFalse(mEncoder.isEndOfInputSignaled());
+
+        mQueue.writePending();
+        assertEquals(Arrays.asList(FakeVideoEncoder.FORMAT), mSink.formats);
+        assertEquals(2, mSink.samples.size());
+        assertEquals(33333, mSink.samples.get(1).presentationTimeUs);
+    }
+
+    @Test
+    public void drain_withoutOutput_doesNotBlock() {
+        assertFalse(mDrainer.drain(false));
+        assertEquals(1, mEncoder.getDequeueCount());
+    }
+
+    @Test
+    public void codecConfig_isNotWrittenAsSample() {
+        mEncoder.queueSample(0, 20, (byte) 9, 0, VideoEncoder.BUFFER_FLAG_CODEC_CONFIG);
+        mEncoder.queueFormatChanged();
+        mEncoder.queueSample(0, 8, (byte) 1, 0, VideoEncoder.BUFFER_FLAG_KEY_FRAME);
+
+        mDrainer.drain(false);
+        mQueue.writePending();
+
+        assertEquals(1, mSink.samples.size());
+        assertEquals(Arrays.asList(0, 1), mEncoder.getReleased());
+    }
+
+    @Test
+    public void sampleOffset_isHonoured() {
+        mEncoder.queueFormatChanged();
+        mEncoder.queueSample(5, 3, (byte) 7, 0, VideoEncoder.BUFFER_FLAG_KEY_FRAME);
+
+        mDrainer.drain(false);
+        mQueue.writePending();
+
+        assertArrayEquals(new byte[]{7, 7, 7}, mSink.samples.get(0).data);
+    }
+
+    @Test
+    public void endOfInput_waitsForEndOfStreamAndFinishesQueue() {
+        mEncoder.queueFormatChanged();
+        mEncoder.queueSample(0, 8, (byte) 1, 0, VideoEncoder.BUFFER_FLAG_KEY_FRAME);
+        mEncoder.setTryAgainBeforeEndOfStream(3);
+
+        assertTrue(mDrainer.drain(true));
+        assertTrue(mEncoder.isEndOfInputSignaled());
+        assertTrue(mDrainer.isEndOfStream());
+
+        assertTrue(mQueue.writePending());
+        assertEquals(1, mSink.samples.size());
+        assertTrue(mSink.stopped);
+        assertTrue(mSink.released);
+    }
+
+    @Test
+    public void endOfInput_givesUpWhenEncoderNeverFinishes() {
+        mEncoder.setRespondToEndOfInput(false);
+
+        assertTrue(mDrainer.drain(true));
+        assertTrue(mQueue.writePending());
+        // 一度も開始していないMuxerはstopしない
+        assertFalse(mSink.stopped);
+        assertTrue(mSink.released);
+    }
+
+    @Test
+    public void drainAfterEndOfStream_isNoOp() {
+        mDrainer.drain(true);
+        int dequeued = mEncoder.getDequeueCount();
+
+        assertTrue(mDrainer.drain(false));
+        assertEquals(dequeued, mEncoder.getDequeueCount());
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.testcameraglsurfaceview;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CameraLooper that runs nothing by itself: tests drain it with runPending() and move its clock with
+ * advanceMillis(). Tasks run on the calling thread, which counts as the looper thread meanwhile.
+ */
+public class FakeCameraLooper implements CameraLooper {
+
+    private static class Task {
+        final Runnable runnable;
+        final long dueMs;
+
+        Task(Runnable runnable, long dueMs) {
+            this.runnable = runnable;
+            this.dueMs = dueMs;
+        }
+    }
+
+    private final List<Task> mTasks = new ArrayList<>();
+    private long mNowMs = 0;
+    private boolean mRunning = false;
+    private boolean mQuit = false;
+    private int mRunCount = 0;
+
+    @Override
+    public synchronized void post(Runnable task) {
+        postDelayed(task, 0);
+    }
+
+    @Override
+    public synchronized void postDelayed(Runnable task, long delayMs) {
+        if (mQuit) {
+            return;
+        }
+        // 期限が同じタスクは投入順に実行する
+        int index = mTasks.size();
+        while (index > 0 && mTasks.get(index - 1).dueMs > mNowMs + delayMs) {
+            index--;
+        }
+        mTasks.add(index, new Task(task, mNowMs + delayMs));
+    }
+
+    @Override
+    public synchronized void removeCallbacks(Runnable task) {
+        for (int i = mTasks.size() - 1; i >= 0; i--) {
+            if (mTasks.get(i).runnable == task) {
+                mTasks.remove(i);
+            }
+        }
+    }
+
+    @Override
+    public synchronized boolean isCurrentThread() {
+        return mRunning;
+    }
+
+    @Override
+    public synchronized void quitSafely() {
+        mQuit = true;
+        for (int i = mTasks.size() - 1; i >= 0; i--) {
+            if (mTasks.get(i).dueMs > mNowMs) {
+                mTasks.remove(i);
+            }
+        }
+    }
+
+    /** Runs every task that is due, including tasks they post. */
+    public void runPending() {
+        while (true) {
+            Task task;
+            synchronized (this) {
+                if (mTasks.isEmpty() || mTasks.get(0).dueMs > mNowMs) {
+                    return;
+                }
+                task = mTasks.remove(0);
+                mRunning = true;
+            }
+            try {
+                task.runnable.run();
+            } finally {
+                synchronized (this) {
+                    mRunning = false;
+                    mRunCount++;
+                }
+            }
+        }
+    }
+
+    public void advanceMillis(long millis) {
+        synchronized (this) {
+            mNowMs += millis;
+        }
+        runPending();
+    }
+
+    public synchronized int getPendingCount() {
+        return mTasks.size();
+    }
+
+    public synchronized int getRunCount() {
+        return mRunCount;
+    }
+
+    public synchronized boolean isQuit() {
+        return mQuit;
+    }
+}
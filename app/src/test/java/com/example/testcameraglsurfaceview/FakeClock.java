@@ -0,0 +1,27 @@
+package com.example.testcameraglsurfaceview;
+
+public class FakeClock implements Clock {
+
+    private long mNow;
+
+    public FakeClock(long startNano) {
+        mNow = startNano;
+    }
+
+    @Override
+    public long nanoTime() {
+        return mNow;
+    }
+
+    public void set(long nano) {
+        mNow = nano;
+    }
+
+    public void advance(long nano) {
+        mNow += nano;
+    }
+
+    public void advanceMillis(long millis) {
+        mNow += millis * 1000000L;
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.testcameraglsurfaceview;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * EglApi that only keeps track of its context and surfaces and records every call as a string,
+ * e.g. "swap 1" or "present 1 500".
+ */
+public class FakeEglApi implements EglApi {
+
+    private final List<String> mCalls = new ArrayList<>();
+    private final Map<Integer, Object> mSurfaces = new HashMap<>();
+    private int mNextSurface = NO_SURFACE + 1;
+    private boolean mContext = false;
+    private int mCurrent = NO_SURFACE;
+    private boolean mSwapFails = false;
+    private int mClientVersion = 2;
+
+    @Override
+    public void createContext() {
+        if (mContext) {
+            throw new IllegalStateException("context already created");
+        }
+        mContext = true;
+        mCurrent = NO_SURFACE;
+        mCalls.add("createContext");
+    }
+
+    @Override
+    public int getClientVersion() {
+        return mContext ? mClientVersion : 0;
+    }
+
+    /** Version the next contexts report, as when Egl14Api gets or falls back from ES3. */
+    public void setClientVersion(int clientVersion) {
+        mClientVersion = clientVersion;
+    }
+
+    @Override
+    public void releaseContext() {
+        mContext = false;
+        mSurfaces.clear();
+        mCurrent = NO_SURFACE;
+        mCalls.add("releaseContext");
+    }
+
+    @Override
+    public int createWindowSurface(Object window) {
+        assertContext();
+        int surface = mNextSurface++;
+        mSurfaces.put(surface, window);
+        mCalls.add("createSurface " + surface);
+        return surface;
+    }
+
+    @Override
+    public void destroySurface(int surface) {
+        mSurfaces.remove(surface);
+        if (mCurrent == surface) {
+            mCurrent = NO_SURFACE;
+        }
+        mCalls.add("destroySurface " + surface);
+    }
+
+    @Override
+    public boolean makeCurrent(int surface) {
+        assertContext();
+        if (surface != NO_SURFACE && !mSurfaces.containsKey(surface)) {
+            return false;
+        }
+        mCurrent = surface;
+        return true;
+    }
+
+    @Override
+    public boolean setPresentationTime(int surface, long presentationTimeNano) {
+        mCalls.add("present " + surface + " " + presentationTimeNano);
+        return mSurfaces.containsKey(surface);
+    }
+
+    @Override
+    public boolean swapBuffers(int surface) {
+        assertContext();
+        mCalls.add("swap " + surface);
+        return !mSwapFails && mSurfaces.containsKey(surface);
+    }
+
+    private void assertContext() {
+        if (!mContext) {
+            throw new IllegalStateException("no context");
+        }
+    }
+
+    /** Makes every swapBuffers() fail, as when the window is being destroyed. */
+    public void setSwapFails(boolean fails) {
+        mSwapFails = fails;
+    }
+
+    public boolean hasContext() {
+        return mContext;
+    }
+
+    public int getCurrentSurface() {
+        return mCurrent;
+    }
+
+    public int getSurfaceCount() {
+        return mSurfaces.size();
+    }
+
+    public List<String> getCalls() {
+        return mCalls;
+    }
+
+    public int count(String prefix) {
+        int count = 0;
+        for (String call : mCalls) {
+            if (call.startsWith(prefix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public void clearCalls() {
+        mCalls.clear();
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.testcameraglsurfaceview;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scripted VideoEncoder: queued outputs are returned in order by dequeueOutputBuffer().
+ */
+class FakeVideoEncoder implements VideoEncoder {
+
+    static final Object FORMAT = new Object();
+
+    private static class Output {
+        final int index;
+        final int offset;
+        final int size;
+        final int flags;
+        final long presentationTimeUs;
+
+        Output(int index, int offset, int size, int flags, long presentationTimeUs) {
+            this.index = index;
+            this.offset = offset;
+            this.size = size;
+            this.flags = flags;
+            this.presentationTimeUs = presentationTimeUs;
+        }
+    }
+
+    private final ArrayDeque<Output> mOutputs = new ArrayDeque<>();
+    private final List<ByteBuffer> mBuffers = new ArrayList<>();
+    private final List<Integer> mReleased = new ArrayList<>();
+    private boolean mEndOfInputSignaled = false;
+    private int mTryAgainBeforeEndOfStream = 0;
+    private boolean mRespondToEndOfInput = true;
+    private int mDequeueCount = 0;
+
+    void queueFormatChanged() {
+        mOutputs.add(new Output(INFO_OUTPUT_FORMAT_CHANGED, 0, 0, 0, 0));
+    }
+
+    void queueTryAgain() {
+        mOutputs.add(new Output(INFO_TRY_AGAIN_LATER, 0, 0, 0, 0));
+    }
+
+    /** Queues an output buffer holding {@code size} bytes of {@code fill} after {@code offset} bytes of padding. */
+    void queueSample(int offset, int size, byte fill, long presentationTimeUs, int flags) {
+        ByteBuffer data = ByteBuffer.allocate(offset + size);
+        for (int i = 0; i < offset + size; i++) {
+            data.put(i, i < offset ? 0 : fill);
+        }
+        mBuffers.add(data);
+        mOutputs.add(new Output(mBuffers.size() - 1, offset, size, flags, presentationTimeUs));
+    }
+
+    void setTryAgainBeforeEndOfStream(int count) {
+        mTryAgainBeforeEndOfStream = count;
+    }
+
+    void setRespondToEndOfInput(boolean respond) {
+        mRespondToEndOfInput = respond;
+    }
+
+    boolean isEndOfInputSignaled() {
+        return mEndOfInputSignaled;
+    }
+
+    List<Integer> getReleased() {
+        return mReleased;
+    }
+
+    int getDequeueCount() {
+        return mDequeueCount;
+    }
+
+    @Override
+    public int dequeueOutputBuffer(EncodedBufferInfo info, long timeoutUs) {
+        mDequeueCount++;
+        Output output = mOutputs.poll();
+        if (output == null) {
+            if (mEndOfInputSignaled && mRespondToEndOfInput) {
+                if (mTryAgainBeforeEndOfStream > 0) {
+                    mTryAgainBeforeEndOfStream--;
+                    return INFO_TRY_AGAIN_LATER;
+                }
+                mRespondToEndOfInput = false;
+                mBuffers.add(ByteBuffer.allocate(0));
+                info.set(0, 0, 0, BUFFER_FLAG_END_OF_STREAM);
+                return mBuffers.size() - 1;
+            }
+            return INFO_TRY_AGAIN_LATER;
+        }
+        if (output.index >= 0) {
+            info.set(output.offset, output.size, output.presentationTimeUs, output.flags);
+        }
+        return output.index;
+    }
+
+    @Override
+    public ByteBuffer getOutputBuffer(int index) {
+        return mBuffers.get(index);
+    }
+
+    @Override
+    public Object getOutputFormat() {
+        return FORMAT;
+    }
+
+    @Override
+    public void releaseOutputBuffer(int index) {
+        mReleased.add(index);
+    }
+
+    @Override
+    public void signalEndOfInputStream() {
+        mEndOfInputSignaled = true;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.testcameraglsurfaceview;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** VsyncSource that fires only when the test calls vsync(). */
+public class FakeVsyncSource implements VsyncSource {
+
+    private final List<Callback> mCallbacks = new ArrayList<>();
+    private int mRequestCount = 0;
+
+    @Override
+    public void requestVsync(Callback callback) {
+        mCallbacks.add(callback);
+        mRequestCount++;
+    }
+
+    @Override
+    public void cancelVsync(Callback callback) {
+        mCallbacks.remove(callback);
+    }
+
+    /** Calls the callbacks requested so far; ones they request again wait for the next vsync. */
+    public void vsync(long frameTimeNanos) {
+        List<Callback> callbacks = new ArrayList<>(mCallbacks);
+        mCallbacks.clear();
+        for (Callback callback : callbacks) {
+            callback.onVsync(frameTimeNanos);
+        }
+    }
+
+    public boolean isPending() {
+        return !mCallbacks.isEmpty();
+    }
+
+    public int getRequestCount() {
+        return mRequestCount;
+    }
+}
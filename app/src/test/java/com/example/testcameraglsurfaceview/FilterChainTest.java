@@ -0,0 +1,183 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class FilterChainTest {
+
+    private RecordingGlApi mGl;
+    private FilterChain mChain;
+
+    @Before
+    public void setUp() {
+        mGl = new RecordingGlApi();
+        mChain = new FilterChain(newShaderCache(mGl));
+        mChain.onSurfaceCreated(mGl);
+        mChain.setInputSize(640, 480);
+        mChain.setOutputViewport(0, 100, 640, 480);
+    }
+
+    @Test
+    public void emptyChain_drawsStraightToScreen() {
+        assertFalse(mChain.beginFrame(mGl));
+        assertEquals(0, mGl.getBoundFramebuffer());
+        assertEquals(0, mGl.count("glGenFramebuffers"));
+        assertEquals(0, mChain.getFramebufferAllocationCount());
+    }
+
+    @Test
+    public void anyChainLength_usesExactlyTwoIntermediateTargets() {
+        for (int n = 1; n <= 8; n++) {
+            RecordingGlApi gl = new RecordingGlApi();
+            FilterChain chain = new FilterChain(newShaderCache(gl));
+            chain.onSurfaceCreated(gl);
+            chain.setInputSize(640, 480);
+            List<RecordingFilter> filters = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                RecordingFilter filter = new RecordingFilter();
+                filters.add(filter);
+                chain.add(filter);
+            }
+
+            for (int frame = 0; frame < 10; frame++) {
+                assertTrue(chain.beginFrame(gl));
+                chain.drawFilters(gl);
+            }
+
+            assertEquals(2, gl.getGeneratedTextures().size());
+            assertEquals(2, gl.getGeneratedFramebuffers().size());
+            assertEquals(1, chain.getFramebufferAllocationCount());
+
+            Set<Integer> allowed = new HashSet<>(gl.getGeneratedFramebuffers());
+            allowed.add(0);
+            assertTrue(allowed.containsAll(gl.getBoundFramebuffers()));
+            for (RecordingFilter filter : filters) {
+                assertEquals(10, filter.mDrawCount);
+                assertTrue(gl.getGeneratedTextures().contains(filter.mLastInput));
+            }
+        }
+    }
+
+    @Test
+    public void stages_alternateTargets_lastStageRendersToScreen() {
+        RecordingFilter first = new RecordingFilter();
+        RecordingFilter second = new RecordingFilter();
+        RecordingFilter third = new RecordingFilter();
+        mChain.add(first);
+        mChain.add(second);
+        mChain.add(third);
+
+        assertTrue(mChain.beginFrame(mGl));
+        int oesTarget = mGl.getBoundFramebuffer();
+        mChain.drawFilters(mGl);
+
+        List<Integer> textures = mGl.getGeneratedTextures();
+        List<Integer> framebuffers = mGl.getGeneratedFramebuffers();
+        assertEquals(framebuffers.get(0).intValue(), oesTarget);
+        assertEquals(textures.get(0).intValue(), first.mLastInput);
+        assertEquals(framebuffers.get(1).intValue(), first.mBoundFramebuffer);
+        assertEquals(textures.get(1).intValue(), second.mLastInput);
+        assertEquals(framebuffers.get(0).intValue(), second.mBoundFramebuffer);
+        assertEquals(textures.get(0).intValue(), third.mLastInput);
+        assertEquals(0, third.mBoundFramebuffer);
+    }
+
+    @Test
+    public void resize_reallocatesOnce() {
+        mChain.add(new RecordingFilter());
+        mChain.beginFrame(mGl);
+        mChain.drawFilters(mGl);
+        mChain.setInputSize(1280, 720);
+        for (int i = 0; i < 5; i++) {
+            mChain.beginFrame(mGl);
+            mChain.drawFilters(mGl);
+        }
+        assertEquals(2, mChain.getFramebufferAllocationCount());
+        assertEquals(1, mGl.count("glDeleteFramebuffers"));
+    }
+
+    @Test
+    public void contextLoss_reinitializesFiltersAndTargets() {
+        RecordingFilter filter = new RecordingFilter();
+        mChain.add(filter);
+        mChain.beginFrame(mGl);
+        mChain.drawFilters(mGl);
+
+        mChain.onSurfaceCreated(mGl);
+        mChain.beginFrame(mGl);
+        mChain.drawFilters(mGl);
+
+        assertEquals(2, filter.mCreateCount);
+        assertEquals(2, mChain.getFramebufferAllocationCount());
+        assertEquals(0, mGl.count("glDeleteFramebuffers"));
+    }
+
+    @Test
+    public void remove_releasesFilterOnGlThread() {
+        RecordingFilter filter = new RecordingFilter();
+        mChain.add(filter);
+        mChain.beginFrame(mGl);
+        mChain.drawFilters(mGl);
+
+        mChain.remove(filter);
+        assertEquals(0, filter.mReleaseCount);
+        assertFalse(mChain.beginFrame(mGl));
+        assertEquals(1, filter.mReleaseCount);
+        assertEquals(0, mChain.getActiveFilterCount());
+    }
+
+    @Test
+    public void shaderFilter_compilesOnceAndDrawsQuad() {
+        SharpenFilter sharpen = new SharpenFilter(0.5f);
+        mChain.add(sharpen);
+        mChain.beginFrame(mGl);
+        mChain.drawFilters(mGl);
+        mChain.beginFrame(mGl);
+        mChain.drawFilters(mGl);
+
+        assertEquals(1, mGl.count("glLinkProgram"));
+        assertEquals(2, mGl.count("glDrawArrays"));
+    }
+
+    private static ShaderCache newShaderCache(GlApi gl) {
+        ShaderCache cache = new ShaderCache(16, null, new FakeClock(0));
+        cache.onSurfaceCreated(gl);
+        return cache;
+    }
+
+    private class RecordingFilter implements Filter {
+        int mCreateCount;
+        int mReleaseCount;
+        int mDrawCount;
+        int mLastInput;
+        int mBoundFramebuffer;
+
+        @Override
+        public void onSurfaceCreated(GlApi gl, ShaderCache shaderCache) {
+            mCreateCount++;
+        }
+
+        @Override
+        public void onSizeChanged(int width, int height) {
+        }
+
+        @Override
+        public void draw(GlApi gl, int inputTexture) {
+            mDrawCount++;
+            mLastInput = inputTexture;
+            mBoundFramebuffer = ((RecordingGlApi) gl).getBoundFramebuffer();
+        }
+
+        @Override
+        public void release(GlApi gl) {
+            mReleaseCount++;
+        }
+    }
+}
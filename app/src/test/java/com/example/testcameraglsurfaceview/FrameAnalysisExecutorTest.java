@@ -0,0 +1,342 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class FrameAnalysisExecutorTest {
+
+    private static final long MS = 1000000L;
+
+    private FakeClock mClock;
+    private FrameBufferPool<AnalysisFrame> mPool;
+    private List<Long> mEmittedTimestamps;
+    private List<int[]> mEmittedStatuses;
+    private List<Object[]> mEmittedResults;
+
+    @Before
+    public void setUp() {
+        mClock = new FakeClock(0);
+        mPool = AnalysisFrame.newPool(16);
+        mEmittedTimestamps = new ArrayList<>();
+        mEmittedStatuses = new ArrayList<>();
+        mEmittedResults = new ArrayList<>();
+    }
+
+    private FrameAnalysisExecutor newExecutor(Executor executor, int maxFramesInFlight) {
+        FrameAnalysisExecutor analysisExecutor = new FrameAnalysisExecutor(executor, mClock, maxFramesInFlight);
+        analysisExecutor.setFrameResultListener(new FrameResultListener() {
+            @Override
+            public void onFrameResult(FrameResult result) {
+                mEmittedTimestamps.add(result.getTimestamp());
+                int[] statuses = new int[result.getAnalyzerCount()];
+                Object[] results = new Object[result.getAnalyzerCount()];
+                for (int i = 0; i < statuses.length; i++) {
+                    statuses[i] = result.getStatus(i);
+                    results[i] = result.getResult(i);
+                }
+                mEmittedStatuses.add(statuses);
+                mEmittedResults.add(results);
+            }
+        });
+        return analysisExecutor;
+    }
+
+    private boolean submit(FrameAnalysisExecutor executor, long timestamp) {
+        AnalysisFrame frame = mPool.acquire(16);
+        frame.begin(timestamp, 4, 4);
+        return executor.submit(frame, mPool);
+    }
+
+    /** Analyzer that takes costNano of virtual time and returns the frame timestamp. */
+    private class CostAnalyzer implements FrameAnalyzer {
+        final long mCost;
+        final long mBudget;
+
+        CostAnalyzer(long cost, long budget) {
+            mCost = cost;
+            mBudget = budget;
+        }
+
+        @Override
+        public Object analyze(AnalysisFrame frame) {
+            mClock.advance(mCost);
+            return frame.getTimestamp();
+        }
+
+        @Override
+        public long getLatencyBudgetNano() {
+            return mBudget;
+        }
+    }
+
+    /** Queues tasks until the test runs them, in any order. */
+    private static class ManualExecutor implements Executor {
+        final List<Runnable> mTasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mTasks.add(command);
+        }
+
+        void runLast() {
+            mTasks.remove(mTasks.size() - 1).run();
+        }
+
+        void runAll() {
+            while (!mTasks.isEmpty()) {
+                mTasks.remove(0).run();
+            }
+        }
+    }
+
+    /**
+     * Virtual-time pool of N workers. A task occupies a worker for its analyzer's cost (0 if it will be skipped
+     * as late) and its completion is only processed once virtual time reaches the end, like on real threads.
+     */
+    private class SimulatedWorkers implements Executor {
+        private final int mWorkers;
+        private final ArrayDeque<Runnable> mWaiting = new ArrayDeque<>();
+        private final PriorityQueue<long[]> mRunning = new PriorityQueue<>(11, new java.util.Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                return a[1] != b[1] ? Long.compare(a[1], b[1]) : Long.compare(a[2], b[2]);
+            }
+        });
+        private final List<Runnable> mTasks = new ArrayList<>();
+        private long mSequence = 0;
+
+        SimulatedWorkers(int workers) {
+            mWorkers = workers;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (mRunning.size() < mWorkers) {
+                start(command, mClock.nanoTime());
+            } else {
+                mWaiting.add(command);
+            }
+        }
+
+        private void start(Runnable command, long start) {
+            FrameAnalysisExecutor.AnalyzerTask task = (FrameAnalysisExecutor.AnalyzerTask) command;
+            long cost = start > task.getDeadline() ? 0 : ((CostAnalyzer) task.getAnalyzer()).mCost;
+            mTasks.add(command);
+            mRunning.add(new long[]{start, start + cost, mSequence++, mTasks.size() - 1});
+        }
+
+        void advanceTo(long time) {
+            while (!mRunning.isEmpty() && mRunning.peek()[1] <= time) {
+                long[] event = mRunning.poll();
+                mClock.set(event[0]);
+                mTasks.get((int) event[3]).run();
+                mClock.set(event[1]);
+                if (!mWaiting.isEmpty()) {
+                    start(mWaiting.poll(), event[1]);
+                }
+            }
+            mClock.set(time);
+        }
+    }
+
+    private long runScenario(int workers, int analyzers, long cost, long budget, long frameInterval, int frames) {
+        SimulatedWorkers pool = new SimulatedWorkers(workers);
+        FrameAnalysisExecutor executor = newExecutor(pool, 8);
+        for (int i = 0; i < analyzers; i++) {
+            executor.addAnalyzer(new CostAnalyzer(cost, budget));
+        }
+        for (int i = 0; i < frames; i++) {
+            pool.advanceTo(i * frameInterval);
+            submit(executor, i * frameInterval);
+        }
+        pool.advanceTo(Long.MAX_VALUE / 4);
+        return executor.getCompletedCount();
+    }
+
+    @Test
+    public void results_areMergedInFrameOrder_evenWhenTasksFinishOutOfOrder() {
+        ManualExecutor manual = new ManualExecutor();
+        FrameAnalysisExecutor executor = newExecutor(manual, 4);
+        executor.addAnalyzer(new CostAnalyzer(0, 100 * MS));
+        executor.addAnalyzer(new CostAnalyzer(0, 100 * MS));
+
+        submit(executor, 100);
+        manual.runLast();
+        FrameAnalysisExecutor.AnalyzerTask pending = (FrameAnalysisExecutor.AnalyzerTask) manual.mTasks.get(0);
+        manual.mTasks.clear();
+        assertEquals(0, mEmittedTimestamps.size());
+
+        pending.run();
+        assertEquals(1, mEmittedTimestamps.size());
+        assertEquals(Long.valueOf(100), mEmittedResults.get(0)[0]);
+        assertEquals(Long.valueOf(100), mEmittedResults.get(0)[1]);
+    }
+
+    @Test
+    public void laterFrame_isHeldUntilEarlierFrameCompletes() {
+        ManualExecutor manual = new ManualExecutor();
+        FrameAnalysisExecutor executor = newExecutor(manual, 4);
+        CostAnalyzer fast = new CostAnalyzer(0, 100 * MS);
+        executor.addAnalyzer(fast);
+
+        submit(executor, 1);
+        Runnable first = manual.mTasks.remove(0);
+        // analyzer is busy with frame 1, so frame 2 is skipped for it and completes immediately
+        submit(executor, 2);
+        assertEquals(0, mEmittedTimestamps.size());
+
+        first.run();
+        assertEquals(2, mEmittedTimestamps.size());
+        assertEquals(Long.valueOf(1), mEmittedTimestamps.get(0));
+        assertEquals(Long.valueOf(2), mEmittedTimestamps.get(1));
+        assertEquals(FrameResult.STATUS_SKIPPED_BUSY, mEmittedStatuses.get(1)[0]);
+    }
+
+    @Test
+    public void busyAnalyzer_skipsFramesForItselfOnly() {
+        SimulatedWorkers pool = new SimulatedWorkers(4);
+        FrameAnalysisExecutor executor = newExecutor(pool, 8);
+        executor.addAnalyzer(new CostAnalyzer(5 * MS, 100 * MS));
+        executor.addAnalyzer(new CostAnalyzer(50 * MS, 100 * MS));
+
+        for (int i = 0; i < 30; i++) {
+            pool.advanceTo(i * 33 * MS);
+            submit(executor, i);
+        }
+        pool.advanceTo(10000 * MS);
+
+        assertEquals(30, mEmittedTimestamps.size());
+        int fastCompleted = 0;
+        int slowCompleted = 0;
+        for (int i = 0; i < 30; i++) {
+            assertEquals(Long.valueOf(i), mEmittedTimestamps.get(i));
+            int[] statuses = mEmittedStatuses.get(i);
+            if (statuses[0] == FrameResult.STATUS_COMPLETED) {
+                fastCompleted++;
+            }
+            if (statuses[1] == FrameResult.STATUS_COMPLETED) {
+                slowCompleted++;
+            } else {
+                assertEquals(FrameResult.STATUS_SKIPPED_BUSY, statuses[1]);
+            }
+        }
+        assertEquals(30, fastCompleted);
+        assertEquals(15, slowCompleted);
+        assertEquals(15, executor.getSkippedBusyCount());
+    }
+
+    @Test
+    public void queuedPastBudget_isSkippedAsLate() {
+        SimulatedWorkers pool = new SimulatedWorkers(1);
+        FrameAnalysisExecutor executor = newExecutor(pool, 8);
+        executor.addAnalyzer(new CostAnalyzer(30 * MS, 40 * MS));
+        executor.addAnalyzer(new CostAnalyzer(30 * MS, 40 * MS));
+        executor.addAnalyzer(new CostAnalyzer(30 * MS, 40 * MS));
+
+        submit(executor, 0);
+        pool.advanceTo(1000 * MS);
+
+        int[] statuses = mEmittedStatuses.get(0);
+        assertEquals(FrameResult.STATUS_COMPLETED, statuses[0]);
+        assertEquals(FrameResult.STATUS_OVER_BUDGET, statuses[1]);
+        assertEquals(FrameResult.STATUS_SKIPPED_LATE, statuses[2]);
+        assertNull(mEmittedResults.get(0)[1]);
+    }
+
+    @Test
+    public void throughput_scalesWithWorkerCount() {
+        long previous = 0;
+        long[] completed = new long[5];
+        for (int workers = 1; workers <= 4; workers++) {
+            completed[workers] = runScenario(workers, 4, 20 * MS, 200 * MS, 10 * MS, 200);
+            assertTrue("workers=" + workers + " completed " + completed[workers], completed[workers] > previous);
+            previous = completed[workers];
+        }
+        assertTrue(completed[4] >= completed[1] * 7 / 2);
+    }
+
+    @Test
+    public void framesInFlightLimit_dropsAndReleasesFrame() {
+        ManualExecutor manual = new ManualExecutor();
+        FrameAnalysisExecutor executor = newExecutor(manual, 1);
+        executor.addAnalyzer(new CostAnalyzer(0, 100 * MS));
+
+        assertTrue(submit(executor, 1));
+        assertFalse(submit(executor, 2));
+        assertEquals(15, mPool.getFreeCount());
+        assertEquals(1, executor.getDroppedCount());
+
+        manual.runAll();
+        assertEquals(16, mPool.getFreeCount());
+        assertEquals(0, executor.getFramesInFlight());
+    }
+
+    @Test
+    public void failingAnalyzer_doesNotBlockOthers() {
+        ManualExecutor manual = new ManualExecutor();
+        FrameAnalysisExecutor executor = newExecutor(manual, 2);
+        executor.addAnalyzer(new FrameAnalyzer() {
+            @Override
+            public Object analyze(AnalysisFrame frame) {
+                throw new IllegalStateException("broken");
+            }
+
+            @Override
+            public long getLatencyBudgetNano() {
+                return 100 * MS;
+            }
+        });
+        executor.addAnalyzer(new CostAnalyzer(0, 100 * MS));
+
+        submit(executor, 7);
+        manual.runAll();
+
+        assertEquals(FrameResult.STATUS_FAILED, mEmittedStatuses.get(0)[0]);
+        assertEquals(FrameResult.STATUS_COMPLETED, mEmittedStatuses.get(0)[1]);
+        assertEquals(16, mPool.getFreeCount());
+    }
+
+    private static int countWorkerThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().startsWith("FrameAnalysisWorker-")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void ownPool_startsWithFirstAnalyzerAndStopsOnShutdown() throws InterruptedException {
+        int before = countWorkerThreads();
+        FrameAnalysisExecutor executor = new FrameAnalysisExecutor(mClock, 2);
+        assertTrue(submit(executor, 0));
+        assertEquals(before, countWorkerThreads());
+
+        executor.addAnalyzer(new CostAnalyzer(0, 100 * MS));
+        assertTrue(submit(executor, 1));
+        for (int i = 0; i < 500 && executor.getCompletedCount() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, executor.getCompletedCount());
+        assertTrue(countWorkerThreads() > before);
+
+        executor.shutdown();
+        for (int i = 0; i < 500 && countWorkerThreads() > before; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(before, countWorkerThreads());
+        // 停止後のフレームは解析されずにプールへ返る
+        assertTrue(submit(executor, 2));
+        assertEquals(1, executor.getSkippedLateCount());
+        assertEquals(16, mPool.getFreeCount());
+    }
+}
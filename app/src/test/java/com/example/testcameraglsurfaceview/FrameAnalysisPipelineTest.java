@@ -0,0 +1,198 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FrameAnalysisPipelineTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    private static final long NO_BUDGET = Long.MAX_VALUE / 2;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final ByteBuffer mY = ByteBuffer.allocateDirect(WIDTH * HEIGHT);
+    private final ByteBuffer mU = ByteBuffer.allocateDirect(WIDTH * HEIGHT / 2 - 1);
+    private final ByteBuffer mV = ByteBuffer.allocateDirect(WIDTH * HEIGHT / 2 - 1);
+
+    private static FrameAnalysisPipeline newPipeline(int poolSize) {
+        return new FrameAnalysisPipeline(poolSize, new FrameAnalysisExecutor(DIRECT, new FakeClock(0), 1));
+    }
+
+    private void produce(FrameAnalysisPipeline pipeline, long timestamp) {
+        AnalysisFrame frame = pipeline.obtainFrame(mY.capacity() + mU.capacity() + mV.capacity());
+        if (frame == null) {
+            return;
+        }
+        mY.clear();
+        mU.clear();
+        mV.clear();
+        mY.put(0, (byte) timestamp);
+        frame.begin(timestamp, WIDTH, HEIGHT);
+        frame.putPlane(mY, WIDTH, 1);
+        frame.putPlane(mU, WIDTH, 2);
+        frame.putPlane(mV, WIDTH, 2);
+        pipeline.publish(frame);
+    }
+
+    private abstract static class TestAnalyzer implements FrameAnalyzer {
+        @Override
+        public long getLatencyBudgetNano() {
+            return NO_BUDGET;
+        }
+    }
+
+    @Test
+    public void frame_packsPlanesWithOffsets() {
+        FrameAnalysisPipeline pipeline = newPipeline(3);
+        final AnalysisFrame[] seen = new AnalysisFrame[1];
+        final int[] firstLuma = new int[1];
+        pipeline.addAnalyzer(new TestAnalyzer() {
+            @Override
+            public Object analyze(AnalysisFrame frame) {
+                seen[0] = frame;
+                firstLuma[0] = frame.getBuffer().get(frame.getPlaneOffset(0));
+                return null;
+            }
+        });
+
+        produce(pipeline, 42);
+        assertTrue(pipeline.dispatchPending());
+
+        AnalysisFrame frame = seen[0];
+        assertEquals(42, firstLuma[0]);
+        assertEquals(42, frame.getTimestamp());
+        assertEquals(3, frame.getPlaneCount());
+        assertEquals(0, frame.getPlaneOffset(0));
+        assertEquals(WIDTH * HEIGHT, frame.getPlaneOffset(1));
+        assertEquals(WIDTH * HEIGHT + mU.capacity(), frame.getPlaneOffset(2));
+        assertEquals(2, frame.getPixelStride(2));
+    }
+
+    @Test
+    public void slowAnalyzer_keepsOnlyLatestFrame() {
+        FrameAnalysisPipeline pipeline = newPipeline(3);
+        final long[] analyzed = new long[1];
+        pipeline.addAnalyzer(new TestAnalyzer() {
+            @Override
+            public Object analyze(AnalysisFrame frame) {
+                analyzed[0] = frame.getTimestamp();
+                return null;
+            }
+        });
+
+        for (int i = 1; i <= 10; i++) {
+            produce(pipeline, i);
+        }
+        assertTrue(pipeline.dispatchPending());
+        assertFalse(pipeline.dispatchPending());
+
+        assertEquals(10, analyzed[0]);
+        assertEquals(10, pipeline.getPublishedCount());
+        assertEquals(9, pipeline.getDroppedCount());
+        assertEquals(1, pipeline.getAnalyzedCount());
+        assertEquals(3, pipeline.getFreeBufferCount());
+    }
+
+    @Test
+    public void exhaustedPool_dropsInsteadOfBlocking() {
+        FrameBufferPool<AnalysisFrame> pool = AnalysisFrame.newPool(2);
+        assertNotNull(pool.acquire(16));
+        assertNotNull(pool.acquire(16));
+        assertNull(pool.acquire(16));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void doubleRelease_isRejected() {
+        FrameBufferPool<AnalysisFrame> pool = AnalysisFrame.newPool(1);
+        AnalysisFrame frame = pool.acquire(16);
+        pool.release(frame);
+        pool.release(frame);
+    }
+
+    @Test
+    public void steadyState_allocatesNothing() {
+        final FrameAnalysisPipeline pipeline = newPipeline(3);
+        final long[] sum = new long[1];
+        FrameAnalyzer analyzer = new TestAnalyzer() {
+            @Override
+            public Object analyze(AnalysisFrame frame) {
+                ByteBuffer buffer = frame.getBuffer();
+                int end = frame.getPlaneOffset(0) + frame.getPlaneLength(0);
+                for (int i = frame.getPlaneOffset(0); i < end; i += 16) {
+                    sum[0] += buffer.get(i) & 0xff;
+                }
+                return null;
+            }
+        };
+        pipeline.addAnalyzer(analyzer);
+        pipeline.addAnalyzer(analyzer);
+
+        final long[] timestamp = new long[1];
+        Runnable frameCycle = new Runnable() {
+            @Override
+            public void run() {
+                // 2 frames per dispatch so the drop path is exercised as well
+                produce(pipeline, timestamp[0]++);
+                produce(pipeline, timestamp[0]++);
+                pipeline.dispatchPending();
+            }
+        };
+        AllocationCounter.assertAllocationFree(frameCycle, AllocationCounter.WARMUP_ITERATIONS, 10000);
+        assertEquals(timestamp[0] / 2, pipeline.getAnalyzedCount());
+    }
+
+    @Test
+    public void backgroundThread_analyzesPublishedFrames() throws InterruptedException {
+        FrameAnalysisPipeline pipeline = newPipeline(3);
+        final CountDownLatch latch = new CountDownLatch(1);
+        pipeline.addAnalyzer(new TestAnalyzer() {
+            @Override
+            public Object analyze(AnalysisFrame frame) {
+                latch.countDown();
+                return null;
+            }
+        });
+        pipeline.start();
+        try {
+            produce(pipeline, 1);
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } finally {
+            pipeline.stop();
+        }
+        assertEquals(3, pipeline.getFreeBufferCount());
+    }
+
+    @Test
+    public void removeAnalyzer_stopsDelivery() {
+        FrameAnalysisPipeline pipeline = newPipeline(3);
+        final int[] calls = new int[1];
+        FrameAnalyzer analyzer = new TestAnalyzer() {
+            @Override
+            public Object analyze(AnalysisFrame frame) {
+                calls[0]++;
+                return null;
+            }
+        };
+        pipeline.addAnalyzer(analyzer);
+        produce(pipeline, 1);
+        pipeline.dispatchPending();
+        pipeline.removeAnalyzer(analyzer);
+        produce(pipeline, 2);
+        pipeline.dispatchPending();
+
+        assertEquals(1, calls[0]);
+        assertFalse(pipeline.hasAnalyzers());
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameChangeTrackerTest {
+
+    private FrameChangeTracker mTracker;
+
+    @Before
+    public void setUp() {
+        mTracker = new FrameChangeTracker();
+        mTracker.setSwapPreserved(true);
+    }
+
+    @Test
+    public void firstFrameLatchesEvenWithoutNewSequence() {
+        assertEquals(FrameChangeTracker.LATCH, mTracker.onDrawFrame(0));
+    }
+
+    @Test
+    public void unchangedSequenceSkipsWithPreservedSwap() {
+        mTracker.onDrawFrame(1);
+
+        assertEquals(FrameChangeTracker.SKIP, mTracker.onDrawFrame(1));
+        assertEquals(FrameChangeTracker.SKIP, mTracker.onDrawFrame(1));
+        assertEquals(FrameChangeTracker.LATCH, mTracker.onDrawFrame(2));
+
+        assertEquals(2, mTracker.getLatchCount());
+        assertEquals(2, mTracker.getSkipCount());
+        assertEquals(0, mTracker.getRedrawCount());
+    }
+
+    @Test
+    public void unchangedSequenceRedrawsWithoutPreservedSwap() {
+        mTracker.setSwapPreserved(false);
+        mTracker.onDrawFrame(1);
+
+        assertEquals(FrameChangeTracker.REDRAW, mTracker.onDrawFrame(1));
+        assertEquals(FrameChangeTracker.REDRAW, mTracker.onDrawFrame(1));
+        assertEquals(0, mTracker.getSkipCount());
+    }
+
+    @Test
+    public void invalidateRedrawsOnce() {
+        mTracker.onDrawFrame(1);
+        mTracker.invalidate();
+
+        assertEquals(FrameChangeTracker.REDRAW, mTracker.onDrawFrame(1));
+        assertEquals(FrameChangeTracker.SKIP, mTracker.onDrawFrame(1));
+    }
+
+    @Test
+    public void newFrameClearsInvalidation() {
+        mTracker.onDrawFrame(1);
+        mTracker.invalidate();
+
+        assertEquals(FrameChangeTracker.LATCH, mTracker.onDrawFrame(2));
+        assertEquals(FrameChangeTracker.SKIP, mTracker.onDrawFrame(2));
+    }
+
+    @Test
+    public void resetLatchesAgain() {
+        mTracker.onDrawFrame(5);
+        mTracker.reset();
+
+        // 新しいコンテキストのテクスチャは空なので同じフレームでも取り込む
+        assertEquals(FrameChangeTracker.LATCH, mTracker.onDrawFrame(5));
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameMetricsRecorderTest {
+
+    private static final long MS = 1000000L;
+    private static final long FRAME_30FPS = 33333333L;
+
+    @Test
+    public void recordFrame_tracksDrawTimeLatencyAndInterval() {
+        FrameMetricsRecorder recorder = new FrameMetricsRecorder(16, FRAME_30FPS, true);
+        long now = 1000 * MS;
+        for (int i = 0; i < 10; i++) {
+            recorder.recordFrame(now, now + 4 * MS, now - 20 * MS);
+            now += FRAME_30FPS;
+        }
+
+        FrameMetricsSnapshot snapshot = new FrameMetricsSnapshot();
+        recorder.getSnapshot(snapshot);
+        assertEquals(10, snapshot.frameCount);
+        assertEquals(0, snapshot.droppedFrameCount);
+        assertEquals(10, snapshot.getStats(FrameMetricsRecorder.METRIC_DRAW_TIME).count);
+        assertEquals(4 * MS, snapshot.getStats(FrameMetricsRecorder.METRIC_DRAW_TIME).max);
+        assertEquals(24 * MS, snapshot.getStats(FrameMetricsRecorder.METRIC_LATENCY).max);
+        assertEquals(9, snapshot.getStats(FrameMetricsRecorder.METRIC_FRAME_INTERVAL).count);
+        assertEquals(30.0, snapshot.getFps(), 0.01);
+    }
+
+    @Test
+    public void longInterval_countsDroppedFrames() {
+        FrameMetricsRecorder recorder = new FrameMetricsRecorder(16, FRAME_30FPS, true);
+        recorder.recordFrame(0, MS, 0);
+        recorder.recordFrame(FRAME_30FPS, FRAME_30FPS + MS, 0);
+        recorder.recordFrame(4 * FRAME_30FPS, 4 * FRAME_30FPS + MS, 0);
+        // 1.4フレーム分の遅れはドロップとしない
+        recorder.recordFrame(5 * FRAME_30FPS + FRAME_30FPS * 4 / 10, 5 * FRAME_30FPS + FRAME_30FPS * 4 / 10 + MS, 0);
+
+        assertEquals(2, recorder.getDroppedFrameCount());
+    }
+
+    @Test
+    public void discontinuity_isNotCountedAsDrop() {
+        FrameMetricsRecorder recorder = new FrameMetricsRecorder(16, FRAME_30FPS, true);
+        recorder.recordFrame(0, MS, 0);
+        recorder.markDiscontinuity();
+        recorder.recordFrame(100 * FRAME_30FPS, 100 * FRAME_30FPS + MS, 0);
+
+        assertEquals(0, recorder.getDroppedFrameCount());
+    }
+
+    @Test
+    public void implausibleCameraTimestamp_isNotRecordedAsLatency() {
+        FrameMetricsRecorder recorder = new FrameMetricsRecorder(16, FRAME_30FPS, true);
+        recorder.recordFrame(0, MS, 0);
+        recorder.recordFrame(10 * MS, 11 * MS, 50 * MS);
+        recorder.recordFrame(5000 * MS, 5001 * MS, 10 * MS);
+
+        FrameMetricsSnapshot snapshot = new FrameMetricsSnapshot();
+        recorder.getSnapshot(snapshot);
+        assertEquals(0, snapshot.getStats(FrameMetricsRecorder.METRIC_LATENCY).count);
+    }
+
+    @Test
+    public void disabled_recordsNothing() {
+        FrameMetricsRecorder recorder = new FrameMetricsRecorder(16, FRAME_30FPS, false);
+        recorder.recordFrame(0, MS, 0);
+        assertEquals(0, recorder.getFrameCount());
+
+        recorder.setEnabled(true);
+        recorder.recordFrame(0, MS, 0);
+        assertEquals(1, recorder.getFrameCount());
+    }
+
+    @Test
+    public void copyRecent_returnsNewestSamplesOldestFirst() {
+        FrameMetricsRecorder recorder = new FrameMetricsRecorder(4, FRAME_30FPS, true);
+        for (int i = 1; i <= 6; i++) {
+            recorder.recordFrame(0, i, 0);
+        }
+
+        long[] out = new long[8];
+        assertEquals(4, recorder.copyRecent(FrameMetricsRecorder.METRIC_DRAW_TIME, out));
+        assertArrayEquals(new long[]{3, 4, 5, 6}, java.util.Arrays.copyOf(out, 4));
+
+        long[] small = new long[2];
+        assertEquals(2, recorder.copyRecent(FrameMetricsRecorder.METRIC_DRAW_TIME, small));
+        assertArrayEquals(new long[]{5, 6}, small);
+    }
+
+    @Test
+    public void reset_clearsCountsAndRings() {
+        FrameMetricsRecorder recorder = new FrameMetricsRecorder(4, FRAME_30FPS, true);
+        recorder.recordFrame(0, MS, 0);
+        recorder.recordFrame(10 * FRAME_30FPS, 10 * FRAME_30FPS + MS, 0);
+        recorder.reset();
+
+        assertEquals(0, recorder.getFrameCount());
+        assertEquals(0, recorder.getDroppedFrameCount());
+        assertEquals(0, recorder.copyRecent(FrameMetricsRecorder.METRIC_DRAW_TIME, new long[4]));
+    }
+
+    @Test
+    public void recordFrameAndSnapshot_doNotAllocate() {
+        final FrameMetricsRecorder recorder = new FrameMetricsRecorder(256, FRAME_30FPS, true);
+        final FrameMetricsSnapshot snapshot = new FrameMetricsSnapshot();
+        final long[] recent = new long[256];
+        final long[] now = {1000 * MS, 0};
+        Runnable frame = new Runnable() {
+            @Override
+            public void run() {
+                // 10フレームに1回、2フレーム分落とす
+                now[0] += ++now[1] % 10 == 0 ? 3 * FRAME_30FPS : FRAME_30FPS;
+                recorder.recordFrame(now[0] - 5 * MS, now[0], now[0] - 30 * MS);
+            }
+        };
+        Runnable readBack = new Runnable() {
+            @Override
+            public void run() {
+                recorder.getSnapshot(snapshot);
+                recorder.copyRecent(FrameMetricsRecorder.METRIC_FRAME_INTERVAL, recent);
+            }
+        };
+
+        AllocationCounter.assertAllocationFree(frame, AllocationCounter.WARMUP_ITERATIONS, 10000);
+        AllocationCounter.assertAllocationFree(readBack, 5000, 1000);
+        assertTrue(snapshot.droppedFrameCount > 0);
+    }
+
+    @Test
+    public void captureMetadata_recordsExposureAndSensorFrameDuration() {
+        FrameMetricsRecorder recorder = new FrameMetricsRecorder(8, 0, true);
+        CaptureMetadata metadata = new CaptureMetadata();
+        metadata.set(1000, 8000000L, 33333333L, 1);
+        recorder.recordCaptureMetadata(metadata);
+        metadata.set(2000, 0, 0, 2);
+        recorder.recordCaptureMetadata(metadata);
+
+        FrameMetricsSnapshot snapshot = new FrameMetricsSnapshot();
+        recorder.getSnapshot(snapshot);
+
+        FrameMetricsSnapshot.Stats exposure = snapshot.getStats(FrameMetricsRecorder.METRIC_EXPOSURE_TIME);
+        assertEquals(1, exposure.count);
+        assertEquals(8000000L, exposure.max, 8000000L / 32);
+        assertEquals(1, snapshot.getStats(FrameMetricsRecorder.METRIC_SENSOR_FRAME_DURATION).count);
+        assertEquals(0, snapshot.frameCount);
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class FrameStatisticsTest {
+
+    private static final float BYTE_STEP = 1 / 255.0f;
+
+    private static ByteBuffer allocate(int width, int height) {
+        return ByteBuffer.allocateDirect(width * height * 4).order(ByteOrder.nativeOrder());
+    }
+
+    private static void fill(ByteBuffer rgba, int width, int x0, int y0, int x1, int y1, int gray) {
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                int offset = (y * width + x) * 4;
+                rgba.put(offset, (byte) gray);
+                rgba.put(offset + 1, (byte) gray);
+                rgba.put(offset + 2, (byte) gray);
+                rgba.put(offset + 3, (byte) 255);
+            }
+        }
+    }
+
+    @Test
+    public void decodesTilesBottomUp() {
+        ByteBuffer grid = allocate(2, 2);
+        // 左下、右下、左上、右上
+        grid.put(new byte[]{
+                (byte) 255, 0, 0, (byte) 255,
+                0, 0, (byte) 255, 0,
+                (byte) 102, (byte) 51, 0, 0,
+                (byte) 102, (byte) 51, 0, 0});
+        grid.flip();
+
+        FrameStatistics statistics = new FrameStatistics();
+        statistics.decode(grid, 2, 2, 1234L);
+
+        assertEquals(1.0f, statistics.getTileLuma(0, 0), 0);
+        assertEquals(1.0f, statistics.getTileBrightFraction(0, 0), 0);
+        assertEquals(1.0f, statistics.getTileDarkFraction(1, 0), 0);
+        assertEquals(0.2f, statistics.getTileMotion(1, 1), 1e-6);
+        assertEquals((1.0f + 0.4f + 0.4f) / 4, statistics.getMeanLuma(), 1e-6);
+        assertEquals(0.1f, statistics.getMotion(), 1e-6);
+        assertEquals(0.25f, statistics.getDarkFraction(), 1e-6);
+        assertEquals(0.25f, statistics.getBrightFraction(), 1e-6);
+        assertEquals(0.5f, statistics.getMidFraction(), 1e-6);
+        assertEquals(1234L, statistics.getTimestamp());
+        assertEquals(0, grid.position());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsShortBuffer() {
+        new FrameStatistics().decode(allocate(2, 1), 2, 2, 0);
+    }
+
+    @Test
+    public void copyKeepsTiles() {
+        ByteBuffer grid = allocate(1, 1);
+        grid.put(0, (byte) 51);
+        FrameStatistics decoded = new FrameStatistics();
+        decoded.decode(grid, 1, 1, 7);
+
+        FrameStatistics copy = new FrameStatistics();
+        copy.copyFrom(decoded);
+
+        assertEquals(0.2f, copy.getTileLuma(0, 0), 1e-6);
+        assertEquals(0.2f, copy.getMeanLuma(), 1e-6);
+        assertEquals(7, copy.getTimestamp());
+    }
+
+    @Test
+    public void referenceMatchesExactStatisticsOfUniformTiles() {
+        int width = 64;
+        int height = 48;
+        ByteBuffer frame = allocate(width, height);
+        // 左半分は黒、右下は白、右上は中間の灰色
+        fill(frame, width, 0, 0, 32, 48, 0);
+        fill(frame, width, 32, 0, 64, 24, 255);
+        fill(frame, width, 32, 24, 64, 48, 128);
+        ReductionPlan plan = new ReductionPlan(width, height, 4, 4, 256);
+        SoftwareStatisticsReducer reducer = new SoftwareStatisticsReducer(plan);
+
+        FrameStatistics statistics = new FrameStatistics();
+        statistics.decode(reducer.reduce(frame, width, height), 4, 4, 0);
+
+        assertEquals(0.5f, statistics.getDarkFraction(), BYTE_STEP);
+        assertEquals(0.25f, statistics.getBrightFraction(), BYTE_STEP);
+        assertEquals((0 + 0 + 1.0f + 128 / 255.0f) / 4, statistics.getMeanLuma(), BYTE_STEP);
+        assertEquals(0, statistics.getMotion(), 0);
+        assertEquals(0, statistics.getTileLuma(0, 3), 0);
+        assertEquals(1.0f, statistics.getTileLuma(3, 0), 0);
+        assertEquals(128 / 255.0f, statistics.getTileLuma(3, 3), 0);
+    }
+
+    @Test
+    public void referenceMeanLumaMatchesCpuMeanOfGradient() {
+        int width = 160;
+        int height = 120;
+        ByteBuffer frame = allocate(width, height);
+        double sum = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int offset = (y * width + x) * 4;
+                int r = x * 255 / (width - 1);
+                int g = y * 255 / (height - 1);
+                int b = (x + y) % 256;
+                frame.put(offset, (byte) r);
+                frame.put(offset + 1, (byte) g);
+                frame.put(offset + 2, (byte) b);
+                sum += (0.299 * r + 0.587 * g + 0.114 * b) / 255.0;
+            }
+        }
+        SoftwareStatisticsReducer reducer = new SoftwareStatisticsReducer(new ReductionPlan(width, height, 4, 4, 256));
+
+        FrameStatistics statistics = new FrameStatistics();
+        statistics.decode(reducer.reduce(frame, width, height), 4, 4, 0);
+
+        // 1レベルごとに最大で半ステップの丸め誤差
+        assertEquals(sum / (width * height), statistics.getMeanLuma(), 4 * BYTE_STEP);
+    }
+
+    @Test
+    public void referenceMotionFollowsChangeBetweenFrames() {
+        int width = 32;
+        int height = 32;
+        ByteBuffer frame = allocate(width, height);
+        fill(frame, width, 0, 0, width, height, 100);
+        SoftwareStatisticsReducer reducer = new SoftwareStatisticsReducer(new ReductionPlan(width, height, 4, 4, 256));
+        FrameStatistics statistics = new FrameStatistics();
+
+        statistics.decode(reducer.reduce(frame, width, height), 4, 4, 0);
+        assertEquals(0, statistics.getMotion(), 0);
+        statistics.decode(reducer.reduce(frame, width, height), 4, 4, 0);
+        assertEquals(0, statistics.getMotion(), 0);
+
+        // 下半分だけ明るくなる
+        fill(frame, width, 0, 0, width, height / 2, 151);
+        statistics.decode(reducer.reduce(frame, width, height), 4, 4, 0);
+        assertEquals(51 / 255.0f, statistics.getTileMotion(0, 0), BYTE_STEP);
+        assertEquals(0, statistics.getTileMotion(0, 3), 0);
+        assertEquals(51 / 255.0f / 2, statistics.getMotion(), BYTE_STEP);
+
+        reducer.reset();
+        statistics.decode(reducer.reduce(frame, width, height), 4, 4, 0);
+        assertEquals(0, statistics.getMotion(), 0);
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.*;
+
+public class GlStateTrackerTest {
+
+    private static final int GL_INVALID_OPERATION = 0x0502;
+
+    private final RecordingGlApi mGl = new RecordingGlApi();
+    private final GlStateTracker mState = new GlStateTracker(mGl);
+
+    /** What a renderer sets before drawing a quad. */
+    private void drawQuad(int program, int texture, int buffer, int offset) {
+        mState.glBindFramebuffer(GlApi.GL_FRAMEBUFFER, 0);
+        mState.glViewport(0, 0, 64, 48);
+        mState.glUseProgram(program);
+        mState.glBindBuffer(GlApi.GL_ARRAY_BUFFER, buffer);
+        mState.glVertexAttribPointer(0, 2, GlApi.GL_FLOAT, false, 16, offset);
+        mState.glVertexAttribPointer(1, 2, GlApi.GL_FLOAT, false, 16, offset + 8);
+        mState.glUniform1i(7, 0);
+        mState.glActiveTexture(GlApi.GL_TEXTURE0);
+        mState.glBindTexture(GlApi.GL_TEXTURE_EXTERNAL_OES, texture);
+        mState.glDrawArrays(GlApi.GL_TRIANGLE_STRIP, 0, 4);
+    }
+
+    @Test
+    public void firstCalls_areIssued() {
+        drawQuad(1, 2, 3, 0);
+
+        assertEquals(1, mGl.count("glBindFramebuffer"));
+        assertEquals(1, mGl.count("glViewport"));
+        assertEquals(1, mGl.count("glUseProgram"));
+        assertEquals(1, mGl.count("glBindBuffer"));
+        assertEquals(2, mGl.count("glVertexAttribPointer"));
+        assertEquals(1, mGl.count("glUniform1i"));
+        assertEquals(1, mGl.count("glActiveTexture"));
+        assertEquals(1, mGl.count("glBindTexture"));
+        assertEquals(1, mGl.count("glDrawArrays"));
+        assertEquals(0, mState.getSkippedCount());
+    }
+
+    @Test
+    public void sameState_onlyDrawIsIssued() {
+        drawQuad(1, 2, 3, 0);
+        mGl.resetCounts();
+
+        for (int i = 0; i < 10; i++) {
+            drawQuad(1, 2, 3, 0);
+        }
+
+        assertEquals(10, mGl.count("glDrawArrays"));
+        assertEquals(0, mGl.count("glBindFramebuffer"));
+        assertEquals(0, mGl.count("glViewport"));
+        assertEquals(0, mGl.count("glUseProgram"));
+        assertEquals(0, mGl.count("glBindBuffer"));
+        assertEquals(0, mGl.count("glVertexAttribPointer"));
+        assertEquals(0, mGl.count("glUniform1i"));
+        assertEquals(0, mGl.count("glActiveTexture"));
+        assertEquals(0, mGl.count("glBindTexture"));
+        assertEquals(0, mGl.count("glGetError"));
+        assertEquals(90, mState.getSkippedCount());
+    }
+
+    @Test
+    public void changedState_onlyDifferenceIsIssued() {
+        drawQuad(1, 2, 3, 0);
+        mGl.resetCounts();
+
+        drawQuad(1, 4, 3, 32);
+
+        assertEquals(1, mGl.count("glBindTexture"));
+        assertEquals(2, mGl.count("glVertexAttribPointer"));
+        assertEquals(0, mGl.count("glUseProgram"));
+        assertEquals(0, mGl.count("glBindBuffer"));
+        assertEquals(0, mGl.count("glUniform1i"));
+    }
+
+    @Test
+    public void textureBindings_arePerUnitAndTarget() {
+        mState.glActiveTexture(GlApi.GL_TEXTURE0);
+        mState.glBindTexture(GlApi.GL_TEXTURE_EXTERNAL_OES, 5);
+        mState.glBindTexture(GlApi.GL_TEXTURE_2D, 6);
+        mState.glActiveTexture(GlApi.GL_TEXTURE1);
+        mState.glBindTexture(GlApi.GL_TEXTURE_2D, 6);
+        assertEquals(3, mGl.count("glBindTexture"));
+
+        mState.glBindTexture(GlApi.GL_TEXTURE_2D, 6);
+        mState.glActiveTexture(GlApi.GL_TEXTURE0);
+        mState.glBindTexture(GlApi.GL_TEXTURE_EXTERNAL_OES, 5);
+        mState.glBindTexture(GlApi.GL_TEXTURE_2D, 6);
+
+        assertEquals(3, mGl.count("glBindTexture"));
+        assertEquals(3, mGl.count("glActiveTexture"));
+    }
+
+    @Test
+    public void uniforms_areKeptPerProgramUntilRelinked() {
+        mState.glUseProgram(1);
+        mState.glUniform1i(7, 0);
+        mState.glUniform1f(8, 0.5f);
+        mState.glUniform2f(9, 1.0f, 2.0f);
+        mState.glUseProgram(2);
+        mState.glUniform1i(7, 0);
+        mState.glUseProgram(1);
+        mState.glUniform1i(7, 0);
+        mState.glUniform1f(8, 0.5f);
+        mState.glUniform2f(9, 1.0f, 2.0f);
+        assertEquals(2, mGl.count("glUniform1i"));
+        assertEquals(1, mGl.count("glUniform1f"));
+        assertEquals(1, mGl.count("glUniform2f"));
+
+        mState.glUniform1f(8, 0.75f);
+        mState.glUniform2f(9, 1.0f, 3.0f);
+        assertEquals(2, mGl.count("glUniform1f"));
+        assertEquals(2, mGl.count("glUniform2f"));
+
+        // リンクし直すと初期値に戻るので、同じ値でも送る
+        mState.glLinkProgram(1);
+        mState.glUniform1i(7, 0);
+        assertEquals(3, mGl.count("glUniform1i"));
+    }
+
+    @Test
+    public void attribPointer_dependsOnBoundBuffer() {
+        mState.glBindBuffer(GlApi.GL_ARRAY_BUFFER, 3);
+        mState.glVertexAttribPointer(0, 2, GlApi.GL_FLOAT, false, 16, 0);
+        mState.glBindBuffer(GlApi.GL_ARRAY_BUFFER, 4);
+        mState.glVertexAttribPointer(0, 2, GlApi.GL_FLOAT, false, 16, 0);
+        mState.glVertexAttribPointer(0, 2, GlApi.GL_FLOAT, false, 16, 0);
+
+        assertEquals(2, mGl.count("glVertexAttribPointer"));
+        assertEquals(Integer.valueOf(0), mGl.getAttribOffset(0));
+    }
+
+    @Test
+    public void clientArray_unbindsBufferAndIsAlwaysIssued() {
+        FloatBuffer vertices = ByteBuffer.allocateDirect(32).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        mState.glBindBuffer(GlApi.GL_ARRAY_BUFFER, 3);
+        mState.glVertexAttribPointer(0, 2, GlApi.GL_FLOAT, false, 16, 0);
+
+        mState.glVertexAttribPointer(0, 2, GlApi.GL_FLOAT, false, 0, vertices);
+        mState.glVertexAttribPointer(0, 2, GlApi.GL_FLOAT, false, 0, vertices);
+        assertEquals(0, mGl.getBoundArrayBuffer());
+        assertEquals(2, mGl.count("glBindBuffer"));
+        assertEquals(3, mGl.count("glVertexAttribPointer"));
+
+        // クライアント配列で上書きされたので、同じオフセットでも送り直す
+        mState.glBindBuffer(GlApi.GL_ARRAY_BUFFER, 3);
+        mState.glVertexAttribPointer(0, 2, GlApi.GL_FLOAT, false, 16, 0);
+        assertEquals(4, mGl.count("glVertexAttribPointer"));
+    }
+
+    @Test
+    public void deletedObjects_areNoLongerBound() {
+        mState.glActiveTexture(GlApi.GL_TEXTURE0);
+        mState.glBindTexture(GlApi.GL_TEXTURE_2D, 5);
+        mState.glBindFramebuffer(GlApi.GL_FRAMEBUFFER, 6);
+        mState.glBindBuffer(GlApi.GL_ARRAY_BUFFER, 7);
+
+        mState.glDeleteTextures(1, new int[]{5}, 0);
+        mState.glDeleteFramebuffers(1, new int[]{6}, 0);
+        mState.glDeleteBuffers(1, new int[]{7}, 0);
+        mGl.resetCounts();
+
+        // 0は既にバインドされている。再利用された名前はバインドし直す
+        mState.glBindTexture(GlApi.GL_TEXTURE_2D, 0);
+        mState.glBindFramebuffer(GlApi.GL_FRAMEBUFFER, 0);
+        mState.glBindBuffer(GlApi.GL_ARRAY_BUFFER, 0);
+        assertEquals(0, mGl.count("glBindTexture"));
+        assertEquals(0, mGl.count("glBindFramebuffer"));
+        assertEquals(0, mGl.count("glBindBuffer"));
+
+        mState.glBindTexture(GlApi.GL_TEXTURE_2D, 5);
+        mState.glBindFramebuffer(GlApi.GL_FRAMEBUFFER, 6);
+        mState.glBindBuffer(GlApi.GL_ARRAY_BUFFER, 7);
+        assertEquals(1, mGl.count("glBindTexture"));
+        assertEquals(1, mGl.count("glBindFramebuffer"));
+        assertEquals(1, mGl.count("glBindBuffer"));
+    }
+
+    @Test
+    public void invalidate_issuesEverythingAgain() {
+        drawQuad(1, 2, 3, 0);
+        mGl.resetCounts();
+
+        mState.invalidate();
+        drawQuad(1, 2, 3, 0);
+
+        assertEquals(1, mGl.count("glUseProgram"));
+        assertEquals(1, mGl.count("glBindBuffer"));
+        assertEquals(2, mGl.count("glVertexAttribPointer"));
+        assertEquals(1, mGl.count("glUniform1i"));
+        assertEquals(1, mGl.count("glBindTexture"));
+        assertEquals(1, mGl.count("glViewport"));
+    }
+
+    @Test
+    public void invalidateTextureBinding_rebindsOnlyThatBinding() {
+        drawQuad(1, 2, 3, 0);
+        mState.glBindTexture(GlApi.GL_TEXTURE_2D, 9);
+        mGl.resetCounts();
+
+        mState.invalidateTextureBinding(GlApi.GL_TEXTURE_EXTERNAL_OES);
+        drawQuad(1, 2, 3, 0);
+        mState.glBindTexture(GlApi.GL_TEXTURE_2D, 9);
+
+        assertEquals(1, mGl.count("glBindTexture"));
+        assertEquals(0, mGl.count("glActiveTexture"));
+    }
+
+    @Test
+    public void validation_checksEveryIssuedCall() {
+        drawQuad(1, 2, 3, 0);
+        assertEquals(0, mGl.count("glGetError"));
+
+        mState.setValidation(true);
+        drawQuad(1, 4, 3, 0);
+        // glBindTextureとglDrawArraysだけが送られた
+        assertEquals(2, mGl.count("glGetError"));
+
+        mGl.setError(GL_INVALID_OPERATION);
+        try {
+            mState.glDrawArrays(GlApi.GL_TRIANGLE_STRIP, 0, 4);
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().startsWith("glDrawArrays"));
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.testcameraglsurfaceview;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Compares rendered RGBA images, rows bottom-up as glReadPixels returns them, against binary PPM files
+ * under src/test/resources/golden. Run the tests with -Dgolden.update=true to rewrite the files after an
+ * intended rendering change; on a mismatch the actual image is written to build/golden-diff.
+ */
+public class GoldenImages {
+
+    private static final String RESOURCE_DIR = "/golden/";
+    private static final File UPDATE_DIR = new File("src/test/resources/golden");
+    private static final File DIFF_DIR = new File("build/golden-diff");
+
+    private GoldenImages() {
+    }
+
+    /**
+     * @param tolerance largest difference allowed per channel; alpha is not compared
+     */
+    public static void assertMatches(String name, ByteBuffer rgba, int width, int height, int tolerance) throws IOException {
+        byte[] actual = toRgb(rgba, width, height);
+        if (Boolean.getBoolean("golden.update")) {
+            writePpm(new File(UPDATE_DIR, name + ".ppm"), actual, width, height);
+            return;
+        }
+
+        byte[] expected;
+        try (InputStream in = GoldenImages.class.getResourceAsStream(RESOURCE_DIR + name + ".ppm")) {
+            if (in == null) {
+                fail("no golden image " + name + ".ppm; run with -Dgolden.update=true to record it");
+            }
+            expected = readPpm(in, width, height);
+        }
+
+        int mismatched = 0;
+        int maxDifference = 0;
+        for (int i = 0; i < actual.length; i++) {
+            int difference = Math.abs((actual[i] & 0xff) - (expected[i] & 0xff));
+            maxDifference = Math.max(maxDifference, difference);
+            if (difference > tolerance) {
+                mismatched++;
+            }
+        }
+        if (mismatched > 0) {
+            File diff = new File(DIFF_DIR, name + ".ppm");
+            writePpm(diff, actual, width, height);
+            fail(name + ": " + mismatched + " channels differ by more than " + tolerance
+                    + " (max " + maxDifference + "), actual image written to " + diff.getPath());
+        }
+    }
+
+    /** Reads a binary PPM into RGBA rows bottom-up, the layout ReplayFrameSource uploads. */
+    public static byte[] readRgba(InputStream in, int width, int height) throws IOException {
+        byte[] rgb = readPpm(in, width, height);
+        byte[] rgba = new byte[width * height * 4];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int from = ((height - 1 - y) * width + x) * 3;
+                int to = (y * width + x) * 4;
+                rgba[to] = rgb[from];
+                rgba[to + 1] = rgb[from + 1];
+                rgba[to + 2] = rgb[from + 2];
+                rgba[to + 3] = (byte) 255;
+            }
+        }
+        return rgba;
+    }
+
+    /** RGB rows top-down, as stored in PPM. */
+    private static byte[] toRgb(ByteBuffer rgba, int width, int height) {
+        byte[] rgb = new byte[width * height * 3];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int from = rgba.position() + (y * width + x) * 4;
+                int to = ((height - 1 - y) * width + x) * 3;
+                rgb[to] = rgba.get(from);
+                rgb[to + 1] = rgba.get(from + 1);
+                rgb[to + 2] = rgba.get(from + 2);
+            }
+        }
+        return rgb;
+    }
+
+    private static byte[] readPpm(InputStream in, int width, int height) throws IOException {
+        String[] header = new String[4];
+        for (int i = 0; i < header.length; i++) {
+            header[i] = readToken(in);
+        }
+        if (!"P6".equals(header[0]) || Integer.parseInt(header[1]) != width
+                || Integer.parseInt(header[2]) != height || !"255".equals(header[3])) {
+            throw new IOException("expected a " + width + "x" + height + " P6 image");
+        }
+        byte[] rgb = new byte[width * height * 3];
+        int read = 0;
+        while (read < rgb.length) {
+            int count = in.read(rgb, read, rgb.length - read);
+            if (count < 0) {
+                throw new IOException("truncated image");
+            }
+            read += count;
+        }
+        return rgb;
+    }
+
+    private static String readToken(InputStream in) throws IOException {
+        ByteArrayOutputStream token = new ByteArrayOutputStream();
+        int c;
+        while ((c = in.read()) >= 0) {
+            if (Character.isWhitespace(c)) {
+                if (token.size() > 0) {
+                    break;
+                }
+            } else {
+                token.write(c);
+            }
+        }
+        return token.toString("US-ASCII");
+    }
+
+    private static void writePpm(File file, byte[] rgb, int width, int height) throws IOException {
+        file.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(("P6\n" + width + " " + height + "\n255\n").getBytes("US-ASCII"));
+            out.write(rgb);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class GpuFrameStatisticsTest {
+
+    private static final int GRID_SIZE = 4;
+    private static final int MAX_SAMPLE_SIZE = 64;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private RecordingGlApi mGl;
+    private ShaderCache mShaderCache;
+    private GpuFrameStatistics mStatistics;
+
+    @Before
+    public void setUp() {
+        mGl = new RecordingGlApi();
+        mShaderCache = new ShaderCache(16, null, Clock.SYSTEM);
+        mStatistics = new GpuFrameStatistics(mShaderCache, new GpuReadback(ReadbackFrame.newPool(2), 2, DIRECT, 1),
+                GRID_SIZE, GRID_SIZE, MAX_SAMPLE_SIZE);
+    }
+
+    private void start(int width, int height) {
+        mShaderCache.onSurfaceCreated(mGl);
+        mStatistics.onSurfaceCreated(mGl);
+        mStatistics.setInputSize(width, height);
+    }
+
+    @Test
+    public void onePassPerLevelAndOneSmallRead() {
+        start(640, 480);
+        mGl.resetCounts();
+
+        mStatistics.process(mGl, GlApi.GL_TEXTURE_EXTERNAL_OES, 1, 100);
+
+        // 64, 32, 16, 8, 4
+        assertEquals(5, mStatistics.getPlan().getLevelCount());
+        assertEquals(5, mGl.count("glDrawArrays"));
+        // レベル0の2枚と残りの4レベル
+        assertEquals(6, mGl.getGeneratedFramebuffers().size());
+        assertEquals(1, mGl.count("glReadPixels"));
+        assertEquals(0, mGl.getBoundFramebuffer());
+        assertEquals(1, mStatistics.getProcessedCount());
+    }
+
+    @Test
+    public void targetsAreKeptUntilInputSizeChanges() {
+        start(640, 480);
+        mStatistics.process(mGl, GlApi.GL_TEXTURE_EXTERNAL_OES, 1, 100);
+        mStatistics.setInputSize(640, 480);
+        mStatistics.process(mGl, GlApi.GL_TEXTURE_EXTERNAL_OES, 1, 200);
+        assertEquals(1, mStatistics.getAllocationCount());
+        assertEquals(0, mGl.count("glDeleteFramebuffers"));
+
+        mStatistics.setInputSize(320, 240);
+        mStatistics.process(mGl, GlApi.GL_TEXTURE_EXTERNAL_OES, 1, 300);
+
+        assertEquals(2, mStatistics.getAllocationCount());
+        assertEquals(1, mGl.count("glDeleteFramebuffers"));
+    }
+
+    @Test
+    public void disabledIssuesNoGlCalls() {
+        start(640, 480);
+        mStatistics.setEnabled(false);
+        mGl.resetCounts();
+
+        mStatistics.process(mGl, GlApi.GL_TEXTURE_EXTERNAL_OES, 1, 100);
+
+        assertEquals(0, mGl.count("glDrawArrays"));
+        assertEquals(0, mGl.count("glBindFramebuffer"));
+        assertEquals(0, mGl.count("glReadPixels"));
+        assertEquals(0, mStatistics.getProcessedCount());
+    }
+
+    @Test
+    public void decodedGridReachesListenerAndLatest() {
+        final List<Float> lumas = new ArrayList<>();
+        mStatistics.setListener(new GpuFrameStatistics.Listener() {
+            @Override
+            public void onStatistics(FrameStatistics statistics) {
+                assertEquals(GRID_SIZE, statistics.getGridWidth());
+                lumas.add(statistics.getMeanLuma());
+            }
+        });
+        FrameStatistics latest = new FrameStatistics();
+        assertFalse(mStatistics.getLatest(latest));
+        mGl.setReadPixelsValue((byte) 51);
+        start(640, 480);
+
+        mStatistics.process(mGl, GlApi.GL_TEXTURE_EXTERNAL_OES, 1, 100);
+
+        assertEquals(1, lumas.size());
+        assertEquals(0.2f, lumas.get(0), 1e-6);
+        assertTrue(mStatistics.getLatest(latest));
+        assertEquals(100, latest.getTimestamp());
+        assertEquals(0.2f, latest.getMotion(), 1e-6);
+    }
+
+    @Test
+    public void releaseDeletesTargets() {
+        start(640, 480);
+        mStatistics.process(mGl, GlApi.GL_TEXTURE_EXTERNAL_OES, 1, 100);
+
+        mStatistics.release(mGl);
+        mStatistics.process(mGl, GlApi.GL_TEXTURE_EXTERNAL_OES, 1, 200);
+
+        assertEquals(1, mGl.count("glDeleteFramebuffers"));
+        assertEquals(2, mStatistics.getAllocationCount());
+    }
+}
@@ -0,0 +1,343 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+public class GpuReadbackTest {
+
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 4;
+
+    private RecordingGlApi mGl;
+    private FrameBufferPool<ReadbackFrame> mPool;
+    private ManualExecutor mExecutor;
+
+    private static class ManualExecutor implements Executor {
+        final ArrayDeque<Runnable> mPending = new ArrayDeque<>();
+        boolean mReject = false;
+
+        @Override
+        public void execute(Runnable command) {
+            if (mReject) {
+                throw new RejectedExecutionException();
+            }
+            mPending.add(command);
+        }
+
+        void runAll() {
+            while (!mPending.isEmpty()) {
+                mPending.poll().run();
+            }
+        }
+    }
+
+    /** Records timestamps and the first byte of every delivered frame. */
+    private static class CollectingConsumer implements ReadbackConsumer {
+        final List<Long> mTimestamps = new ArrayList<>();
+        final List<Byte> mFirstBytes = new ArrayList<>();
+        int mLastLimit;
+
+        @Override
+        public void onFrame(ReadbackFrame frame) {
+            mTimestamps.add(frame.getTimestamp());
+            mFirstBytes.add(frame.getBuffer().get(0));
+            mLastLimit = frame.getBuffer().limit();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        mGl = new RecordingGlApi();
+        mPool = ReadbackFrame.newPool(3);
+        mExecutor = new ManualExecutor();
+    }
+
+    private GpuReadback newReadback(String version, int syncFrameInterval) {
+        mGl.setVersion(version);
+        GpuReadback readback = new GpuReadback(mPool, 2, mExecutor, syncFrameInterval);
+        readback.onSurfaceCreated(mGl);
+        readback.setRegion(0, 0, WIDTH, HEIGHT);
+        return readback;
+    }
+
+    @Test
+    public void es2StreamsAtReducedRate() {
+        GpuReadback readback = newReadback("OpenGL ES 2.0", 3);
+        CollectingConsumer consumer = new CollectingConsumer();
+        readback.setStreamConsumer(consumer);
+
+        for (int i = 0; i < 9; i++) {
+            readback.onFrameRendered(mGl, i);
+            mExecutor.runAll();
+        }
+
+        assertFalse(readback.isUsingPixelBuffers());
+        assertEquals(3, mGl.count("glReadPixels"));
+        assertEquals(0, mGl.count("glFenceSync"));
+        assertEquals(3, consumer.mTimestamps.size());
+        assertEquals(Long.valueOf(0), consumer.mTimestamps.get(0));
+        assertEquals(Long.valueOf(3), consumer.mTimestamps.get(1));
+        assertEquals(WIDTH * HEIGHT * 4, consumer.mLastLimit);
+    }
+
+    @Test
+    public void es2SnapshotIsReadOnTheNextFrame() {
+        GpuReadback readback = newReadback("OpenGL ES 2.0", 30);
+        CollectingConsumer stream = new CollectingConsumer();
+        readback.setStreamConsumer(stream);
+        readback.onFrameRendered(mGl, 1);
+        readback.onFrameRendered(mGl, 2);
+
+        CollectingConsumer snapshot = new CollectingConsumer();
+        readback.requestSnapshot(snapshot);
+        readback.onFrameRendered(mGl, 3);
+        mExecutor.runAll();
+
+        assertEquals(2, mGl.count("glReadPixels"));
+        assertEquals(1, snapshot.mTimestamps.size());
+        assertEquals(Long.valueOf(3), snapshot.mTimestamps.get(0));
+        assertEquals(2, stream.mTimestamps.size());
+    }
+
+    @Test
+    public void es3DriverOnEs2ContextReadsWithoutPixelBuffers() {
+        GpuReadback readback = new GpuReadback(mPool, 2, mExecutor, 1);
+        mGl.setVersion("OpenGL ES 3.2");
+        mGl.setClientVersion(2);
+        readback.onSurfaceCreated(mGl);
+        readback.setRegion(0, 0, WIDTH, HEIGHT);
+        readback.setStreamConsumer(new CollectingConsumer());
+
+        readback.onFrameRendered(mGl, 1);
+        mExecutor.runAll();
+
+        assertFalse(readback.isUsingPixelBuffers());
+        assertEquals(1, mGl.count("glReadPixels"));
+        assertEquals(0, mGl.count("glReadPixelsToBuffer"));
+        assertEquals(0, mGl.count("glFenceSync"));
+    }
+
+    @Test
+    public void es3ReadsThroughPixelBuffersOneFrameLate() {
+        GpuReadback readback = newReadback("OpenGL ES 3.2", 3);
+        CollectingConsumer consumer = new CollectingConsumer();
+        readback.setStreamConsumer(consumer);
+        mGl.setReadPixelsValue((byte) 7);
+
+        readback.onFrameRendered(mGl, 100);
+        mExecutor.runAll();
+        assertTrue(readback.isUsingPixelBuffers());
+        assertEquals(1, readback.getInFlightCount());
+        assertTrue(consumer.mTimestamps.isEmpty());
+
+        readback.onFrameRendered(mGl, 200);
+        mExecutor.runAll();
+
+        assertEquals(0, mGl.count("glReadPixels"));
+        assertEquals(2, mGl.count("glReadPixelsToBuffer"));
+        assertEquals(1, consumer.mTimestamps.size());
+        assertEquals(Long.valueOf(100), consumer.mTimestamps.get(0));
+        assertEquals(Byte.valueOf((byte) 7), consumer.mFirstBytes.get(0));
+        assertEquals(1, mGl.count("glMapBufferRange"));
+        assertEquals(1, mGl.count("glUnmapBuffer"));
+    }
+
+    @Test
+    public void busyPixelBuffersSkipFrames() {
+        GpuReadback readback = newReadback("OpenGL ES 3.0", 1);
+        readback.setStreamConsumer(new CollectingConsumer());
+        mGl.setFenceLatency(100);
+
+        for (int i = 0; i < 10; i++) {
+            readback.onFrameRendered(mGl, i);
+        }
+
+        assertEquals(2, readback.getInFlightCount());
+        assertEquals(2, readback.getIssuedCount());
+        assertEquals(8, readback.getSkippedBusyCount());
+        assertEquals(2, mGl.count("glGenBuffers"));
+        assertEquals(2, mGl.getLiveSyncCount());
+    }
+
+    @Test
+    public void slowFenceIsCollectedOnceSignaled() {
+        GpuReadback readback = newReadback("OpenGL ES 3.0", 1);
+        CollectingConsumer consumer = new CollectingConsumer();
+        readback.setStreamConsumer(consumer);
+        mGl.setFenceLatency(2);
+
+        readback.onFrameRendered(mGl, 1);
+        readback.onFrameRendered(mGl, 2);
+        readback.onFrameRendered(mGl, 3);
+        mExecutor.runAll();
+        assertTrue(consumer.mTimestamps.isEmpty());
+
+        readback.onFrameRendered(mGl, 4);
+        mExecutor.runAll();
+
+        assertEquals(Long.valueOf(1), consumer.mTimestamps.get(0));
+        assertEquals(1, readback.getSkippedBusyCount());
+    }
+
+    @Test
+    public void exhaustedPoolDropsFrameAndFreesPixelBuffer() {
+        GpuReadback readback = newReadback("OpenGL ES 3.0", 1);
+        CollectingConsumer consumer = new CollectingConsumer();
+        readback.setStreamConsumer(consumer);
+
+        // 消費側が止まっている
+        for (int i = 0; i < 10; i++) {
+            readback.onFrameRendered(mGl, i);
+        }
+
+        assertEquals(0, mPool.getFreeCount());
+        assertEquals(6, readback.getDroppedCount());
+        assertEquals(0, readback.getSkippedBusyCount());
+        assertEquals(1, readback.getInFlightCount());
+
+        mExecutor.runAll();
+        assertEquals(3, consumer.mTimestamps.size());
+        assertEquals(3, mPool.getFreeCount());
+    }
+
+    @Test
+    public void steadyStreamReusesBuffers() {
+        GpuReadback readback = newReadback("OpenGL ES 3.0", 1);
+        readback.setStreamConsumer(new CollectingConsumer());
+
+        for (int i = 0; i < 100; i++) {
+            readback.onFrameRendered(mGl, i);
+            mExecutor.runAll();
+        }
+
+        assertEquals(99, readback.getDeliveredCount());
+        assertTrue(mPool.getAllocationCount() <= mPool.getSize());
+        assertEquals(2, mGl.count("glGenBuffers"));
+        assertEquals(2, mGl.count("glBufferData"));
+    }
+
+    @Test
+    public void rejectedDeliveryReturnsBuffer() {
+        GpuReadback readback = newReadback("OpenGL ES 2.0", 1);
+        readback.setStreamConsumer(new CollectingConsumer());
+        mExecutor.mReject = true;
+
+        readback.onFrameRendered(mGl, 1);
+
+        assertEquals(1, readback.getDroppedCount());
+        assertEquals(3, mPool.getFreeCount());
+    }
+
+    @Test
+    public void throwingConsumerDoesNotLeakBuffer() {
+        GpuReadback readback = newReadback("OpenGL ES 2.0", 1);
+        CollectingConsumer snapshot = new CollectingConsumer();
+        readback.setStreamConsumer(new ReadbackConsumer() {
+            @Override
+            public void onFrame(ReadbackFrame frame) {
+                throw new IllegalStateException("consumer failed");
+            }
+        });
+        readback.requestSnapshot(snapshot);
+
+        readback.onFrameRendered(mGl, 1);
+        mExecutor.runAll();
+
+        assertEquals(1, readback.getFailedConsumerCount());
+        assertEquals(1, snapshot.mTimestamps.size());
+        assertEquals(3, mPool.getFreeCount());
+    }
+
+    @Test
+    public void snapshotIsDeliveredOnce() {
+        GpuReadback readback = newReadback("OpenGL ES 3.0", 1);
+        CollectingConsumer snapshot = new CollectingConsumer();
+        readback.requestSnapshot(snapshot);
+
+        for (int i = 0; i < 5; i++) {
+            readback.onFrameRendered(mGl, i);
+            mExecutor.runAll();
+        }
+
+        assertEquals(1, snapshot.mTimestamps.size());
+        assertEquals(1, readback.getIssuedCount());
+    }
+
+    @Test
+    public void droppedSnapshotIsRetried() {
+        mPool = ReadbackFrame.newPool(1);
+        GpuReadback readback = newReadback("OpenGL ES 3.0", 1);
+        readback.setStreamConsumer(new CollectingConsumer());
+        readback.onFrameRendered(mGl, 1);
+        readback.onFrameRendered(mGl, 2);
+        CollectingConsumer snapshot = new CollectingConsumer();
+        readback.requestSnapshot(snapshot);
+        readback.onFrameRendered(mGl, 3);
+        // 3のフレームはバッファが空かずに捨てられ、スナップショットは4のフレームで読み直す
+        readback.onFrameRendered(mGl, 4);
+        assertEquals(2, readback.getDroppedCount());
+
+        mExecutor.runAll();
+        readback.onFrameRendered(mGl, 5);
+        mExecutor.runAll();
+
+        assertEquals(1, snapshot.mTimestamps.size());
+        assertEquals(Long.valueOf(4), snapshot.mTimestamps.get(0));
+    }
+
+    @Test
+    public void releaseDeletesPixelBuffersAndFences() {
+        GpuReadback readback = newReadback("OpenGL ES 3.0", 1);
+        readback.setStreamConsumer(new CollectingConsumer());
+        mGl.setFenceLatency(100);
+        readback.onFrameRendered(mGl, 1);
+        readback.onFrameRendered(mGl, 2);
+
+        readback.release(mGl);
+
+        assertEquals(2, mGl.count("glDeleteBuffers"));
+        assertEquals(0, mGl.getLiveSyncCount());
+        assertEquals(0, readback.getInFlightCount());
+        assertEquals(2, readback.getDroppedCount());
+    }
+
+    @Test
+    public void largerRegionReallocatesPixelBuffer() {
+        GpuReadback readback = newReadback("OpenGL ES 3.0", 1);
+        CollectingConsumer consumer = new CollectingConsumer();
+        readback.setStreamConsumer(consumer);
+        readback.onFrameRendered(mGl, 1);
+        readback.onFrameRendered(mGl, 2);
+
+        readback.setRegion(0, 0, WIDTH * 2, HEIGHT * 2);
+        readback.onFrameRendered(mGl, 3);
+        readback.onFrameRendered(mGl, 4);
+        mExecutor.runAll();
+
+        assertEquals(4, mGl.count("glBufferData"));
+        assertEquals(3, consumer.mTimestamps.size());
+        assertEquals(WIDTH * HEIGHT * 4 * 4, consumer.mLastLimit);
+    }
+
+    @Test
+    public void noConsumersIssuesNoReads() {
+        GpuReadback readback = newReadback("OpenGL ES 3.0", 1);
+        mGl.resetCounts();
+
+        for (int i = 0; i < 10; i++) {
+            readback.onFrameRendered(mGl, i);
+        }
+
+        assertEquals(0, mGl.count("glReadPixelsToBuffer"));
+        assertEquals(0, mGl.count("glFenceSync"));
+        assertEquals(0, readback.getIssuedCount());
+    }
+}
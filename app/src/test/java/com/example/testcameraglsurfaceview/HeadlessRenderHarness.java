@@ -0,0 +1,87 @@
+package com.example.testcameraglsurfaceview;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs CameraRenderer without a device: a FrameSource drawn into a SoftwareGlApi window, readback
+ * delivered on the calling thread, and per-stage timing from RenderStageTimer. Tests use it to compare
+ * the output against golden images and to report where frame time goes.
+ */
+public class HeadlessRenderHarness {
+
+    private static final int TARGET_FPS = 30;
+    private static final int SHADER_CACHE_CAPACITY = 16;
+    private static final int METRICS_RING_CAPACITY = 256;
+    private static final int READBACK_POOL_SIZE = 2;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final SoftwareGlApi mGl;
+    private final CameraRenderer mRenderer;
+
+    public HeadlessRenderHarness(int surfaceWidth, int surfaceHeight, FrameSource source) {
+        mGl = new SoftwareGlApi(surfaceWidth, surfaceHeight);
+        mRenderer = new CameraRenderer(mGl, source,
+                new ShaderCache(SHADER_CACHE_CAPACITY, null, Clock.SYSTEM),
+                new FrameMetricsRecorder(METRICS_RING_CAPACITY, 1000000000L / TARGET_FPS, true),
+                new GpuReadback(ReadbackFrame.newPool(READBACK_POOL_SIZE), 2, DIRECT, 1),
+                Clock.SYSTEM);
+    }
+
+    /** Creates the context resources and sizes the surface, as RenderLoop does before the first frame. */
+    public HeadlessRenderHarness start() {
+        mRenderer.onSurfaceCreated();
+        mRenderer.onSurfaceChanged(mGl.getWindowWidth(), mGl.getWindowHeight());
+        return this;
+    }
+
+    /** Simulates losing the context: releases the resources and creates them again. */
+    public void recreateContext() {
+        mRenderer.releaseContextResources();
+        start();
+    }
+
+    /** @return frames actually drawn */
+    public int renderFrames(int count) {
+        int drawn = 0;
+        for (int i = 0; i < count; i++) {
+            if (mRenderer.drawFrame()) {
+                drawn++;
+            }
+        }
+        return drawn;
+    }
+
+    /** Current window contents, RGBA rows bottom-up. */
+    public ByteBuffer readWindow() {
+        ByteBuffer pixels = ByteBuffer.allocateDirect(mGl.getWindowWidth() * mGl.getWindowHeight() * 4)
+                .order(ByteOrder.nativeOrder());
+        mGl.glBindFramebuffer(GlApi.GL_FRAMEBUFFER, 0);
+        mGl.glReadPixels(0, 0, mGl.getWindowWidth(), mGl.getWindowHeight(), GlApi.GL_RGBA, GlApi.GL_UNSIGNED_BYTE, pixels);
+        return pixels;
+    }
+
+    public CameraRenderer getRenderer() {
+        return mRenderer;
+    }
+
+    public SoftwareGlApi getGl() {
+        return mGl;
+    }
+
+    /** Frame counts and draw time from FrameMetricsRecorder, then one line per RenderStageTimer stage. */
+    public String formatReport() {
+        LatencyHistogram draw = mRenderer.getStageTimer().getHistogram(RenderStageTimer.STAGE_DRAW);
+        return String.format(Locale.US, "%dx%d frames %d draws %d%n",
+                mGl.getWindowWidth(), mGl.getWindowHeight(), draw.getCount(), mGl.getDrawCount())
+                + mRenderer.getStageTimer().formatReport();
+    }
+}
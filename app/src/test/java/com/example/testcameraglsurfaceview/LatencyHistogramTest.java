@@ -0,0 +1,76 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketBounds_containTheirValues() {
+        long[] values = {0, 1, 63, 64, 65, 127, 128, 1000, 16666667, 33333333, 1L << 40, LatencyHistogram.MAX_TRACKABLE_VALUE};
+        for (long value : values) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(LatencyHistogram.lowestEquivalentValue(index) <= value);
+            assertTrue(LatencyHistogram.highestEquivalentValue(index) >= value);
+        }
+    }
+
+    @Test
+    public void buckets_areContiguous() {
+        for (int i = 0; i < LatencyHistogram.bucketIndex(LatencyHistogram.MAX_TRACKABLE_VALUE); i++) {
+            assertEquals(LatencyHistogram.highestEquivalentValue(i) + 1, LatencyHistogram.lowestEquivalentValue(i + 1));
+        }
+    }
+
+    @Test
+    public void percentiles_withinRelativePrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000000L);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertNear(500000000L, histogram.getValueAtPercentile(50));
+        assertNear(900000000L, histogram.getValueAtPercentile(90));
+        assertNear(990000000L, histogram.getValueAtPercentile(99));
+        assertEquals(1000000000L, histogram.getValueAtPercentile(100));
+        assertEquals(1000000L, histogram.getMin());
+        assertEquals(1000000000L, histogram.getMax());
+        assertEquals(500500000L, histogram.getMean());
+    }
+
+    @Test
+    public void empty_reportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getMean());
+    }
+
+    @Test
+    public void outOfRangeValues_areIgnoredOrClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(1, histogram.getCount());
+        assertEquals(LatencyHistogram.MAX_TRACKABLE_VALUE, histogram.getMax());
+    }
+
+    @Test
+    public void reset_clearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    private static void assertNear(long expected, long actual) {
+        assertTrue("expected ~" + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 32);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class MuxerQueueTest {
+
+    private static final Object FORMAT = new Object();
+
+    private final RecordingMuxerSink mSink = new RecordingMuxerSink();
+    private final EncodedBufferInfo mInfo = new EncodedBufferInfo();
+
+    private boolean offer(MuxerQueue queue, int size, long ptsUs, int flags) {
+        ByteBuffer data = ByteBuffer.allocate(size);
+        for (int i = 0; i < size; i++) {
+            data.put(i, (byte) ptsUs);
+        }
+        mInfo.set(0, size, ptsUs, flags);
+        return queue.offer(data, mInfo);
+    }
+
+    @Test
+    public void samplesBeforeFormat_waitForTrack() {
+        MuxerQueue queue = new MuxerQueue(mSink, 4, 16);
+
+        offer(queue, 8, 1, VideoEncoder.BUFFER_FLAG_KEY_FRAME);
+        assertFalse(queue.writePending());
+        assertFalse(mSink.started);
+        assertEquals(1, queue.getPendingCount());
+
+        queue.setFormat(FORMAT);
+        queue.writePending();
+        assertTrue(mSink.started);
+        assertEquals(1, mSink.samples.size());
+    }
+
+    @Test
+    public void offer_copiesAndRestoresSourceBuffer() {
+        MuxerQueue queue = new MuxerQueue(mSink, 4, 2);
+        queue.setFormat(FORMAT);
+        ByteBuffer data = ByteBuffer.wrap(new byte[]{0, 0, 1, 2, 3, 4, 5, 0});
+        data.position(1).limit(7);
+        mInfo.set(2, 5, 0, VideoEncoder.BUFFER_FLAG_KEY_FRAME);
+
+        assertTrue(queue.offer(data, mInfo));
+        data.put(2, (byte) 99);
+        queue.writePending();
+
+        assertEquals(1, data.position());
+        assertEquals(7, data.limit());
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5}, mSink.samples.get(0).data);
+    }
+
+    @Test
+    public void full_dropsUntilNextKeyFrame() {
+        MuxerQueue queue = new MuxerQueue(mSink, 2, 16);
+        queue.setFormat(FORMAT);
+
+        assertTrue(offer(queue, 4, 0, VideoEncoder.BUFFER_FLAG_KEY_FRAME));
+        assertTrue(offer(queue, 4, 1, 0));
+        assertFalse(offer(queue, 4, 2, 0));
+        queue.writePending();
+        // 空きはあるがキーフレームまでは捨てる
+        assertFalse(offer(queue, 4, 3, 0));
+        assertTrue(offer(queue, 4, 4, VideoEncoder.BUFFER_FLAG_KEY_FRAME));
+        assertTrue(offer(queue, 4, 5, 0));
+        queue.writePending();
+
+        assertEquals(2, queue.getDroppedCount());
+        assertEquals(4, queue.getWrittenCount());
+        assertEquals(4, mSink.samples.get(2).presentationTimeUs);
+    }
+
+    @Test
+    public void finish_writesRemainingThenStopsOnce() {
+        MuxerQueue queue = new MuxerQueue(mSink, 4, 16);
+        queue.setFormat(FORMAT);
+        offer(queue, 4, 0, VideoEncoder.BUFFER_FLAG_KEY_FRAME);
+        offer(queue, 4, 1, 0);
+        queue.finish();
+
+        assertFalse(offer(queue, 4, 2, 0));
+        assertTrue(queue.writePending());
+        assertTrue(queue.isFinished());
+        assertEquals(2, mSink.samples.size());
+        assertTrue(mSink.stopped);
+        assertTrue(mSink.released);
+        assertTrue(queue.writePending());
+    }
+
+    @Test
+    public void largerSample_growsPooledBuffer() {
+        MuxerQueue queue = new MuxerQueue(mSink, 1, 4);
+        queue.setFormat(FORMAT);
+
+        assertTrue(offer(queue, 100, 0, VideoEncoder.BUFFER_FLAG_KEY_FRAME));
+        queue.writePending();
+
+        assertEquals(100, mSink.samples.get(0).data.length);
+    }
+
+    @Test
+    public void writerThread_writesAndFinishes() throws Exception {
+        MuxerQueue queue = new MuxerQueue(mSink, 8, 16);
+        queue.start();
+        queue.setFormat(FORMAT);
+        for (int i = 0; i < 100; i++) {
+            while (!offer(queue, 16, i, VideoEncoder.BUFFER_FLAG_KEY_FRAME)) {
+                Thread.sleep(1);
+            }
+        }
+        queue.finish();
+
+        assertTrue(queue.awaitFinished());
+        assertEquals(queue.getWrittenCount(), mSink.samples.size());
+        long last = -1;
+        for (RecordingMuxerSink.WrittenSample sample : mSink.samples) {
+            assertTrue(sample.presentationTimeUs > last);
+            last = sample.presentationTimeUs;
+        }
+        assertTrue(mSink.stopped);
+    }
+}
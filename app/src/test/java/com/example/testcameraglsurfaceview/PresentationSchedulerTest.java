@@ -0,0 +1,82 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PresentationSchedulerTest {
+
+    private static final long VSYNC_PERIOD = 16666667L;
+    private static final long CAMERA_INTERVAL = 33333333L;
+    private static final int LATENCY_FRAMES = 2;
+
+    @Test
+    public void firstFrameIsShownLatencyFramesAhead() {
+        PresentationScheduler scheduler = new PresentationScheduler(VSYNC_PERIOD, LATENCY_FRAMES);
+
+        assertEquals(5000000000L + 2 * VSYNC_PERIOD, scheduler.schedule(1000000000L, 5000000000L));
+        assertEquals(1, scheduler.getReanchorCount());
+    }
+
+    @Test
+    public void keepsCameraSpacingWhenDrawnLate() {
+        PresentationScheduler scheduler = new PresentationScheduler(VSYNC_PERIOD, LATENCY_FRAMES);
+        long previous = 0;
+        for (int i = 0; i < 12; i++) {
+            long camera = 1000000000L + i * CAMERA_INTERVAL;
+            // 3フレームに1回は到着が遅れて1vsync後に描かれる
+            long vsync = 5000000000L + i * 2 * VSYNC_PERIOD + (i % 3 == 1 ? VSYNC_PERIOD : 0);
+            long presentation = scheduler.schedule(camera, vsync);
+            if (i > 0) {
+                assertEquals("frame " + i, CAMERA_INTERVAL, presentation - previous);
+            }
+            assertTrue(presentation >= vsync + VSYNC_PERIOD * 3 / 4);
+            previous = presentation;
+        }
+        assertEquals(1, scheduler.getReanchorCount());
+        assertEquals(12, scheduler.getScheduledCount());
+    }
+
+    @Test
+    public void reanchorsWhenFrameWouldMissNextVsync() {
+        PresentationScheduler scheduler = new PresentationScheduler(VSYNC_PERIOD, LATENCY_FRAMES);
+        scheduler.schedule(1000000000L, 5000000000L);
+
+        // 描画スレッドが止まっていて、カメラの間隔より遅れて描かれた
+        long vsync = 5000000000L + 10 * VSYNC_PERIOD;
+        long presentation = scheduler.schedule(1000000000L + CAMERA_INTERVAL, vsync);
+
+        assertEquals(vsync + 2 * VSYNC_PERIOD, presentation);
+        assertEquals(2, scheduler.getReanchorCount());
+    }
+
+    @Test
+    public void reanchorsWhenFrameWouldQueueTooLong() {
+        PresentationScheduler scheduler = new PresentationScheduler(VSYNC_PERIOD, LATENCY_FRAMES);
+        long first = scheduler.schedule(1000000000L, 5000000000L);
+
+        // タイムスタンプの基準が変わって大きく先へ飛んだ
+        long vsync = 5000000000L + 2 * VSYNC_PERIOD;
+        long presentation = scheduler.schedule(9000000000L, vsync);
+
+        assertEquals(vsync + 2 * VSYNC_PERIOD, presentation);
+        assertTrue(presentation > first);
+        assertEquals(2, scheduler.getReanchorCount());
+    }
+
+    @Test
+    public void neverGoesBackwards() {
+        PresentationScheduler scheduler = new PresentationScheduler(VSYNC_PERIOD, LATENCY_FRAMES);
+        long first = scheduler.schedule(1000000000L, 5000000000L);
+
+        scheduler.reset();
+        long second = scheduler.schedule(2000000000L, 5000000000L - VSYNC_PERIOD);
+
+        assertEquals(first + VSYNC_PERIOD, second);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroLatency() {
+        new PresentationScheduler(VSYNC_PERIOD, 0);
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PreviewGeometryTest {
+
+    @Test
+    public void landscapeDisplay_fillsHeight() {
+        assertEquals(new Resolution(1440, 1080), PreviewGeometry.fitToDisplay(2280, 1080, 1600, 1200));
+    }
+
+    @Test
+    public void portraitDisplay_fillsWidthAndSwapsAxes() {
+        assertEquals(new Resolution(1080, 1440), PreviewGeometry.fitToDisplay(1080, 2280, 1600, 1200));
+    }
+
+    @Test
+    public void centerOnDisplay_centersImage() {
+        assertEquals(new Viewport(0, 420, 1080, 1440), PreviewGeometry.centerOnDisplay(1080, 2280, 1080, 1440));
+        assertEquals(new Viewport(420, 0, 1440, 1080), PreviewGeometry.centerOnDisplay(2280, 1080, 1440, 1080));
+    }
+
+    @Test
+    public void textureCoordinates_rotateCornersClockwise() {
+        float[] base = TextureCoordinates.forRotation(CameraRotation.ROTATION_0);
+        CameraRotation[] rotations = CameraRotation.values();
+        for (int r = 1; r < rotations.length; r++) {
+            float[] coords = TextureCoordinates.forRotation(rotations[r]);
+            float[] previous = TextureCoordinates.forRotation(rotations[r - 1]);
+            assertEquals(base.length, coords.length);
+            for (int i = 0; i < coords.length; i += 2) {
+                // 90度回転: (s, t) -> (1 - t, s)
+                assertEquals(1.0f - previous[i + 1], coords[i], 0);
+                assertEquals(previous[i], coords[i + 1], 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class QuadGeometryTest {
+
+    private static final float EPSILON = 1e-5f;
+    private static final int[][] CONTENT_SIZES = {{1600, 1200}, {1920, 1080}, {1000, 1000}, {1080, 1920}};
+    private static final int[][] VIEW_SIZES = {{1080, 2280}, {2280, 1080}, {1000, 1000}, {1440, 1080}};
+
+    private static final int TOP_LEFT = 0;
+    private static final int BOTTOM_LEFT = 1;
+    private static final int TOP_RIGHT = 2;
+
+    private static float x(float[] v, CameraRotation r, int vertex) {
+        return v[base(r, vertex)];
+    }
+
+    private static float y(float[] v, CameraRotation r, int vertex) {
+        return v[base(r, vertex) + 1];
+    }
+
+    private static float s(float[] v, CameraRotation r, int vertex) {
+        return v[base(r, vertex) + 2];
+    }
+
+    private static float t(float[] v, CameraRotation r, int vertex) {
+        return v[base(r, vertex) + 3];
+    }
+
+    private static int base(CameraRotation r, int vertex) {
+        return (r.ordinal() * QuadGeometry.VERTEX_COUNT + vertex) * QuadGeometry.FLOATS_PER_VERTEX;
+    }
+
+    private static double displayedAspect(CameraRotation r, int[] content) {
+        boolean swap = r == CameraRotation.ROTATION_90 || r == CameraRotation.ROTATION_270;
+        return swap ? (double) content[1] / content[0] : (double) content[0] / content[1];
+    }
+
+    @Test
+    public void stretch_matchesFullscreenQuadAndRotationTexCoords() {
+        for (int[] content : CONTENT_SIZES) {
+            for (int[] view : VIEW_SIZES) {
+                float[] v = new float[QuadGeometry.FLOAT_COUNT];
+                QuadGeometry.build(v, QuadGeometry.ScaleMode.STRETCH, content[0], content[1], view[0], view[1]);
+                for (CameraRotation r : CameraRotation.values()) {
+                    float[] expected = TextureCoordinates.forRotation(r);
+                    for (int i = 0; i < QuadGeometry.VERTEX_COUNT; i++) {
+                        assertEquals(i < 2 ? -1 : 1, x(v, r, i), EPSILON);
+                        assertEquals(i % 2 == 0 ? 1 : -1, y(v, r, i), EPSILON);
+                        assertEquals(expected[i * 2], s(v, r, i), EPSILON);
+                        assertEquals(expected[i * 2 + 1], t(v, r, i), EPSILON);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void letterbox_keepsImageAspectInsideView() {
+        for (int[] content : CONTENT_SIZES) {
+            for (int[] view : VIEW_SIZES) {
+                float[] v = new float[QuadGeometry.FLOAT_COUNT];
+                QuadGeometry.build(v, QuadGeometry.ScaleMode.LETTERBOX, content[0], content[1], view[0], view[1]);
+                for (CameraRotation r : CameraRotation.values()) {
+                    String what = r + " " + content[0] + "x" + content[1] + " in " + view[0] + "x" + view[1];
+                    float scaleX = x(v, r, TOP_RIGHT);
+                    float scaleY = y(v, r, TOP_LEFT);
+                    assertTrue(what, scaleX <= 1 + EPSILON && scaleY <= 1 + EPSILON);
+                    assertEquals(what, 1.0f, Math.max(scaleX, scaleY), EPSILON);
+                    assertEquals(what, -scaleX, x(v, r, TOP_LEFT), EPSILON);
+                    assertEquals(what, -scaleY, y(v, r, BOTTOM_LEFT), EPSILON);
+
+                    double shownAspect = (scaleX * view[0]) / (scaleY * view[1]);
+                    assertEquals(what, displayedAspect(r, content), shownAspect, 1e-3);
+
+                    float[] expected = TextureCoordinates.forRotation(r);
+                    for (int i = 0; i < QuadGeometry.VERTEX_COUNT; i++) {
+                        assertEquals(what, expected[i * 2], s(v, r, i), EPSILON);
+                        assertEquals(what, expected[i * 2 + 1], t(v, r, i), EPSILON);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void crop_fillsViewAndCropsCenteredRegionOfImageAspect() {
+        for (int[] content : CONTENT_SIZES) {
+            for (int[] view : VIEW_SIZES) {
+                float[] v = new float[QuadGeometry.FLOAT_COUNT];
+                QuadGeometry.build(v, QuadGeometry.ScaleMode.CROP, content[0], content[1], view[0], view[1]);
+                for (CameraRotation r : CameraRotation.values()) {
+                    String what = r + " " + content[0] + "x" + content[1] + " in " + view[0] + "x" + view[1];
+                    assertEquals(what, 1.0f, x(v, r, TOP_RIGHT), EPSILON);
+                    assertEquals(what, 1.0f, y(v, r, TOP_LEFT), EPSILON);
+
+                    // 画面の横方向・縦方向に見えているテクスチャの割合
+                    float visibleU = Math.abs(s(v, r, TOP_RIGHT) - s(v, r, TOP_LEFT)) + Math.abs(t(v, r, TOP_RIGHT) - t(v, r, TOP_LEFT));
+                    float visibleV = Math.abs(s(v, r, BOTTOM_LEFT) - s(v, r, TOP_LEFT)) + Math.abs(t(v, r, BOTTOM_LEFT) - t(v, r, TOP_LEFT));
+                    assertEquals(what, 1.0f, Math.max(visibleU, visibleV), EPSILON);
+                    assertTrue(what, Math.min(visibleU, visibleV) > 0);
+                    assertEquals(what, (double) view[0] / view[1], displayedAspect(r, content) * visibleU / visibleV, 1e-3);
+
+                    float centerS = 0;
+                    float centerT = 0;
+                    for (int i = 0; i < QuadGeometry.VERTEX_COUNT; i++) {
+                        centerS += s(v, r, i) / QuadGeometry.VERTEX_COUNT;
+                        centerT += t(v, r, i) / QuadGeometry.VERTEX_COUNT;
+                    }
+                    assertEquals(what, 0.5f, centerS, EPSILON);
+                    assertEquals(what, 0.5f, centerT, EPSILON);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void unknownSizes_fallBackToStretch() {
+        float[] stretch = new float[QuadGeometry.FLOAT_COUNT];
+        float[] v = new float[QuadGeometry.FLOAT_COUNT];
+        QuadGeometry.build(stretch, QuadGeometry.ScaleMode.STRETCH, 0, 0, 0, 0);
+        QuadGeometry.build(v, QuadGeometry.ScaleMode.CROP, 1600, 1200, 0, 0);
+
+        assertArrayEquals(stretch, v, 0);
+    }
+
+    @Test
+    public void offsets_selectEachRotationsQuad() {
+        int previous = -1;
+        for (CameraRotation r : CameraRotation.values()) {
+            int offset = QuadGeometry.quadOffset(r);
+            assertEquals(r.ordinal() * QuadGeometry.VERTEX_COUNT * QuadGeometry.STRIDE_BYTES, offset);
+            assertTrue(offset > previous);
+            assertEquals(offset, QuadGeometry.positionOffset(r));
+            assertEquals(offset + QuadGeometry.POSITION_SIZE * 4, QuadGeometry.texCoordOffset(r));
+            previous = offset;
+        }
+        assertEquals(QuadGeometry.FLOAT_COUNT * 4, QuadGeometry.quadOffset(CameraRotation.ROTATION_270) + QuadGeometry.QUAD_BYTES);
+    }
+
+    @Test
+    public void bind_onlySelectsOffsetWithoutReupload() {
+        RecordingGlApi gl = new RecordingGlApi();
+        QuadGeometry geometry = new QuadGeometry();
+        geometry.onSurfaceCreated(gl);
+        assertEquals(1, gl.count("glBufferData"));
+
+        for (int frame = 0; frame < 10; frame++) {
+            for (CameraRotation r : CameraRotation.values()) {
+                geometry.bind(gl, r, 1, 2);
+                assertEquals(Integer.valueOf(QuadGeometry.positionOffset(r)), gl.getAttribOffset(1));
+                assertEquals(Integer.valueOf(QuadGeometry.texCoordOffset(r)), gl.getAttribOffset(2));
+                assertEquals(Integer.valueOf(QuadGeometry.STRIDE_BYTES), gl.getAttribStride(1));
+                assertEquals((int) gl.getGeneratedBuffers().get(0), gl.getBoundArrayBuffer());
+                geometry.unbind(gl);
+            }
+        }
+        assertEquals(1, gl.count("glBufferData"));
+        assertEquals(0, gl.count("glBufferSubData"));
+        assertEquals(1, geometry.getUploadCount());
+    }
+
+    @Test
+    public void sizeChange_reuploadsOnceOnlyWhenScaleModeNeedsIt() {
+        RecordingGlApi gl = new RecordingGlApi();
+        QuadGeometry geometry = new QuadGeometry();
+        geometry.onSurfaceCreated(gl);
+
+        geometry.setSizes(1600, 1200, 1080, 2280);
+        geometry.bind(gl, CameraRotation.ROTATION_0, 1, 2);
+        assertEquals(0, gl.count("glBufferSubData"));
+
+        geometry.setScaleMode(QuadGeometry.ScaleMode.LETTERBOX);
+        geometry.bind(gl, CameraRotation.ROTATION_0, 1, 2);
+        geometry.bind(gl, CameraRotation.ROTATION_90, 1, 2);
+        assertEquals(1, gl.count("glBufferSubData"));
+
+        float[] expected = new float[QuadGeometry.FLOAT_COUNT];
+        QuadGeometry.build(expected, QuadGeometry.ScaleMode.LETTERBOX, 1600, 1200, 1080, 2280);
+        assertArrayEquals(expected, gl.getArrayBufferData(), 0);
+
+        geometry.setSizes(1600, 1200, 1080, 2280);
+        geometry.bind(gl, CameraRotation.ROTATION_0, 1, 2);
+        assertEquals(1, gl.count("glBufferSubData"));
+
+        geometry.setSizes(1600, 1200, 2280, 1080);
+        geometry.bind(gl, CameraRotation.ROTATION_0, 1, 2);
+        assertEquals(2, gl.count("glBufferSubData"));
+    }
+
+    @Test
+    public void surfaceRecreated_uploadsCurrentGeometry() {
+        RecordingGlApi gl = new RecordingGlApi();
+        QuadGeometry geometry = new QuadGeometry();
+        geometry.setScaleMode(QuadGeometry.ScaleMode.CROP);
+        geometry.setSizes(1920, 1080, 1000, 1000);
+        geometry.onSurfaceCreated(gl);
+        geometry.bind(gl, CameraRotation.ROTATION_180, 1, 2);
+
+        float[] expected = new float[QuadGeometry.FLOAT_COUNT];
+        QuadGeometry.build(expected, QuadGeometry.ScaleMode.CROP, 1920, 1080, 1000, 1000);
+        assertArrayEquals(expected, gl.getArrayBufferData(), 0);
+        assertEquals(0, gl.count("glBufferSubData"));
+    }
+
+    @Test
+    public void zoomCrop_samplesCropForEveryRotation() {
+        float[] crop = {0.5f, 0.0f, 1.0f, 0.5f};
+        float[] v = new float[QuadGeometry.FLOAT_COUNT];
+        QuadGeometry.build(v, QuadGeometry.ScaleMode.STRETCH, 1600, 1200, 1080, 2280, crop, TextureTransform.DEFAULT_MATRIX);
+        float[] expected = new float[2];
+        for (CameraRotation r : CameraRotation.values()) {
+            TextureTransform.toTexture(r, TextureTransform.DEFAULT_MATRIX, 0.5f, 0.0f, expected, 0);
+            assertEquals(expected[0], s(v, r, TOP_LEFT), EPSILON);
+            assertEquals(expected[1], t(v, r, TOP_LEFT), EPSILON);
+            TextureTransform.toTexture(r, TextureTransform.DEFAULT_MATRIX, 0.5f, 0.5f, expected, 0);
+            assertEquals(expected[0], s(v, r, BOTTOM_LEFT), EPSILON);
+            assertEquals(expected[1], t(v, r, BOTTOM_LEFT), EPSILON);
+            TextureTransform.toTexture(r, TextureTransform.DEFAULT_MATRIX, 1.0f, 0.0f, expected, 0);
+            assertEquals(expected[0], s(v, r, TOP_RIGHT), EPSILON);
+            assertEquals(expected[1], t(v, r, TOP_RIGHT), EPSILON);
+            // 位置は切り取りの影響を受けない
+            assertEquals(-1, x(v, r, TOP_LEFT), EPSILON);
+            assertEquals(1, y(v, r, TOP_LEFT), EPSILON);
+        }
+        // 回転なしなら切り取り範囲がそのままテクスチャ座標になる
+        assertEquals(0.5f, s(v, CameraRotation.ROTATION_0, TOP_LEFT), EPSILON);
+        assertEquals(0.5f, t(v, CameraRotation.ROTATION_0, BOTTOM_LEFT), EPSILON);
+        assertEquals(1.0f, s(v, CameraRotation.ROTATION_0, TOP_RIGHT), EPSILON);
+    }
+
+    @Test
+    public void zoomCrop_combinesWithScaleModeCrop() {
+        float[] crop = {0.25f, 0.25f, 0.75f, 0.75f};
+        float[] full = new float[QuadGeometry.FLOAT_COUNT];
+        float[] zoomed = new float[QuadGeometry.FLOAT_COUNT];
+        QuadGeometry.build(full, QuadGeometry.ScaleMode.CROP, 1920, 1080, 1000, 1000);
+        QuadGeometry.build(zoomed, QuadGeometry.ScaleMode.CROP, 1920, 1080, 1000, 1000, crop, TextureTransform.DEFAULT_MATRIX);
+        for (CameraRotation r : CameraRotation.values()) {
+            for (int i = 0; i < QuadGeometry.VERTEX_COUNT; i++) {
+                // 2倍ズームは中心からの距離を半分にする
+                assertEquals(0.5f + (s(full, r, i) - 0.5f) / 2, s(zoomed, r, i), EPSILON);
+                assertEquals(0.5f + (t(full, r, i) - 0.5f) / 2, t(zoomed, r, i), EPSILON);
+                assertEquals(x(full, r, i), x(zoomed, r, i), 0);
+            }
+        }
+    }
+
+    @Test
+    public void textureMatrix_mapsIntoPaddedBuffer() {
+        // 幅の80%、高さの90%だけが有効な、パディング付きバッファの行列
+        float[] matrix = {
+                0.8f, 0, 0, 0,
+                0, -0.9f, 0, 0,
+                0, 0, 1, 0,
+                0, 0.9f, 0, 1
+        };
+        float[] plain = new float[QuadGeometry.FLOAT_COUNT];
+        float[] padded = new float[QuadGeometry.FLOAT_COUNT];
+        QuadGeometry.build(plain, QuadGeometry.ScaleMode.LETTERBOX, 1600, 1200, 1080, 2280);
+        QuadGeometry.build(padded, QuadGeometry.ScaleMode.LETTERBOX, 1600, 1200, 1080, 2280,
+                QuadGeometry.FULL_CROP, matrix);
+        for (CameraRotation r : CameraRotation.values()) {
+            for (int i = 0; i < QuadGeometry.VERTEX_COUNT; i++) {
+                assertEquals(s(plain, r, i) * 0.8f, s(padded, r, i), EPSILON);
+                assertEquals(t(plain, r, i) * 0.9f, t(padded, r, i), EPSILON);
+                assertEquals(y(plain, r, i), y(padded, r, i), 0);
+            }
+        }
+    }
+
+    @Test
+    public void cropAndMatrixChanges_reuploadOnlyWhenDifferent() {
+        RecordingGlApi gl = new RecordingGlApi();
+        QuadGeometry geometry = new QuadGeometry();
+        geometry.onSurfaceCreated(gl);
+
+        geometry.setTextureMatrix(TextureTransform.DEFAULT_MATRIX.clone());
+        geometry.setCrop(QuadGeometry.FULL_CROP.clone());
+        geometry.bind(gl, CameraRotation.ROTATION_0, 1, 2);
+        assertEquals(0, gl.count("glBufferSubData"));
+
+        float[] crop = {0.25f, 0.25f, 0.75f, 0.75f};
+        geometry.setCrop(crop);
+        geometry.bind(gl, CameraRotation.ROTATION_90, 1, 2);
+        geometry.setCrop(crop.clone());
+        geometry.bind(gl, CameraRotation.ROTATION_90, 1, 2);
+        assertEquals(1, gl.count("glBufferSubData"));
+        assertEquals(1, gl.count("glBufferData"));
+
+        float[] expected = new float[QuadGeometry.FLOAT_COUNT];
+        QuadGeometry.build(expected, QuadGeometry.ScaleMode.STRETCH, 0, 0, 0, 0, crop, TextureTransform.DEFAULT_MATRIX);
+        assertArrayEquals(expected, gl.getArrayBufferData(), 0);
+    }
+}
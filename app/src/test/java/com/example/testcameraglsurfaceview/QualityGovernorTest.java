@@ -0,0 +1,184 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives the governor with frame-time traces. A trace gives the draw time at the best level; at
+ * other levels it is scaled by the pixel count, and a draw longer than the frame budget misses frames.
+ */
+public class QualityGovernorTest {
+
+    private static final long MS = 1000000L;
+
+    private static final QualityGovernor.Level[] LEVELS = QualityGovernor.defaultLevels();
+
+    /** Draw time at the best level for frame i. */
+    private interface Trace {
+        long drawTimeNano(int frame);
+    }
+
+    private static Trace steady(final long drawTimeNano) {
+        return new Trace() {
+            @Override
+            public long drawTimeNano(int frame) {
+                return drawTimeNano;
+            }
+        };
+    }
+
+    /** Jitter around mean plus an occasional long frame, like GC pauses and compositor hiccups. */
+    private static Trace noisy(final long meanNano, final long seed) {
+        final Random random = new Random(seed);
+        return new Trace() {
+            @Override
+            public long drawTimeNano(int frame) {
+                long value = meanNano + (long) (random.nextGaussian() * meanNano / 10);
+                if (random.nextInt(200) == 0) {
+                    value += 40 * MS;
+                }
+                return Math.max(MS, value);
+            }
+        };
+    }
+
+    private static class Run {
+        final QualityGovernor governor = new QualityGovernor(LEVELS);
+        int thermalStatus = QualityGovernor.THERMAL_NONE;
+        int frames = 0;
+
+        void play(Trace trace, int frameCount) {
+            for (int i = 0; i < frameCount; i++) {
+                frame(trace.drawTimeNano(frames));
+            }
+        }
+
+        void frame(long bestLevelDrawTimeNano) {
+            QualityGovernor.Level level = governor.getLevel();
+            long drawTime = bestLevelDrawTimeNano * level.maxPixels / LEVELS[0].maxPixels;
+            long budget = 1000000000L / level.fps;
+            int missed = (int) ((drawTime - 1) / budget);
+            governor.onFrame(drawTime, missed, thermalStatus);
+            frames++;
+        }
+
+        /** Frames in seconds at the current level. */
+        int seconds(int seconds) {
+            return seconds * governor.getLevel().fps;
+        }
+    }
+
+    @Test
+    public void lightLoadStaysAtBestLevel() {
+        Run run = new Run();
+        run.play(noisy(8 * MS, 1), 30 * 60 * 5);
+
+        assertEquals(0, run.governor.getLevelIndex());
+        assertEquals(0, run.governor.getChangeCount());
+    }
+
+    @Test
+    public void steadyOverloadStepsDownUntilWithinBudget() {
+        Run run = new Run();
+        run.play(steady(70 * MS), 30 * 60);
+
+        // 1280x960では31ms: 30fpsの予算の0.85を超えるが、24fpsの予算には収まる
+        assertEquals(2, run.governor.getLevelIndex());
+        assertEquals(2, run.governor.getChangeCount());
+    }
+
+    @Test
+    public void singleSlowWindowDoesNotStepDown() {
+        Run run = new Run();
+        run.play(steady(8 * MS), run.seconds(10));
+        run.play(steady(40 * MS), run.seconds(QualityGovernor.WINDOW_SECONDS));
+        run.play(steady(8 * MS), run.seconds(10));
+
+        assertEquals(0, run.governor.getChangeCount());
+    }
+
+    @Test
+    public void recoversWhenLoadGoesAway() {
+        Run run = new Run();
+        run.play(steady(60 * MS), 30 * 30);
+        assertTrue(run.governor.getLevelIndex() > 0);
+
+        run.play(noisy(5 * MS, 2), 30 * 120);
+
+        assertEquals(0, run.governor.getLevelIndex());
+    }
+
+    @Test
+    public void boundaryLoadDoesNotOscillate() {
+        Run run = new Run();
+        // 最高段だけ予算を超え、一段下では十分に余裕がある
+        Trace trace = noisy(30 * MS, 3);
+
+        run.play(trace, 30 * 60 * 10);
+
+        assertTrue(run.governor.getLevelIndex() <= 1);
+        // 待ちを伸ばさずに上げ下げすると10分間で100回ほどになる
+        assertTrue("changes " + run.governor.getChangeCount(), run.governor.getChangeCount() <= 20);
+        assertEquals(QualityGovernor.MAX_UP_WINDOWS, run.governor.getUpWindowsRequired());
+    }
+
+    @Test
+    public void failedStepUpDoublesWait() {
+        Run run = new Run();
+        run.play(steady(30 * MS), run.seconds(QualityGovernor.WINDOW_SECONDS * QualityGovernor.DOWN_WINDOWS));
+        assertEquals(1, run.governor.getLevelIndex());
+        assertEquals(QualityGovernor.UP_WINDOWS, run.governor.getUpWindowsRequired());
+
+        run.play(steady(30 * MS), run.seconds(QualityGovernor.WINDOW_SECONDS * QualityGovernor.UP_WINDOWS));
+        assertEquals(0, run.governor.getLevelIndex());
+        run.play(steady(30 * MS), run.seconds(QualityGovernor.WINDOW_SECONDS * QualityGovernor.DOWN_WINDOWS));
+
+        assertEquals(1, run.governor.getLevelIndex());
+        assertEquals(QualityGovernor.UP_WINDOWS * 2, run.governor.getUpWindowsRequired());
+    }
+
+    @Test
+    public void thermalStatusCapsLevelImmediately() {
+        Run run = new Run();
+        run.play(steady(5 * MS), 30);
+
+        run.thermalStatus = QualityGovernor.THERMAL_SEVERE;
+        run.frame(5 * MS);
+        assertEquals(2, run.governor.getLevelIndex());
+
+        // 負荷が軽くても上限より上には戻らない
+        run.play(steady(5 * MS), 30 * 120);
+        assertEquals(2, run.governor.getLevelIndex());
+
+        run.thermalStatus = QualityGovernor.THERMAL_CRITICAL;
+        run.frame(5 * MS);
+        assertEquals(LEVELS.length - 1, run.governor.getLevelIndex());
+
+        run.thermalStatus = QualityGovernor.THERMAL_NONE;
+        run.play(steady(5 * MS), 30 * 120);
+        assertEquals(0, run.governor.getLevelIndex());
+    }
+
+    @Test
+    public void missedFramesWithCheapDrawsAreNotOverload() {
+        QualityGovernor governor = new QualityGovernor(LEVELS);
+        // 暗所でカメラ側が15fpsに落ちている
+        for (int i = 0; i < 30 * 60; i++) {
+            governor.onFrame(5 * MS, 1, QualityGovernor.THERMAL_NONE);
+        }
+        assertEquals(0, governor.getLevelIndex());
+
+        for (int i = 0; i < 30 * 10; i++) {
+            governor.onFrame(20 * MS, 1, QualityGovernor.THERMAL_NONE);
+        }
+        assertTrue(governor.getLevelIndex() > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNoLevels() {
+        new QualityGovernor(new QualityGovernor.Level[0]);
+    }
+}
@@ -0,0 +1,500 @@
+package com.example.testcameraglsurfaceview;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * GlApi fake that hands out increasing object names, reports every compile/link as successful
+ * and records how often each call is issued.
+ */
+public class RecordingGlApi implements GlApi {
+
+    private final Map<String, Integer> mCallCounts = new HashMap<>();
+    private final List<Integer> mGeneratedTextures = new ArrayList<>();
+    private final List<Integer> mGeneratedFramebuffers = new ArrayList<>();
+    private final List<Integer> mGeneratedBuffers = new ArrayList<>();
+    private final Map<Integer, Integer> mAttribOffsets = new HashMap<>();
+    private final Map<Integer, Integer> mAttribStrides = new HashMap<>();
+    private float[] mArrayBufferData = new float[0];
+    private int mBoundArrayBuffer = 0;
+    private final Set<Integer> mBoundFramebuffers = new HashSet<>();
+    private final Set<Integer> mUnlinkedPrograms = new HashSet<>();
+    private int mNextName = 1;
+    private int mBoundFramebuffer = 0;
+    private String mVersion = "OpenGL ES 2.0";
+    private int mClientVersion = 2;
+    private String mRenderer = "FakeRenderer";
+    private boolean mAcceptBinaries = true;
+    private int mBoundPackBuffer = 0;
+    private final Map<Integer, ByteBuffer> mPackBufferStorage = new HashMap<>();
+    private byte mReadPixelsValue = 0;
+    private long mNextSync = 1;
+    private int mFenceLatency = 0;
+    private final Map<Long, Integer> mLiveSyncs = new HashMap<>();
+    private int mError = GL_NO_ERROR;
+
+    public static final int BINARY_FORMAT = 0x1234;
+    private static final int BINARY_LENGTH = 8;
+
+    /** Also sets the client version the string implies; setClientVersion() can contradict it. */
+    public void setVersion(String version) {
+        mVersion = version;
+        mClientVersion = version.startsWith("OpenGL ES 3") ? 3 : 2;
+    }
+
+    public void setClientVersion(int clientVersion) {
+        mClientVersion = clientVersion;
+    }
+
+    @Override
+    public int getClientVersion() {
+        return mClientVersion;
+    }
+
+    public void setRenderer(String renderer) {
+        mRenderer = renderer;
+    }
+
+    public void setAcceptBinaries(boolean accept) {
+        mAcceptBinaries = accept;
+    }
+
+    /** Byte written to every pixel by glReadPixels. */
+    public void setReadPixelsValue(byte value) {
+        mReadPixelsValue = value;
+    }
+
+    /** Number of non-blocking glClientWaitSync polls a new fence stays unsignaled for. */
+    public void setFenceLatency(int polls) {
+        mFenceLatency = polls;
+    }
+
+    /** Error the next glGetError reports, once. */
+    public void setError(int error) {
+        mError = error;
+    }
+
+    /** Fences created and not yet deleted. */
+    public int getLiveSyncCount() {
+        return mLiveSyncs.size();
+    }
+
+    public int count(String call) {
+        Integer count = mCallCounts.get(call);
+        return count == null ? 0 : count;
+    }
+
+    public void resetCounts() {
+        mCallCounts.clear();
+        mBoundFramebuffers.clear();
+    }
+
+    public List<Integer> getGeneratedTextures() {
+        return mGeneratedTextures;
+    }
+
+    public List<Integer> getGeneratedFramebuffers() {
+        return mGeneratedFramebuffers;
+    }
+
+    public Set<Integer> getBoundFramebuffers() {
+        return mBoundFramebuffers;
+    }
+
+    public int getBoundFramebuffer() {
+        return mBoundFramebuffer;
+    }
+
+    public List<Integer> getGeneratedBuffers() {
+        return mGeneratedBuffers;
+    }
+
+    public int getBoundArrayBuffer() {
+        return mBoundArrayBuffer;
+    }
+
+    /** Contents of the last uploaded array buffer, as floats. */
+    public float[] getArrayBufferData() {
+        return mArrayBufferData;
+    }
+
+    /** Byte offset passed to the last buffer-object glVertexAttribPointer for the attribute, or null. */
+    public Integer getAttribOffset(int index) {
+        return mAttribOffsets.get(index);
+    }
+
+    public Integer getAttribStride(int index) {
+        return mAttribStrides.get(index);
+    }
+
+    private void record(String call) {
+        Integer count = mCallCounts.get(call);
+        mCallCounts.put(call, count == null ? 1 : count + 1);
+    }
+
+    private void generate(int n, int[] names, int offset, List<Integer> generated) {
+        for (int i = 0; i < n; i++) {
+            names[offset + i] = mNextName++;
+            generated.add(names[offset + i]);
+        }
+    }
+
+    @Override
+    public void glActiveTexture(int texture) {
+        record("glActiveTexture");
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        record("glBindTexture");
+    }
+
+    @Override
+    public void glGenTextures(int n, int[] textures, int offset) {
+        record("glGenTextures");
+        generate(n, textures, offset, mGeneratedTextures);
+    }
+
+    @Override
+    public void glDeleteTextures(int n, int[] textures, int offset) {
+        record("glDeleteTextures");
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param) {
+        record("glTexParameteri");
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) {
+        record("glTexImage2D");
+    }
+
+    @Override
+    public void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+        record("glGenFramebuffers");
+        generate(n, framebuffers, offset, mGeneratedFramebuffers);
+    }
+
+    @Override
+    public void glDeleteFramebuffers(int n, int[] framebuffers, int offset) {
+        record("glDeleteFramebuffers");
+    }
+
+    @Override
+    public void glBindFramebuffer(int target, int framebuffer) {
+        record("glBindFramebuffer");
+        mBoundFramebuffer = framebuffer;
+        mBoundFramebuffers.add(framebuffer);
+    }
+
+    @Override
+    public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) {
+        record("glFramebufferTexture2D");
+    }
+
+    @Override
+    public int glCheckFramebufferStatus(int target) {
+        record("glCheckFramebufferStatus");
+        return GL_FRAMEBUFFER_COMPLETE;
+    }
+
+    @Override
+    public void glGenBuffers(int n, int[] buffers, int offset) {
+        record("glGenBuffers");
+        generate(n, buffers, offset, mGeneratedBuffers);
+    }
+
+    @Override
+    public void glDeleteBuffers(int n, int[] buffers, int offset) {
+        record("glDeleteBuffers");
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        record("glBindBuffer");
+        if (target == GL_ARRAY_BUFFER) {
+            mBoundArrayBuffer = buffer;
+        } else if (target == GL_PIXEL_PACK_BUFFER) {
+            mBoundPackBuffer = buffer;
+        }
+    }
+
+    @Override
+    public void glBufferData(int target, int size, Buffer data, int usage) {
+        record("glBufferData");
+        if (target == GL_PIXEL_PACK_BUFFER) {
+            mPackBufferStorage.put(mBoundPackBuffer, ByteBuffer.allocate(size));
+            return;
+        }
+        mArrayBufferData = new float[size / 4];
+        copyFloats(0, size, data);
+    }
+
+    @Override
+    public void glBufferSubData(int target, int offset, int size, Buffer data) {
+        record("glBufferSubData");
+        copyFloats(offset, size, data);
+    }
+
+    private void copyFloats(int offset, int size, Buffer data) {
+        if (data == null) {
+            return;
+        }
+        FloatBuffer floats = ((FloatBuffer) data).duplicate();
+        for (int i = 0; i < size / 4; i++) {
+            mArrayBufferData[offset / 4 + i] = floats.get(floats.position() + i);
+        }
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        record("glViewport");
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        record("glClearColor");
+    }
+
+    @Override
+    public void glClear(int mask) {
+        record("glClear");
+    }
+
+    @Override
+    public int glCreateShader(int type) {
+        record("glCreateShader");
+        return mNextName++;
+    }
+
+    @Override
+    public void glShaderSource(int shader, String source) {
+        record("glShaderSource");
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+        record("glCompileShader");
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+        record("glGetShaderiv");
+        params[offset] = GL_TRUE;
+    }
+
+    @Override
+    public void glDeleteShader(int shader) {
+        record("glDeleteShader");
+    }
+
+    @Override
+    public int glCreateProgram() {
+        record("glCreateProgram");
+        return mNextName++;
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+        record("glAttachShader");
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+        record("glLinkProgram");
+    }
+
+    @Override
+    public void glGetProgramiv(int program, int pname, int[] params, int offset) {
+        record("glGetProgramiv");
+        if (pname == GL_PROGRAM_BINARY_LENGTH) {
+            params[offset] = BINARY_LENGTH;
+        } else {
+            params[offset] = mUnlinkedPrograms.contains(program) ? GL_FALSE : GL_TRUE;
+        }
+    }
+
+    @Override
+    public void glDeleteProgram(int program) {
+        record("glDeleteProgram");
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+        record("glUseProgram");
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name) {
+        record("glGetAttribLocation");
+        return "position".equals(name) ? 0 : 1;
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        record("glGetUniformLocation");
+        return name.hashCode() & 0xff;
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+        record("glEnableVertexAttribArray");
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, Buffer ptr) {
+        record("glVertexAttribPointer");
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset) {
+        record("glVertexAttribPointer");
+        mAttribOffsets.put(index, offset);
+        mAttribStrides.put(index, stride);
+    }
+
+    @Override
+    public void glUniform1i(int location, int x) {
+        record("glUniform1i");
+    }
+
+    @Override
+    public void glUniform1f(int location, float x) {
+        record("glUniform1f");
+    }
+
+    @Override
+    public void glUniform2f(int location, float x, float y) {
+        record("glUniform2f");
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        record("glDrawArrays");
+    }
+
+    @Override
+    public int glGetError() {
+        record("glGetError");
+        int error = mError;
+        mError = GL_NO_ERROR;
+        return error;
+    }
+
+    @Override
+    public String glGetString(int name) {
+        record("glGetString");
+        switch (name) {
+            case GL_VERSION:
+                return mVersion;
+            case GL_RENDERER:
+                return mRenderer;
+            default:
+                return "FakeVendor";
+        }
+    }
+
+    @Override
+    public void glGetIntegerv(int pname, int[] params, int offset) {
+        record("glGetIntegerv");
+        params[offset] = pname == GL_NUM_PROGRAM_BINARY_FORMATS && mVersion.startsWith("OpenGL ES 3") ? 1 : 0;
+    }
+
+    @Override
+    public void glReadPixels(int x, int y, int width, int height, int format, int type, Buffer pixels) {
+        record("glReadPixels");
+        fill(((ByteBuffer) pixels).duplicate(), width * height * 4);
+    }
+
+    private void fill(ByteBuffer out, int bytes) {
+        for (int i = 0; i < bytes; i++) {
+            out.put(i, mReadPixelsValue);
+        }
+    }
+
+    @Override
+    public void glGetProgramBinary(int program, int bufSize, int[] length, int lengthOffset, int[] binaryFormat, int binaryFormatOffset, Buffer binary) {
+        record("glGetProgramBinary");
+        ByteBuffer out = (ByteBuffer) binary;
+        for (int i = 0; i < BINARY_LENGTH; i++) {
+            out.put((byte) (program + i));
+        }
+        length[lengthOffset] = BINARY_LENGTH;
+        binaryFormat[binaryFormatOffset] = BINARY_FORMAT;
+    }
+
+    @Override
+    public void glProgramBinary(int program, int binaryFormat, Buffer binary, int length) {
+        record("glProgramBinary");
+        if (!mAcceptBinaries || binaryFormat != BINARY_FORMAT || length != BINARY_LENGTH) {
+            mUnlinkedPrograms.add(program);
+        }
+    }
+
+    @Override
+    public void glReadPixels(int x, int y, int width, int height, int format, int type, int offset) {
+        record("glReadPixelsToBuffer");
+        ByteBuffer storage = mPackBufferStorage.get(mBoundPackBuffer);
+        if (mBoundPackBuffer == 0 || storage == null || storage.capacity() < offset + width * height * 4) {
+            throw new IllegalStateException("No pixel pack buffer large enough");
+        }
+        storage.position(offset);
+        fill(storage.slice(), width * height * 4);
+        storage.position(0);
+    }
+
+    @Override
+    public Buffer glMapBufferRange(int target, int offset, int length, int access) {
+        record("glMapBufferRange");
+        ByteBuffer storage = mPackBufferStorage.get(mBoundPackBuffer);
+        if (storage == null) {
+            return null;
+        }
+        ByteBuffer mapped = storage.duplicate();
+        mapped.position(offset);
+        mapped.limit(offset + length);
+        return mapped.slice();
+    }
+
+    @Override
+    public boolean glUnmapBuffer(int target) {
+        record("glUnmapBuffer");
+        return true;
+    }
+
+    @Override
+    public long glFenceSync(int condition, int flags) {
+        record("glFenceSync");
+        long sync = mNextSync++;
+        mLiveSyncs.put(sync, mFenceLatency);
+        return sync;
+    }
+
+    @Override
+    public int glClientWaitSync(long sync, int flags, long timeout) {
+        record("glClientWaitSync");
+        Integer remaining = mLiveSyncs.get(sync);
+        if (remaining == null) {
+            return GL_WAIT_FAILED;
+        }
+        if (remaining > 0 && timeout == 0) {
+            mLiveSyncs.put(sync, remaining - 1);
+            return GL_TIMEOUT_EXPIRED;
+        }
+        return GL_ALREADY_SIGNALED;
+    }
+
+    @Override
+    public void glDeleteSync(long sync) {
+        record("glDeleteSync");
+        mLiveSyncs.remove(sync);
+    }
+}
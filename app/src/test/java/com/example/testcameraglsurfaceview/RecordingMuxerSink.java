@@ -0,0 +1,68 @@
+package com.example.testcameraglsurfaceview;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MuxerSink that keeps a copy of everything written and checks MediaMuxer's call order.
+ */
+class RecordingMuxerSink implements MuxerSink {
+
+    static class WrittenSample {
+        final byte[] data;
+        final long presentationTimeUs;
+        final int flags;
+
+        WrittenSample(byte[] data, long presentationTimeUs, int flags) {
+            this.data = data;
+            this.presentationTimeUs = presentationTimeUs;
+            this.flags = flags;
+        }
+    }
+
+    final List<WrittenSample> samples = new ArrayList<>();
+    final List<Object> formats = new ArrayList<>();
+    boolean started = false;
+    boolean stopped = false;
+    boolean released = false;
+
+    @Override
+    public int addTrack(Object format) {
+        if (started) {
+            throw new IllegalStateException("addTrack after start");
+        }
+        formats.add(format);
+        return formats.size() - 1;
+    }
+
+    @Override
+    public void start() {
+        started = true;
+    }
+
+    @Override
+    public void writeSampleData(int track, ByteBuffer data, EncodedBufferInfo info) {
+        if (!started || stopped) {
+            throw new IllegalStateException("write while not started");
+        }
+        byte[] copy = new byte[info.size];
+        ByteBuffer source = data.duplicate();
+        source.position(info.offset);
+        source.get(copy);
+        samples.add(new WrittenSample(copy, info.presentationTimeUs, info.flags));
+    }
+
+    @Override
+    public void stop() {
+        if (!started) {
+            throw new IllegalStateException("stop before start");
+        }
+        stopped = true;
+    }
+
+    @Override
+    public void release() {
+        released = true;
+    }
+}
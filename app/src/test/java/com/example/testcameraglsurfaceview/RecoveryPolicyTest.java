@@ -0,0 +1,97 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RecoveryPolicyTest {
+
+    private static final long MS = 1000000L;
+    // CameraDevice.StateCallbackのエラーコード
+    private static final int ERROR_CAMERA_IN_USE = 1;
+    private static final int ERROR_CAMERA_DISABLED = 3;
+    private static final int ERROR_CAMERA_DEVICE = 4;
+
+    private static RecoveryPolicy newPolicy() {
+        return new RecoveryPolicy(100 * MS, 1000 * MS, 6, 2);
+    }
+
+    @Test
+    public void delayDoublesUpToMaximum() {
+        RecoveryPolicy policy = newPolicy();
+        long[] expected = {100, 200, 400, 800, 1000, 1000};
+
+        for (long delayMs : expected) {
+            assertEquals(RecoveryPolicy.RETRY, policy.onFailure(CameraLifecycle.ERROR_DISCONNECTED));
+            assertEquals(delayMs * MS, policy.getRetryDelayNano());
+        }
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() {
+        RecoveryPolicy policy = newPolicy();
+        for (int i = 0; i < 6; i++) {
+            policy.onFailure(ERROR_CAMERA_DEVICE);
+        }
+
+        assertEquals(RecoveryPolicy.GIVE_UP, policy.onFailure(ERROR_CAMERA_DEVICE));
+        assertEquals(7, policy.getAttempts());
+    }
+
+    @Test
+    public void disabledCameraIsNotRetried() {
+        assertEquals(RecoveryPolicy.GIVE_UP, newPolicy().onFailure(ERROR_CAMERA_DISABLED));
+    }
+
+    @Test
+    public void resetStartsFromInitialDelay() {
+        RecoveryPolicy policy = newPolicy();
+        policy.onFailure(ERROR_CAMERA_IN_USE);
+        policy.onFailure(ERROR_CAMERA_IN_USE);
+        policy.onFailure(ERROR_CAMERA_IN_USE);
+
+        policy.reset();
+
+        assertEquals(RecoveryPolicy.RETRY, policy.onFailure(ERROR_CAMERA_IN_USE));
+        assertEquals(100 * MS, policy.getRetryDelayNano());
+        assertEquals(1, policy.getAttempts());
+    }
+
+    @Test
+    public void repeatedConfigureFailuresDowngrade() {
+        RecoveryPolicy policy = newPolicy();
+        int[] sequence = {
+                CameraLifecycle.ERROR_CONFIGURE_FAILED,
+                CameraLifecycle.ERROR_CONFIGURE_FAILED,
+                CameraLifecycle.ERROR_CONFIGURE_FAILED,
+                CameraLifecycle.ERROR_CONFIGURE_FAILED,
+                // 他のエラーを挟むと数え直し
+                CameraLifecycle.ERROR_DISCONNECTED,
+                CameraLifecycle.ERROR_CONFIGURE_FAILED};
+        int[] expected = {
+                RecoveryPolicy.RETRY,
+                RecoveryPolicy.RETRY_DOWNGRADED,
+                RecoveryPolicy.RETRY,
+                RecoveryPolicy.RETRY_DOWNGRADED,
+                RecoveryPolicy.RETRY,
+                RecoveryPolicy.RETRY};
+
+        for (int i = 0; i < sequence.length; i++) {
+            assertEquals("failure " + i, expected[i], policy.onFailure(sequence[i]));
+        }
+    }
+
+    @Test
+    public void levelBelowStepsDownTheLadder() {
+        QualityGovernor.Level[] levels = QualityGovernor.defaultLevels();
+
+        QualityGovernor.Level below = RecoveryPolicy.levelBelow(levels, levels[0].maxPixels, levels[0].fps);
+        assertSame(levels[1], below);
+        // 画質調整で下がった後の上限より下を選ぶ
+        assertSame(levels[3], RecoveryPolicy.levelBelow(levels, levels[2].maxPixels, levels[2].fps));
+        // 上限のない最初の計画からはラダーの先頭へ
+        assertSame(levels[0], RecoveryPolicy.levelBelow(levels, Long.MAX_VALUE, 60));
+        QualityGovernor.Level last = levels[levels.length - 1];
+        assertNull(RecoveryPolicy.levelBelow(levels, last.maxPixels, last.fps));
+    }
+}
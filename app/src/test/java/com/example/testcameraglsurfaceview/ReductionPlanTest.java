@@ -0,0 +1,71 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ReductionPlanTest {
+
+    @Test
+    public void squareGridFromCameraBuffer() {
+        ReductionPlan plan = new ReductionPlan(1280, 960, 4, 4, 256);
+
+        // 256, 128, 64, 32, 16, 8, 4
+        assertEquals(7, plan.getLevelCount());
+        assertEquals(256, plan.getLevelWidth(0));
+        assertEquals(256, plan.getLevelHeight(0));
+        assertEquals(4, plan.getLevelWidth(6));
+        assertEquals(4, plan.getLevelHeight(6));
+        assertEquals(64 * 64, plan.getSamplesPerTile());
+    }
+
+    @Test
+    public void everyLevelHalvesOrStaysAtGrid() {
+        ReductionPlan plan = new ReductionPlan(640, 120, 4, 4, 256);
+
+        assertEquals(256, plan.getLevelWidth(0));
+        assertEquals(64, plan.getLevelHeight(0));
+        for (int level = 1; level < plan.getLevelCount(); level++) {
+            int width = plan.getLevelWidth(level);
+            int height = plan.getLevelHeight(level);
+            assertTrue(width == 4 || width * 2 == plan.getLevelWidth(level - 1));
+            assertTrue(height == 4 || height * 2 == plan.getLevelHeight(level - 1));
+        }
+        int last = plan.getLevelCount() - 1;
+        assertEquals(4, plan.getLevelWidth(last));
+        assertEquals(4, plan.getLevelHeight(last));
+        // 幅が格子に届くまで高さは4のまま
+        assertEquals(7, plan.getLevelCount());
+    }
+
+    @Test
+    public void levelZeroStaysWithinInput() {
+        ReductionPlan plan = new ReductionPlan(100, 30, 8, 4, 1024);
+
+        assertEquals(64, plan.getLevelWidth(0));
+        assertEquals(16, plan.getLevelHeight(0));
+        assertEquals(4, plan.getLevelCount());
+    }
+
+    @Test
+    public void inputSmallerThanGridIsSampledAtGridSize() {
+        ReductionPlan plan = new ReductionPlan(3, 2, 4, 4, 256);
+
+        assertEquals(1, plan.getLevelCount());
+        assertEquals(4, plan.getLevelWidth(0));
+        assertEquals(1, plan.getSamplesPerTile());
+    }
+
+    @Test
+    public void matchesInputSize() {
+        ReductionPlan plan = new ReductionPlan(640, 480, 4, 4, 256);
+
+        assertTrue(plan.matches(640, 480));
+        assertFalse(plan.matches(480, 640));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyGrid() {
+        new ReductionPlan(640, 480, 0, 4, 256);
+    }
+}
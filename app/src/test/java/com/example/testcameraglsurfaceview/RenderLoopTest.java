@@ -0,0 +1,302 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RenderLoopTest {
+
+    private static final long VSYNC_PERIOD = 16666667L;
+    private static final int LATENCY_FRAMES = 2;
+
+    private static class RecordingRenderer implements RenderLoop.Renderer {
+        final List<String> events = new ArrayList<>();
+        int decision = FrameChangeTracker.LATCH;
+        long timestamp = 0;
+
+        @Override
+        public void onContextCreated(int clientVersion) {
+            events.add("created");
+        }
+
+        @Override
+        public void onSurfaceChanged(int width, int height) {
+            events.add("changed " + width + "x" + height);
+        }
+
+        @Override
+        public int onDrawFrame() {
+            events.add("draw");
+            return decision;
+        }
+
+        @Override
+        public long getFrameTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public void onDrawCopy(int width, int height) {
+            events.add("copy " + width + "x" + height);
+        }
+
+        @Override
+        public void onContextReleasing() {
+            events.add("releasing");
+        }
+    }
+
+    private FakeCameraLooper mLooper;
+    private FakeEglApi mEgl;
+    private FakeVsyncSource mVsync;
+    private RecordingRenderer mRenderer;
+    private RenderLoop mLoop;
+
+    @Before
+    public void setUp() {
+        mLooper = new FakeCameraLooper();
+        mEgl = new FakeEglApi();
+        mVsync = new FakeVsyncSource();
+        mRenderer = new RecordingRenderer();
+        mLoop = new RenderLoop(mLooper, mEgl, mVsync, mRenderer,
+                new PresentationScheduler(VSYNC_PERIOD, LATENCY_FRAMES));
+    }
+
+    /** Resumes with one 640x480 output and draws the first frame. */
+    private int start() {
+        mLoop.resume();
+        int output = mLoop.addOutput("window", 640, 480);
+        mLooper.runPending();
+        mVsync.vsync(0);
+        mRenderer.events.clear();
+        mEgl.clearCalls();
+        return output;
+    }
+
+    @Test
+    public void resumeCreatesContextThenSizesFirstOutput() {
+        mLoop.resume();
+        mLoop.addOutput("window", 640, 480);
+        mLooper.runPending();
+
+        assertTrue(mEgl.hasContext());
+        assertEquals(1, mEgl.getSurfaceCount());
+        assertEquals(Arrays.asList("created", "changed 640x480"), mRenderer.events);
+        // 最初の画像を描くためにvsyncを待っている
+        assertTrue(mVsync.isPending());
+    }
+
+    @Test
+    public void nothingIsDrawnBeforeThereIsAnOutput() {
+        mLoop.resume();
+        mLoop.requestRender();
+        mLooper.runPending();
+        assertFalse(mVsync.isPending());
+
+        mLoop.addOutput("window", 640, 480);
+        mLooper.runPending();
+        mVsync.vsync(0);
+
+        assertEquals(Arrays.asList("created", "changed 640x480", "draw"), mRenderer.events);
+    }
+
+    @Test
+    public void requestsBetweenVsyncsCostOneDraw() {
+        start();
+        int vsyncRequests = mVsync.getRequestCount();
+
+        for (int i = 0; i < 5; i++) {
+            mLoop.requestRender();
+        }
+        // 描画されるまでの要求はまとめて1回だけ投入される
+        assertEquals(1, mLooper.getPendingCount());
+        mLooper.runPending();
+        mVsync.vsync(VSYNC_PERIOD);
+
+        assertEquals(vsyncRequests + 1, mVsync.getRequestCount());
+        assertEquals(Arrays.asList("draw"), mRenderer.events);
+        assertEquals(1, mEgl.count("swap"));
+    }
+
+    @Test
+    public void idleLoopDoesNotWaitForVsync() {
+        start();
+        int vsyncRequests = mVsync.getRequestCount();
+
+        mLooper.runPending();
+
+        assertFalse(mVsync.isPending());
+        assertEquals(vsyncRequests, mVsync.getRequestCount());
+    }
+
+    @Test
+    public void skippedFrameIsNotSwapped() {
+        start();
+        mRenderer.decision = FrameChangeTracker.SKIP;
+
+        mLoop.requestRender();
+        mLooper.runPending();
+        mVsync.vsync(VSYNC_PERIOD);
+
+        assertEquals(Arrays.asList("draw"), mRenderer.events);
+        assertEquals(0, mEgl.count("swap"));
+        assertEquals(1, mLoop.getSkippedSwapCount());
+        assertEquals(2, mLoop.getDrawCount());
+    }
+
+    @Test
+    public void latchedFrameIsPresentedFromItsCameraTimestamp() {
+        start();
+        long vsync = 5000000000L;
+        mRenderer.timestamp = 1000000000L;
+
+        mLoop.requestRender();
+        mLooper.runPending();
+        mVsync.vsync(vsync);
+
+        assertEquals(Arrays.asList(
+                "present 1 " + (vsync + LATENCY_FRAMES * VSYNC_PERIOD), "swap 1"),
+                mEgl.getCalls());
+    }
+
+    @Test
+    public void redrawIsSwappedWithoutPresentationTime() {
+        start();
+        mRenderer.decision = FrameChangeTracker.REDRAW;
+
+        mLoop.requestRender();
+        mLooper.runPending();
+        mVsync.vsync(VSYNC_PERIOD);
+
+        assertEquals(Arrays.asList("swap 1"), mEgl.getCalls());
+    }
+
+    @Test
+    public void otherOutputsGetACopyWithTheSamePresentationTime() {
+        start();
+        mLoop.addOutput("encoder", 320, 240);
+        mLooper.runPending();
+        mRenderer.events.clear();
+        mEgl.clearCalls();
+
+        mVsync.vsync(VSYNC_PERIOD);
+
+        assertEquals(Arrays.asList("draw", "copy 320x240"), mRenderer.events);
+        long presentation = VSYNC_PERIOD + LATENCY_FRAMES * VSYNC_PERIOD;
+        // EGLサーフェスは追加順に1, 2
+        assertEquals(Arrays.asList(
+                "present 1 " + presentation, "swap 1",
+                "present 2 " + presentation, "swap 2"),
+                mEgl.getCalls());
+        assertEquals(1, mEgl.getCurrentSurface());
+    }
+
+    @Test
+    public void removingFirstOutputPromotesTheNext() {
+        int primary = start();
+        mLoop.addOutput("encoder", 320, 240);
+
+        mLoop.removeOutput(primary);
+        mLooper.runPending();
+
+        assertEquals(Arrays.asList("changed 320x240"), mRenderer.events);
+        assertEquals(1, mEgl.getSurfaceCount());
+        assertTrue(mVsync.isPending());
+    }
+
+    @Test
+    public void removingLastOutputStopsDrawing() {
+        int output = start();
+        mLoop.requestRender();
+        mLoop.removeOutput(output);
+        mLooper.runPending();
+
+        mVsync.vsync(VSYNC_PERIOD);
+
+        assertTrue(mRenderer.events.isEmpty());
+        assertEquals(0, mEgl.getSurfaceCount());
+        assertEquals(EglApi.NO_SURFACE, mEgl.getCurrentSurface());
+    }
+
+    @Test
+    public void pauseReleasesRendererBeforeContextAndResumeRecreates() {
+        start();
+        mLoop.requestRender();
+        mLooper.runPending();
+        assertTrue(mVsync.isPending());
+
+        mLoop.pause();
+        mLooper.runPending();
+
+        assertEquals(Arrays.asList("releasing"), mRenderer.events);
+        assertEquals(Arrays.asList("destroySurface 1", "releaseContext"), mEgl.getCalls());
+        assertFalse(mVsync.isPending());
+
+        mLoop.requestRender();
+        mLooper.runPending();
+        assertFalse(mVsync.isPending());
+
+        mLoop.resume();
+        mLooper.runPending();
+        mVsync.vsync(VSYNC_PERIOD);
+
+        assertEquals(Arrays.asList("releasing", "created", "changed 640x480", "draw"), mRenderer.events);
+        assertEquals(1, mEgl.getSurfaceCount());
+    }
+
+    @Test
+    public void outputSizeChangeReachesRenderer() {
+        int output = start();
+
+        mLoop.setOutputSize(output, 640, 480);
+        mLoop.setOutputSize(output, 480, 640);
+        mLooper.runPending();
+
+        assertEquals(Arrays.asList("changed 480x640"), mRenderer.events);
+        assertTrue(mVsync.isPending());
+    }
+
+    @Test
+    public void continuousLoopDrawsEveryVsync() {
+        start();
+        mLoop.setContinuous(true);
+        mLooper.runPending();
+
+        for (int i = 1; i <= 3; i++) {
+            mVsync.vsync(i * VSYNC_PERIOD);
+        }
+
+        assertEquals(Arrays.asList("draw", "draw", "draw"), mRenderer.events);
+        assertTrue(mVsync.isPending());
+    }
+
+    @Test
+    public void failedSwapIsCounted() {
+        start();
+        mEgl.setSwapFails(true);
+
+        mLoop.requestRender();
+        mLooper.runPending();
+        mVsync.vsync(VSYNC_PERIOD);
+
+        assertEquals(1, mLoop.getSwapFailureCount());
+        assertEquals(1, mLoop.getSwapCount());
+    }
+
+    @Test
+    public void quitReleasesContextAndEndsLooper() {
+        start();
+
+        mLoop.quit();
+        mLooper.runPending();
+
+        assertEquals(Arrays.asList("releasing"), mRenderer.events);
+        assertFalse(mEgl.hasContext());
+        assertTrue(mLooper.isQuit());
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReplayBufferTest {
+
+    private static final Object FORMAT = new Object();
+    private static final int KEY = VideoEncoder.BUFFER_FLAG_KEY_FRAME;
+    private static final long FRAME_US = 33333;
+    private static final int GOP_LENGTH = 10;
+
+    private final EncodedBufferInfo mInfo = new EncodedBufferInfo();
+    private final ByteBuffer mData = ByteBuffer.allocate(256);
+
+    /** Frame number frame of a GOP_LENGTH stream, filled with the frame number's low byte. */
+    private boolean offerFrame(ReplayBuffer buffer, long frame) {
+        boolean key = frame % GOP_LENGTH == 0;
+        int size = key ? 40 : 10;
+        for (int i = 0; i < size; i++) {
+            mData.put(i, (byte) frame);
+        }
+        mInfo.set(0, size, 1000000 + frame * FRAME_US, key ? KEY : 0);
+        return buffer.offer(mData, mInfo);
+    }
+
+    private static void assertDecodable(List<RecordingMuxerSink.WrittenSample> samples) {
+        assertTrue((samples.get(0).flags & KEY) != 0);
+        assertEquals(0, samples.get(0).presentationTimeUs);
+        for (int i = 1; i < samples.size(); i++) {
+            assertEquals(samples.get(i - 1).presentationTimeUs + FRAME_US, samples.get(i).presentationTimeUs);
+            assertEquals((byte) (samples.get(i - 1).data[0] + 1), samples.get(i).data[0]);
+        }
+    }
+
+    @Test
+    public void save_writesWindowFromKeyFrameAtTimeZero() {
+        ReplayBuffer buffer = new ReplayBuffer(10000, 100, 25 * FRAME_US);
+        buffer.setFormat(FORMAT);
+        for (long frame = 0; frame < 50; frame++) {
+            assertTrue(offerFrame(buffer, frame));
+        }
+        RecordingMuxerSink sink = new RecordingMuxerSink();
+
+        assertEquals(30, buffer.save(sink));
+
+        assertEquals(1, sink.formats.size());
+        assertSame(FORMAT, sink.formats.get(0));
+        assertTrue(sink.stopped);
+        assertTrue(sink.released);
+        assertEquals(30, sink.samples.size());
+        assertEquals((byte) 20, sink.samples.get(0).data[0]);
+        assertEquals(40, sink.samples.get(0).data.length);
+        assertDecodable(sink.samples);
+        assertEquals(29 * FRAME_US, buffer.getDurationUs());
+        assertEquals(1, buffer.getSavedCount());
+    }
+
+    @Test
+    public void save_keepsBufferingAndCanBeRepeated() {
+        ReplayBuffer buffer = new ReplayBuffer(10000, 100, 25 * FRAME_US);
+        buffer.setFormat(FORMAT);
+        for (long frame = 0; frame < 15; frame++) {
+            offerFrame(buffer, frame);
+        }
+        RecordingMuxerSink first = new RecordingMuxerSink();
+        assertEquals(15, buffer.save(first));
+
+        for (long frame = 15; frame < 45; frame++) {
+            assertTrue(offerFrame(buffer, frame));
+        }
+        RecordingMuxerSink second = new RecordingMuxerSink();
+        assertEquals(35, buffer.save(second));
+
+        assertEquals((byte) 0, first.samples.get(0).data[0]);
+        assertEquals((byte) 10, second.samples.get(0).data[0]);
+        assertDecodable(second.samples);
+        assertEquals(2, buffer.getSavedCount());
+    }
+
+    @Test
+    public void save_withoutFormatOrSamples_onlyReleasesSink() {
+        ReplayBuffer buffer = new ReplayBuffer(1000, 10, 1000000);
+        RecordingMuxerSink sink = new RecordingMuxerSink();
+        offerFrame(buffer, 0);
+
+        assertEquals(0, buffer.save(sink));
+        assertFalse(sink.started);
+        assertTrue(sink.released);
+
+        ReplayBuffer empty = new ReplayBuffer(1000, 10, 1000000);
+        empty.setFormat(FORMAT);
+        sink = new RecordingMuxerSink();
+        assertEquals(0, empty.save(sink));
+        assertFalse(sink.started);
+        assertTrue(sink.released);
+        assertEquals(0, empty.getSavedCount());
+    }
+
+    @Test
+    public void save_overtakenByRecording_endsBeforeEvictedSamples() {
+        // 2 GOP分しか入らないバッファ
+        final ReplayBuffer buffer = new ReplayBuffer(2 * (40 + 9 * 10), 100, 60 * FRAME_US);
+        buffer.setFormat(FORMAT);
+        for (long frame = 0; frame < 20; frame++) {
+            offerFrame(buffer, frame);
+        }
+        // 書き出しの途中で録画が2 GOP進み、未書き出しのGOPを追い出す
+        RecordingMuxerSink sink = new RecordingMuxerSink() {
+            private long mFrame = 20;
+
+            @Override
+            public void writeSampleData(int track, ByteBuffer data, EncodedBufferInfo info) {
+                super.writeSampleData(track, data, info);
+                if (samples.size() == 5) {
+                    while (mFrame < 40) {
+                        offerFrame(buffer, mFrame++);
+                    }
+                }
+            }
+        };
+
+        assertEquals(5, buffer.save(sink));
+
+        assertEquals(1, buffer.getTruncatedCount());
+        assertTrue(sink.stopped);
+        assertDecodable(sink.samples);
+        assertEquals(20, buffer.getSampleCount());
+        assertTrue(buffer.getUsedBytes() <= buffer.getCapacity());
+    }
+
+    @Test
+    public void fedByEncoderDrainer_skipsCodecConfigAndStopsAtEndOfStream() {
+        FakeVideoEncoder encoder = new FakeVideoEncoder();
+        ReplayBuffer buffer = new ReplayBuffer(1000, 10, 1000000);
+        EncoderDrainer drainer = new EncoderDrainer(encoder, buffer);
+        encoder.queueFormatChanged();
+        encoder.queueSample(0, 6, (byte) 9, 0, VideoEncoder.BUFFER_FLAG_CODEC_CONFIG);
+        encoder.queueSample(2, 8, (byte) 1, 0, KEY);
+        encoder.queueSample(0, 4, (byte) 2, FRAME_US, 0);
+
+        drainer.drain(false);
+        assertTrue(drainer.drain(true));
+
+        assertEquals(2, buffer.getSampleCount());
+        mInfo.set(0, 4, 2 * FRAME_US, 0);
+        assertFalse(buffer.offer(mData, mInfo));
+        RecordingMuxerSink sink = new RecordingMuxerSink();
+        assertEquals(2, buffer.save(sink));
+        assertSame(FakeVideoEncoder.FORMAT, sink.formats.get(0));
+        assertArrayEquals(new byte[]{1, 1, 1, 1, 1, 1, 1, 1}, sink.samples.get(0).data);
+        assertEquals(FRAME_US, sink.samples.get(1).presentationTimeUs);
+    }
+
+    @Test
+    public void concurrentRecordingAndSaves_alwaysWriteDecodableFiles() throws InterruptedException {
+        final ReplayBuffer buffer = new ReplayBuffer(2000, 200, 30 * FRAME_US);
+        buffer.setFormat(FORMAT);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                EncodedBufferInfo info = new EncodedBufferInfo();
+                ByteBuffer data = ByteBuffer.allocate(64);
+                for (long frame = 0; frame < 20000; frame++) {
+                    boolean key = frame % GOP_LENGTH == 0;
+                    int size = key ? 40 : 10;
+                    for (int i = 0; i < size; i++) {
+                        data.put(i, (byte) frame);
+                    }
+                    info.set(0, size, frame * FRAME_US, key ? KEY : 0);
+                    buffer.offer(data, info);
+                }
+            }
+        });
+        producer.start();
+        int saves = 0;
+        while (producer.isAlive() || saves == 0) {
+            RecordingMuxerSink sink = new RecordingMuxerSink();
+            if (buffer.save(sink) > 0) {
+                assertDecodable(sink.samples);
+                saves++;
+            }
+            assertTrue(sink.released);
+        }
+        producer.join();
+        assertTrue(buffer.getUsedBytes() <= buffer.getCapacity());
+        assertEquals(0, buffer.getDroppedCount());
+    }
+}
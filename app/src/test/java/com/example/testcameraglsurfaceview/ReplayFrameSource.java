@@ -0,0 +1,156 @@
+package com.example.testcameraglsurfaceview;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * FrameSource that uploads a fixed sequence of RGBA images, rows bottom-up, to a GL_TEXTURE_2D,
+ * one per updateTexture() and looping. The images can be synthetic or read from recorded PPM files.
+ */
+public class ReplayFrameSource implements FrameSource {
+
+    private final int mWidth;
+    private final int mHeight;
+    private final List<byte[]> mFrames;
+    private final long mFrameIntervalNano;
+    private final ByteBuffer mUploadBuffer;
+    private CameraRotation mRotation = CameraRotation.ROTATION_0;
+    private boolean mReady = true;
+    private int mTextureName = 0;
+    private int mNextFrame = 0;
+    private long mTimestamp = 0;
+    private int mUploadCount = 0;
+    private boolean mAutoAdvance = true;
+    private long mFrameSequence = 0;
+
+    public ReplayFrameSource(int width, int height, List<byte[]> frames, long frameIntervalNano) {
+        mWidth = width;
+        mHeight = height;
+        mFrames = frames;
+        mFrameIntervalNano = frameIntervalNano;
+        mUploadBuffer = ByteBuffer.allocateDirect(width * height * 4);
+    }
+
+    /**
+     * Quadrants red, green, blue and white from the bottom-left, counter-clockwise, and a yellow bar
+     * that moves an eighth of the width per frame so replayed frames are told apart.
+     */
+    public static ReplayFrameSource synthetic(int width, int height, int frameCount, long frameIntervalNano) {
+        List<byte[]> frames = new ArrayList<>();
+        int barWidth = Math.max(1, width / 8);
+        for (int frame = 0; frame < frameCount; frame++) {
+            byte[] pixels = new byte[width * height * 4];
+            int barX = frame * barWidth % width;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int rgb;
+                    if (x >= barX && x < barX + barWidth && y < height / 4) {
+                        rgb = 0xffff00;
+                    } else if (y < height / 2) {
+                        rgb = x < width / 2 ? 0xff0000 : 0x00ff00;
+                    } else {
+                        rgb = x < width / 2 ? 0xffffff : 0x0000ff;
+                    }
+                    int offset = (y * width + x) * 4;
+                    pixels[offset] = (byte) (rgb >> 16);
+                    pixels[offset + 1] = (byte) (rgb >> 8);
+                    pixels[offset + 2] = (byte) rgb;
+                    pixels[offset + 3] = (byte) 255;
+                }
+            }
+            frames.add(pixels);
+        }
+        return new ReplayFrameSource(width, height, frames, frameIntervalNano);
+    }
+
+    public void setRotation(CameraRotation rotation) {
+        mRotation = rotation;
+    }
+
+    /**
+     * By default every draw finds a new frame. Without auto advance frames only arrive through
+     * deliverFrame(), like a camera that stalls between them.
+     */
+    public void setAutoAdvance(boolean autoAdvance) {
+        mFrameSequence = mUploadCount;
+        mAutoAdvance = autoAdvance;
+    }
+
+    public void deliverFrame() {
+        mFrameSequence++;
+    }
+
+    public void setReady(boolean ready) {
+        mReady = ready;
+    }
+
+    public boolean isAttached() {
+        return mTextureName != 0;
+    }
+
+    public int getUploadCount() {
+        return mUploadCount;
+    }
+
+    @Override
+    public boolean isReady() {
+        return mReady;
+    }
+
+    @Override
+    public int getTextureTarget() {
+        return GlApi.GL_TEXTURE_2D;
+    }
+
+    @Override
+    public void attachToGlContext(int textureName) {
+        mTextureName = textureName;
+    }
+
+    @Override
+    public void detachFromGlContext() {
+        mTextureName = 0;
+    }
+
+    @Override
+    public long getFrameSequence() {
+        return mAutoAdvance ? mUploadCount + 1 : mFrameSequence;
+    }
+
+    @Override
+    public void updateTexture(GlApi gl) {
+        if (mTextureName == 0) {
+            return;
+        }
+        mUploadBuffer.clear();
+        mUploadBuffer.put(mFrames.get(mNextFrame)).position(0);
+        mNextFrame = (mNextFrame + 1) % mFrames.size();
+        gl.glBindTexture(GlApi.GL_TEXTURE_2D, mTextureName);
+        gl.glTexImage2D(GlApi.GL_TEXTURE_2D, 0, GlApi.GL_RGBA, mWidth, mHeight, 0,
+                GlApi.GL_RGBA, GlApi.GL_UNSIGNED_BYTE, mUploadBuffer);
+        mTimestamp += mFrameIntervalNano;
+        mUploadCount++;
+    }
+
+    @Override
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    /** Rows are uploaded bottom-up, so the default t flip already shows the image upright. */
+    @Override
+    public void getTransformMatrix(float[] out) {
+        System.arraycopy(TextureTransform.DEFAULT_MATRIX, 0, out, 0, TextureTransform.MATRIX_SIZE);
+    }
+
+    @Override
+    public CameraRotation getRotation() {
+        return mRotation;
+    }
+
+    @Override
+    public Resolution getBufferSize() {
+        return new Resolution(mWidth, mHeight);
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class ShaderCacheTest {
+
+    private static final String VS = "void main() { gl_Position = vec4(0.0); }\n";
+    private static final String FS_A = "void main() { gl_FragColor = vec4(1.0); }\n";
+    private static final String FS_B = "void main() { gl_FragColor = vec4(0.0); }\n";
+
+    private File mDir;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = Files.createTempDirectory("shader_cache").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    @Test
+    public void key_isStableAndSourceSensitive() {
+        assertEquals(ShaderCache.key(VS, FS_A), ShaderCache.key(VS, FS_A));
+        assertNotEquals(ShaderCache.key(VS, FS_A), ShaderCache.key(VS, FS_B));
+        assertNotEquals(ShaderCache.key("ab", "c"), ShaderCache.key("a", "bc"));
+        assertNotEquals(ShaderCache.key(VS, FS_A), ShaderCache.key(FS_A, VS));
+        assertEquals(40, ShaderCache.key(VS, FS_A).length());
+    }
+
+    @Test
+    public void secondRequest_isMemoryHit() {
+        RecordingGlApi gl = new RecordingGlApi();
+        FakeClock clock = new FakeClock(0);
+        ShaderCache cache = new ShaderCache(4, null, clock);
+        cache.onSurfaceCreated(gl);
+
+        int program = cache.getProgram(gl, VS, FS_A);
+        assertEquals(program, cache.getProgram(gl, VS, FS_A));
+        assertEquals(1, gl.count("glLinkProgram"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void lru_evictsAndDeletesLeastRecentlyUsed() {
+        RecordingGlApi gl = new RecordingGlApi();
+        ShaderCache cache = new ShaderCache(2, null, new FakeClock(0));
+        cache.onSurfaceCreated(gl);
+
+        cache.getProgram(gl, VS, "a");
+        cache.getProgram(gl, VS, "b");
+        cache.getProgram(gl, VS, "a");
+        cache.getProgram(gl, VS, "c");
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(1, gl.count("glDeleteProgram"));
+
+        gl.resetCounts();
+        cache.getProgram(gl, VS, "a");
+        assertEquals(0, gl.count("glLinkProgram"));
+        cache.getProgram(gl, VS, "b");
+        assertEquals(1, gl.count("glLinkProgram"));
+    }
+
+    @Test
+    public void es2_neverTouchesBinaries() {
+        RecordingGlApi gl = new RecordingGlApi();
+        ShaderCache cache = new ShaderCache(4, new ProgramBinaryStore(mDir), new FakeClock(0));
+        cache.onSurfaceCreated(gl);
+        cache.getProgram(gl, VS, FS_A);
+
+        assertFalse(cache.isBinarySupported());
+        assertEquals(0, gl.count("glGetProgramBinary"));
+        assertFalse(new File(mDir, ProgramBinaryStore.INDEX_FILE).exists());
+    }
+
+    @Test
+    public void es3DriverOnEs2Context_neverTouchesBinaries() {
+        RecordingGlApi gl = new RecordingGlApi();
+        gl.setVersion("OpenGL ES 3.2 V@415.0");
+        gl.setClientVersion(2);
+        ShaderCache cache = new ShaderCache(4, new ProgramBinaryStore(mDir), new FakeClock(0));
+        cache.onSurfaceCreated(gl);
+        cache.getProgram(gl, VS, FS_A);
+
+        assertFalse(cache.isBinarySupported());
+        assertEquals(0, gl.count("glGetProgramBinary"));
+    }
+
+    @Test
+    public void contextLoss_reloadsFromBinaryWithoutCompiling() {
+        RecordingGlApi gl = new RecordingGlApi();
+        gl.setVersion("OpenGL ES 3.2 V@415.0");
+        ShaderCache cache = new ShaderCache(4, new ProgramBinaryStore(mDir), new FakeClock(0));
+        cache.onSurfaceCreated(gl);
+        cache.getProgram(gl, VS, FS_A);
+        assertEquals(1, gl.count("glGetProgramBinary"));
+
+        gl.resetCounts();
+        cache.onSurfaceCreated(gl);
+        assertNotEquals(0, cache.getProgram(gl, VS, FS_A));
+        assertEquals(0, gl.count("glCompileShader"));
+        assertEquals(1, gl.count("glProgramBinary"));
+        assertEquals(1, cache.getBinaryHitCount());
+    }
+
+    @Test
+    public void newProcess_reloadsFromDisk() {
+        RecordingGlApi gl = new RecordingGlApi();
+        gl.setVersion("OpenGL ES 3.2 V@415.0");
+        ShaderCache first = new ShaderCache(4, new ProgramBinaryStore(mDir), new FakeClock(0));
+        first.onSurfaceCreated(gl);
+        first.getProgram(gl, VS, FS_A);
+        first.getProgram(gl, VS, FS_B);
+
+        gl.resetCounts();
+        ShaderCache second = new ShaderCache(4, new ProgramBinaryStore(mDir), new FakeClock(0));
+        second.onSurfaceCreated(gl);
+        second.getProgram(gl, VS, FS_A);
+        second.getProgram(gl, VS, FS_B);
+        assertEquals(0, gl.count("glCompileShader"));
+        assertEquals(2, second.getBinaryHitCount());
+    }
+
+    @Test
+    public void driverUpdate_invalidatesStore() {
+        RecordingGlApi gl = new RecordingGlApi();
+        gl.setVersion("OpenGL ES 3.2 V@415.0");
+        ShaderCache cache = new ShaderCache(4, new ProgramBinaryStore(mDir), new FakeClock(0));
+        cache.onSurfaceCreated(gl);
+        cache.getProgram(gl, VS, FS_A);
+
+        gl.setVersion("OpenGL ES 3.2 V@490.0");
+        gl.resetCounts();
+        ShaderCache updated = new ShaderCache(4, new ProgramBinaryStore(mDir), new FakeClock(0));
+        updated.onSurfaceCreated(gl);
+        updated.getProgram(gl, VS, FS_A);
+        assertEquals(0, gl.count("glProgramBinary"));
+        assertEquals(1, updated.getMissCount());
+    }
+
+    @Test
+    public void rejectedBinary_fallsBackToCompileAndIsReplaced() {
+        RecordingGlApi gl = new RecordingGlApi();
+        gl.setVersion("OpenGL ES 3.2");
+        ShaderCache cache = new ShaderCache(4, new ProgramBinaryStore(mDir), new FakeClock(0));
+        cache.onSurfaceCreated(gl);
+        cache.getProgram(gl, VS, FS_A);
+
+        gl.setAcceptBinaries(false);
+        cache.onSurfaceCreated(gl);
+        assertNotEquals(0, cache.getProgram(gl, VS, FS_A));
+        assertEquals(0, cache.getBinaryHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, gl.count("glGetProgramBinary"));
+    }
+
+    @Test
+    public void compileTime_isMeasuredWithClock() {
+        final FakeClock clock = new FakeClock(0);
+        RecordingGlApi gl = new RecordingGlApi() {
+            @Override
+            public void glLinkProgram(int program) {
+                super.glLinkProgram(program);
+                clock.advanceMillis(25);
+            }
+        };
+        ShaderCache cache = new ShaderCache(4, null, clock);
+        cache.onSurfaceCreated(gl);
+        cache.getProgram(gl, VS, FS_A);
+        cache.getProgram(gl, VS, FS_A);
+        assertEquals(25000000L, cache.getCompileTimeNano());
+    }
+
+    @Test
+    public void store_roundTripsIndex() {
+        ProgramBinaryStore store = new ProgramBinaryStore(mDir);
+        store.open("driver-1");
+        store.save("k1", 7, new byte[]{1, 2, 3});
+        store.save("k2", 9, new byte[]{4, 5});
+
+        ProgramBinaryStore reopened = new ProgramBinaryStore(mDir);
+        reopened.open("driver-1");
+        assertEquals(2, reopened.size());
+        ProgramBinaryStore.Entry entry = reopened.load("k1");
+        assertEquals(7, entry.format);
+        assertArrayEquals(new byte[]{1, 2, 3}, entry.binary);
+        assertNull(reopened.load("missing"));
+    }
+
+    @Test
+    public void store_dropsEntriesWhoseBinaryIsTruncated() throws IOException {
+        ProgramBinaryStore store = new ProgramBinaryStore(mDir);
+        store.open("driver-1");
+        store.save("k1", 7, new byte[]{1, 2, 3});
+        try (FileOutputStream out = new FileOutputStream(new File(mDir, "k1.bin"))) {
+            out.write(1);
+        }
+
+        ProgramBinaryStore reopened = new ProgramBinaryStore(mDir);
+        reopened.open("driver-1");
+        assertFalse(reopened.contains("k1"));
+    }
+
+    @Test
+    public void store_treatsForeignIndexAsEmpty() throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(mDir, ProgramBinaryStore.INDEX_FILE)))) {
+            out.writeInt(0xCAFEBABE);
+            out.writeInt(ProgramBinaryStore.FORMAT_VERSION);
+        }
+        ProgramBinaryStore store = new ProgramBinaryStore(mDir);
+        store.open("driver-1");
+        assertEquals(0, store.size());
+        store.save("k1", 1, new byte[]{1});
+
+        ProgramBinaryStore reopened = new ProgramBinaryStore(mDir);
+        reopened.open("driver-1");
+        assertTrue(reopened.contains("k1"));
+    }
+}
@@ -0,0 +1,477 @@
+package com.example.testcameraglsurfaceview;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * GlApi that rasterizes on the CPU, so the render pipeline can run headlessly on the JVM.
+ * Shader sources are not executed: every program samples the texture bound to unit 0 at the
+ * interpolated "texcoord" attribute with nearest filtering, so filters pass the image through.
+ * Reports an ES2 context, so readback is synchronous and there are no program binaries.
+ */
+public class SoftwareGlApi implements GlApi {
+
+    private static final int ATTRIB_POSITION = 0;
+    private static final int ATTRIB_TEXCOORD = 1;
+    private static final int MAX_ATTRIBS = 8;
+    private static final int MAX_TEXTURE_UNITS = 8;
+
+    private static class Image {
+        int width;
+        int height;
+        byte[] pixels = new byte[0];
+
+        void allocate(int width, int height) {
+            this.width = width;
+            this.height = height;
+            pixels = new byte[width * height * 4];
+        }
+    }
+
+    private static class Attrib {
+        int size;
+        int strideFloats;
+        int offsetFloats;
+        float[] vboData;
+        FloatBuffer clientData;
+
+        float get(int vertex, int component) {
+            int index = offsetFloats + vertex * strideFloats + component;
+            return vboData != null ? vboData[index] : clientData.get(clientData.position() + index);
+        }
+    }
+
+    private final Image mWindow = new Image();
+    private final Map<Integer, Image> mTextures = new HashMap<>();
+    private final Map<Integer, Integer> mFramebufferTextures = new HashMap<>();
+    private final Map<Integer, float[]> mBuffers = new HashMap<>();
+    private final Attrib[] mAttribs = new Attrib[MAX_ATTRIBS];
+    private final int[] mBoundTextures = new int[MAX_TEXTURE_UNITS];
+    private int mActiveUnit = 0;
+    private int mBoundFramebuffer = 0;
+    private int mBoundArrayBuffer = 0;
+    private int mViewportX;
+    private int mViewportY;
+    private int mViewportWidth;
+    private int mViewportHeight;
+    private final byte[] mClearColor = new byte[4];
+    private int mNextName = 1;
+    private long mDrawCount = 0;
+
+    public SoftwareGlApi(int windowWidth, int windowHeight) {
+        mWindow.allocate(windowWidth, windowHeight);
+        mViewportWidth = windowWidth;
+        mViewportHeight = windowHeight;
+        for (int i = 0; i < MAX_ATTRIBS; i++) {
+            mAttribs[i] = new Attrib();
+        }
+    }
+
+    public int getWindowWidth() {
+        return mWindow.width;
+    }
+
+    public int getWindowHeight() {
+        return mWindow.height;
+    }
+
+    public long getDrawCount() {
+        return mDrawCount;
+    }
+
+    private Image target() {
+        if (mBoundFramebuffer == 0) {
+            return mWindow;
+        }
+        Integer texture = mFramebufferTextures.get(mBoundFramebuffer);
+        return texture == null ? null : mTextures.get(texture);
+    }
+
+    private void generate(int n, int[] names, int offset) {
+        for (int i = 0; i < n; i++) {
+            names[offset + i] = mNextName++;
+        }
+    }
+
+    @Override
+    public void glActiveTexture(int texture) {
+        mActiveUnit = texture - GL_TEXTURE0;
+    }
+
+    @Override
+    public void glBindTexture(int target, int texture) {
+        mBoundTextures[mActiveUnit] = texture;
+        if (texture != 0 && !mTextures.containsKey(texture)) {
+            mTextures.put(texture, new Image());
+        }
+    }
+
+    @Override
+    public void glGenTextures(int n, int[] textures, int offset) {
+        generate(n, textures, offset);
+    }
+
+    @Override
+    public void glDeleteTextures(int n, int[] textures, int offset) {
+        for (int i = 0; i < n; i++) {
+            mTextures.remove(textures[offset + i]);
+        }
+    }
+
+    @Override
+    public void glTexParameteri(int target, int pname, int param) {
+    }
+
+    @Override
+    public void glTexImage2D(int target, int level, int internalformat, int width, int height, int border, int format, int type, Buffer pixels) {
+        Image image = mTextures.get(mBoundTextures[mActiveUnit]);
+        if (image == null) {
+            throw new IllegalStateException("glTexImage2D without a bound texture");
+        }
+        image.allocate(width, height);
+        if (pixels != null) {
+            ByteBuffer source = ((ByteBuffer) pixels).duplicate();
+            source.get(image.pixels, 0, Math.min(image.pixels.length, source.remaining()));
+        }
+    }
+
+    @Override
+    public void glGenFramebuffers(int n, int[] framebuffers, int offset) {
+        generate(n, framebuffers, offset);
+    }
+
+    @Override
+    public void glDeleteFramebuffers(int n, int[] framebuffers, int offset) {
+        for (int i = 0; i < n; i++) {
+            mFramebufferTextures.remove(framebuffers[offset + i]);
+        }
+    }
+
+    @Override
+    public void glBindFramebuffer(int target, int framebuffer) {
+        mBoundFramebuffer = framebuffer;
+    }
+
+    @Override
+    public void glFramebufferTexture2D(int target, int attachment, int textarget, int texture, int level) {
+        mFramebufferTextures.put(mBoundFramebuffer, texture);
+    }
+
+    @Override
+    public int glCheckFramebufferStatus(int target) {
+        return target() != null ? GL_FRAMEBUFFER_COMPLETE : 0;
+    }
+
+    @Override
+    public void glGenBuffers(int n, int[] buffers, int offset) {
+        generate(n, buffers, offset);
+    }
+
+    @Override
+    public void glDeleteBuffers(int n, int[] buffers, int offset) {
+        for (int i = 0; i < n; i++) {
+            mBuffers.remove(buffers[offset + i]);
+        }
+    }
+
+    @Override
+    public void glBindBuffer(int target, int buffer) {
+        if (target == GL_ARRAY_BUFFER) {
+            mBoundArrayBuffer = buffer;
+        }
+    }
+
+    @Override
+    public void glBufferData(int target, int size, Buffer data, int usage) {
+        if (target != GL_ARRAY_BUFFER) {
+            throw new UnsupportedOperationException("only GL_ARRAY_BUFFER is supported");
+        }
+        mBuffers.put(mBoundArrayBuffer, new float[size / 4]);
+        glBufferSubData(target, 0, size, data);
+    }
+
+    @Override
+    public void glBufferSubData(int target, int offset, int size, Buffer data) {
+        if (data == null) {
+            return;
+        }
+        float[] storage = mBuffers.get(mBoundArrayBuffer);
+        FloatBuffer floats = ((FloatBuffer) data).duplicate();
+        floats.get(storage, offset / 4, size / 4);
+    }
+
+    @Override
+    public void glViewport(int x, int y, int width, int height) {
+        mViewportX = x;
+        mViewportY = y;
+        mViewportWidth = width;
+        mViewportHeight = height;
+    }
+
+    @Override
+    public void glClearColor(float red, float green, float blue, float alpha) {
+        mClearColor[0] = toByte(red);
+        mClearColor[1] = toByte(green);
+        mClearColor[2] = toByte(blue);
+        mClearColor[3] = toByte(alpha);
+    }
+
+    private static byte toByte(float value) {
+        return (byte) Math.round(Math.max(0.0f, Math.min(1.0f, value)) * 255.0f);
+    }
+
+    @Override
+    public void glClear(int mask) {
+        if ((mask & GL_COLOR_BUFFER_BIT) == 0) {
+            return;
+        }
+        byte[] pixels = target().pixels;
+        for (int i = 0; i < pixels.length; i += 4) {
+            System.arraycopy(mClearColor, 0, pixels, i, 4);
+        }
+    }
+
+    @Override
+    public int glCreateShader(int type) {
+        return mNextName++;
+    }
+
+    @Override
+    public void glShaderSource(int shader, String source) {
+    }
+
+    @Override
+    public void glCompileShader(int shader) {
+    }
+
+    @Override
+    public void glGetShaderiv(int shader, int pname, int[] params, int offset) {
+        params[offset] = GL_TRUE;
+    }
+
+    @Override
+    public void glDeleteShader(int shader) {
+    }
+
+    @Override
+    public int glCreateProgram() {
+        return mNextName++;
+    }
+
+    @Override
+    public void glAttachShader(int program, int shader) {
+    }
+
+    @Override
+    public void glLinkProgram(int program) {
+    }
+
+    @Override
+    public void glGetProgramiv(int program, int pname, int[] params, int offset) {
+        params[offset] = GL_TRUE;
+    }
+
+    @Override
+    public void glDeleteProgram(int program) {
+    }
+
+    @Override
+    public void glUseProgram(int program) {
+    }
+
+    @Override
+    public int glGetAttribLocation(int program, String name) {
+        if ("position".equals(name)) {
+            return ATTRIB_POSITION;
+        }
+        return "texcoord".equals(name) ? ATTRIB_TEXCOORD : -1;
+    }
+
+    @Override
+    public int glGetUniformLocation(int program, String name) {
+        return 0;
+    }
+
+    @Override
+    public void glEnableVertexAttribArray(int index) {
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, Buffer ptr) {
+        Attrib attrib = mAttribs[index];
+        attrib.size = size;
+        attrib.strideFloats = stride == 0 ? size : stride / 4;
+        attrib.offsetFloats = 0;
+        attrib.vboData = null;
+        attrib.clientData = (FloatBuffer) ptr;
+    }
+
+    @Override
+    public void glVertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset) {
+        Attrib attrib = mAttribs[index];
+        attrib.size = size;
+        attrib.strideFloats = stride == 0 ? size : stride / 4;
+        attrib.offsetFloats = offset / 4;
+        attrib.vboData = mBuffers.get(mBoundArrayBuffer);
+        attrib.clientData = null;
+    }
+
+    @Override
+    public void glUniform1i(int location, int x) {
+    }
+
+    @Override
+    public void glUniform1f(int location, float x) {
+    }
+
+    @Override
+    public void glUniform2f(int location, float x, float y) {
+    }
+
+    @Override
+    public void glDrawArrays(int mode, int first, int count) {
+        if (mode != GL_TRIANGLE_STRIP) {
+            throw new UnsupportedOperationException("only GL_TRIANGLE_STRIP is supported");
+        }
+        mDrawCount++;
+        Image texture = mTextures.get(mBoundTextures[0]);
+        Image target = target();
+        for (int i = first; i + 2 < first + count; i++) {
+            drawTriangle(target, texture, i, i + 1, i + 2);
+        }
+    }
+
+    private void drawTriangle(Image target, Image texture, int v0, int v1, int v2) {
+        Attrib position = mAttribs[ATTRIB_POSITION];
+        Attrib texcoord = mAttribs[ATTRIB_TEXCOORD];
+        int[] vertices = {v0, v1, v2};
+        float[] x = new float[3];
+        float[] y = new float[3];
+        float[] s = new float[3];
+        float[] t = new float[3];
+        for (int i = 0; i < 3; i++) {
+            x[i] = mViewportX + (position.get(vertices[i], 0) + 1.0f) * 0.5f * mViewportWidth;
+            y[i] = mViewportY + (position.get(vertices[i], 1) + 1.0f) * 0.5f * mViewportHeight;
+            s[i] = texcoord.get(vertices[i], 0);
+            t[i] = texcoord.get(vertices[i], 1);
+        }
+        float area = (x[1] - x[0]) * (y[2] - y[0]) - (x[2] - x[0]) * (y[1] - y[0]);
+        if (area == 0.0f) {
+            return;
+        }
+
+        int minX = Math.max(Math.max(0, mViewportX), (int) Math.floor(Math.min(x[0], Math.min(x[1], x[2]))));
+        int maxX = Math.min(Math.min(target.width, mViewportX + mViewportWidth),
+                (int) Math.ceil(Math.max(x[0], Math.max(x[1], x[2]))));
+        int minY = Math.max(Math.max(0, mViewportY), (int) Math.floor(Math.min(y[0], Math.min(y[1], y[2]))));
+        int maxY = Math.min(Math.min(target.height, mViewportY + mViewportHeight),
+                (int) Math.ceil(Math.max(y[0], Math.max(y[1], y[2]))));
+        for (int py = minY; py < maxY; py++) {
+            for (int px = minX; px < maxX; px++) {
+                float cx = px + 0.5f;
+                float cy = py + 0.5f;
+                float w0 = ((x[1] - cx) * (y[2] - cy) - (x[2] - cx) * (y[1] - cy)) / area;
+                float w1 = ((x[2] - cx) * (y[0] - cy) - (x[0] - cx) * (y[2] - cy)) / area;
+                float w2 = 1.0f - w0 - w1;
+                if (w0 < 0.0f || w1 < 0.0f || w2 < 0.0f) {
+                    continue;
+                }
+                int out = (py * target.width + px) * 4;
+                sample(texture, w0 * s[0] + w1 * s[1] + w2 * s[2], w0 * t[0] + w1 * t[1] + w2 * t[2],
+                        target.pixels, out);
+            }
+        }
+    }
+
+    private static void sample(Image texture, float s, float t, byte[] out, int offset) {
+        if (texture == null || texture.width == 0) {
+            out[offset] = 0;
+            out[offset + 1] = 0;
+            out[offset + 2] = 0;
+            out[offset + 3] = (byte) 255;
+            return;
+        }
+        int x = Math.max(0, Math.min(texture.width - 1, (int) Math.floor(s * texture.width)));
+        int y = Math.max(0, Math.min(texture.height - 1, (int) Math.floor(t * texture.height)));
+        System.arraycopy(texture.pixels, (y * texture.width + x) * 4, out, offset, 4);
+    }
+
+    @Override
+    public int glGetError() {
+        return GL_NO_ERROR;
+    }
+
+    @Override
+    public int getClientVersion() {
+        return 2;
+    }
+
+    @Override
+    public String glGetString(int name) {
+        switch (name) {
+            case GL_VERSION:
+                return "OpenGL ES 2.0 Software";
+            case GL_RENDERER:
+                return "SoftwareGlApi";
+            default:
+                return "Test";
+        }
+    }
+
+    @Override
+    public void glGetIntegerv(int pname, int[] params, int offset) {
+        params[offset] = 0;
+    }
+
+    @Override
+    public void glReadPixels(int x, int y, int width, int height, int format, int type, Buffer pixels) {
+        Image source = target();
+        ByteBuffer out = ((ByteBuffer) pixels).duplicate();
+        for (int row = 0; row < height; row++) {
+            out.put(source.pixels, ((y + row) * source.width + x) * 4, width * 4);
+        }
+    }
+
+    @Override
+    public void glGetProgramBinary(int program, int bufSize, int[] length, int lengthOffset, int[] binaryFormat, int binaryFormatOffset, Buffer binary) {
+        throw new UnsupportedOperationException("ES3 only");
+    }
+
+    @Override
+    public void glProgramBinary(int program, int binaryFormat, Buffer binary, int length) {
+        throw new UnsupportedOperationException("ES3 only");
+    }
+
+    @Override
+    public void glReadPixels(int x, int y, int width, int height, int format, int type, int offset) {
+        throw new UnsupportedOperationException("ES3 only");
+    }
+
+    @Override
+    public Buffer glMapBufferRange(int target, int offset, int length, int access) {
+        throw new UnsupportedOperationException("ES3 only");
+    }
+
+    @Override
+    public boolean glUnmapBuffer(int target) {
+        throw new UnsupportedOperationException("ES3 only");
+    }
+
+    @Override
+    public long glFenceSync(int condition, int flags) {
+        throw new UnsupportedOperationException("ES3 only");
+    }
+
+    @Override
+    public int glClientWaitSync(long sync, int flags, long timeout) {
+        throw new UnsupportedOperationException("ES3 only");
+    }
+
+    @Override
+    public void glDeleteSync(long sync) {
+        throw new UnsupportedOperationException("ES3 only");
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StreamNegotiatorTest {
+
+    private static final int PRIVATE = CameraCapabilities.FORMAT_PRIVATE;
+    private static final int YUV = CameraCapabilities.FORMAT_YUV_420_888;
+    private static final long PREVIEW_BUDGET = 1920 * 1440;
+
+    private static StreamRequest preview(int displayWidth, int displayHeight) {
+        return new StreamRequest(PRIVATE, displayWidth, displayHeight).setMaxPixels(PREVIEW_BUDGET);
+    }
+
+    private static CapturePlan negotiate(CameraCapabilities capabilities, int displayWidth, int displayHeight,
+                                         StreamRequest... requests) {
+        return StreamNegotiator.negotiate(capabilities, (double) displayWidth / displayHeight, 30, requests);
+    }
+
+    @Test
+    public void wideDisplay_picks16by9InsteadOfClosestArea() {
+        CapturePlan plan = negotiate(CapabilityTables.highEnd(), 2280, 1080, preview(2280, 1080));
+
+        assertEquals(new Resolution(1920, 1080), plan.getSize(0));
+    }
+
+    @Test
+    public void portraitDisplay_isTreatedAsLandscapeSensorOrientation() {
+        assertEquals(negotiate(CapabilityTables.highEnd(), 2280, 1080, preview(2280, 1080)),
+                negotiate(CapabilityTables.highEnd(), 1080, 2280, preview(1080, 2280)));
+    }
+
+    @Test
+    public void fourByThreeDisplay_picksExactMatch() {
+        CapturePlan plan = negotiate(CapabilityTables.highEnd(), 1600, 1200, preview(1600, 1200));
+
+        assertEquals(new Resolution(1600, 1200), plan.getSize(0));
+    }
+
+    @Test
+    public void pixelBudget_isRespected() {
+        CapturePlan plan = negotiate(CapabilityTables.highEnd(), 3840, 2160,
+                new StreamRequest(PRIVATE, 3840, 2160).setMaxPixels(1280 * 720));
+
+        assertEquals(new Resolution(1280, 720), plan.getSize(0));
+    }
+
+    @Test
+    public void nothingInBudget_fallsBackToSmallest() {
+        CapturePlan plan = negotiate(CapabilityTables.midRange(), 1920, 1080,
+                new StreamRequest(PRIVATE, 1920, 1080).setMaxPixels(100));
+
+        assertEquals(new Resolution(640, 480), plan.getSize(0));
+    }
+
+    @Test
+    public void sizeThatCannotSustainTargetFps_isAvoided() {
+        CapturePlan plan = negotiate(CapabilityTables.midRange(), 2000, 1500,
+                new StreamRequest(PRIVATE, 2000, 1500));
+
+        assertEquals(new Resolution(1440, 1080), plan.getSize(0));
+        assertTrue(plan.getMaxFps() >= 30);
+    }
+
+    @Test
+    public void analysisStream_matchesPreviewAspectWithinItsBudget() {
+        CapturePlan plan = negotiate(CapabilityTables.highEnd(), 2280, 1080,
+                preview(2280, 1080),
+                new StreamRequest(YUV, 640, 480).setMaxPixels(1280 * 720).setMatchFirstStreamAspect(true));
+
+        assertEquals(2, plan.getStreamCount());
+        Resolution previewSize = plan.getSize(0);
+        Resolution analysisSize = plan.getSize(1);
+        assertEquals(new Resolution(640, 360), analysisSize);
+        assertEquals((double) previewSize.getWidth() / previewSize.getHeight(),
+                (double) analysisSize.getWidth() / analysisSize.getHeight(), 0.01);
+    }
+
+    @Test
+    public void fixedRangeAtTarget_isPreferred() {
+        CapturePlan plan = negotiate(CapabilityTables.highEnd(), 2280, 1080, preview(2280, 1080));
+
+        assertEquals(new CameraCapabilities.FpsRange(30, 30), plan.getFpsRange());
+    }
+
+    @Test
+    public void withoutFixedRange_narrowestRangeReachingTargetIsPreferred() {
+        CapturePlan plan = negotiate(CapabilityTables.midRange(), 2280, 1080, preview(2280, 1080));
+
+        assertEquals(new CameraCapabilities.FpsRange(15, 30), plan.getFpsRange());
+    }
+
+    @Test
+    public void rangeAboveWhatStreamsDeliver_isNotChosen() {
+        CameraCapabilities capabilities = new CameraCapabilities()
+                .addOutput(PRIVATE, 1920, 1080, 50000000L)
+                .addFpsRange(30, 30)
+                .addFpsRange(10, 20);
+
+        CapturePlan plan = negotiate(capabilities, 1920, 1080, preview(1920, 1080));
+
+        assertEquals(new CameraCapabilities.FpsRange(10, 20), plan.getFpsRange());
+        assertEquals(20.0, plan.getMaxFps(), 0.01);
+    }
+
+    @Test
+    public void legacyWithoutFrameDurations_stillNegotiates() {
+        CapturePlan plan = negotiate(CapabilityTables.legacy(), 2280, 1080,
+                preview(2280, 1080),
+                new StreamRequest(YUV, 640, 480).setMaxPixels(1280 * 720).setMatchFirstStreamAspect(true));
+
+        assertEquals(new Resolution(1920, 1080), plan.getSize(0));
+        assertEquals(new CameraCapabilities.FpsRange(30, 30), plan.getFpsRange());
+        assertNotNull(plan.getSize(1));
+    }
+
+    @Test
+    public void noFpsRanges_leavesRangeUnset() {
+        CameraCapabilities capabilities = new CameraCapabilities().addOutput(PRIVATE, 1280, 720, 0);
+
+        assertNull(negotiate(capabilities, 1280, 720, preview(1280, 720)).getFpsRange());
+    }
+
+    @Test
+    public void missingFormat_returnsNull() {
+        CameraCapabilities capabilities = new CameraCapabilities().addOutput(PRIVATE, 1280, 720, 0);
+
+        assertNull(negotiate(capabilities, 1280, 720, preview(1280, 720), new StreamRequest(YUV, 640, 480)));
+    }
+
+    @Test
+    public void plan_isStableForSameInputs() {
+        CapturePlan first = negotiate(CapabilityTables.midRange(), 1080, 2280, preview(1080, 2280));
+        CapturePlan second = negotiate(CapabilityTables.midRange(), 1080, 2280, preview(1080, 2280));
+
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+    }
+}
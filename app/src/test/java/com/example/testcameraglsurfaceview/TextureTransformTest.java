@@ -0,0 +1,106 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TextureTransformTest {
+
+    private static final float EPSILON = 1e-6f;
+    /* 表示上の左上、左下、右上、右下。TextureCoordinatesの頂点順 */
+    private static final float[][] DISPLAY_CORNERS = {{0, 0}, {0, 1}, {1, 0}, {1, 1}};
+
+    /** 表示の(u, v)がバッファ上でどこになるか、回転ごとに手で書いたもの */
+    private static float[] expectedBuffer(CameraRotation rotation, float u, float v) {
+        switch (rotation) {
+            case ROTATION_90:
+                return new float[]{1 - v, u};
+            case ROTATION_180:
+                return new float[]{1 - u, 1 - v};
+            case ROTATION_270:
+                return new float[]{v, 1 - u};
+            case ROTATION_0:
+            default:
+                return new float[]{u, v};
+        }
+    }
+
+    @Test
+    public void defaultMatrix_reproducesRotationTables() {
+        float[] out = new float[2];
+        for (CameraRotation r : CameraRotation.values()) {
+            float[] table = TextureCoordinates.forRotation(r);
+            for (int i = 0; i < DISPLAY_CORNERS.length; i++) {
+                TextureTransform.toTexture(r, TextureTransform.DEFAULT_MATRIX,
+                        DISPLAY_CORNERS[i][0], DISPLAY_CORNERS[i][1], out, 0);
+                assertEquals(r + " corner " + i, table[i * 2], out[0], EPSILON);
+                assertEquals(r + " corner " + i, table[i * 2 + 1], out[1], EPSILON);
+            }
+        }
+    }
+
+    @Test
+    public void toBuffer_rotatesDisplayPointsForEveryRotation() {
+        float[][] points = {{0.5f, 0.5f}, {0.1f, 0.3f}, {0.9f, 0.2f}, {0.25f, 1.0f}};
+        float[] out = new float[4];
+        for (CameraRotation r : CameraRotation.values()) {
+            for (float[] p : points) {
+                TextureTransform.toBuffer(r, p[0], p[1], out, 2);
+                float[] expected = expectedBuffer(r, p[0], p[1]);
+                assertEquals(r.toString(), expected[0], out[2], EPSILON);
+                assertEquals(r.toString(), expected[1], out[3], EPSILON);
+            }
+        }
+    }
+
+    @Test
+    public void identityMatrix_flipsTComparedToDefault() {
+        float[] identity = {1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1};
+        float[] withDefault = new float[2];
+        float[] withIdentity = new float[2];
+        for (CameraRotation r : CameraRotation.values()) {
+            TextureTransform.toTexture(r, TextureTransform.DEFAULT_MATRIX, 0.2f, 0.7f, withDefault, 0);
+            TextureTransform.toTexture(r, identity, 0.2f, 0.7f, withIdentity, 0);
+            assertEquals(withDefault[0], withIdentity[0], EPSILON);
+            assertEquals(1 - withDefault[1], withIdentity[1], EPSILON);
+        }
+    }
+
+    @Test
+    public void paddedMatrix_scalesAndOffsetsAfterRotation() {
+        // 左右に4%ずつパディングがあり、上下は反転したバッファ
+        float[] matrix = {
+                0.92f, 0, 0, 0,
+                0, -1, 0, 0,
+                0, 0, 1, 0,
+                0.04f, 1, 0, 1
+        };
+        float[] out = new float[2];
+        for (CameraRotation r : CameraRotation.values()) {
+            TextureTransform.toTexture(r, matrix, 0.3f, 0.6f, out, 0);
+            float[] buffer = expectedBuffer(r, 0.3f, 0.6f);
+            assertEquals(0.04f + 0.92f * buffer[0], out[0], EPSILON);
+            assertEquals(buffer[1], out[1], EPSILON);
+        }
+    }
+
+    @Test
+    public void cropToBuffer_followsRotation() {
+        float[] crop = {0.25f, 0.0f, 0.5f, 0.5f};
+        float[][] expected = {
+                {0.25f, 0.0f, 0.5f, 0.5f},
+                {0.5f, 0.25f, 1.0f, 0.5f},
+                {0.5f, 0.5f, 0.75f, 1.0f},
+                {0.0f, 0.5f, 0.5f, 0.75f},
+        };
+        float[] out = new float[4];
+        for (CameraRotation r : CameraRotation.values()) {
+            TextureTransform.cropToBuffer(r, crop, out);
+            assertArrayEquals(r.toString(), expected[r.ordinal()], out, EPSILON);
+            // 入力と同じ配列に書き戻してもよい
+            float[] inPlace = crop.clone();
+            TextureTransform.cropToBuffer(r, inPlace, inPlace);
+            assertArrayEquals(r.toString(), expected[r.ordinal()], inPlace, EPSILON);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TimestampFramePacerTest {
+
+    private static final long FRAME_60FPS = 16666667L;
+    private static final long FRAME_30FPS = 33333333L;
+
+    @Test
+    public void unlimited_requestsEveryDrawnFrame() {
+        FakeClock clock = new FakeClock(0);
+        TimestampFramePacer pacer = new TimestampFramePacer(clock, FramePacer.UNLIMITED_FPS);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(pacer.onFrameAvailable());
+            pacer.onDrawStarted();
+            clock.advance(FRAME_60FPS);
+        }
+        assertEquals(10, pacer.getRequestedFrameCount());
+        assertEquals(0, pacer.getSkippedFrameCount());
+    }
+
+    @Test
+    public void pendingRender_coalescesNewFrames() {
+        FakeClock clock = new FakeClock(0);
+        TimestampFramePacer pacer = new TimestampFramePacer(clock, FramePacer.UNLIMITED_FPS);
+
+        assertTrue(pacer.onFrameAvailable());
+        clock.advance(FRAME_60FPS);
+        assertFalse(pacer.onFrameAvailable());
+        clock.advance(FRAME_60FPS);
+        assertFalse(pacer.onFrameAvailable());
+
+        pacer.onDrawStarted();
+        clock.advance(FRAME_60FPS);
+        assertTrue(pacer.onFrameAvailable());
+
+        assertEquals(4, pacer.getArrivedFrameCount());
+        assertEquals(2, pacer.getRequestedFrameCount());
+        assertEquals(2, pacer.getCoalescedFrameCount());
+    }
+
+    @Test
+    public void camera60fps_cappedTo30_skipsEveryOtherFrame() {
+        FakeClock clock = new FakeClock(0);
+        TimestampFramePacer pacer = new TimestampFramePacer(clock, 30);
+
+        int requested = 0;
+        for (int i = 0; i < 60; i++) {
+            if (pacer.onFrameAvailable()) {
+                requested++;
+                pacer.onDrawStarted();
+            }
+            clock.advance(FRAME_60FPS);
+        }
+        assertEquals(30, requested);
+        assertEquals(30, pacer.getSkippedFrameCount());
+    }
+
+    @Test
+    public void camera30fps_cappedTo30_jitterDoesNotSkip() {
+        FakeClock clock = new FakeClock(0);
+        TimestampFramePacer pacer = new TimestampFramePacer(clock, 30);
+        long[] jitter = {-3000000L, 2000000L, -1000000L, 4000000L, -4000000L};
+
+        for (int i = 0; i < 30; i++) {
+            assertTrue("frame " + i, pacer.onFrameAvailable());
+            pacer.onDrawStarted();
+            clock.advance(FRAME_30FPS + jitter[i % jitter.length]);
+        }
+        assertEquals(0, pacer.getSkippedFrameCount());
+    }
+
+    @Test
+    public void setTargetFps_appliesToNextFrame() {
+        FakeClock clock = new FakeClock(0);
+        TimestampFramePacer pacer = new TimestampFramePacer(clock, FramePacer.UNLIMITED_FPS);
+
+        assertTrue(pacer.onFrameAvailable());
+        pacer.onDrawStarted();
+        pacer.setTargetFps(15);
+        clock.advance(FRAME_30FPS);
+        assertFalse(pacer.onFrameAvailable());
+        clock.advance(FRAME_30FPS);
+        assertTrue(pacer.onFrameAvailable());
+        assertEquals(15, pacer.getTargetFps());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeFps_isRejected() {
+        new TimestampFramePacer(new FakeClock(0), -1);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.testcameraglsurfaceview;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TimestampRebaserTest {
+
+    private static final long BASE = 123456789000L;
+    private static final long FRAME = 33333333L;
+
+    @Test
+    public void firstFrame_startsAtZero() {
+        TimestampRebaser rebaser = new TimestampRebaser();
+
+        assertEquals(0, rebaser.rebase(BASE));
+        assertEquals(FRAME, rebaser.rebase(BASE + FRAME));
+        assertEquals(2 * FRAME, rebaser.rebase(BASE + 2 * FRAME));
+    }
+
+    @Test
+    public void repeatedOrBackwardTimestamp_isSkipped() {
+        TimestampRebaser rebaser = new TimestampRebaser();
+
+        rebaser.rebase(BASE);
+        rebaser.rebase(BASE + FRAME);
+        assertEquals(TimestampRebaser.SKIP, rebaser.rebase(BASE + FRAME));
+        assertEquals(TimestampRebaser.SKIP, rebaser.rebase(BASE));
+        assertEquals(2 * FRAME, rebaser.rebase(BASE + 2 * FRAME));
+    }
+
+    @Test
+    public void zeroTimestamp_isSkipped() {
+        TimestampRebaser rebaser = new TimestampRebaser();
+
+        assertEquals(TimestampRebaser.SKIP, rebaser.rebase(0));
+        assertEquals(0, rebaser.rebase(BASE));
+    }
+
+    @Test
+    public void pause_removesGapFromTimeline() {
+        TimestampRebaser rebaser = new TimestampRebaser();
+
+        rebaser.rebase(BASE);
+        rebaser.rebase(BASE + FRAME);
+        rebaser.pause();
+        assertEquals(TimestampRebaser.SKIP, rebaser.rebase(BASE + 2 * FRAME));
+        assertEquals(TimestampRebaser.SKIP, rebaser.rebase(BASE + 3 * FRAME));
+        rebaser.resume();
+
+        long resumedAt = BASE + 100 * FRAME;
+        assertEquals(2 * FRAME, rebaser.rebase(resumedAt));
+        assertEquals(3 * FRAME, rebaser.rebase(resumedAt + FRAME));
+    }
+
+    @Test
+    public void output_isStrictlyIncreasingForJitteredInput() {
+        TimestampRebaser rebaser = new TimestampRebaser();
+        long[] input = {BASE, BASE + 30000000, BASE + 30000000, BASE + 70000000, BASE + 65000000, BASE + 99000000};
+
+        long last = -1;
+        int accepted = 0;
+        for (long timestamp : input) {
+            long pts = rebaser.rebase(timestamp);
+            if (pts != TimestampRebaser.SKIP) {
+                assertTrue(pts > last);
+                last = pts;
+                accepted++;
+            }
+        }
+        assertEquals(4, accepted);
+    }
+
+    @Test
+    public void reset_startsNewTimeline() {
+        TimestampRebaser rebaser = new TimestampRebaser();
+
+        rebaser.rebase(BASE);
+        rebaser.rebase(BASE + FRAME);
+        rebaser.reset();
+        assertEquals(0, rebaser.rebase(BASE + 10 * FRAME));
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.testcameraglsurfaceview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Per-frame cost of publishing a capture result and matching it from the draw loop.
+ * Run with the gc profiler: gc.alloc.rate.norm must stay at 0.
+ */
+@State(Scope.Thread)
+public class CaptureMetadataBenchmark {
+
+    private static final long FRAME_30FPS = 33333333L;
+
+    private CaptureMetadataRing mRing;
+    private CaptureMetadataMatcher mMatcher;
+    private final CaptureMetadata mOut = new CaptureMetadata();
+    private long mFrameNumber;
+
+    @Setup
+    public void setup() {
+        mRing = new CaptureMetadataRing(32);
+        mMatcher = new CaptureMetadataMatcher(mRing, 0);
+        mFrameNumber = 0;
+        for (int i = 0; i < 64; i++) {
+            publishAndMatch();
+        }
+    }
+
+    /** Result arrives before the frame is drawn, which is drawn two frames behind the sensor. */
+    @Benchmark
+    public boolean publishAndMatch() {
+        long timestamp = 1000000000L + mFrameNumber * FRAME_30FPS;
+        mRing.publish(timestamp, 8000000L, FRAME_30FPS, mFrameNumber);
+        mFrameNumber++;
+        mMatcher.matchPending(mOut);
+        return mMatcher.match(timestamp - 2 * FRAME_30FPS, mOut);
+    }
+
+    /** Lookup of a timestamp that has already been overwritten scans the whole ring. */
+    @Benchmark
+    public boolean findMissing() {
+        return mRing.find(1, 0, mOut);
+    }
+}
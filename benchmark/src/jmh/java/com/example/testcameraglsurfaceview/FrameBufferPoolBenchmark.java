@@ -0,0 +1,43 @@
+package com.example.testcameraglsurfaceview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Producer-side hand-off of analysis frames: pool acquire, latest-frame slot, release.
+ */
+@State(Scope.Thread)
+public class FrameBufferPoolBenchmark {
+
+    private static final int FRAME_BYTES = 1600 * 1200 * 3 / 2;
+
+    private FrameBufferPool<AnalysisFrame> mPool;
+    private LatestFrameSlot mSlot;
+
+    @Setup
+    public void setup() {
+        mPool = AnalysisFrame.newPool(4);
+        mSlot = new LatestFrameSlot();
+    }
+
+    @Benchmark
+    public AnalysisFrame acquireRelease() {
+        AnalysisFrame frame = mPool.acquire(FRAME_BYTES);
+        mPool.release(frame);
+        return frame;
+    }
+
+    @Benchmark
+    public AnalysisFrame publishAndPoll() {
+        AnalysisFrame frame = mPool.acquire(FRAME_BYTES);
+        AnalysisFrame displaced = mSlot.offer(frame);
+        if (displaced != null) {
+            mPool.release(displaced);
+        }
+        AnalysisFrame polled = mSlot.poll();
+        mPool.release(polled);
+        return polled;
+    }
+}
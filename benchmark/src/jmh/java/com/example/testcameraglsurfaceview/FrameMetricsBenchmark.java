@@ -0,0 +1,42 @@
+package com.example.testcameraglsurfaceview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Per-frame cost of FrameMetricsRecorder, and of reading it back for the overlay.
+ * Run with the gc profiler: gc.alloc.rate.norm must stay at 0 for recordFrame.
+ */
+@State(Scope.Thread)
+public class FrameMetricsBenchmark {
+
+    private static final long FRAME_30FPS = 33333333L;
+
+    private FrameMetricsRecorder mRecorder;
+    private final FrameMetricsSnapshot mSnapshot = new FrameMetricsSnapshot();
+    private long mNow;
+
+    @Setup
+    public void setup() {
+        mRecorder = new FrameMetricsRecorder(256, FRAME_30FPS, true);
+        mNow = 1000000000L;
+        for (int i = 0; i < 10000; i++) {
+            recordFrame();
+        }
+    }
+
+    @Benchmark
+    public long recordFrame() {
+        mNow += FRAME_30FPS + (mNow & 0xfffff);
+        mRecorder.recordFrame(mNow - 5000000L, mNow, mNow - 30000000L);
+        return mNow;
+    }
+
+    @Benchmark
+    public FrameMetricsSnapshot getSnapshot() {
+        mRecorder.getSnapshot(mSnapshot);
+        return mSnapshot;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.testcameraglsurfaceview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * TimestampFramePacer decision for a 60fps camera paced to 30fps.
+ */
+@State(Scope.Thread)
+public class FramePacerBenchmark {
+
+    private static final long FRAME_60FPS = 16666667L;
+
+    private long mNow;
+    private TimestampFramePacer mPacer;
+
+    @Setup
+    public void setup() {
+        mNow = 0;
+        mPacer = new TimestampFramePacer(new Clock() {
+            @Override
+            public long nanoTime() {
+                return mNow;
+            }
+        }, 30);
+    }
+
+    @Benchmark
+    public boolean frameAvailableThenDraw() {
+        mNow += FRAME_60FPS;
+        boolean requested = mPacer.onFrameAvailable();
+        if (requested) {
+            mPacer.onDrawStarted();
+        }
+        return requested;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.testcameraglsurfaceview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Image size and viewport computed by Camera.setCameraRotation() and Renderer.setConfig().
+ */
+@State(Scope.Thread)
+public class PreviewGeometryBenchmark {
+
+    @Param({"1080x2280", "2280x1080", "720x1280"})
+    public String display;
+
+    private int mDisplayWidth;
+    private int mDisplayHeight;
+
+    @Setup
+    public void setup() {
+        String[] size = display.split("x");
+        mDisplayWidth = Integer.parseInt(size[0]);
+        mDisplayHeight = Integer.parseInt(size[1]);
+    }
+
+    @Benchmark
+    public Viewport setConfigViewport() {
+        Resolution image = PreviewGeometry.fitToDisplay(mDisplayWidth, mDisplayHeight, 1600, 1200);
+        return PreviewGeometry.centerOnDisplay(mDisplayWidth, mDisplayHeight, image.getWidth(), image.getHeight());
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.testcameraglsurfaceview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Rebuilding the interleaved quads of all rotations on reconfigure.
+ */
+@State(Scope.Thread)
+public class QuadGeometryBenchmark {
+
+    @Param({"STRETCH", "LETTERBOX", "CROP"})
+    public String scaleMode;
+
+    private QuadGeometry.ScaleMode mScaleMode;
+    private final float[] mVertices = new float[QuadGeometry.FLOAT_COUNT];
+
+    @Setup
+    public void setup() {
+        mScaleMode = QuadGeometry.ScaleMode.valueOf(scaleMode);
+    }
+
+    @Benchmark
+    public float[] build() {
+        QuadGeometry.build(mVertices, mScaleMode, 1600, 1200, 1080, 2280);
+        return mVertices;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.testcameraglsurfaceview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Preview + analysis stream negotiation over capability tables as reported by real devices.
+ */
+@State(Scope.Thread)
+public class StreamNegotiatorBenchmark {
+
+    private static final long FPS_60 = 16666666L;
+    private static final long FPS_30 = 33333333L;
+    private static final long FPS_15 = 66666666L;
+
+    private static final int[][] HIGH_END_SIZES = {
+            {4032, 3024}, {4000, 3000}, {3840, 2160}, {3264, 2448}, {3200, 2400}, {2976, 2976},
+            {2688, 1512}, {2592, 1944}, {2048, 1536}, {1920, 1440}, {1920, 1080}, {1600, 1200},
+            {1440, 1080}, {1280, 960}, {1280, 720}, {1024, 768}, {960, 720}, {800, 600},
+            {720, 480}, {640, 480}, {352, 288}, {320, 240}, {176, 144}
+    };
+    private static final int[][] MID_RANGE_SIZES = {
+            {4160, 3120}, {4160, 2340}, {3120, 3120}, {2560, 1920}, {1920, 1080}, {1440, 1080},
+            {1280, 720}, {960, 720}, {720, 480}, {640, 480}, {320, 240}, {176, 144}
+    };
+    private static final int[][] LOW_END_SIZES = {
+            {2592, 1944}, {1920, 1080}, {1280, 960}, {1280, 720}, {640, 480}, {320, 240}
+    };
+
+    @Param({"highEnd", "midRange", "lowEnd"})
+    public String device;
+
+    @Param({"2280x1080", "1600x1200"})
+    public String display;
+
+    private CameraCapabilities mCapabilities;
+    private StreamRequest mPreview;
+    private StreamRequest mAnalysis;
+    private double mDisplayAspect;
+
+    @Setup
+    public void setup() {
+        int[][] sizes;
+        if ("highEnd".equals(device)) {
+            sizes = HIGH_END_SIZES;
+        } else if ("midRange".equals(device)) {
+            sizes = MID_RANGE_SIZES;
+        } else {
+            sizes = LOW_END_SIZES;
+        }
+        mCapabilities = new CameraCapabilities()
+                .addFpsRange(15, 15)
+                .addFpsRange(7, 30)
+                .addFpsRange(15, 30)
+                .addFpsRange(30, 30);
+        for (int[] size : sizes) {
+            long pixels = (long) size[0] * size[1];
+            long duration = pixels > 8000000 ? FPS_15 : pixels > 2100000 ? FPS_30 : FPS_60;
+            mCapabilities.addOutput(CameraCapabilities.FORMAT_PRIVATE, size[0], size[1], duration);
+            mCapabilities.addOutput(CameraCapabilities.FORMAT_YUV_420_888, size[0], size[1], duration);
+        }
+
+        String[] displaySize = display.split("x");
+        int width = Integer.parseInt(displaySize[0]);
+        int height = Integer.parseInt(displaySize[1]);
+        mDisplayAspect = (double) width / height;
+        mPreview = new StreamRequest(CameraCapabilities.FORMAT_PRIVATE, width, height)
+                .setMaxPixels(1920 * 1440);
+        mAnalysis = new StreamRequest(CameraCapabilities.FORMAT_YUV_420_888, 640, 480)
+                .setMaxPixels(1280 * 720)
+                .setMatchFirstStreamAspect(true);
+    }
+
+    @Benchmark
+    public CapturePlan negotiate() {
+        return StreamNegotiator.negotiate(mCapabilities, mDisplayAspect, 30, mPreview, mAnalysis);
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.testcameraglsurfaceview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Texture coordinate upload done by Renderer.setConfig() for each rotation.
+ */
+@State(Scope.Thread)
+public class TextureCoordinatesBenchmark {
+
+    @Param({"ROTATION_0", "ROTATION_90", "ROTATION_180", "ROTATION_270"})
+    public String rotation;
+
+    private CameraRotation mRotation;
+    private FloatBuffer mTexCoordBuffer;
+
+    @Setup
+    public void setup() {
+        mRotation = CameraRotation.valueOf(rotation);
+        mTexCoordBuffer = ByteBuffer.allocateDirect(TextureCoordinates.COUNT * 4)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    @Benchmark
+    public FloatBuffer fillTexCoordBuffer() {
+        mTexCoordBuffer.put(TextureCoordinates.forRotation(mRotation));
+        mTexCoordBuffer.position(0);
+        return mTexCoordBuffer;
+    }
+}